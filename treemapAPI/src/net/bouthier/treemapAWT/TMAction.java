@@ -78,6 +78,17 @@ public class TMAction
         }
     }
 
+    /**
+     * Called when the mouse moves over the treemap. Used to prepare the zoom
+     * on the node under the mouse.
+     *
+     * @param e the MouseEvent generated when moving
+     */
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        view.prefetchZoom(e.getX(), e.getY());
+    }
+
 //    @Override
 //    public void mouseEntered(MouseEvent e) {
 //        Object nodeUnderTheMouse = view.getNodeUnderTheMouse(e);
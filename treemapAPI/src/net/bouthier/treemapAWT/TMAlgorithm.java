@@ -28,6 +28,7 @@ package net.bouthier.treemapAWT;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.GridLayout;
 import java.awt.Paint;
@@ -36,13 +37,18 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.util.Enumeration;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.BorderFactory;
 import javax.swing.JCheckBox;
@@ -71,20 +77,45 @@ public abstract class TMAlgorithm
 
     private static final ColorModel cModel = ColorModel.getRGBdefault();
 
-    private static final int dimMax = 32;
-    private static WritableRaster[][] cachedRasters
-            = new WritableRaster[dimMax + 1][dimMax + 1];
-    private static int[][][] cachedBuffers = new int[dimMax + 1][dimMax + 1][];
-
-    private TMCushionPaint painter;
+    // Raster reused by the cushion paint of each thread, grown on demand
+    private static final ThreadLocal<WritableRaster> cushionRasters
+            = new ThreadLocal<WritableRaster>();
+
+    // Lighting term of the fast cushion kernel, sampled on [0, 1]
+    private static final int LIGHT_STEPS = 1024;
+
+    // Inverse norm of the cushion normal, indexed by the bits of its squared
+    // norm in [1, 2^NORM_EXPONENTS) : NORM_BITS bits of mantissa per exponent
+    private static final int     NORM_BITS      = 10;
+    private static final int     NORM_EXPONENTS = 24;
+    private static final int     NORM_SHIFT     = 23 - NORM_BITS;
+    private static final int     NORM_ONE       = Float.floatToRawIntBits(1.0f);
+    private static final float[] NORM_TABLE     = normTable();
+
+    // Cushion paint of each drawing thread
+    private final ThreadLocal<TMCushionPaint> painters
+            = new ThreadLocal<TMCushionPaint>() {
+                protected TMCushionPaint initialValue() {
+                    return new TMCushionPaint();
+                }
+            };
 
     private final Font titleFont = new Font("Dialog", Font.PLAIN, 10);
+
+    // Measured titles of each drawing thread
+    private final ThreadLocal<TMTitleCache> titleCaches
+            = new ThreadLocal<TMTitleCache>() {
+                protected TMTitleCache initialValue() {
+                    return new TMTitleCache(titleFont);
+                }
+            };
     private final Color borderColor = Color.black;
 
     protected double h = 0.50;
     protected double f = 1;
     protected boolean cushion = false;
     protected boolean border = false;
+    protected boolean cushionExact = false;
     protected int IS = 215;
 
     protected final double LX = 0.09759;
@@ -102,6 +133,34 @@ public abstract class TMAlgorithm
     protected int borderLimit = 0; // limit to draw nested border
 
     protected boolean nodesTitles = true; // draw the nodes titles.
+    protected boolean fittingTitles = true; // cut titles to the nodes
+    protected boolean framedComposites = false; // composites fill frames only
+    protected boolean pixelDrawing = false; // flat rectangles written directly
+    protected boolean batchedDrawing = false; // flat leaves drawn by paint
+
+    // Returned by layoutChildren() when no child has been laid out
+    protected static final TMNodeModel[] NO_CHILDREN = new TMNodeModel[0];
+
+    // last layout computed, and the areas it moved
+    private final TMLayoutState layoutState = new TMLayoutState(this);
+
+    private boolean parallelLayout    = false; // fork/join layout
+    private int     parallelThreshold = 10000; // min nodes to fork a subtree
+
+    private TMRasterDrawer rasterDrawer = null; // images of the subtrees
+
+    private boolean parallelDrawing = false; // tiles drawn in parallel
+    private int     tileSize        = 256;   // side of the tiles, in pixels
+
+    private int detailThreshold = 0; // min side of a subdivided node, in pixels
+    private int culledNodes     = 0; // nodes not drawn by the last drawing
+
+    // drawing back-ends
+    private final TMFrameFiller frameFiller = new TMFrameFiller(this);
+    private final TMPixelDrawer pixelDrawer =
+            new TMPixelDrawer(this, frameFiller);
+    private final TMBatchDrawer batchDrawer =
+            new TMBatchDrawer(this, frameFiller);
 
 //    private Rectangle nodeArea;
 
@@ -116,7 +175,68 @@ public abstract class TMAlgorithm
             TMView view) {
         this.root = root;
         this.view = view;
-        painter = new TMCushionPaint();
+    }
+
+    /**
+     * Returns a new algorithm of the same class, with the same drawing
+     * parameters, used by no view, so that it can draw another model
+     * without disturbing this one. The copy does not cache the images of
+     * the subtrees, as it draws each model once.
+     * <P>
+     * Should be overridden by the subclasses to be drawn offscreen or
+     * exported : they create the new algorithm, copy the parameters of
+     * TMAlgorithm with copyParametersTo(), then copy their own parameters.
+     *
+     * @return the new algorithm
+     * @throws UnsupportedOperationException if the subclass does not
+     * override this method
+     */
+    protected TMAlgorithm copy() {
+        throw new UnsupportedOperationException("The TMAlgorithm "
+                + getClass().getName() + " does not override copy().");
+    }
+
+    /**
+     * Copies the drawing parameters of TMAlgorithm to the given algorithm.
+     * Called by copy().
+     *
+     * @param copy the algorithm to copy the parameters to
+     */
+    protected final void copyParametersTo(TMAlgorithm copy) {
+        copy.h = h;
+        copy.f = f;
+        copy.cushion = cushion;
+        copy.border = border;
+        copy.cushionExact = cushionExact;
+        copy.IS = IS;
+        copy.borderSize = borderSize;
+        copy.borderLimit = borderLimit;
+        copy.nodesTitles = nodesTitles;
+        copy.fittingTitles = fittingTitles;
+        copy.framedComposites = framedComposites;
+        copy.pixelDrawing = pixelDrawing;
+        copy.batchedDrawing = batchedDrawing;
+        copy.parallelLayout = parallelLayout;
+        copy.parallelThreshold = parallelThreshold;
+        copy.parallelDrawing = parallelDrawing;
+        copy.tileSize = tileSize;
+        copy.detailThreshold = detailThreshold;
+    }
+
+
+    /**
+     * Repaints the view, if any, and forgets the images of the subtrees
+     * drawn with the former parameters. An algorithm used by a TMLayout has
+     * no view.
+     */
+    private void repaintView() {
+        TMRasterDrawer raster = rasterDrawer;
+        if (raster != null) {
+            raster.getCache().clear();
+        }
+        if (view != null) {
+            view.repaint();
+        }
     }
 
 
@@ -141,16 +261,104 @@ public abstract class TMAlgorithm
 
     public void setDrawingTitles(boolean drawing) {
         nodesTitles = drawing;
-        view.repaint();
+        repaintView();
         setChanged();
         notifyObservers();
     }
 
 
+    /**
+     * Sets the fitting of the titles on or off. When on, the default, a
+     * title is drawn only if the node is high enough for the font, and is
+     * cut after the last character fitting entirely in the node. The
+     * widths of the titles are kept from one drawing to the other. When
+     * off, every title is drawn and clipped by its node.
+     *
+     * @param fitting <CODE>true</CODE> to fit the titles to the nodes
+     */
+    public void setFittingTitles(boolean fitting) {
+        fittingTitles = fitting;
+        repaintView();
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isFittingTitles() {
+        return fittingTitles;
+    }
+
+    /**
+     * Sets the drawing of the composite nodes as frames on or off. When on,
+     * a composite node whose children cover their whole box with opaque
+     * fillings only fills the frame left around that box, by the border and
+     * the room kept for its title, instead of filling its whole area before
+     * its children paint over it. The image drawn is the same, with each
+     * pixel written about once. Off by default.
+     *
+     * @param framed <CODE>true</CODE> to fill only the frames of the
+     * composite nodes
+     */
+    public void setFramedComposites(boolean framed) {
+        framedComposites = framed;
+        repaintView();
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isFramedComposites() {
+        return framedComposites;
+    }
+
+    /**
+     * Sets the direct drawing of the pixels on or off. When on, a flat
+     * treemap drawn in an image with packed int pixels has the rectangles
+     * and borders of its nodes written directly in the pixels of the image,
+     * with the Color of each node taken once as an int. Java2D is then only
+     * used for the titles and for the nodes filled with a Paint other than
+     * an opaque Color. The image drawn is the same, but fillNode() is not
+     * called for the nodes written directly, and the raster cache is not
+     * used. Off by default.
+     *
+     * @param direct <CODE>true</CODE> to write the pixels directly
+     */
+    public void setPixelDrawing(boolean direct) {
+        pixelDrawing = direct;
+        repaintView();
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isPixelDrawing() {
+        return pixelDrawing;
+    }
+
+    /**
+     * Sets the batched drawing on or off. When on, a flat treemap draws its
+     * composite nodes each before its subtree, and its leaves by batches of
+     * a few hundred : their fills grouped by filling, all their borders with
+     * one Paint and no change of clip, and last their titles. The leaves do
+     * not overlap, so the image is the same, but for titles spilling over
+     * the border of their node, clipped to it. fillNode() is not called for
+     * the leaves batched, and the raster cache is not used. Off by default.
+     *
+     * @param batched <CODE>true</CODE> to draw the leaves grouped by Paint
+     */
+    public void setBatchedDrawing(boolean batched) {
+        batchedDrawing = batched;
+        repaintView();
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isBatchedDrawing() {
+        return batchedDrawing;
+    }
+
+
     /* --- Cushion management --- */
     public void setCushion(boolean cushion) {
         this.cushion = cushion;
-        view.repaint();
+        repaintView();
         setChanged();
         notifyObservers();
     }
@@ -161,7 +369,7 @@ public abstract class TMAlgorithm
 
     public void setBorderOnCushion(boolean border) {
         this.border = border;
-        view.repaint();
+        repaintView();
         setChanged();
         notifyObservers();
     }
@@ -172,7 +380,7 @@ public abstract class TMAlgorithm
 
     public void setH(double h) {
         this.h = h;
-        view.repaint();
+        repaintView();
         setChanged();
         notifyObservers();
     }
@@ -183,7 +391,7 @@ public abstract class TMAlgorithm
 
     public void setF(double f) {
         this.f = f;
-        view.repaint();
+        repaintView();
         setChanged();
         notifyObservers();
     }
@@ -194,7 +402,7 @@ public abstract class TMAlgorithm
 
     public void setIS(int IS) {
         this.IS = IS;
-        view.repaint();
+        repaintView();
         setChanged();
         notifyObservers();
     }
@@ -203,6 +411,220 @@ public abstract class TMAlgorithm
         return IS;
     }
 
+    /**
+     * Sets the cushion shading exact or not. The exact shading evaluates
+     * the lighting of every pixel as the original cushion treemap does.
+     * The default, faster shading evaluates it incrementally along the rows
+     * and takes the norm of the normal and the intensity from tables, and
+     * could differ from the exact one by one level of color.
+     *
+     * @param exact <CODE>true</CODE> for the exact shading
+     */
+    public void setCushionExact(boolean exact) {
+        this.cushionExact = exact;
+        repaintView();
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isCushionExact() {
+        return cushionExact;
+    }
+
+
+    /* --- Parallel layout --- */
+    /**
+     * Sets the layout in parallel on or off. When on, subtrees with at least
+     * getParallelThreshold() nodes are laid out in a ForkJoinPool, once the
+     * area of their root is known. The resulting areas are exactly the same
+     * as with the sequential layout.
+     * <P>
+     * layoutChildren() is then called from several threads at once, on
+     * different nodes : a subclass should not keep layout state in fields.
+     *
+     * @param parallel <CODE>true</CODE> to lay out in parallel
+     */
+    public void setParallelLayout(boolean parallel) {
+        parallelLayout = parallel;
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isParallelLayout() {
+        return parallelLayout;
+    }
+
+    /**
+     * Sets the minimum number of nodes of a subtree to be laid out in a
+     * separate task. Smaller subtrees are laid out sequentially.
+     *
+     * @param threshold the minimum number of nodes
+     */
+    public void setParallelThreshold(int threshold) {
+        parallelThreshold = Math.max(1, threshold);
+        setChanged();
+        notifyObservers();
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+
+    /* --- Parallel drawing --- */
+    /**
+     * Sets the drawing in parallel on or off. When on, the drawn area is cut
+     * in tiles of getTileSize() pixels, drawn in a ForkJoinPool, each one
+     * with only the subtrees touching it. The image is exactly the same as
+     * with the sequential drawing.
+     * <P>
+     * The fill methods are then called from several threads at once, on
+     * different tiles : a subclass should not keep drawing state in fields.
+     *
+     * @param parallel <CODE>true</CODE> to draw in parallel
+     */
+    public void setParallelDrawing(boolean parallel) {
+        parallelDrawing = parallel;
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isParallelDrawing() {
+        return parallelDrawing;
+    }
+
+    /**
+     * Sets the side of the tiles drawn in parallel.
+     *
+     * @param size the side of the tiles, in pixels
+     */
+    public void setTileSize(int size) {
+        tileSize = Math.max(16, size);
+        setChanged();
+        notifyObservers();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+
+    /* --- Subtree raster cache --- */
+    /**
+     * Sets the raster cache on or off. When on, the composite nodes big
+     * enough keep an image of their subtree, copied instead of drawing the
+     * subtree again as long as its areas and drawing are unchanged. The
+     * image drawn is the same. The cache is configured and observed through
+     * getRasterCache().
+     *
+     * @param caching <CODE>true</CODE> to keep the images of the subtrees
+     */
+    public void setRasterCaching(boolean caching) {
+        if (caching && (rasterDrawer == null)) {
+            rasterDrawer = new TMRasterDrawer(this);
+        } else if (!caching) {
+            rasterDrawer = null;
+        }
+        setChanged();
+        notifyObservers();
+    }
+
+    public boolean isRasterCaching() {
+        return rasterDrawer != null;
+    }
+
+    /**
+     * Returns the raster cache, or <CODE>null</CODE> if it is off.
+     *
+     * @return the raster cache
+     */
+    public TMRasterCache getRasterCache() {
+        TMRasterDrawer raster = rasterDrawer;
+        return (raster == null) ? null : raster.getCache();
+    }
+
+
+    /* --- Level of detail --- */
+    /**
+     * Sets the level of detail. A composite node whose width or height is
+     * smaller than the threshold is not subdivided : its children are
+     * neither laid out nor drawn, and the node is drawn as one rectangle
+     * with the filling of its biggest descendant. A threshold of 0, the
+     * default, draws every node.
+     *
+     * @param threshold the minimum side in pixels of a subdivided node
+     */
+    public void setDetailThreshold(int threshold) {
+        detailThreshold = Math.max(0, threshold);
+        invalidateLayout();
+        repaintView();
+        setChanged();
+        notifyObservers();
+    }
+
+    public int getDetailThreshold() {
+        return detailThreshold;
+    }
+
+    /**
+     * Returns the number of nodes that were not drawn by the last drawing,
+     * being inside nodes under the level of detail.
+     *
+     * @return the number of culled nodes
+     */
+    public int getCulledNodeCount() {
+        return culledNodes;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the node is a composite too small to be
+     * subdivided, according to the level of detail, or a composite whose
+     * children are not built yet, in a lazy model.
+     *
+     * @param node the node
+     * @return <CODE>true</CODE> if the children of the node are culled
+     */
+    protected boolean isCulled(TMNodeModel node) {
+        if (node.isLeaf()) {
+            return false;
+        }
+        Rectangle area = node.getArea();
+        return isUnderDetail(area.width, area.height)
+                || ((TMNodeModelComposite) node).isFolded();
+    }
+
+    /**
+     * Asks the model for the children of the node if it is folded and laid
+     * out in an area big enough to be subdivided. They are built in the
+     * model thread, and laid out once built.
+     *
+     * @param node the node whose area is set
+     * @param width the width of the area of the node
+     * @param height the height of the area of the node
+     */
+    private void expandIfFolded(TMNodeModelComposite node,
+            int width,
+            int height) {
+        if (node.isFolded() && !isUnderDetail(width, height)
+                && (node.getSize() != 0.0f)) {
+            node.getModelRoot().requestExpansion(node, width, height);
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if an area of the given size is too small to
+     * be subdivided, according to the level of detail.
+     *
+     * @param width the width of the area
+     * @param height the height of the area
+     * @return <CODE>true</CODE> if the area is under the level of detail
+     */
+    private boolean isUnderDetail(int width,
+            int height) {
+        return (detailThreshold != 0)
+                && ((width < detailThreshold) || (height < detailThreshold));
+    }
+
 
     /* --- Nested management --- */
     /**
@@ -213,7 +635,8 @@ public abstract class TMAlgorithm
     public void setBorderSize(int size) {
         borderSize = size;
         borderLimit = (borderSize * 2) + 4;
-        view.repaint();
+        invalidateLayout();
+        repaintView();
         setChanged();
         notifyObservers();
     }
@@ -237,9 +660,356 @@ public abstract class TMAlgorithm
     }
 
 
+    /* --- Layout --- */
+    /**
+     * Computes the drawing area of every node under the given root. The root
+     * area should already be set. The layout is cached : when only the sizes
+     * or the structure of the model have changed since the last call, only
+     * the subtrees whose layout is out of date are laid out again. A change
+     * of root or of root area restores the layout from the layout cache of
+     * the view if it is there, and lays out the whole tree otherwise.
+     *
+     * @param root the root
+     */
+    void layout(TMNodeModel root) {
+        Rectangle bounds = root.getArea();
+        long version = root.getModelRoot().getLayoutVersion();
+        boolean stored;
+        if (layoutState.isLaidOut(root, bounds)) {
+            if (layoutState.isUpToDate(version)) {
+                return;
+            }
+            relayoutNodes(root, HORIZONTAL);
+            stored = false;
+        } else {
+            layoutState.store();
+            stored = layoutState.restore(root, bounds, version);
+            if (!stored) {
+                layoutSubtree(root, HORIZONTAL);
+            }
+            addDamage(bounds.x, bounds.y, bounds.width, bounds.height);
+        }
+        layoutState.set(root, bounds, version, stored);
+    }
+
+    /**
+     * Forces the next call to layout() to compute again the whole layout,
+     * and forgets the layouts of this algorithm kept in the layout cache.
+     * Should be called when a parameter of the algorithm changing the areas
+     * of the nodes is modified.
+     */
+    public void invalidateLayout() {
+        layoutState.invalidate();
+    }
+
+    /**
+     * Keeps the current layout in the layout cache, and forgets it. Called
+     * when another algorithm is about to overwrite the areas of the nodes.
+     */
+    void releaseLayout() {
+        layoutState.release();
+    }
+
+    /**
+     * Returns the union of the areas changed by the layouts computed since
+     * the last call of this method, and resets it. The returned rectangle
+     * includes the old and the new areas of every moved node, and is empty
+     * if nothing has moved.
+     *
+     * @return the area to repaint
+     */
+    Rectangle takeLayoutDamage() {
+        return layoutState.takeDamage();
+    }
+
+    /**
+     * Returns the area where the given node is drawn, borders included :
+     * its own area, or the area of its highest ancestor under the level of
+     * detail, which is drawn with the filling of a descendant.
+     *
+     * @param node the node
+     * @return the area drawn; <CODE>null</CODE> if the node is not under the
+     * root drawn
+     */
+    Rectangle getDrawnArea(TMNodeModel node) {
+        TMNodeModel drawn = node;
+        TMNodeModel n = node;
+        while (n != root) {
+            n = n.getParent();
+            if (n == null) {
+                return null;
+            }
+            if (isCulled(n)) {
+                drawn = n;
+            }
+        }
+        Rectangle area = drawn.getArea();
+        return new Rectangle(area.x, area.y, area.width + 1, area.height + 1);
+    }
+
+    /**
+     * Lays out the whole subtree of the node, in parallel if the parallel
+     * layout is on and the subtree is big enough.
+     *
+     * @param node the node whose area is already set
+     * @param axis the axis of separation
+     */
+    private void layoutSubtree(TMNodeModel node,
+            short axis) {
+        if (parallelLayout && (node.getNodeCount() >= parallelThreshold)) {
+            ForkJoinPool.commonPool().invoke(
+                    new TMLayoutTask(this, node, axis));
+        } else {
+            layoutNodes(node, axis);
+        }
+    }
+
+    /**
+     * Sets the drawing area of the children of the node, and recurses the
+     * layout on them.
+     *
+     * @param node the node whose area is already set
+     * @param axis the axis of separation
+     */
+    protected void layoutNodes(TMNodeModel node,
+            short axis) {
+        node.setLayoutDirty(false);
+        if (!node.isLeaf()) {
+            TMNodeModelComposite composite = (TMNodeModelComposite) node;
+            TMNodeModel[] children = layoutVisibleChildren(composite, axis);
+            composite.setLayoutOrder(children);
+            for (int i = 0; i < children.length; i++) {
+                layoutNodes(children[i], switchAxis(axis));
+            }
+        }
+    }
+
+    /**
+     * Lays out again the part of the subtree of the node which is out of
+     * date. The area of the node is unchanged. Its children are laid out
+     * again; those whose area has moved are entirely laid out again, and the
+     * others are only visited if they are out of date themselves.
+     *
+     * @param node the node whose area is unchanged
+     * @param axis the axis of separation
+     */
+    protected void relayoutNodes(TMNodeModel node,
+            short axis) {
+        if (!node.isLayoutDirty()) {
+            return;
+        }
+        node.setLayoutDirty(false);
+        if (node.isLeaf()) {
+            return;
+        }
+        TMNodeModelComposite composite = (TMNodeModelComposite) node;
+        if (isCulled(node)) {
+            // the biggest descendant, giving the filling, could have changed
+            composite.setLayoutOrder(NO_CHILDREN);
+            Rectangle area = node.getArea();
+            expandIfFolded(composite, area.width, area.height);
+            addDamage(area.x, area.y, area.width, area.height);
+            return;
+        }
+        TMNodeModel[] oldOrder = composite.getLayoutOrder();
+
+        int[] oldAreas = new int[composite.getChildCount() * 4];
+        int index = 0;
+        for (Enumeration<?> e = composite.children(); e.hasMoreElements();) {
+            Rectangle area = ((TMNodeModel) e.nextElement()).getArea();
+            oldAreas[index++] = area.x;
+            oldAreas[index++] = area.y;
+            oldAreas[index++] = area.width;
+            oldAreas[index++] = area.height;
+        }
+
+        TMNodeModel[] order = layoutChildren(composite, axis);
+        composite.setLayoutOrder(order);
+
+        if ((order.length == 0) || (oldOrder.length == 0)) {
+            // children appear or disappear all together
+            if ((order.length != 0) || (oldOrder.length != 0)) {
+                Rectangle area = node.getArea();
+                addDamage(area.x, area.y, area.width, area.height);
+            }
+            for (int i = 0; i < order.length; i++) {
+                layoutSubtree(order[i], switchAxis(axis));
+            }
+            return;
+        }
+
+        index = 0;
+        for (Enumeration<?> e = composite.children(); e.hasMoreElements();) {
+            TMNodeModel child = (TMNodeModel) e.nextElement();
+            Rectangle area = child.getArea();
+            int oldX = oldAreas[index++];
+            int oldY = oldAreas[index++];
+            int oldW = oldAreas[index++];
+            int oldH = oldAreas[index++];
+            if ((area.x != oldX) || (area.y != oldY)
+                    || (area.width != oldW) || (area.height != oldH)) {
+                addDamage(oldX, oldY, oldW, oldH);
+                addDamage(area.x, area.y, area.width, area.height);
+                layoutSubtree(child, switchAxis(axis));
+            } else {
+                relayoutNodes(child, switchAxis(axis));
+            }
+        }
+    }
+
+    /**
+     * Adds an area to the layout damage. The area is enlarged by one pixel
+     * to include the border drawn around the node.
+     *
+     * @param x the x coord
+     * @param y the y coord
+     * @param w the width
+     * @param h the height
+     */
+    private void addDamage(int x,
+            int y,
+            int w,
+            int h) {
+        if ((w < 0) || (h < 0)) {
+            return;
+        }
+        layoutState.addDamage(x, y, w + 1, h + 1);
+        TMRasterDrawer raster = rasterDrawer;
+        if (raster != null) {
+            raster.addDamage(x, y, w + 1, h + 1);
+        }
+    }
+
+    /**
+     * Adds an area to a damage rectangle.
+     *
+     * @param damage the damage, empty if nothing is damaged
+     * @param x the x coord
+     * @param y the y coord
+     * @param w the width
+     * @param h the height
+     */
+    static void addArea(Rectangle damage,
+            int x,
+            int y,
+            int w,
+            int h) {
+        if (damage.isEmpty()) {
+            damage.setBounds(x, y, w, h);
+        } else {
+            damage.add(new Rectangle(x, y, w, h));
+        }
+    }
+
+    /**
+     * Drops the images of the subtrees touched by the layouts computed since
+     * the last drawing.
+     */
+    private void invalidateRasters() {
+        TMRasterDrawer raster = rasterDrawer;
+        if (raster != null) {
+            raster.invalidate();
+        }
+    }
+
+
+    /**
+     * Computes the layout of the tree under the given root, in the given
+     * area, without setting the areas of the nodes. Used to prefetch the
+     * layout of a zoom target while the current layout is still displayed.
+     * The children are laid out with computeChildrenBox() and
+     * computeChildrenAreas(), as layoutChildren() does by default.
+     *
+     * @param root the root of the layout
+     * @param bounds the area of the root
+     * @return the layout, to be kept in the layout cache
+     */
+    TMLayoutCache.Snapshot layoutSnapshot(TMNodeModel root,
+            Rectangle bounds) {
+        TMLayoutCache.Snapshot snapshot =
+                new TMLayoutCache.Snapshot(root.getNodeCount());
+        snapshotNodes(snapshot, root,
+                bounds.x, bounds.y, bounds.width, bounds.height, HORIZONTAL);
+        snapshot.trim();
+        return snapshot;
+    }
+
+    /**
+     * Adds the node and the nodes laid out under it to the snapshot.
+     *
+     * @param snapshot the layout being computed
+     * @param node the node
+     * @param x the x of the area of the node
+     * @param y the y of the area of the node
+     * @param w the width of the area of the node
+     * @param h the height of the area of the node
+     * @param axis the axis of separation
+     */
+    private void snapshotNodes(TMLayoutCache.Snapshot snapshot,
+            TMNodeModel node,
+            int x,
+            int y,
+            int w,
+            int h,
+            short axis) {
+        if (node.isLeaf()) {
+            snapshot.add(node, x, y, w, h, null);
+            return;
+        }
+        TMNodeModelComposite composite = (TMNodeModelComposite) node;
+        float size = composite.getSize();
+        if ((size == 0.0f) || isUnderDetail(w, h) || composite.isFolded()) {
+            expandIfFolded(composite, w, h);
+            snapshot.add(node, x, y, w, h, NO_CHILDREN);
+            return;
+        }
+
+        TMNodeModel[] children;
+        float[] sizes;
+        if (isOrderedBySize()) {
+            children = composite.getChildrenBySize();
+            sizes = composite.getChildrenSizesBySize();
+        } else {
+            children = composite.getChildrenArray();
+            sizes = composite.getChildrenSizes();
+        }
+        int[] box = {x, y, w, h};
+        computeChildrenBox(box);
+        int[] areas = new int[children.length * 4];
+        computeChildrenAreas(sizes, children.length, size, box, axis, areas);
+
+        snapshot.add(node, x, y, w, h, children);
+        for (int i = 0; i < children.length; i++) {
+            snapshotNodes(snapshot, children[i],
+                    areas[i * 4], areas[(i * 4) + 1],
+                    areas[(i * 4) + 2], areas[(i * 4) + 3],
+                    switchAxis(axis));
+        }
+    }
+
+    /**
+     * Lays out the children of the node, unless they are culled by the
+     * level of detail.
+     *
+     * @param node the node whose area is set
+     * @param axis the axis of separation
+     * @return the children laid out, in the order they have been
+     */
+    TMNodeModel[] layoutVisibleChildren(TMNodeModelComposite node,
+            short axis) {
+        if (isCulled(node)) {
+            Rectangle area = node.getArea();
+            expandIfFolded(node, area.width, area.height);
+            return NO_CHILDREN;
+        }
+        return layoutChildren(node, axis);
+    }
+
+
     /* --- Drawing --- */
     /**
-     * Starts the process of drawing the treemap.
+     * Starts the process of drawing the treemap. The layout is computed first
+     * if needed, then the nodes are painted from their cached areas.
      *
      * @param g the graphic context
      * @param root the root
@@ -247,11 +1017,88 @@ public abstract class TMAlgorithm
     void draw(Graphics2D g,
             TMNodeModel root) {
         this.root = root;
-        drawNodes(g, root, HORIZONTAL, 1);
+        layout(root);
+        invalidateRasters();
+        culledNodes = 0;
+        if (batchedDrawing && !cushion) {
+            TMNodeModel father = root.getParent();
+            TMDrawPass pass = new TMDrawPass(Thread.currentThread(), null);
+            batchDrawer.draw(g, root,
+                    (father == null) ? null : father.getCushionData(), pass);
+            culledNodes = pass.culled;
+        } else {
+            drawNodes(g, root, HORIZONTAL, 1);
+        }
+    }
+
+    /**
+     * Draws the treemap in the given area of an image, in parallel tiles if
+     * the parallel drawing is on. The layout is computed first if needed.
+     * Blocks until the drawing is finished.
+     *
+     * @param image the image to draw in
+     * @param clip the area of the image to draw
+     * @param root the root
+     */
+    void draw(BufferedImage image,
+            Rectangle clip,
+            TMNodeModel root) {
+        if (!parallelDrawing) {
+            Graphics2D g = image.createGraphics();
+            g.setClip(clip.x, clip.y, clip.width, clip.height);
+            if (isPixelDrawing(image)) {
+                this.root = root;
+                layout(root);
+                invalidateRasters();
+                TMNodeModel father = root.getParent();
+                TMDrawPass pass = new TMDrawPass(Thread.currentThread(), null);
+                pixelDrawer.draw(g, new TMPixelWriter(image), root,
+                        HORIZONTAL, 1,
+                        (father == null) ? null : father.getCushionData(),
+                        clip.x, clip.y, clip.x + clip.width,
+                        clip.y + clip.height, pass);
+                culledNodes = pass.culled;
+            } else {
+                draw(g, root);
+            }
+            g.dispose();
+            return;
+        }
+        this.root = root;
+        layout(root);
+        invalidateRasters();
+        culledNodes = TMTileTask.drawTiles(this, image, clip, root, tileSize);
     }
 
     /**
-     * Draws the node and recurses the drawing on its children.
+     * Draws one tile of an image, with the graphic context of its subimage,
+     * clipped to the tile. Called by the tiles drawn in parallel.
+     *
+     * @param g the graphic context of the tile
+     * @param image the image drawn
+     * @param tile the tile to draw
+     * @param root the root
+     * @param pass the drawing pass of the tile
+     */
+    void drawTile(Graphics2D g,
+            BufferedImage image,
+            Rectangle tile,
+            TMNodeModel root,
+            TMDrawPass pass) {
+        if (isPixelDrawing(image)) {
+            pixelDrawer.draw(g, new TMPixelWriter(image), root, HORIZONTAL, 1,
+                    null, tile.x, tile.y, tile.x + tile.width,
+                    tile.y + tile.height, pass);
+        } else if (batchedDrawing && !cushion) {
+            batchDrawer.draw(g, root, null, pass);
+        } else {
+            drawNodes(g, root, HORIZONTAL, 1, null, pass);
+        }
+    }
+
+    /**
+     * Draws the node and recurses the drawing on its children, in the order
+     * they have been laid out. Subtrees outside of the clip are skipped.
      *
      * @param g the graphic context
      * @param node the node to draw
@@ -262,21 +1109,112 @@ public abstract class TMAlgorithm
             TMNodeModel node,
             short axis,
             int level) {
+        TMNodeModel father = node.getParent();
+        TMDrawPass pass = new TMDrawPass(Thread.currentThread(), null);
+        drawNodes(g, node, axis, level,
+                (father == null) ? null : father.getCushionData(), pass);
+        culledNodes += pass.culled;
+    }
+
+    /**
+     * Draws the node and its subtree, with the cushion data of its father
+     * given, so that tiles drawn in parallel do not read the cushion data
+     * set by each other.
+     *
+     * @param g the graphic context
+     * @param node the node to draw
+     * @param axis the axis of separation
+     * @param level the level of deep
+     * @param fatherData the cushion data of the father; <CODE>null</CODE>
+     * for the root
+     * @param pass the drawing pass
+     */
+    void drawNodes(Graphics2D g,
+            TMNodeModel node,
+            short axis,
+            int level,
+            TMCushionData fatherData,
+            TMDrawPass pass) {
         Rectangle oldClip = g.getClipBounds();
         Rectangle area = node.getArea();
-        TMCushionData data = computeCushionData(node.getParent(), area, axis);
+        if (!oldClip.intersects(area.x, area.y,
+                area.width + 1, area.height + 1)) {
+            // nothing of this subtree is repainted
+            return;
+        }
+        TMCushionData data = computeCushionData(fatherData, area, axis);
         node.setCushionData(data);
+        TMRasterDrawer raster = rasterDrawer;
+        if ((raster != null) && (node != root) && !node.isLeaf()
+                && !isCulled(node) && raster.accepts(area)
+                && raster.draw(g, node, axis, level, data, oldClip, pass)) {
+            return;
+        }
         g.clipRect(area.x, area.y, area.width + 1, area.height + 1);
-        if (cushion) {
+        drawSubtree(g, node, axis, level, data, pass);
+        g.setClip(oldClip.x, oldClip.y, oldClip.width, oldClip.height);
+    }
+
+    /**
+     * Draws the node and its subtree, in a graphic context clipped to the
+     * node.
+     *
+     * @param g the graphic context
+     * @param node the node to draw
+     * @param axis the axis of separation
+     * @param level the level of deep
+     * @param data the cushion data of the node
+     * @param pass the drawing pass
+     */
+    void drawSubtree(Graphics2D g,
+            TMNodeModel node,
+            short axis,
+            int level,
+            TMCushionData data,
+            TMDrawPass pass) {
+        if (isCulled(node)) {
+            pass.addCulled(node.getArea(), node.getNodeCount() - 1);
+            fillCulledNode(g, node, level, data);
+        } else if (framedComposites && !node.isLeaf()
+                && frameFiller.fill(g, node, level, data)) {
+            // the rest of the node is painted by its children
+        } else if (cushion) {
             fillCushionNode(g, node, level, data);
         } else {
             fillNode(g, node, level);
         }
         if (!node.isLeaf()) {
-            drawChildren(g, (TMNodeModelComposite) node, axis, level);
-        } else {
+            TMNodeModel[] children =
+                    ((TMNodeModelComposite) node).getLayoutOrder();
+            for (int i = 0; i < children.length; i++) {
+                if (pass.thread.isInterrupted()) {
+                    // drawing cancelled by the background renderer
+                    break;
+                }
+                drawNodes(g, children[i], switchAxis(axis), (level + 1),
+                        data, pass);
+            }
         }
-        g.setClip(oldClip.x, oldClip.y, oldClip.width, oldClip.height);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the image is drawn by writing its pixels
+     * directly.
+     *
+     * @param image the image drawn
+     * @return <CODE>true</CODE> if the pixel drawer draws the image
+     */
+    private boolean isPixelDrawing(BufferedImage image) {
+        return pixelDrawing && !cushion && TMPixelWriter.isWritable(image);
+    }
+
+    /**
+     * Returns the color of the borders of the nodes.
+     *
+     * @return the color of the borders
+     */
+    Color getBorderColor() {
+        return borderColor;
     }
 
 
@@ -307,12 +1245,28 @@ public abstract class TMAlgorithm
     protected TMCushionData computeCushionData(TMNodeModel father,
             Rectangle area,
             short axis) {
+        return computeCushionData(
+                (father == null) ? null : father.getCushionData(), area, axis);
+    }
+
+    /**
+     * Compute node's cushion data from the cushion data of its father.
+     *
+     * @param fatherData the cushion data of the father; <CODE>null</CODE>
+     * for the root
+     * @param area the area of the node
+     * @param axis the axis of separation
+     * @return the cushion data of the node
+     */
+    TMCushionData computeCushionData(TMCushionData fatherData,
+            Rectangle area,
+            short axis) {
         TMCushionData data = null;
-        if (father == null) {
+        if (fatherData == null) {
             data = new TMCushionData();
             data.h = h;
         } else {
-            data = new TMCushionData(father.getCushionData());
+            data = new TMCushionData(fatherData);
             data.h *= f;
         }
         if (axis == VERTICAL) {
@@ -340,20 +1294,84 @@ public abstract class TMAlgorithm
         if (!(filling instanceof Color)) {
             filling = Color.WHITE;
         }
-        g.setPaint(painter.init((Color) filling, data));
+        g.setPaint(painters.get().init((Color) filling, data));
         g.fillRect(area.x, area.y, area.width, area.height);
         if (border) {
             g.setPaint(borderColor);
             g.drawRect(area.x, area.y, area.width, area.height);
         }
         if (nodesTitles) {
-            g.setPaint(node.getColorTitle());
-            g.setFont(titleFont);
-            g.drawString(node.getTitle(), area.x + 1, area.y + 10);
+            drawTitle(g, node);
         }
     }
 
 
+    /**
+     * Draws the title of the node, in its upper left corner.
+     *
+     * @param g the graphic context
+     * @param node the TMNodeModel whose title is drawn
+     */
+    protected void drawTitle(Graphics2D g,
+            TMNodeModel node) {
+        Rectangle area = node.getArea();
+        TMTitleCache cache = titleCaches.get();
+        FontMetrics metrics = cache.getMetrics(g);
+        String title = node.getTitle();
+        if (!fittingTitles) {
+            if ((title == null) || (title.length() == 0)) {
+                return;
+            }
+            drawTitle(g, node, title, cache.get(title), title.length());
+            return;
+        }
+        if ((area.height < metrics.getAscent()) || (area.width <= 1)) {
+            return; // no room for any text, the title is not computed
+        }
+        if ((title == null) || (title.length() == 0)) {
+            return;
+        }
+        if (area.width < metrics.charWidth(title.charAt(0))) {
+            return; // not wide enough
+        }
+        TMTitleCache.Title measured = cache.get(title);
+        int n = measured.fittingCount(area.width - 1);
+        if (n == 0) {
+            return; // not even one character
+        }
+        drawTitle(g, node, title, measured, n);
+    }
+
+    /**
+     * Draws the given number of first characters of the title of the node,
+     * with their cached glyphs when they match the characters.
+     *
+     * @param g the graphic context
+     * @param node the TMNodeModel whose title is drawn
+     * @param title the title of the node
+     * @param measured the measured title
+     * @param n the number of characters drawn
+     */
+    private void drawTitle(Graphics2D g,
+            TMNodeModel node,
+            String title,
+            TMTitleCache.Title measured,
+            int n) {
+        Rectangle area = node.getArea();
+        g.setPaint(node.getColorTitle());
+        GlyphVector glyphs = measured.getGlyphs(n);
+        if (glyphs != null) {
+            g.drawGlyphVector(glyphs, area.x + 1, area.y + 10);
+            return;
+        }
+        if (n < title.length()) {
+            title = title.substring(0, n);
+        }
+        g.setFont(titleFont);
+        g.drawString(title, area.x + 1, area.y + 10);
+    }
+
+
     /* --- COULD BE OVERRIDED IN SUBCLASS --- */
     /**
      * Fills the node.
@@ -375,27 +1393,160 @@ public abstract class TMAlgorithm
         g.setPaint(borderColor);
         g.drawRect(area.x, area.y, area.width, area.height);
         if (nodesTitles) {
-            g.setPaint(node.getColorTitle());
-            g.setFont(titleFont);
-            g.drawString(node.getTitle(), area.x + 1, area.y + 10);
+            drawTitle(g, node);
         }
     }
 
 
-    /* --- TO BE IMPLEMENTED IN SUBCLASS --- */
     /**
-     * Draws the children of a node, by setting their drawing area first,
-     * dependant of the algorithm used.
+     * Fills a node whose children are culled by the level of detail, as one
+     * rectangle with the filling of its biggest descendant. No title is
+     * drawn.
      *
      * @param g the graphic context
-     * @param node the node whose children should be drawn
-     * @param axis the axis of separation
+     * @param node the TMNodeModel to draw
      * @param level the level of deep
+     * @param data the cushion data of the node
+     */
+    protected void fillCulledNode(Graphics2D g,
+            TMNodeModel node,
+            int level,
+            TMCushionData data) {
+        Rectangle area = node.getArea();
+        Paint filling = getBiggestLeaf(node).getFilling();
+        if (cushion) {
+            if (!(filling instanceof Color)) {
+                filling = Color.WHITE;
+            }
+            g.setPaint(painters.get().init((Color) filling, data));
+            g.fillRect(area.x, area.y, area.width, area.height);
+            if (border) {
+                g.setPaint(borderColor);
+                g.drawRect(area.x, area.y, area.width, area.height);
+            }
+        } else {
+            g.setPaint(filling);
+            g.fillRect(area.x, area.y, area.width, area.height);
+            g.setPaint(borderColor);
+            g.drawRect(area.x, area.y, area.width, area.height);
+        }
+    }
+
+    /**
+     * Returns the leaf reached by following the biggest child from the node.
+     *
+     * @param node the node
+     * @return the biggest leaf under the node, or the node itself
+     */
+    protected TMNodeModel getBiggestLeaf(TMNodeModel node) {
+        while (!node.isLeaf()) {
+            TMNodeModel[] children =
+                    ((TMNodeModelComposite) node).getChildrenBySize();
+            if (children.length == 0) {
+                break;
+            }
+            node = children[0];
+        }
+        return node;
+    }
+
+
+    /* --- COULD BE OVERRIDED IN SUBCLASS --- */
+    /**
+     * Sets the drawing area of the children of a node, dependant of the
+     * algorithm used. Nothing is drawn here.
+     * <P>
+     * The children are taken in the order given by isOrderedBySize(), the
+     * children box is computed by computeChildrenBox() and the areas are
+     * computed by computeChildrenAreas().
+     *
+     * @param node the node whose children should be laid out
+     * @param axis the axis of separation
+     * @return the children in the order their area was set; NO_CHILDREN if
+     * none was laid out
+     */
+    protected TMNodeModel[] layoutChildren(TMNodeModelComposite node,
+            short axis) {
+        float size = node.getSize();
+        if (size == 0.0f) {
+            return NO_CHILDREN;
+        }
+
+        TMNodeModel[] children;
+        float[] sizes;
+        if (isOrderedBySize()) {
+            children = node.getChildrenBySize();
+            sizes = node.getChildrenSizesBySize();
+        } else {
+            children = node.getChildrenArray();
+            sizes = node.getChildrenSizes();
+        }
+
+        Rectangle pArea = node.getArea();
+        int[] box = {pArea.x, pArea.y, pArea.width, pArea.height};
+        computeChildrenBox(box);
+
+        int[] areas = new int[children.length * 4];
+        computeChildrenAreas(sizes, children.length, size, box, axis, areas);
+        for (int i = 0; i < children.length; i++) {
+            children[i].getArea().setBounds(areas[i * 4],
+                    areas[(i * 4) + 1],
+                    areas[(i * 4) + 2],
+                    areas[(i * 4) + 3]);
+        }
+        return children;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the children should be given to
+     * computeChildrenAreas() by decreasing size, <CODE>false</CODE> if they
+     * should be given in their natural order. Returns <CODE>false</CODE> by
+     * default.
+     *
+     * @return    <CODE>true</CODE> to lay out children by decreasing size
      */
-    protected abstract void drawChildren(Graphics2D g,
-            TMNodeModelComposite node,
+    protected boolean isOrderedBySize() {
+        return false;
+    }
+
+    /**
+     * Computes the box in which the children of a node are laid out, from
+     * the area of the node. By default, removes the border on each side if
+     * the node is big enough.
+     *
+     * @param box the area of the node as {x, y, width, height}; modified in
+     * place to the children box
+     */
+    protected void computeChildrenBox(int[] box) {
+        if ((box[2] > borderLimit) && (box[3] > borderLimit)) {
+            box[0] += borderSize;
+            box[1] += borderSize;
+            box[2] -= borderSize * 2;
+            box[3] -= borderSize * 2;
+        }
+    }
+
+
+    /* --- TO BE IMPLEMENTED IN SUBCLASS --- */
+    /**
+     * Computes the areas of the children of a node, dependant of the
+     * algorithm used. Works only on primitive arrays, so it could be used
+     * without TMNodeModel.
+     *
+     * @param sizes the sizes of the children, in layout order
+     * @param count the number of children
+     * @param total the size of the node, sum of the sizes; not 0
+     * @param box the children box as {x, y, width, height}
+     * @param axis the axis of separation
+     * @param areas to be filled with {x, y, width, height} of each child, in
+     * the order of sizes
+     */
+    protected abstract void computeChildrenAreas(float[] sizes,
+            int count,
+            float total,
+            int[] box,
             short axis,
-            int level);
+            int[] areas);
 
 
     /* --- Inner view --- */
@@ -571,6 +1722,26 @@ public abstract class TMAlgorithm
         }
     }
 
+    /**
+     * Returns the inverse norm of the cushion normals, for the squared norms
+     * in [1, 2^NORM_EXPONENTS). A squared norm falls in the bucket given by
+     * its exponent and its first NORM_BITS bits of mantissa, which holds the
+     * inverse norm of the middle of the bucket, within 2^-(NORM_BITS + 2) of
+     * the exact one.
+     *
+     * @return    the norm table
+     */
+    private static float[] normTable() {
+        float[] table = new float[NORM_EXPONENTS << NORM_BITS];
+        for (int k = 0; k < table.length; k++) {
+            double low = Float.intBitsToFloat(NORM_ONE + (k << NORM_SHIFT));
+            double high =
+                Float.intBitsToFloat(NORM_ONE + ((k + 1) << NORM_SHIFT));
+            table[k] = (float) (1 / Math.sqrt((low + high) / 2));
+        }
+        return table;
+    }
+
     /**
      * The TMCushionPaint implements a customized java.awt.Paint for the cushion
      * visualization
@@ -584,17 +1755,13 @@ public abstract class TMAlgorithm
         private Color c = null;
         private TMCushionData cData = null;
 
-        private WritableRaster raster = null;
+        private float[] lightTable = null; // intensity by lighting term
+        private int     lightIS    = -1;   // IS the table was computed with
 
-        double nx;
-        double ny;
-        double delta;
-        double intensity;
-
-        int i;
-        int j;
-        int base;
-        int[] data;
+        private int red;   // components of the color
+        private int green;
+        private int blue;
+        private int alpha;
 
         int tX;
         int tY;
@@ -608,6 +1775,10 @@ public abstract class TMAlgorithm
                 TMCushionData cData) {
             this.c = c;
             this.cData = cData;
+            red = c.getRed();
+            green = c.getGreen();
+            blue = c.getBlue();
+            alpha = c.getAlpha();
             return this;
         }
 
@@ -643,22 +1814,45 @@ public abstract class TMAlgorithm
 
         ;
 
+        /**
+         * Returns the shaded pixels of the given device area. The returned
+         * raster is the one of the current thread and could be larger than
+         * the area : only its upper left w x h pixels are meaningful.
+         */
         public Raster getRaster(int x,
                 int y,
                 int w,
                 int h) {
-            raster = createRaster(w, h);
+            WritableRaster raster = createRaster(w, h);
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int scan = raster.getWidth();
 
             // taking in account the possible translation
             x -= tX;
             y -= tY;
 
-            int[] data = createBuffer(w, h);
-            for (j = 0; j < h; j++) {
-                ny = ((-2) * cData.y2 * (y + j)) - cData.y;
-                for (i = 0; i < w; i++) {
-                    nx = ((-2) * cData.x2 * (x + i)) - cData.x;
-                    delta
+            if (isCushionExact()) {
+                shadeExact(data, scan, x, y, w, h);
+            } else {
+                shadeFast(data, scan, x, y, w, h);
+            }
+            return raster;
+        }
+
+
+        /* --- Shading --- */
+        /**
+         * Shades the pixels one by one, as the original cushion treemap.
+         */
+        private void shadeExact(int[] data, int scan,
+                int x, int y, int w, int h) {
+            int is = getIS();
+            for (int j = 0; j < h; j++) {
+                double ny = ((-2) * cData.y2 * (y + j)) - cData.y;
+                int base = j * scan;
+                for (int i = 0; i < w; i++) {
+                    double nx = ((-2) * cData.x2 * (x + i)) - cData.x;
+                    double delta
                             = ((nx * LX) + (ny * LY) + LZ)
                             / Math.sqrt((nx * nx) + (ny * ny) + 1);
 
@@ -666,56 +1860,109 @@ public abstract class TMAlgorithm
                         delta = 0;
                     }
 
-                    intensity = 1 + getIS() * ((delta - 1) / 255);
+                    double intensity = 1 + is * ((delta - 1) / 255);
 
-                    base = (j * w + i) * 4;
-                    data[base + 0] = (int) (c.getRed() * intensity);
-                    data[base + 1] = (int) (c.getGreen() * intensity);
-                    data[base + 2] = (int) (c.getBlue() * intensity);
-                    data[base + 3] = (int) (c.getAlpha());
+                    data[base + i] = pack((int) (red * intensity),
+                                          (int) (green * intensity),
+                                          (int) (blue * intensity));
                 }
             }
-
-            raster.setPixels(0, 0, w, h, data);
-            return raster;
         }
 
+        /**
+         * Shades the pixels row by row : the normal and the lighting
+         * numerator are stepped along the row, the inverse norm of the
+         * normal is taken from the norm table indexed by its squared norm,
+         * and the intensity from the lighting table. No square root nor
+         * division is computed for a pixel, unless the normal is steeper
+         * than the norm table.
+         */
+        private void shadeFast(int[] data, int scan,
+                int x, int y, int w, int h) {
+            float[] light = getLightTable();
+            double dnx = (-2) * cData.x2;
+            double nx0 = (dnx * x) - cData.x;
+            double dLight = dnx * LX * LIGHT_STEPS;
+            for (int j = 0; j < h; j++) {
+                double ny = ((-2) * cData.y2 * (y + j)) - cData.y;
+                double ny2 = (ny * ny) + 1;
+                double nx = nx0;
+                double num = ((nx * LX) + (ny * LY) + LZ) * LIGHT_STEPS;
+                int base = j * scan;
+                for (int i = 0; i < w; i++) {
+                    int index = 0;
+                    if (num > 0) {
+                        double norm2 = (nx * nx) + ny2;
+                        int bucket = (Float.floatToRawIntBits((float) norm2)
+                                      - NORM_ONE) >> NORM_SHIFT;
+                        double inverse = (bucket < NORM_TABLE.length)
+                                ? NORM_TABLE[bucket]
+                                : 1 / Math.sqrt(norm2);
+                        index = (int) ((num * inverse) + 0.5);
+                        if (index > LIGHT_STEPS) {
+                            index = LIGHT_STEPS;
+                        }
+                    }
+                    float intensity = light[index];
+                    data[base + i] = pack((int) (red * intensity),
+                                          (int) (green * intensity),
+                                          (int) (blue * intensity));
+                    nx += dnx;
+                    num += dLight;
+                }
+            }
+        }
 
-        /* --- Raster management --- */
-        private int[] createBuffer(int w,
-                int h) {
-            int[] buffer;
-            if ((w <= dimMax) && (h <= dimMax)) {
-                buffer = cachedBuffers[w][h];
-                if (buffer == null) {
-                    buffer = new int[w * h * 4];
-                    cachedBuffers[w][h] = buffer;
+        /**
+         * Returns the intensity of the cushion for the lighting term sampled
+         * on [0, 1] in LIGHT_STEPS steps, computed again when IS changes.
+         */
+        private float[] getLightTable() {
+            int is = getIS();
+            if ((lightTable == null) || (lightIS != is)) {
+                lightTable = new float[LIGHT_STEPS + 1];
+                for (int k = 0; k <= LIGHT_STEPS; k++) {
+                    double delta = (double) k / LIGHT_STEPS;
+                    lightTable[k] = (float) (1 + is * ((delta - 1) / 255));
                 }
-            } else {
-                buffer = new int[w * h * 4];
+                lightIS = is;
             }
-            return buffer;
+            return lightTable;
+        }
+
+        /**
+         * Packs the components in the default RGB model, masked as
+         * WritableRaster.setPixels() does.
+         */
+        private int pack(int r, int g, int b) {
+            return (alpha << 24)
+                   | ((r << 16) & 0xff0000)
+                   | ((g << 8) & 0xff00)
+                   | (b & 0xff);
         }
 
+
+        /* --- Raster management --- */
         private WritableRaster createRaster(int w,
                 int h) {
-            WritableRaster raster;
-
-            if ((w <= dimMax) && (h <= dimMax)) {
-                raster = cachedRasters[w][h];
-                if (raster == null) {
-                    raster
-                            = getColorModel().createCompatibleWritableRaster(w, h);
-                    cachedRasters[w][h] = raster;
+            WritableRaster raster = cushionRasters.get();
+            if ((raster == null)
+                    || (raster.getWidth() < w) || (raster.getHeight() < h)) {
+                int rw = w;
+                int rh = h;
+                if (raster != null) {
+                    rw = Math.max(w, raster.getWidth());
+                    rh = Math.max(h, raster.getHeight());
                 }
-            } else {
-                raster = getColorModel().createCompatibleWritableRaster(w, h);
+                raster = getColorModel().createCompatibleWritableRaster(rw, rh);
+                cushionRasters.set(raster);
             }
             return raster;
         }
 
     }
 
+
     /**
      * @return the root
      */
@@ -26,10 +26,6 @@
 
 package net.bouthier.treemapAWT;
 
-import java.awt.Graphics2D;
-import java.awt.Rectangle;
-import java.util.Enumeration;
-
 
 /**
  * The TMAlgorithmClassic class implements a classic treemap drawing algorithm.
@@ -41,57 +37,45 @@ public class TMAlgorithmClassic
 	extends TMAlgorithm {
 
 
-    /* --- Drawing --- */
+    /* --- Layout --- */
 
     /**
-     * Draws the children of a node, by setting their drawing area first,
-     * dependant of the algorithm used.
+     * Computes the areas of the children of a node, by slicing the
+     * children box along the axis, in the natural order of the children.
      *
-     * @param g        the graphic context
-     * @param node     the node whose children should be drawn
+     * @param sizes    the sizes of the children
+     * @param count    the number of children
+     * @param total    the size of the node
+     * @param box      the children box as {x, y, width, height}
      * @param axis     the axis of separation
-     * @param level    the level of deep
+     * @param areas    to be filled with the areas of the children
      */
-    protected void drawChildren(Graphics2D 			 g,
-        						TMNodeModelComposite node,
-        						short 				 axis,
-        						int 				 level) {
-        TMNodeModel child = null;
-        float size = node.getSize();
+    protected void computeChildrenAreas(float[] sizes,
+        								int 	count,
+        								float 	total,
+        								int[] 	box,
+        								short 	axis,
+        								int[] 	areas) {
         float proportion = 0.0f;
         float remaining = 0.0f;
         float newDf = 0.0f;
         int newDi = 0;
-        Rectangle pArea = node.getArea();
-        Rectangle childArea = null;
-
-        if (size == 0.0f) {
-            return;
-        }
 
-        int x = pArea.x;
-        int y = pArea.y;
-        int w = pArea.width;
-        int h = pArea.height;
-
-        if ((w > borderLimit) && (h > borderLimit)) {
-            x += borderSize;
-            y += borderSize;
-            w -= borderSize * 2;
-            h -= borderSize * 2;
-        }
+        int x = box[0];
+        int y = box[1];
+        int w = box[2];
+        int h = box[3];
 
         int maxX = x + w - 1;
         int maxY = y + h - 1;
 
-        for (Enumeration e = node.children(); e.hasMoreElements();) {
-            child = (TMNodeModel) e.nextElement();
-            childArea = child.getArea();
-            childArea.x = x;
-            childArea.y = y;
-            proportion = (child.getSize()) / size;
+        for (int i = 0; i < count; i++) {
+            int base = i * 4;
+            areas[base] = x;
+            areas[base + 1] = y;
+            proportion = sizes[i] / total;
 
-            if (e.hasMoreElements()) {
+            if (i < count - 1) {
                 if (axis == HORIZONTAL) {
                     newDf = proportion * w;
                     newDi = Math.round(newDf);
@@ -103,8 +87,8 @@ public class TMAlgorithmClassic
                         newDi -= 1;
                         remaining += 1;
                     }
-                    childArea.width = newDi;
-                    childArea.height = h;
+                    areas[base + 2] = newDi;
+                    areas[base + 3] = h;
                     x += newDi;
                 } else { // VERTICAL
                     newDf = proportion * h;
@@ -117,21 +101,35 @@ public class TMAlgorithmClassic
                         newDi -= 1;
                         remaining += 1;
                     }
-                    childArea.width = w;
-                    childArea.height = newDi;
+                    areas[base + 2] = w;
+                    areas[base + 3] = newDi;
                     y += newDi;
                 }
             } else { // last element fills
                 if (axis == HORIZONTAL) {
-                    childArea.width = (maxX - x) + 1;
-                    childArea.height = h;
+                    areas[base + 2] = (maxX - x) + 1;
+                    areas[base + 3] = h;
                 } else {
-                    childArea.width = w;
-                    childArea.height = (maxY - y) + 1;
+                    areas[base + 2] = w;
+                    areas[base + 3] = (maxY - y) + 1;
                 }
             }
-            drawNodes(g, child, switchAxis(axis), (level + 1));
         }
     }
 
+
+    /* --- Copy --- */
+
+    /**
+     * Returns a new classic algorithm with the same drawing parameters.
+     *
+     * @return    the new algorithm
+     */
+    @Override
+    protected TMAlgorithm copy() {
+        TMAlgorithm copy = new TMAlgorithmClassic();
+        copyParametersTo(copy);
+        return copy;
+    }
+
 }
@@ -0,0 +1,204 @@
+/*
+ * TMAlgorithmOrdered.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+
+/**
+ * The TMAlgorithmOrdered abstract class is the base of the ordered treemap
+ * algorithms. These algorithms keep the children in their natural order,
+ * so that a change of size moves only a few neighbours, instead of
+ * reshuffling the whole node as the squarified algorithm does.
+ * <P>
+ * The children are laid out in floating point coordinates, then the edges
+ * of their areas are rounded to the nearest pixel. Two neighbours always
+ * share the same rounded edge, so the children tile the box exactly.
+ * <P>
+ * The children are given through the prefix sums of their sizes : the size
+ * of the children from <CODE>from</CODE> (included) to <CODE>to</CODE>
+ * (excluded) is <CODE>sums[to] - sums[from]</CODE>.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public abstract class TMAlgorithmOrdered
+        extends TMAlgorithm {
+
+    /**
+     * Computes the areas of the children of a node, in their natural order.
+     * The axis of separation is not used : the ordered algorithms split
+     * along the longest side of the box.
+     *
+     * @param sizes the sizes of the children
+     * @param count the number of children
+     * @param total the size of the node
+     * @param box the children box as {x, y, width, height}
+     * @param axis the axis of separation
+     * @param areas to be filled with the areas of the children
+     */
+    @Override
+    protected void computeChildrenAreas(float[] sizes,
+            int count,
+            float total,
+            int[] box,
+            short axis,
+            int[] areas) {
+        double[] sums = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            sums[i + 1] = sums[i] + sizes[i];
+        }
+        layoutRange(sums, 0, count,
+                box[0], box[1], box[0] + box[2], box[1] + box[3], areas);
+    }
+
+    /**
+     * Lays out the children from <CODE>from</CODE> to <CODE>to</CODE> in
+     * the given rectangle.
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param x1 the right of the rectangle
+     * @param y1 the bottom of the rectangle
+     * @param areas to be filled with the areas of the children
+     */
+    protected abstract void layoutRange(double[] sums,
+            int from,
+            int to,
+            double x0,
+            double y0,
+            double x1,
+            double y1,
+            int[] areas);
+
+
+    /* --- SubClass utility --- */
+    /**
+     * Sets the area of a child from its floating point rectangle, by
+     * rounding its edges.
+     *
+     * @param areas the areas of the children
+     * @param i the child
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param x1 the right of the rectangle
+     * @param y1 the bottom of the rectangle
+     */
+    protected void setArea(int[] areas,
+            int i,
+            double x0,
+            double y0,
+            double x1,
+            double y1) {
+        int left = (int) Math.floor(x0 + 0.5);
+        int top = (int) Math.floor(y0 + 0.5);
+        int base = i * 4;
+        areas[base] = left;
+        areas[base + 1] = top;
+        areas[base + 2] = (int) Math.floor(x1 + 0.5) - left;
+        areas[base + 3] = (int) Math.floor(y1 + 0.5) - top;
+    }
+
+    /**
+     * Lays out the children side by side in the rectangle, along its width
+     * if <CODE>horizontal</CODE>, along its height otherwise.
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param x1 the right of the rectangle
+     * @param y1 the bottom of the rectangle
+     * @param horizontal <CODE>true</CODE> to slice along the width
+     * @param areas to be filled with the areas of the children
+     */
+    protected void sliceRange(double[] sums,
+            int from,
+            int to,
+            double x0,
+            double y0,
+            double x1,
+            double y1,
+            boolean horizontal,
+            int[] areas) {
+        double total = sums[to] - sums[from];
+        double start = horizontal ? x0 : y0;
+        double length = horizontal ? (x1 - x0) : (y1 - y0);
+        double pos = start;
+        for (int i = from; i < to; i++) {
+            double next;
+            if (i == to - 1) { // last element fills
+                next = start + length;
+            } else if (total > 0) {
+                next = start + (((sums[i + 1] - sums[from]) / total) * length);
+            } else {
+                next = pos;
+            }
+            if (horizontal) {
+                setArea(areas, i, pos, y0, next, y1);
+            } else {
+                setArea(areas, i, x0, pos, x1, next);
+            }
+            pos = next;
+        }
+    }
+
+    /**
+     * Gives an empty area, at the top left of the rectangle, to the children
+     * of a range of size 0.
+     *
+     * @param from the first child
+     * @param to the child after the last one
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param areas to be filled with the areas of the children
+     */
+    protected void emptyRange(int from,
+            int to,
+            double x0,
+            double y0,
+            int[] areas) {
+        for (int i = from; i < to; i++) {
+            setArea(areas, i, x0, y0, x0, y0);
+        }
+    }
+
+    /**
+     * Returns the aspect ratio of a rectangle, always greater than 1.
+     *
+     * @param w the width
+     * @param h the height
+     * @return the aspect ratio
+     */
+    protected double ratio(double w,
+            double h) {
+        return Math.max((w / h), (h / w));
+    }
+
+}
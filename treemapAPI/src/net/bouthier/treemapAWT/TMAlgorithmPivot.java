@@ -0,0 +1,207 @@
+/*
+ * TMAlgorithmPivot.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+
+/**
+ * The TMAlgorithmPivot class implements an ordered treemap drawing
+ * algorithm, with pivot by middle. See Shneiderman and Wattenberg.
+ * <P>
+ * The child in the middle of the natural order is taken as pivot. The
+ * children before the pivot are laid out in a first part of the box, cut
+ * along its longest side. The rest of the box is split between a column,
+ * holding the pivot and the children just after it, and a last part
+ * holding the remaining children. The number of children put with the
+ * pivot is chosen to get the pivot as square as possible. Each group is
+ * laid out again in its part.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMAlgorithmPivot
+        extends TMAlgorithmOrdered {
+
+    /**
+     * Lays out the children around their middle child.
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param x1 the right of the rectangle
+     * @param y1 the bottom of the rectangle
+     * @param areas to be filled with the areas of the children
+     */
+    @Override
+    protected void layoutRange(double[] sums,
+            int from,
+            int to,
+            double x0,
+            double y0,
+            double x1,
+            double y1,
+            int[] areas) {
+        if (from >= to) {
+            return;
+        }
+        double total = sums[to] - sums[from];
+        if (total <= 0) {
+            emptyRange(from, to, x0, y0, areas);
+            return;
+        }
+        if (to - from == 1) {
+            setArea(areas, from, x0, y0, x1, y1);
+            return;
+        }
+
+        // a is the longest side, cut first ; b is the other one
+        boolean horizontal = (x1 - x0) >= (y1 - y0);
+        double a0 = horizontal ? x0 : y0;
+        double a1 = horizontal ? x1 : y1;
+        double b0 = horizontal ? y0 : x0;
+        double b1 = horizontal ? y1 : x1;
+
+        int pivot = from + ((to - from) / 2);
+        double cut = a0 + (((sums[pivot] - sums[from]) / total) * (a1 - a0));
+        layoutIn(horizontal, sums, from, pivot, a0, b0, cut, b1, areas);
+
+        double rest = sums[to] - sums[pivot];
+        if (rest <= 0) {
+            layoutIn(horizontal, sums, pivot, to, cut, b0, cut, b0, areas);
+            return;
+        }
+
+        double pivotSize = sums[pivot + 1] - sums[pivot];
+        int last = pivot + 1; // child after the last one of the column
+        if (pivotSize > 0) {
+            double best = pivotRatio(sums, pivot, last, rest, a1 - cut, b1 - b0);
+            while (last < to) {
+                double newRatio = pivotRatio(sums, pivot, last + 1,
+                        rest, a1 - cut, b1 - b0);
+                if (newRatio > best) {
+                    break;
+                }
+                best = newRatio;
+                last++;
+            }
+        }
+
+        double columnSize = sums[last] - sums[pivot];
+        double columnEnd;
+        if (last == to) { // the column fills
+            columnEnd = a1;
+        } else {
+            columnEnd = cut + ((columnSize / rest) * (a1 - cut));
+        }
+        double pivotEnd;
+        if (last == pivot + 1) { // the pivot fills the column
+            pivotEnd = b1;
+        } else {
+            pivotEnd = b0 + ((pivotSize / columnSize) * (b1 - b0));
+        }
+
+        if (horizontal) {
+            setArea(areas, pivot, cut, b0, columnEnd, pivotEnd);
+        } else {
+            setArea(areas, pivot, b0, cut, pivotEnd, columnEnd);
+        }
+        layoutIn(horizontal, sums, pivot + 1, last,
+                cut, pivotEnd, columnEnd, b1, areas);
+        layoutIn(horizontal, sums, last, to, columnEnd, b0, a1, b1, areas);
+    }
+
+    /**
+     * Lays out a range of children in a rectangle given along the a and b
+     * sides.
+     *
+     * @param horizontal <CODE>true</CODE> if a is along the width
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one
+     * @param a0 the start of the rectangle along a
+     * @param b0 the start of the rectangle along b
+     * @param a1 the end of the rectangle along a
+     * @param b1 the end of the rectangle along b
+     * @param areas to be filled with the areas of the children
+     */
+    private void layoutIn(boolean horizontal,
+            double[] sums,
+            int from,
+            int to,
+            double a0,
+            double b0,
+            double a1,
+            double b1,
+            int[] areas) {
+        if (horizontal) {
+            layoutRange(sums, from, to, a0, b0, a1, b1, areas);
+        } else {
+            layoutRange(sums, from, to, b0, a0, b1, a1, areas);
+        }
+    }
+
+    /**
+     * Returns the aspect ratio of the pivot, when the column holds the
+     * children from the pivot to <CODE>last</CODE> (excluded).
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param pivot the pivot
+     * @param last the child after the last one of the column
+     * @param rest the size of the children from the pivot
+     * @param length the length along a left to these children
+     * @param depth the length along b
+     * @return the aspect ratio of the pivot
+     */
+    private double pivotRatio(double[] sums,
+            int pivot,
+            int last,
+            double rest,
+            double length,
+            double depth) {
+        double columnSize = sums[last] - sums[pivot];
+        double columnWidth = (columnSize / rest) * length;
+        double pivotLength = ((sums[pivot + 1] - sums[pivot]) / columnSize) * depth;
+        return ratio(columnWidth, pivotLength);
+    }
+
+
+    /* --- Copy --- */
+
+    /**
+     * Returns a new pivot algorithm with the same drawing parameters.
+     *
+     * @return    the new algorithm
+     */
+    @Override
+    protected TMAlgorithm copy() {
+        TMAlgorithm copy = new TMAlgorithmPivot();
+        copyParametersTo(copy);
+        return copy;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * TMAlgorithmSplit.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+
+/**
+ * The TMAlgorithmSplit class implements an ordered split treemap drawing
+ * algorithm. See Engdahl.
+ * <P>
+ * The children, in their natural order, are split in two groups of sizes
+ * as close as possible. The box is cut in two along its longest side, in
+ * proportion to the sizes of the groups, and each group is laid out again
+ * in its part. A change of size only moves the children of the groups
+ * containing the changed child.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMAlgorithmSplit
+        extends TMAlgorithmOrdered {
+
+    /**
+     * Lays out the children by recursive splitting.
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param x1 the right of the rectangle
+     * @param y1 the bottom of the rectangle
+     * @param areas to be filled with the areas of the children
+     */
+    @Override
+    protected void layoutRange(double[] sums,
+            int from,
+            int to,
+            double x0,
+            double y0,
+            double x1,
+            double y1,
+            int[] areas) {
+        if (from >= to) {
+            return;
+        }
+        double total = sums[to] - sums[from];
+        if (total <= 0) {
+            emptyRange(from, to, x0, y0, areas);
+            return;
+        }
+        if (to - from == 1) {
+            setArea(areas, from, x0, y0, x1, y1);
+            return;
+        }
+
+        int middle = splitIndex(sums, from, to);
+        double proportion = (sums[middle] - sums[from]) / total;
+        if ((x1 - x0) >= (y1 - y0)) {
+            double cut = x0 + (proportion * (x1 - x0));
+            layoutRange(sums, from, middle, x0, y0, cut, y1, areas);
+            layoutRange(sums, middle, to, cut, y0, x1, y1, areas);
+        } else {
+            double cut = y0 + (proportion * (y1 - y0));
+            layoutRange(sums, from, middle, x0, y0, x1, cut, areas);
+            layoutRange(sums, middle, to, x0, cut, x1, y1, areas);
+        }
+    }
+
+    /**
+     * Returns the index splitting the children in two non empty groups of
+     * sizes as close as possible, by binary search on the prefix sums.
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one, at least from + 2
+     * @return the first child of the second group
+     */
+    private int splitIndex(double[] sums,
+            int from,
+            int to) {
+        double half = (sums[from] + sums[to]) / 2;
+        int low = from + 1;
+        int high = to - 1;
+        while (low < high) { // first index with sums[index] >= half
+            int mid = (low + high) >>> 1;
+            if (sums[mid] < half) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if ((low > from + 1) && ((half - sums[low - 1]) < (sums[low] - half))) {
+            return low - 1;
+        }
+        return low;
+    }
+
+
+    /* --- Copy --- */
+
+    /**
+     * Returns a new split algorithm with the same drawing parameters.
+     *
+     * @return    the new algorithm
+     */
+    @Override
+    protected TMAlgorithm copy() {
+        TMAlgorithm copy = new TMAlgorithmSplit();
+        copyParametersTo(copy);
+        return copy;
+    }
+
+}
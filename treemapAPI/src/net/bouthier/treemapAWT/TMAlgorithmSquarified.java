@@ -25,11 +25,6 @@
  */
 package net.bouthier.treemapAWT;
 
-import java.awt.Graphics2D;
-import java.awt.Rectangle;
-import java.util.Enumeration;
-import java.util.Vector;
-
 /**
  * The TMAlgorithmSquarified class implements a squarified treemap drawing
  * algorithm. See Bruls, Huizing and van Wijk.
@@ -41,78 +36,69 @@ public class TMAlgorithmSquarified
         extends TMAlgorithm {
 
     /**
-     * Draws the children of a node, by setting their drawing area first,
-     * dependant of the algorithm used.
+     * Returns <CODE>true</CODE> as the squarified algorithm lays out the
+     * children from the biggest to the smallest one.
      *
-     * @param g the graphic context
-     * @param node the node whose children should be drawn
-     * @param axis the axis of separation
-     * @param level the level of deep
+     * @return    <CODE>true</CODE>
      */
     @Override
-    protected void drawChildren(Graphics2D g,
-            TMNodeModelComposite node,
-            short axis,
-            int level) {
-
-        float pSize = node.getSize();
-        Rectangle pArea = node.getArea();
-
-        int x = pArea.x;
-        int y = pArea.y;
-        int width = pArea.width;
-        int height = pArea.height;
-
-        TMNodeModel child = null;
-
-        Vector sortedChilds = new Vector();
-
-        if (pSize == 0.0f) {
-            return;
-        }
+    protected boolean isOrderedBySize() {
+        return true;
+    }
 
-        if ((width > borderLimit) && (height > borderLimit)) {
+    /**
+     * Computes the children box, keeping room for the title of the node.
+     *
+     * @param box the area of the node, modified in place
+     */
+    @Override
+    protected void computeChildrenBox(int[] box) {
+        if ((box[2] > borderLimit) && (box[3] > borderLimit)) {
 //            x += borderSize;
 //            y += borderSize;
 //            width -= borderSize * 2;
 //            height -= borderSize * 2;
-            x += 2;
-            y += borderSize;
-            width -= 4;
-            height -= 17;
+            box[0] += 2;
+            box[1] += borderSize;
+            box[2] -= 4;
+            box[3] -= 17;
         }
+    }
 
-        // sort child in decreasing size order
-        boolean isFirst = true;
-        for (Enumeration e = node.children(); e.hasMoreElements();) {
-            child = (TMNodeModel) e.nextElement();
-            float cSize = child.getSize();
-            if (isFirst) {
-                sortedChilds.add(child);
-                isFirst = false;
-            } else {
-                boolean childSorted = false;
-                TMNodeModel candidate = null;
-                for (int index = 0; index < sortedChilds.size(); index++) {
-                    candidate = (TMNodeModel) sortedChilds.get(index);
-                    float candidateSize = candidate.getSize();
-                    if (candidateSize < cSize) {
-                        sortedChilds.add(index, child);
-                        childSorted = true;
-                        break;
-                    }
-                }
-                if (!childSorted) {
-                    sortedChilds.add(child);
-                }
-            }
-        }
+    /**
+     * Computes the areas of the children of a node, row by row, from the
+     * biggest child to the smallest one. Each row takes children as long as
+     * its worst aspect ratio gets better.
+     * <P>
+     * The sizes are read once, with a cursor, so a node is laid out in a
+     * time linear in its number of children.
+     *
+     * @param sizes the sizes of the children, by decreasing size
+     * @param count the number of children
+     * @param total the size of the node
+     * @param box the children box as {x, y, width, height}
+     * @param axis the axis of separation
+     * @param areas to be filled with the areas of the children
+     */
+    @Override
+    protected void computeChildrenAreas(float[] sizes,
+            int count,
+            float total,
+            int[] box,
+            short axis,
+            int[] areas) {
+
+        float pSize = total;
+
+        int x = box[0];
+        int y = box[1];
+        int width = box[2];
+        int height = box[3];
 
-        while (!sortedChilds.isEmpty()) {
-            child = (TMNodeModel) sortedChilds.remove(0);
-            Vector block = new Vector();
-            block.add(child);
-            float blockSize = child.getSize();
+        int next = 0; // first child not yet in a row
+        while (next < count) {
+            int first = next;
+            float blockSize = sizes[next++];
             short blockAxis = HORIZONTAL;
             if (width < height) {
                 blockAxis = VERTICAL;
@@ -127,11 +113,8 @@ public class TMAlgorithmSquarified
                 h = (blockSize / pSize) * height;
             }
             float ratio = ratio(w, h);
-            boolean blockDone = false;
-            while ((!sortedChilds.isEmpty()) && (!blockDone)) {
-                TMNodeModel candidate
-                        = (TMNodeModel) sortedChilds.firstElement();
-                float newSize = candidate.getSize();
+            while (next < count) {
+                float newSize = sizes[next];
                 float newBlockSize = blockSize + newSize;
                 float newW = 0.0f;
                 float newH = 0.0f;
@@ -144,13 +127,11 @@ public class TMAlgorithmSquarified
                 }
                 float newRatio = ratio(newW, newH);
                 if (newRatio > ratio) {
-                    blockDone = true;
-                } else {
-                    sortedChilds.remove(0);
-                    block.add(candidate);
-                    ratio = newRatio;
-                    blockSize = newBlockSize;
+                    break;
                 }
+                next++;
+                ratio = newRatio;
+                blockSize = newBlockSize;
             }
 
             int childWidth = 0;
@@ -169,13 +150,12 @@ public class TMAlgorithmSquarified
             float proportion = 0.0f;
             float remaining = 0.0f;
 
-            for (Enumeration e = block.elements(); e.hasMoreElements();) {
-                child = (TMNodeModel) e.nextElement();
-                Rectangle cArea = child.getArea();
-                cArea.x = childX;
-                cArea.y = childY;
-                proportion = (child.getSize()) / blockSize;
-                if (e.hasMoreElements()) {
+            for (int i = first; i < next; i++) {
+                int base = i * 4;
+                areas[base] = childX;
+                areas[base + 1] = childY;
+                proportion = sizes[i] / blockSize;
+                if (i < next - 1) {
                     if (blockAxis == HORIZONTAL) {
                         float fHeight = proportion * height;
                         childHeight = Math.round(fHeight);
@@ -208,9 +188,8 @@ public class TMAlgorithmSquarified
                         childWidth = (maxX - childX) + 1;
                     }
                 }
-                cArea.width = childWidth;
-                cArea.height = childHeight;
-                drawNodes(g, child, switchAxis(axis), (level + 1));
+                areas[base + 2] = childWidth;
+                areas[base + 3] = childHeight;
             }
 
             pSize -= blockSize;
@@ -228,4 +207,19 @@ public class TMAlgorithmSquarified
         return Math.max((w / h), (h / w));
     }
 
+
+    /* --- Copy --- */
+
+    /**
+     * Returns a new squarified algorithm with the same drawing parameters.
+     *
+     * @return    the new algorithm
+     */
+    @Override
+    protected TMAlgorithm copy() {
+        TMAlgorithm copy = new TMAlgorithmSquarified();
+        copyParametersTo(copy);
+        return copy;
+    }
+
 }
@@ -0,0 +1,251 @@
+/*
+ * TMAlgorithmStrip.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+
+/**
+ * The TMAlgorithmStrip class implements an ordered strip treemap drawing
+ * algorithm. See Bederson, Shneiderman and Wattenberg.
+ * <P>
+ * The children are laid out in their natural order, in strips running
+ * along the longest side of the box. A strip takes children as long as
+ * the average aspect ratio of its children gets better. A change of size
+ * only moves the children of its strip and of the following strips.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMAlgorithmStrip
+        extends TMAlgorithmOrdered {
+
+    /**
+     * Lays out the children in strips.
+     *
+     * @param sums the prefix sums of the sizes of the children
+     * @param from the first child
+     * @param to the child after the last one
+     * @param x0 the left of the rectangle
+     * @param y0 the top of the rectangle
+     * @param x1 the right of the rectangle
+     * @param y1 the bottom of the rectangle
+     * @param areas to be filled with the areas of the children
+     */
+    @Override
+    protected void layoutRange(double[] sums,
+            int from,
+            int to,
+            double x0,
+            double y0,
+            double x1,
+            double y1,
+            int[] areas) {
+        double total = sums[to] - sums[from];
+        if (total <= 0) {
+            emptyRange(from, to, x0, y0, areas);
+            return;
+        }
+
+        boolean horizontal = (x1 - x0) >= (y1 - y0); // strips are rows
+        double length = horizontal ? (x1 - x0) : (y1 - y0);
+        double depth = horizontal ? (y1 - y0) : (x1 - x0);
+        double start = horizontal ? y0 : x0;
+
+        StripRatio strip = new StripRatio(to - from, total, length, depth);
+        int first = from;
+        while (first < to) {
+            int end = first + 1;
+            if ((length <= 0) || (depth <= 0)) {
+                end = to; // no ratio to improve, one strip
+            } else {
+                strip.clear();
+                double best = strip.add(sums[end] - sums[first]);
+                while (end < to) {
+                    double newRatio = strip.add(sums[end + 1] - sums[end]);
+                    if ((best > 0) && (newRatio > best)) {
+                        break;
+                    }
+                    best = newRatio;
+                    end++;
+                }
+            }
+
+            double pos = start + (((sums[first] - sums[from]) / total) * depth);
+            double next;
+            if (end == to) { // last strip fills
+                next = start + depth;
+            } else {
+                next = start + (((sums[end] - sums[from]) / total) * depth);
+            }
+            if (horizontal) {
+                sliceRange(sums, first, end, x0, pos, x1, next, true, areas);
+            } else {
+                sliceRange(sums, first, end, pos, y0, next, y1, false, areas);
+            }
+            first = end;
+        }
+    }
+
+    /* --- Copy --- */
+
+    /**
+     * Returns a new strip algorithm with the same drawing parameters.
+     *
+     * @return    the new algorithm
+     */
+    @Override
+    protected TMAlgorithm copy() {
+        TMAlgorithm copy = new TMAlgorithmStrip();
+        copyParametersTo(copy);
+        return copy;
+    }
+
+    /* --- Inner class --- */
+
+    /**
+     * The average aspect ratio of the children of a strip, updated as
+     * children are added to the strip. The children of size 0 are not
+     * counted.
+     * <P>
+     * With K = length * total / depth and S the size of the strip, a child
+     * of size s has the ratio s * K / S^2 if s is at least S^2 / K, and
+     * S^2 / (s * K) otherwise. As S only grows, a child only goes once from
+     * the first kind to the second : the children of the first kind are
+     * kept in a heap by size, and the sum of their sizes and the sum of the
+     * inverse sizes of the others are enough to compute the average.
+     */
+    private static class StripRatio {
+
+        private final double k;        // length * total / depth
+        private final double[] heap;   // sizes of the wide children
+        private int    wide     = 0;    // number of wide children
+        private double wideSum  = 0;    // sum of their sizes
+        private double thinSum  = 0;    // sum of the inverses of the others
+        private double size     = 0;    // size of the strip
+        private int    n        = 0;    // number of children counted
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the maximum number of children of a strip
+         * @param total the size of all the strips
+         * @param length the length of the strips
+         * @param depth the depth of all the strips
+         */
+        StripRatio(int capacity,
+                double total,
+                double length,
+                double depth) {
+            k = (length * total) / depth;
+            heap = new double[capacity];
+        }
+
+        /**
+         * Empties the strip.
+         */
+        void clear() {
+            wide = 0;
+            wideSum = 0;
+            thinSum = 0;
+            size = 0;
+            n = 0;
+        }
+
+        /**
+         * Adds a child to the strip.
+         *
+         * @param childSize the size of the child
+         * @return the average aspect ratio of the strip; 0 if there are only
+         * children of size 0
+         */
+        double add(double childSize) {
+            if (childSize > 0) {
+                size += childSize;
+                n++;
+                push(childSize);
+                wideSum += childSize;
+                double threshold = (size * size) / k;
+                while ((wide > 0) && (heap[0] < threshold)) {
+                    double thin = pop();
+                    wideSum -= thin;
+                    thinSum += 1 / thin;
+                }
+            }
+            if (n == 0) {
+                return 0;
+            }
+            double square = size * size;
+            return (((wideSum * k) / square) + ((thinSum * square) / k)) / n;
+        }
+
+        /**
+         * Adds a size to the heap.
+         *
+         * @param value the size
+         */
+        private void push(double value) {
+            int i = wide++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        /**
+         * Removes the smallest size of the heap.
+         *
+         * @return the smallest size
+         */
+        private double pop() {
+            double min = heap[0];
+            double last = heap[--wide];
+            int i = 0;
+            while (true) {
+                int child = (2 * i) + 1;
+                if (child >= wide) {
+                    break;
+                }
+                if ((child + 1 < wide) && (heap[child + 1] < heap[child])) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return min;
+        }
+
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * TMBackgroundRenderer.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+
+/**
+ * The TMBackgroundRenderer class draws the treemap of a view in a
+ * background thread, in an offscreen image. The view only draws the last
+ * finished image, so that drawing a big tree does not freeze it.
+ * <P>
+ * Only the last asked pass is drawn : asking for another pass while
+ * drawing cancels the running one, which is out of date. Two images are
+ * used : the one shown, and the one being drawn. The thread stops when
+ * there is nothing left to draw, and is started again when needed.
+ * <P>
+ * The lock of the model is only held exclusively to lay out the pass, and
+ * shared while drawing it, so that the view still reads the model. A
+ * thread waiting for the exclusive lock cancels the drawing, which is
+ * started again once it is done, if it is still up to date.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMBackgroundRenderer
+    implements Runnable {
+
+    private TMView        view    = null; // the view to repaint
+    private TMThreadLock  lock    = null; // the lock of the model
+    private Thread        thread  = null; // the running thread
+    private Pass          next    = null; // the pending pass
+    private Pass          running = null; // the pass being drawn
+    private Pass          shown   = null; // the pass of the shown image
+    private BufferedImage front   = null; // the image shown
+    private BufferedImage back    = null; // the image being drawn
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param view    the view whose treemap is drawn
+     * @param lock    the lock of the model
+     */
+    TMBackgroundRenderer(TMView       view,
+                         TMThreadLock lock) {
+        this.view = view;
+        this.lock = lock;
+    }
+
+
+    /* --- Rendering --- */
+
+    /**
+     * Asks for the drawing of the given pass. Does nothing if it is already
+     * shown, drawn or pending. Cancels the running pass otherwise.
+     *
+     * @param pass    the pass to draw
+     */
+    synchronized void render(Pass pass) {
+        if (pass.sameAs(shown) || pass.sameAs(running) || pass.sameAs(next)) {
+            return;
+        }
+        next = pass;
+        if (running != null) {
+            thread.interrupt();
+        }
+        if (thread == null) {
+            thread = new Thread(this, "TreeMap renderer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Draws the last finished image, if any.
+     *
+     * @param g       the graphic context
+     * @param pass    the pass wanted
+     * @return        <CODE>true</CODE> if the image drawn is the one of
+     *                the wanted pass
+     */
+    synchronized boolean drawFrame(Graphics g,
+                                   Pass     pass) {
+        if (front != null) {
+            g.drawImage(front, 0, 0, null);
+        }
+        return pass.sameAs(shown);
+    }
+
+    /**
+     * Forgets the images, when the view stops rendering in background.
+     */
+    synchronized void clear() {
+        next = null;
+        if (running != null) {
+            thread.interrupt();
+            running = null;
+        }
+        shown = null;
+        front = null;
+        back = null;
+    }
+
+    /**
+     * Draws the pending passes, until there is none.
+     */
+    public void run() {
+        while (true) {
+            Pass pass;
+            BufferedImage image;
+            synchronized (this) {
+                if (next == null) {
+                    thread = null;
+                    return;
+                }
+                pass = next;
+                next = null;
+                running = pass;
+                image = back;
+            }
+            if ((image == null)
+                    || (image.getWidth() != pass.width)
+                    || (image.getHeight() != pass.height)) {
+                image = new BufferedImage(pass.width, pass.height,
+                                          BufferedImage.TYPE_INT_RGB);
+            }
+
+            boolean drawn = draw(pass, image);
+
+            boolean finished = false;
+            synchronized (this) {
+                // clears an interruption aimed at this pass
+                boolean cancelled = Thread.interrupted();
+                boolean upToDate = (pass.version
+                        == pass.root.getModelRoot().getLayoutVersion());
+                finished = drawn && ! cancelled && upToDate;
+                if (finished) {
+                    back = front;
+                    front = image;
+                    shown = pass;
+                } else {
+                    back = image;
+                    if ((running == pass) && (next == null) && upToDate) {
+                        // cancelled by a thread waiting for the lock
+                        next = pass;
+                    }
+                }
+                running = null;
+            }
+            if (finished) {
+                view.repaint();
+            }
+        }
+    }
+
+    /**
+     * Draws the treemap of the given pass in the given image.
+     *
+     * @param pass     the pass to draw
+     * @param image    the image to draw in
+     * @return         <CODE>true</CODE> if the drawing was completed
+     */
+    private boolean draw(Pass          pass,
+                         BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        lock.lockYielding();
+        try {
+            pass.root.getArea().setBounds(pass.bounds);
+            pass.algorithm.layout(pass.root);
+            // only reads the model from now on
+            lock.shareYielding();
+            g.setColor(pass.background);
+            g.fillRect(0, 0, pass.width, pass.height);
+            pass.algorithm.draw(image,
+                    new Rectangle(0, 0, pass.width, pass.height), pass.root);
+        } finally {
+            lock.unlockYielding();
+            g.dispose();
+        }
+        return ! Thread.currentThread().isInterrupted();
+    }
+
+
+    /* --- Inner pass --- */
+
+    /**
+     * The Pass class describes one drawing of the treemap : what is drawn,
+     * how and in which image.
+     */
+    static class Pass {
+
+        final TMNodeModel root;       // the root drawn
+        final TMAlgorithm algorithm;  // the algorithm used
+        final Rectangle   bounds;     // the area of the root
+        final int         width;      // the width of the image
+        final int         height;     // the height of the image
+        final Color       background; // the color of the background
+        final long        version;    // the layout version drawn
+        final long        drawing;    // the drawing settings version
+
+        /**
+         * Constructor.
+         *
+         * @param root          the root drawn
+         * @param algorithm     the algorithm used
+         * @param bounds        the area of the root
+         * @param width         the width of the image
+         * @param height        the height of the image
+         * @param background    the color of the background
+         * @param drawing       the drawing settings version
+         */
+        Pass(TMNodeModel root,
+             TMAlgorithm algorithm,
+             Rectangle   bounds,
+             int         width,
+             int         height,
+             Color       background,
+             long        drawing) {
+            this.root = root;
+            this.algorithm = algorithm;
+            this.bounds = new Rectangle(bounds);
+            this.width = width;
+            this.height = height;
+            this.background = background;
+            this.version = root.getModelRoot().getLayoutVersion();
+            this.drawing = drawing;
+        }
+
+        /**
+         * Tests if the given pass draws the same image.
+         *
+         * @param pass    the pass to compare to; could be <CODE>null</CODE>
+         * @return        <CODE>true</CODE> if it draws the same image
+         */
+        boolean sameAs(Pass pass) {
+            return (pass != null)
+                   && (pass.root == root)
+                   && (pass.algorithm == algorithm)
+                   && pass.bounds.equals(bounds)
+                   && (pass.width == width)
+                   && (pass.height == height)
+                   && pass.background.equals(background)
+                   && (pass.version == version)
+                   && (pass.drawing == drawing);
+        }
+    }
+
+}
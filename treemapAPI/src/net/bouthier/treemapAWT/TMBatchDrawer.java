@@ -0,0 +1,212 @@
+/*
+ * TMBatchDrawer.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.util.List;
+
+
+/**
+ * The TMBatchDrawer class draws the nodes of a TMAlgorithm in batches : the
+ * composite nodes while going through the tree, and the leaves by batches
+ * of consecutive leaves, with their fills grouped by Paint, then their
+ * borders, then their titles. The image is the same as when the nodes are
+ * drawn one by one.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMBatchDrawer {
+
+    private final TMAlgorithm   algorithm; // the algorithm drawing
+    private final TMFrameFiller frames;    // frames of the composites
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm drawing
+     * @param frames       the frame filler of the algorithm
+     */
+    TMBatchDrawer(TMAlgorithm   algorithm,
+                  TMFrameFiller frames) {
+        this.algorithm = algorithm;
+        this.frames = frames;
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Draws the tree under the root, in the clip of the graphic context.
+     *
+     * @param g             the graphic context
+     * @param root          the root drawn
+     * @param fatherData    the cushion data of the father of the root;
+     *                      <CODE>null</CODE> for the root of the tree
+     * @param pass          the drawing pass
+     */
+    void draw(Graphics2D    g,
+              TMNodeModel   root,
+              TMCushionData fatherData,
+              TMDrawPass    pass) {
+        Rectangle clip = g.getClipBounds();
+        TMDrawBatch batch = new TMDrawBatch(clip);
+        collectNodes(g, batch, root, TMAlgorithm.HORIZONTAL, 1, fatherData,
+                clip, pass);
+        drawBatch(g, batch, pass);
+    }
+
+    /**
+     * Draws the leaves of the batch : their fills by Paint, their borders,
+     * then their titles, and empties the batch.
+     *
+     * @param g        the graphic context
+     * @param batch    the batch of the leaves
+     * @param pass     the drawing pass
+     */
+    private void drawBatch(Graphics2D  g,
+                           TMDrawBatch batch,
+                           TMDrawPass  pass) {
+        Rectangle clip = batch.getClip();
+        g.setClip(clip.x, clip.y, clip.width, clip.height);
+        batch.drawFills(g);
+        batch.drawBorders(g, algorithm.getBorderColor());
+        List<TMNodeModel> titles = batch.getTitles();
+        int drawn = batch.getBorderCount(); // borders drawn over the titles
+        for (int i = 0; i < titles.size(); i++) {
+            if (pass.thread.isInterrupted()) {
+                // drawing cancelled by the background renderer
+                break;
+            }
+            // the borders of the next nodes cover the overflow of the
+            // previous title, as when the nodes are drawn one by one
+            g.setClip(clip.x, clip.y, clip.width, clip.height);
+            batch.drawBorders(g, algorithm.getBorderColor(), drawn,
+                    batch.getBordersBefore(i));
+            drawn = batch.getBordersBefore(i);
+
+            Rectangle area = titles.get(i).getArea();
+            Rectangle title = clip.intersection(new Rectangle(area.x, area.y,
+                    area.width + 1, area.height + 1));
+            g.setClip(title.x, title.y, title.width, title.height);
+            algorithm.drawTitle(g, titles.get(i));
+        }
+        g.setClip(clip.x, clip.y, clip.width, clip.height);
+        batch.drawBorders(g, algorithm.getBorderColor(), drawn,
+                batch.getBorderCount());
+        batch.clear();
+    }
+
+    /**
+     * Draws the composite nodes of the subtree, and adds its leaves and its
+     * culled nodes to the batch. A leaf not entirely inside the clip, as the
+     * empty leaves laid out outside of their father, is drawn at once.
+     *
+     * @param g             the graphic context
+     * @param batch         the batch of the leaves
+     * @param node          the node to draw
+     * @param axis          the axis of separation
+     * @param level         the level of deep
+     * @param fatherData    the cushion data of the father;
+     *                      <CODE>null</CODE> for the root
+     * @param clip          the clip of the father, as clipRect() gives it
+     * @param pass          the drawing pass
+     */
+    private void collectNodes(Graphics2D    g,
+                              TMDrawBatch   batch,
+                              TMNodeModel   node,
+                              short         axis,
+                              int           level,
+                              TMCushionData fatherData,
+                              Rectangle     clip,
+                              TMDrawPass    pass) {
+        Rectangle area = node.getArea();
+        if (!clip.intersects(area.x, area.y,
+                area.width + 1, area.height + 1)) {
+            // nothing of this subtree is repainted
+            return;
+        }
+        TMCushionData data =
+                algorithm.computeCushionData(fatherData, area, axis);
+        node.setCushionData(data);
+        boolean culled = algorithm.isCulled(node);
+        if (culled) {
+            pass.addCulled(area, node.getNodeCount() - 1);
+        }
+        if ((culled || node.isLeaf())
+                && clip.contains(area.x, area.y,
+                        area.width + 1, area.height + 1)) {
+            Paint filling = culled
+                    ? algorithm.getBiggestLeaf(node).getFilling()
+                    : node.getFilling();
+            batch.addFill(filling, area.x, area.y, area.width, area.height);
+            batch.addBorder(area.x, area.y, area.width, area.height);
+            if (algorithm.isDrawingTitles() && !culled) {
+                batch.addTitle(node);
+            }
+            if (batch.isFull()) {
+                drawBatch(g, batch, pass);
+            }
+            return;
+        }
+
+        // drawn at once, under the leaves of its subtree
+        if (batch.overlapsTitles(area.x, area.y,
+                area.width + 1, area.height + 1)) {
+            // drawn over the titles of the previous leaves, as one by one
+            drawBatch(g, batch, pass);
+        }
+        Rectangle nodeClip = clip.intersection(new Rectangle(area.x, area.y,
+                area.width + 1, area.height + 1));
+        g.setClip(nodeClip.x, nodeClip.y, nodeClip.width, nodeClip.height);
+        if (culled) {
+            algorithm.fillCulledNode(g, node, level, data);
+        } else if (node.isLeaf() || !(algorithm.isFramedComposites()
+                && frames.fill(g, node, level, data))) {
+            algorithm.fillNode(g, node, level);
+        }
+        if (culled || node.isLeaf()) {
+            return;
+        }
+        TMNodeModel[] children =
+                ((TMNodeModelComposite) node).getLayoutOrder();
+        for (int i = 0; i < children.length; i++) {
+            if (pass.thread.isInterrupted()) {
+                // drawing cancelled by the background renderer
+                break;
+            }
+            collectNodes(g, batch, children[i], algorithm.switchAxis(axis),
+                    (level + 1), data, nodeClip, pass);
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * TMChildIndex.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+
+/**
+ * The TMChildIndex class is a spatial index of the children of a
+ * TMNodeModelComposite, as laid out by the last layout pass. The area of the
+ * composite is divided in a uniform grid of about one cell by child, and each
+ * cell keeps the children whose area intersects it, in layout order. Finding
+ * the child containing a point only tests the children of one cell, instead
+ * of all the children.
+ * <P>
+ * The index is built by the composite after a layout, when it is first
+ * queried, and forgotten when its children are laid out again. The index
+ * itself is never modified once built, and could be read by many threads.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMChildIndex {
+
+    // under this number of children, testing all the children is faster
+    static final int MIN_CHILDREN = 16;
+
+    private final TMNodeModel[] children; // the children in layout order
+    private final int x;          // x of the grid
+    private final int y;          // y of the grid
+    private final int cellWidth;  // width of a cell
+    private final int cellHeight; // height of a cell
+    private final int columns;    // number of columns
+    private final int rows;       // number of rows
+    private final int[] cellStart; // first item of each cell, and the end
+    private final int[] items;     // index of the children, cell by cell
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor. Builds the index of the children laid out in the area.
+     *
+     * @param area        the area of the composite
+     * @param children    the children in layout order
+     */
+    TMChildIndex(Rectangle area, TMNodeModel[] children) {
+        this.children = children;
+        int n = children.length;
+        int side = (int) Math.ceil(Math.sqrt(n));
+        // a child border could be on the last pixel of the area
+        int width = Math.max(1, area.width + 1);
+        int height = Math.max(1, area.height + 1);
+        columns = Math.min(side, width);
+        rows = Math.min(side, height);
+        cellWidth = (width + columns - 1) / columns;
+        cellHeight = (height + rows - 1) / rows;
+        x = area.x;
+        y = area.y;
+
+        // counts the items of each cell, then fills them in layout order
+        int cells = columns * rows;
+        cellStart = new int[cells + 1];
+        int[] bounds = new int[4];
+        for (int i = 0; i < n; i++) {
+            if (cellBounds(children[i].getArea(), bounds)) {
+                for (int r = bounds[1]; r <= bounds[3]; r++) {
+                    for (int c = bounds[0]; c <= bounds[2]; c++) {
+                        cellStart[(r * columns) + c + 1]++;
+                    }
+                }
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        items = new int[cellStart[cells]];
+        int[] next = new int[cells];
+        System.arraycopy(cellStart, 0, next, 0, cells);
+        for (int i = 0; i < n; i++) {
+            if (cellBounds(children[i].getArea(), bounds)) {
+                for (int r = bounds[1]; r <= bounds[3]; r++) {
+                    for (int c = bounds[0]; c <= bounds[2]; c++) {
+                        items[next[(r * columns) + c]++] = i;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /* --- Queries --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the index is the one of the given
+     * children.
+     *
+     * @param children    the children in layout order
+     * @return            <CODE>true</CODE> if the index is up to date
+     */
+    boolean isIndexOf(TMNodeModel[] children) {
+        return this.children == children;
+    }
+
+    /**
+     * Returns the first child, in layout order, whose area contains the
+     * point.
+     *
+     * @param px    the x of the point
+     * @param py    the y of the point
+     * @return      the child containing the point; <CODE>null</CODE> if
+     *              there is none
+     */
+    TMNodeModel childContaining(int px, int py) {
+        int c = (px - x) / cellWidth;
+        int r = (py - y) / cellHeight;
+        if ((px < x) || (py < y) || (c >= columns) || (r >= rows)) {
+            return null;
+        }
+        int cell = (r * columns) + c;
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            TMNodeModel child = children[items[i]];
+            if (child.getArea().contains(px, py)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds to the list the children whose area intersects the rectangle,
+     * in layout order for each cell.
+     *
+     * @param rect    the rectangle
+     * @param out     the list receiving the children
+     * @return        the number of children added
+     */
+    int childrenIntersecting(Rectangle rect, List<TMNodeModel> out) {
+        int[] bounds = new int[4];
+        if (!cellBounds(rect, bounds)) {
+            return 0;
+        }
+        int found = 0;
+        for (int r = bounds[1]; r <= bounds[3]; r++) {
+            for (int c = bounds[0]; c <= bounds[2]; c++) {
+                int cell = (r * columns) + c;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    Rectangle area = children[items[i]].getArea();
+                    // reported once, in the first cell of the intersection
+                    if (area.intersects(rect)
+                            && (column(Math.max(area.x, rect.x)) == c)
+                            && (row(Math.max(area.y, rect.y)) == r)) {
+                        out.add(children[items[i]]);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /* --- Grid --- */
+
+    /**
+     * Computes the first and last columns and rows of the cells intersecting
+     * the rectangle, including its border.
+     *
+     * @param rect      the rectangle
+     * @param bounds    the first column, first row, last column and last row
+     * @return          <CODE>false</CODE> if no cell intersects it
+     */
+    private boolean cellBounds(Rectangle rect, int[] bounds) {
+        if ((rect.width <= 0) || (rect.height <= 0)) {
+            return false;
+        }
+        int right = rect.x + rect.width;
+        int bottom = rect.y + rect.height;
+        if ((right < x) || (bottom < y)
+                || (rect.x >= x + (columns * cellWidth))
+                || (rect.y >= y + (rows * cellHeight))) {
+            return false;
+        }
+        bounds[0] = column(rect.x);
+        bounds[1] = row(rect.y);
+        bounds[2] = column(right);
+        bounds[3] = row(bottom);
+        return true;
+    }
+
+    /**
+     * Returns the column of the given x, kept in the grid.
+     *
+     * @param px    the x
+     * @return      the column
+     */
+    private int column(int px) {
+        return Math.max(0, Math.min(columns - 1, (px - x) / cellWidth));
+    }
+
+    /**
+     * Returns the row of the given y, kept in the grid.
+     *
+     * @param py    the y
+     * @return      the row
+     */
+    private int row(int py) {
+        return Math.max(0, Math.min(rows - 1, (py - y) / cellHeight));
+    }
+
+}
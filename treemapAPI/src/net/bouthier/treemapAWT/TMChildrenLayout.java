@@ -0,0 +1,156 @@
+/*
+ * TMChildrenLayout.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+
+/**
+ * The TMChildrenLayout class lays out the children of one node, for the
+ * models keeping their nodes in flat arrays indexed by node, as TMLayout
+ * and TMCompactModel. The caller puts the indexes of the children in
+ * order[], in their natural order, and calls layout() : the children are
+ * put in order by decreasing size if the algorithm needs it, and the area
+ * of the child order[c] is then given in areas[c * 4] to areas[c * 4 + 3]
+ * (x, y, width, height).
+ * <P>
+ * The buffers are reused from a node to the next, so no object is created
+ * per node.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMChildrenLayout {
+
+    int[]   order      = new int[0];   // children order
+    int[]   areas      = new int[0];   // areas of the children
+
+    private int[]   sortBuffer = new int[0];   // merge buffer, sorting
+    private float[] sizes      = new float[0]; // sizes of the children
+    private final int[] box    = new int[4];   // box of the children
+
+
+    /* --- Buffers --- */
+
+    /**
+     * Grows the buffers to hold the given number of children.
+     *
+     * @param n    the number of children
+     */
+    void ensureCapacity(int n) {
+        if (order.length < n) {
+            order = new int[n];
+            sortBuffer = new int[n];
+            sizes = new float[n];
+            areas = new int[n * 4];
+        }
+    }
+
+
+    /* --- Layout --- */
+
+    /**
+     * Lays out the n children put in order[], in the area of their parent,
+     * as TMNodeModelComposite does.
+     *
+     * @param algorithm     the algorithm used to lay out
+     * @param size          the size of the nodes, by index
+     * @param n             the number of children
+     * @param parentSize    the size of the parent
+     * @param x             the x of the area of the parent
+     * @param y             the y of the area of the parent
+     * @param width         the width of the area of the parent
+     * @param height        the height of the area of the parent
+     * @param depth         the depth of the parent
+     */
+    void layout(TMAlgorithm algorithm,
+                float[]     size,
+                int         n,
+                float       parentSize,
+                int         x,
+                int         y,
+                int         width,
+                int         height,
+                int         depth) {
+        if (algorithm.isOrderedBySize()) {
+            sortBySize(size, n);
+        }
+        for (int c = 0; c < n; c++) {
+            sizes[c] = size[order[c]];
+        }
+
+        box[0] = x;
+        box[1] = y;
+        box[2] = width;
+        box[3] = height;
+        algorithm.computeChildrenBox(box);
+
+        short axis = ((depth % 2) == 0) ? TMAlgorithm.HORIZONTAL
+                                        : TMAlgorithm.VERTICAL;
+        algorithm.computeChildrenAreas(sizes, n, parentSize, box, axis, areas);
+    }
+
+    /**
+     * Puts in order the indexes of the children in order[], by decreasing
+     * size. The sort is stable, as the one of TMNodeModelComposite.
+     *
+     * @param size    the size of the nodes, by index
+     * @param n       the number of children
+     */
+    private void sortBySize(float[] size, int n) {
+        // bottom-up merge sort, runs of width w merged from order to buffer
+        int[] src = order;
+        int[] dst = sortBuffer;
+        for (int w = 1; w < n; w *= 2) {
+            for (int lo = 0; lo < n; lo += w * 2) {
+                int mid = Math.min(lo + w, n);
+                int hi = Math.min(lo + (w * 2), n);
+                int a = lo;
+                int b = mid;
+                int k = lo;
+                while ((a < mid) && (b < hi)) {
+                    if (size[src[a]] < size[src[b]]) {
+                        dst[k++] = src[b++];
+                    } else {
+                        dst[k++] = src[a++];
+                    }
+                }
+                while (a < mid) {
+                    dst[k++] = src[a++];
+                }
+                while (b < hi) {
+                    dst[k++] = src[b++];
+                }
+            }
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != order) {
+            System.arraycopy(src, 0, order, 0, n);
+        }
+    }
+
+}
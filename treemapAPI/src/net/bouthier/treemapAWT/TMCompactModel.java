@@ -0,0 +1,915 @@
+/*
+ * TMCompactModel.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Observable;
+import java.util.Observer;
+
+
+/**
+ * The TMCompactModel class is a compact model of a tree of TMNode, for
+ * trees too big to be wrapped in TMNodeModel objects. Nothing is created
+ * per node : the size, the area, the links and the state of each node are
+ * kept in arrays of primitives indexed by node id, about 40 bytes by node.
+ * <P>
+ * The nodes are numbered by the order of a depth-first walk of the tree,
+ * the root having the id 0. The ids of the removed nodes are reused by
+ * the added nodes. The children of a node are linked from its first child
+ * by the next sibling, -1 ending the links.
+ * <P>
+ * The model follows the updates of the tree, as a TMView does, and keeps
+ * dirty flags of the nodes whose size or layout is out of date. The next
+ * call of layout() only computes again the sizes and the areas of these
+ * nodes. The layout is the same as the one of TMLayout, and of a TMView
+ * using the same TMAlgorithm on the same area. The index from TMNode to
+ * id, needed by the updates, is built on the first update.
+ * <P>
+ * The model is used by one thread at a time : its methods are synchronized,
+ * including the receiving of the updates.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMCompactModel
+    implements Observer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // flags of the nodes
+    private static final byte LEAF   = 0x01; // the node is a leaf
+    private static final byte SIZE   = 0x02; // size of the subtree changed
+    private static final byte LAYOUT = 0x04; // children to lay out again
+    private static final byte PATH   = 0x08; // a descendant to lay out
+    private static final byte FREE   = 0x10; // id of a removed node
+
+    private TMUpdaterConcrete updater = null; // the updater of the tree
+    private TMComputeSize     cSize   = null; // the object computing size
+
+    private TMNode[] nodes       = null; // the nodes, by id
+    private float[]  size        = null; // size of the nodes
+    private int[]    x           = null; // x of the areas
+    private int[]    y           = null; // y of the areas
+    private int[]    width       = null; // width of the areas
+    private int[]    height      = null; // height of the areas
+    private int[]    parent      = null; // id of the parents
+    private int[]    firstChild  = null; // id of the first children
+    private int[]    nextSibling = null; // id of the next siblings
+    private byte[]   flags       = null; // flags of the nodes
+    private int      count       = 0;    // number of ids used
+    private int      nodeCount   = 0;    // number of nodes
+    private int      free        = -1;   // first free id, linked by sibling
+
+    // index of the nodes by identity, open addressing of id + 1,
+    // 0 for an empty slot, -1 for a removed node
+    private int[] index     = null;
+    private int   indexUsed = 0;    // slots not empty
+
+    private TMAlgorithm algorithm   = null;  // algorithm of the layout
+    private final Rectangle bounds  = new Rectangle(); // area of the root
+    private boolean     layoutValid = false; // layout up to date
+    private boolean     forced      = false; // laying out every node
+
+    // lays out the children of a node, as TMLayout
+    private final TMChildrenLayout children = new TMChildrenLayout();
+
+    private Adapter adapter = null; // adapter given to the TMComputeDraw
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor. Builds the model of the tree of the given updater, and
+     * follows its updates.
+     *
+     * @param updater    the updater of the tree
+     * @param cSize      the object computing the size;
+     *                   could not be <CODE>null</CODE>
+     * @throws TMExceptionBadTMNodeKind if cSize is not compatible
+     *                                  with the root
+     */
+    TMCompactModel(TMUpdaterConcrete updater,
+                   TMComputeSize     cSize) {
+        if (cSize == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to build a model with a null TMComputeSize.");
+        }
+        TMNode root = updater.getRoot();
+        if (! cSize.isCompatibleWith(root)) {
+            throw new TMExceptionBadTMNodeKind(cSize, root);
+        }
+        this.updater = updater;
+        this.cSize = cSize;
+
+        allocate(INITIAL_CAPACITY);
+        addSubtree(root, -1, -1);
+        updater.addObserver(this);
+    }
+
+    /**
+     * Stops following the updates of the tree. The model should not be
+     * used anymore.
+     */
+    public synchronized void dispose() {
+        updater.deleteObserver(this);
+        if (algorithm != null) {
+            algorithm.deleteObserver(this);
+            algorithm = null;
+        }
+    }
+
+
+    /* --- Accessors --- */
+
+    /**
+     * Returns the number of nodes of the tree.
+     *
+     * @return    the number of nodes
+     */
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of ids, used or free. The ids of the nodes are
+     * lower than this number.
+     *
+     * @return    the number of ids
+     */
+    public synchronized int getIdCount() {
+        return count;
+    }
+
+    /**
+     * Returns the node of the given id.
+     *
+     * @param id    the id of the node
+     * @return      the node
+     */
+    public synchronized TMNode getNode(int id) {
+        checkId(id);
+        return nodes[id];
+    }
+
+    /**
+     * Returns the id of the given node.
+     *
+     * @param node    the node
+     * @return        the id of the node; -1 if the node is not in the tree
+     */
+    public synchronized int getId(TMNode node) {
+        return idOf(node);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the node of the given id is a leaf.
+     *
+     * @param id    the id of the node
+     * @return      <CODE>true</CODE> if the node is a leaf
+     */
+    public synchronized boolean isLeaf(int id) {
+        checkId(id);
+        return (flags[id] & LEAF) != 0;
+    }
+
+    /**
+     * Returns the size of the node of the given id, as computed by the
+     * TMComputeSize for the leaves, and as the sum of the children for the
+     * others, at the last layout.
+     *
+     * @param id    the id of the node
+     * @return      the size of the node
+     */
+    public synchronized float getSize(int id) {
+        checkId(id);
+        return size[id];
+    }
+
+    /**
+     * Returns the area of the node of the given id at the last layout.
+     *
+     * @param id      the id of the node
+     * @param area    the rectangle set to the area;
+     *                a new one if <CODE>null</CODE>
+     * @return        the area of the node
+     */
+    public synchronized Rectangle getArea(int id, Rectangle area) {
+        checkId(id);
+        if (area == null) {
+            area = new Rectangle();
+        }
+        area.setBounds(x[id], y[id], width[id], height[id]);
+        return area;
+    }
+
+    /**
+     * Returns the id of the parent of the node of the given id.
+     *
+     * @param id    the id of the node
+     * @return      the id of the parent; -1 for the root
+     */
+    public synchronized int getParent(int id) {
+        checkId(id);
+        return parent[id];
+    }
+
+    /**
+     * Returns the id of the first child of the node of the given id.
+     *
+     * @param id    the id of the node
+     * @return      the id of the first child; -1 if there is none
+     */
+    public synchronized int getFirstChild(int id) {
+        checkId(id);
+        return firstChild[id];
+    }
+
+    /**
+     * Returns the id of the next sibling of the node of the given id.
+     *
+     * @param id    the id of the node
+     * @return      the id of the next sibling; -1 for the last child
+     */
+    public synchronized int getNextSibling(int id) {
+        checkId(id);
+        return nextSibling[id];
+    }
+
+
+    /* --- Layout --- */
+
+    /**
+     * Lays out the tree in the given area. Only the sizes and the areas
+     * out of date are computed again, unless the algorithm changed since
+     * the last layout.
+     *
+     * @param algorithm    the algorithm used to lay out the tree;
+     *                     could not be <CODE>null</CODE>
+     * @param x            the x of the area of the root
+     * @param y            the y of the area of the root
+     * @param width        the width of the area of the root
+     * @param height       the height of the area of the root
+     */
+    public synchronized void layout(TMAlgorithm algorithm,
+                                    int         x,
+                                    int         y,
+                                    int         width,
+                                    int         height) {
+        if (algorithm == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to lay out a tree with a null TMAlgorithm.");
+        }
+        if (algorithm != this.algorithm) {
+            if (this.algorithm != null) {
+                this.algorithm.deleteObserver(this);
+            }
+            // a change of the parameters of the algorithm
+            // invalidates the layout
+            algorithm.addObserver(this);
+            this.algorithm = algorithm;
+            layoutValid = false;
+        }
+
+        if ((flags[0] & SIZE) != 0) {
+            computeSize(0);
+        }
+        forced = !layoutValid;
+        if (forced
+                || (this.x[0] != x) || (this.y[0] != y)
+                || (this.width[0] != width) || (this.height[0] != height)) {
+            this.x[0] = x;
+            this.y[0] = y;
+            this.width[0] = width;
+            this.height[0] = height;
+            flags[0] |= LAYOUT;
+        }
+        layoutNode(0, 0);
+        forced = false;
+        layoutValid = true;
+    }
+
+    /**
+     * Returns the id of the deepest node whose area contains the given
+     * point, at the last layout.
+     *
+     * @param x    the x of the point
+     * @param y    the y of the point
+     * @return     the id of the node; -1 if the point is outside the root
+     */
+    public synchronized int nodeContaining(int x, int y) {
+        if (!contains(0, x, y)) {
+            return -1;
+        }
+        int id = 0;
+        int child = firstChild[0];
+        while (child != -1) {
+            if (contains(child, x, y)) {
+                id = child;
+                child = firstChild[child];
+            } else {
+                child = nextSibling[child];
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Draws the tree as laid out by the last layout, flat, in the clip of
+     * the graphic context. Each node is filled with the filling given by
+     * the TMComputeDraw, and bordered. The nodes outside of the clip are
+     * not drawn, nor their children. No title is drawn.
+     *
+     * @param g        the graphic context
+     * @param cDraw    the object computing the drawing;
+     *                 could not be <CODE>null</CODE>
+     * @throws TMExceptionBadTMNodeKind if cDraw is not compatible
+     *                                  with the root
+     */
+    public synchronized void draw(Graphics2D    g,
+                                  TMComputeDraw cDraw) {
+        if (cDraw == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to draw with a null TMComputeDraw.");
+        }
+        if (! cDraw.isCompatibleWith(nodes[0])) {
+            throw new TMExceptionBadTMNodeKind(cDraw, nodes[0]);
+        }
+        if (adapter == null) {
+            adapter = new Adapter();
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(x[0], y[0], width[0] + 1, height[0] + 1);
+        }
+        drawNode(g, cDraw, 0, clip);
+    }
+
+
+    /* --- Updates --- */
+
+    /**
+     * Called by the updater of the tree.
+     *
+     * @param o      the updater or the algorithm
+     * @param arg    the update event
+     */
+    public synchronized void update(Observable o,
+                                    Object     arg) {
+        if (arg instanceof TMEventUpdate) {
+            ((TMEventUpdate) arg).execute(this);
+        } else if (o instanceof TMAlgorithm) {
+            layoutValid = false;
+        }
+    }
+
+    /**
+     * Marks the size of the node as out of date.
+     *
+     * @param node    the node whose size changed
+     */
+    void updateSize(TMNode node) {
+        int id = idOf(node);
+        if (id != -1) {
+            markSize(id);
+        }
+    }
+
+    /**
+     * Nothing is kept of the drawing : the TMComputeDraw is asked again
+     * at each draw().
+     *
+     * @param node    the node whose drawing changed
+     */
+    void updateDrawing(TMNode node) {
+    }
+
+    /**
+     * Adds the new child, and its subtree, as the last child of the parent.
+     *
+     * @param node     the parent
+     * @param child    the new child
+     */
+    void newChild(TMNode node,
+                  TMNode child) {
+        int id = idOf(node);
+        if ((id == -1) || ((flags[id] & LEAF) != 0)) {
+            return;
+        }
+        int last = firstChild[id];
+        if (last != -1) {
+            while (nextSibling[last] != -1) {
+                last = nextSibling[last];
+            }
+        }
+        addSubtree(child, id, last);
+        markSize(id);
+        markLayout(id);
+    }
+
+    /**
+     * Removes the child, and its subtree, from the parent.
+     *
+     * @param node     the parent
+     * @param child    the removed child
+     */
+    void lostChild(TMNode node,
+                   TMNode child) {
+        int id = idOf(node);
+        int childId = idOf(child);
+        if ((id == -1) || (childId == -1) || (parent[childId] != id)) {
+            return;
+        }
+        if (firstChild[id] == childId) {
+            firstChild[id] = nextSibling[childId];
+        } else {
+            int c = firstChild[id];
+            while (nextSibling[c] != childId) {
+                c = nextSibling[c];
+            }
+            nextSibling[c] = nextSibling[childId];
+        }
+        removeSubtree(childId);
+        markSize(id);
+        markLayout(id);
+    }
+
+
+    /* --- Tree --- */
+
+    /**
+     * Adds the node and its subtree after the given child of the given
+     * parent, and computes their sizes.
+     *
+     * @param node        the node to add
+     * @param parentId    the id of the parent; -1 for the root
+     * @param previous    the id of the previous child;
+     *                    -1 if the node is the first child
+     * @return            the id of the node
+     */
+    private int addSubtree(TMNode node, int parentId, int previous) {
+        int id = newId();
+        nodes[id] = node;
+        parent[id] = parentId;
+        firstChild[id] = -1;
+        nextSibling[id] = -1;
+        x[id] = 0;
+        y[id] = 0;
+        width[id] = 0;
+        height[id] = 0;
+        flags[id] = node.isLeaf() ? LEAF : 0;
+        nodeCount++;
+        if (index != null) {
+            addToIndex(id);
+        }
+        if (previous != -1) {
+            nextSibling[previous] = id;
+        } else if (parentId != -1) {
+            firstChild[parentId] = id;
+        }
+
+        if (node.isLeaf()) {
+            size[id] = cSize.getSize(node);
+        } else {
+            float s = 0.0f;
+            int last = -1;
+            for (Enumeration<?> e = node.children(); e.hasMoreElements(); ) {
+                last = addSubtree((TMNode) e.nextElement(), id, last);
+                s += size[last];
+            }
+            size[id] = s;
+        }
+        return id;
+    }
+
+    /**
+     * Removes the node and its subtree, freeing their ids.
+     *
+     * @param id    the id of the node
+     */
+    private void removeSubtree(int id) {
+        for (int c = firstChild[id]; c != -1; ) {
+            int next = nextSibling[c];
+            removeSubtree(c);
+            c = next;
+        }
+        if (index != null) {
+            removeFromIndex(id);
+        }
+        nodes[id] = null;
+        flags[id] = FREE;
+        parent[id] = -1;
+        firstChild[id] = -1;
+        nextSibling[id] = free;
+        free = id;
+        nodeCount--;
+    }
+
+    /**
+     * Returns a free id, growing the arrays if needed.
+     *
+     * @return    the id
+     */
+    private int newId() {
+        if (free != -1) {
+            int id = free;
+            free = nextSibling[id];
+            return id;
+        }
+        if (count == nodes.length) {
+            allocate(count * 2);
+        }
+        return count++;
+    }
+
+    /**
+     * Marks the node and its ancestors as having their size out of date.
+     *
+     * @param id    the id of the node
+     */
+    private void markSize(int id) {
+        while ((id != -1) && ((flags[id] & SIZE) == 0)) {
+            flags[id] |= SIZE;
+            id = parent[id];
+        }
+    }
+
+    /**
+     * Marks the children of the node to be laid out again.
+     *
+     * @param id    the id of the node
+     */
+    private void markLayout(int id) {
+        flags[id] |= LAYOUT;
+        id = parent[id];
+        while ((id != -1) && ((flags[id] & PATH) == 0)) {
+            flags[id] |= PATH;
+            id = parent[id];
+        }
+    }
+
+    /**
+     * Computes again the sizes out of date in the subtree of the node.
+     * The children of a node whose size changed are laid out again.
+     *
+     * @param id    the id of the node
+     */
+    private void computeSize(int id) {
+        flags[id] &= ~SIZE;
+        float s;
+        if ((flags[id] & LEAF) != 0) {
+            s = cSize.getSize(nodes[id]);
+        } else {
+            s = 0.0f;
+            for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+                if ((flags[c] & SIZE) != 0) {
+                    computeSize(c);
+                }
+                s += size[c];
+            }
+        }
+        if (s != size[id]) {
+            size[id] = s;
+            if (parent[id] != -1) {
+                markLayout(parent[id]);
+            }
+        }
+    }
+
+
+    /* --- Layout --- */
+
+    /**
+     * Lays out the children of the node if they are marked, and goes down
+     * to the marked descendants.
+     *
+     * @param id       the id of the node
+     * @param depth    the depth of the node
+     */
+    private void layoutNode(int id, int depth) {
+        byte f = flags[id];
+        flags[id] = (byte) (f & ~(LAYOUT | PATH));
+        if ((f & LEAF) != 0) {
+            return;
+        }
+        if ((f & LAYOUT) != 0) {
+            layoutChildren(id, depth);
+        } else if ((f & PATH) == 0) {
+            return;
+        }
+        for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+            if ((flags[c] & (LAYOUT | PATH)) != 0) {
+                layoutNode(c, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Lays out the children of the node, as TMLayout does. The children
+     * whose area changed are marked to lay out their own children.
+     *
+     * @param id       the id of the node
+     * @param depth    the depth of the node
+     */
+    private void layoutChildren(int id, int depth) {
+        int n = 0;
+        for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+            n++;
+        }
+        if (n == 0) {
+            return;
+        }
+        if (size[id] == 0.0f) {
+            // not laid out, the subtree keeps an empty area
+            for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+                clearAreas(c);
+            }
+            return;
+        }
+        children.ensureCapacity(n);
+        int[] order = children.order;
+        int k = 0;
+        for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+            order[k++] = c;
+        }
+        children.layout(algorithm, size, n, size[id],
+                         x[id], y[id], width[id], height[id], depth);
+        int[] areas = children.areas;
+        for (int c = 0; c < n; c++) {
+            int child = order[c];
+            int cx = areas[c * 4];
+            int cy = areas[(c * 4) + 1];
+            int cw = areas[(c * 4) + 2];
+            int ch = areas[(c * 4) + 3];
+            if (forced
+                    || (x[child] != cx) || (y[child] != cy)
+                    || (width[child] != cw) || (height[child] != ch)) {
+                x[child] = cx;
+                y[child] = cy;
+                width[child] = cw;
+                height[child] = ch;
+                flags[child] |= LAYOUT;
+            }
+        }
+    }
+
+    /**
+     * Empties the areas of the node and its subtree.
+     *
+     * @param id    the id of the node
+     */
+    private void clearAreas(int id) {
+        x[id] = 0;
+        y[id] = 0;
+        width[id] = 0;
+        height[id] = 0;
+        flags[id] &= ~(LAYOUT | PATH);
+        for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+            clearAreas(c);
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the area of the node contains the point.
+     *
+     * @param id    the id of the node
+     * @param px    the x of the point
+     * @param py    the y of the point
+     * @return      <CODE>true</CODE> if the point is in the area
+     */
+    private boolean contains(int id, int px, int py) {
+        return (px >= x[id]) && (py >= y[id])
+            && (px < x[id] + width[id]) && (py < y[id] + height[id]);
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Draws the node and its children, as TMAlgorithm.fillNode() does.
+     *
+     * @param g        the graphic context
+     * @param cDraw    the object computing the drawing
+     * @param id       the id of the node
+     * @param clip     the clip of the drawing
+     */
+    private void drawNode(Graphics2D    g,
+                          TMComputeDraw cDraw,
+                          int           id,
+                          Rectangle     clip) {
+        // with the border, the node covers one more pixel
+        if ((x[id] > clip.x + clip.width)
+                || (y[id] > clip.y + clip.height)
+                || (x[id] + width[id] < clip.x)
+                || (y[id] + height[id] < clip.y)) {
+            return;
+        }
+        adapter.id = id;
+        g.setPaint(cDraw.getFilling(adapter));
+        g.fillRect(x[id], y[id], width[id], height[id]);
+        g.setPaint(Color.black);
+        g.drawRect(x[id], y[id], width[id], height[id]);
+        for (int c = firstChild[id]; c != -1; c = nextSibling[c]) {
+            drawNode(g, cDraw, c, clip);
+        }
+    }
+
+
+    /* --- Index --- */
+
+    /**
+     * Returns the id of the node, building the index if needed.
+     *
+     * @param node    the node
+     * @return        the id of the node; -1 if not in the tree
+     */
+    private int idOf(TMNode node) {
+        if (index == null) {
+            buildIndex(count);
+        }
+        int mask = index.length - 1;
+        int slot = hash(node) & mask;
+        while (true) {
+            int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            } else if ((entry > 0) && (nodes[entry - 1] == node)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Builds the index for at least the given number of nodes.
+     *
+     * @param n    the number of nodes
+     */
+    private void buildIndex(int n) {
+        int capacity = 16;
+        while (capacity < n * 2) {
+            capacity *= 2;
+        }
+        index = new int[capacity];
+        indexUsed = 0;
+        for (int id = 0; id < count; id++) {
+            if ((flags[id] & FREE) == 0) {
+                addToIndex(id);
+            }
+        }
+    }
+
+    /**
+     * Adds the node of the given id to the index.
+     *
+     * @param id    the id of the node
+     */
+    private void addToIndex(int id) {
+        if ((indexUsed + 1) * 2 > index.length) {
+            // the node is added by the building
+            buildIndex(Math.max(nodeCount, indexUsed) * 2);
+            return;
+        }
+        int mask = index.length - 1;
+        int slot = hash(nodes[id]) & mask;
+        while (index[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (index[slot] == 0) {
+            indexUsed++;
+        }
+        index[slot] = id + 1;
+    }
+
+    /**
+     * Removes the node of the given id from the index.
+     *
+     * @param id    the id of the node
+     */
+    private void removeFromIndex(int id) {
+        int mask = index.length - 1;
+        int slot = hash(nodes[id]) & mask;
+        while (index[slot] != 0) {
+            if (index[slot] == id + 1) {
+                index[slot] = -1;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the hash of the identity of the node, spread on all bits.
+     *
+     * @param node    the node
+     * @return        the hash
+     */
+    private static int hash(TMNode node) {
+        int h = System.identityHashCode(node) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+
+    /* --- Storage --- */
+
+    /**
+     * Checks that the id is the one of a node.
+     *
+     * @param id    the id
+     */
+    private void checkId(int id) {
+        if ((id < 0) || (id >= count) || ((flags[id] & FREE) != 0)) {
+            throw new IndexOutOfBoundsException("No node of id " + id);
+        }
+    }
+
+    /**
+     * Grows the arrays to the given capacity.
+     *
+     * @param capacity    the new capacity
+     */
+    private void allocate(int capacity) {
+        if (nodes == null) {
+            nodes = new TMNode[capacity];
+            size = new float[capacity];
+            x = new int[capacity];
+            y = new int[capacity];
+            width = new int[capacity];
+            height = new int[capacity];
+            parent = new int[capacity];
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+            flags = new byte[capacity];
+        } else {
+            nodes = Arrays.copyOf(nodes, capacity);
+            size = Arrays.copyOf(size, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+    }
+
+
+    /* --- Inner class --- */
+
+    /**
+     * The adapter of the node being drawn, given to the TMComputeDraw.
+     */
+    private class Adapter
+        extends TMNodeAdapter {
+
+        int id = 0; // the id of the node
+
+        /**
+         * Returns the node.
+         *
+         * @return    the node
+         */
+        public TMNode getNode() {
+            return nodes[id];
+        }
+
+        /**
+         * Returns the size of the node.
+         *
+         * @return    the size of the node
+         */
+        public float getSize() {
+            return size[id];
+        }
+
+    }
+
+}
@@ -51,6 +51,29 @@ import javax.swing.JToolTip;
  * To pass information from filling to tooltip, use setUserData() and
  * getUserData() methods.
  * <P>
+ * The filling is computed in the thread updating the model, when the
+ * node is built or its drawing changes. The tooltip and the details on
+ * demand are only computed when asked for, in the thread asking for them,
+ * usually the event dispatch thread when the mouse stays over the node,
+ * and are kept until the drawing of the node changes : they may never be
+ * computed for most nodes. They are computed holding the lock of the model,
+ * so the model is not changed meanwhile, and they should be quick, as the
+ * view waits for them.
+ * <P>
+ * The title and its color are computed the first time the node is drawn
+ * big enough to show them, in the thread drawing the view : the event
+ * dispatch thread, the thread of the background renderer, or the workers
+ * of the common ForkJoinPool drawing the tiles of the image. So getTitle()
+ * and getTitleColor() may be called from several threads at once, for
+ * different nodes, and should not change any state shared between nodes
+ * without synchronizing it. The model is not changed meanwhile, but its
+ * lock is shared between the threads drawing. A TMComputeDraw that could
+ * not be called that way should compute the titles in the thread updating
+ * the model, for instance from getFilling(), keep them with its nodes, and
+ * only return them from getTitle() and getTitleColor(). The
+ * TMOffscreenRenderer, the TMSvgExporter and the TMCompactModel call every
+ * method in the thread asking for the drawing.
+ * <P>
  * As computing the drawing of a node is dependant of the kind of
  * TMNode, a TMComputeDraw should test the kind of TMNode returned by
  * nodeAdapter.getNode(), and throw an TMExceptionBadTMNodeKind
@@ -0,0 +1,308 @@
+/*
+ * TMDrawBatch.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The TMDrawBatch class collects the rectangles of a drawing, so that they
+ * are drawn grouped by Paint, with one change of Paint per group : the fills
+ * of the nodes, by filling, then their borders, then their titles.
+ * <P>
+ * The rectangles filled should not overlap each other, as the order of the
+ * groups is not the order of the nodes. A batch is drawn and emptied each
+ * time it is full, so that the nodes drawn together are close in the image.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMDrawBatch {
+
+    private static final int MAX_NODES = 256; // nodes drawn together
+
+    private Rectangle         clip    = null; // clip of the drawing
+    private Map<Paint, Rects> fills   = null; // rectangles by filling
+    private Rects             borders = null; // borders of the nodes
+    private List<TMNodeModel> titles  = null; // nodes whose title is drawn
+    private int[]             counts  = null; // borders up to each title
+    private Rectangle         covered = null; // bounds of the titles
+    private int               nodes   = 0;    // number of borders
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param clip    the clip of the drawing
+     */
+    TMDrawBatch(Rectangle clip) {
+        this.clip = clip;
+        fills = new LinkedHashMap<Paint, Rects>();
+        borders = new Rects();
+        titles = new ArrayList<TMNodeModel>();
+        counts = new int[16];
+        covered = new Rectangle();
+    }
+
+
+    /* --- Collecting --- */
+
+    /**
+     * Adds a rectangle filled with the given Paint.
+     *
+     * @param filling    the filling; the rectangle is not drawn if
+     *                   <CODE>null</CODE>
+     * @param x          the x of the rectangle
+     * @param y          the y of the rectangle
+     * @param w          the width of the rectangle
+     * @param h          the height of the rectangle
+     */
+    void addFill(Paint filling,
+                 int   x,
+                 int   y,
+                 int   w,
+                 int   h) {
+        if ((filling == null) || (w <= 0) || (h <= 0)) {
+            return;
+        }
+        Rects rects = fills.get(filling);
+        if (rects == null) {
+            rects = new Rects();
+            fills.put(filling, rects);
+        }
+        rects.add(x, y, w, h);
+    }
+
+    /**
+     * Adds the border of a rectangle.
+     *
+     * @param x    the x of the rectangle
+     * @param y    the y of the rectangle
+     * @param w    the width of the rectangle
+     * @param h    the height of the rectangle
+     */
+    void addBorder(int x,
+                   int y,
+                   int w,
+                   int h) {
+        borders.add(x, y, w, h);
+        nodes++;
+    }
+
+    /**
+     * Adds a node whose title is drawn. Its border should have been added
+     * just before.
+     *
+     * @param node    the node
+     */
+    void addTitle(TMNodeModel node) {
+        int i = titles.size();
+        if (i == counts.length) {
+            counts = Arrays.copyOf(counts, i * 2);
+        }
+        counts[i] = nodes;
+        titles.add(node);
+        Rectangle area = node.getArea();
+        if (i == 0) {
+            covered.setBounds(area.x, area.y, area.width + 1, area.height + 1);
+        } else {
+            covered.add(new Rectangle(area.x, area.y,
+                    area.width + 1, area.height + 1));
+        }
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the batch should be drawn.
+     *
+     * @return    <CODE>true</CODE> if the batch is full
+     */
+    boolean isFull() {
+        return nodes >= MAX_NODES;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given rectangle may overlap the titles
+     * of the batch, which should then be drawn before it.
+     *
+     * @param x    the x of the rectangle
+     * @param y    the y of the rectangle
+     * @param w    the width of the rectangle
+     * @param h    the height of the rectangle
+     * @return     <CODE>true</CODE> if the rectangle may overlap the titles
+     */
+    boolean overlapsTitles(int x,
+                           int y,
+                           int w,
+                           int h) {
+        return !titles.isEmpty() && covered.intersects(x, y, w, h);
+    }
+
+    /**
+     * Returns the clip of the drawing.
+     *
+     * @return    the clip
+     */
+    Rectangle getClip() {
+        return clip;
+    }
+
+    /**
+     * Empties the batch, once drawn.
+     */
+    void clear() {
+        fills.clear();
+        borders.count = 0;
+        titles.clear();
+        nodes = 0;
+    }
+
+    /**
+     * Fills the rectangles, grouped by Paint.
+     *
+     * @param g    the graphic context
+     */
+    void drawFills(Graphics2D g) {
+        for (Map.Entry<Paint, Rects> entry : fills.entrySet()) {
+            g.setPaint(entry.getKey());
+            Rects rects = entry.getValue();
+            int[] r = rects.data;
+            for (int i = 0; i < rects.count; i += 4) {
+                g.fillRect(r[i], r[i + 1], r[i + 2], r[i + 3]);
+            }
+        }
+    }
+
+    /**
+     * Draws the borders, all with the same Paint.
+     *
+     * @param g         the graphic context
+     * @param border    the Paint of the borders
+     */
+    void drawBorders(Graphics2D g,
+                     Paint      border) {
+        drawBorders(g, border, 0, nodes);
+    }
+
+    /**
+     * Draws the borders added between the given indexes, all with the same
+     * Paint.
+     *
+     * @param g         the graphic context
+     * @param border    the Paint of the borders
+     * @param from      the index of the first border drawn
+     * @param to        the index after the last border drawn
+     */
+    void drawBorders(Graphics2D g,
+                     Paint      border,
+                     int        from,
+                     int        to) {
+        if (from >= to) {
+            return;
+        }
+        g.setPaint(border);
+        int[] r = borders.data;
+        for (int i = from * 4; i < to * 4; i += 4) {
+            g.drawRect(r[i], r[i + 1], r[i + 2], r[i + 3]);
+        }
+    }
+
+    /**
+     * Returns the nodes whose title is drawn, in the order they were added.
+     *
+     * @return    the nodes
+     */
+    List<TMNodeModel> getTitles() {
+        return titles;
+    }
+
+    /**
+     * Returns the number of borders added up to the node of the title at the
+     * given index, its own border included.
+     *
+     * @param index    the index of the title
+     * @return         the number of borders
+     */
+    int getBordersBefore(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns the number of borders in the batch.
+     *
+     * @return    the number of borders
+     */
+    int getBorderCount() {
+        return nodes;
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The Rects class keeps rectangles as {x, y, width, height} in a
+     * growing array.
+     */
+    static class Rects {
+
+        int[] data  = new int[64]; // the rectangles
+        int   count = 0;           // number of ints used
+
+        /**
+         * Adds a rectangle.
+         *
+         * @param x    the x of the rectangle
+         * @param y    the y of the rectangle
+         * @param w    the width of the rectangle
+         * @param h    the height of the rectangle
+         */
+        void add(int x,
+                 int y,
+                 int w,
+                 int h) {
+            if (count + 4 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[count++] = x;
+            data[count++] = y;
+            data[count++] = w;
+            data[count++] = h;
+        }
+    }
+
+}
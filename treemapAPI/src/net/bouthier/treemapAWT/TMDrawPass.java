@@ -0,0 +1,79 @@
+/*
+ * TMDrawPass.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+
+
+/**
+ * The TMDrawPass class keeps the state of one drawing of a subtree by a
+ * TMAlgorithm, so that tiles can be drawn at the same time.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMDrawPass {
+
+    final Thread    thread;  // thread whose interruption cancels the drawing
+    final Rectangle counted; // where culled nodes are counted, or null
+    int             culled = 0; // number of culled nodes
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param thread     the thread whose interruption cancels the drawing
+     * @param counted    the area where the culled nodes are counted, by
+     *                   their upper left corner; <CODE>null</CODE> for
+     *                   everywhere
+     */
+    TMDrawPass(Thread    thread,
+               Rectangle counted) {
+        this.thread = thread;
+        this.counted = counted;
+    }
+
+
+    /* --- Culled nodes --- */
+
+    /**
+     * Counts the nodes culled under the node, if the node is counted by
+     * this pass.
+     *
+     * @param area     the area of the node
+     * @param count    the number of nodes culled under the node
+     */
+    void addCulled(Rectangle area,
+                   int       count) {
+        if ((counted == null) || counted.contains(area.x, area.y)) {
+            culled += count;
+        }
+    }
+
+}
@@ -77,4 +77,11 @@ abstract class TMEventUpdate {
      */
     abstract void execute(TMNodeModelRoot model);
 
+    /**
+     * Executed on the TMCompactModel when received.
+     * Should be implemented by subclass to
+     * update correctly the TMCompactModel.
+     */
+    abstract void execute(TMCompactModel model);
+
 }
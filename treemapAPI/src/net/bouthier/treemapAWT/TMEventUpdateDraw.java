@@ -58,4 +58,11 @@ class TMEventUpdateDraw
         model.updateDrawing(getNode());
     }
 
+    /**
+     * Executed on the TMCompactModel when received.
+     */
+    void execute(TMCompactModel model) {
+        model.updateDrawing(getNode());
+    }
+
 }
@@ -64,4 +64,11 @@ class TMEventUpdateLostChild
         model.lostChild(getNode(), child);
     }
 
+    /**
+     * Executed on the TMCompactModel when received.
+     */
+    void execute(TMCompactModel model) {
+        model.lostChild(getNode(), child);
+    }
+
 }
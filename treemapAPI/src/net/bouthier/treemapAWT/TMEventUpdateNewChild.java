@@ -64,4 +64,11 @@ class TMEventUpdateNewChild
         model.newChild(getNode(), child);
     }
 
+    /**
+     * Executed on the TMCompactModel when received.
+     */
+    void execute(TMCompactModel model) {
+        model.newChild(getNode(), child);
+    }
+
 }
@@ -58,4 +58,11 @@ class TMEventUpdateSize
         model.updateSize(getNode());
     }
 
+    /**
+     * Executed on the TMCompactModel when received.
+     */
+    void execute(TMCompactModel model) {
+        model.updateSize(getNode());
+    }
+
 }
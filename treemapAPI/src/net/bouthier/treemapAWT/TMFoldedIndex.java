@@ -0,0 +1,216 @@
+/*
+ * TMFoldedIndex.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+
+/**
+ * The TMFoldedIndex class keeps the summary of every TMNode subtree seen
+ * under the folded nodes of a lazy model : the parent of its root, its
+ * size, its number of nodes and its biggest leaf. The size of a folded node
+ * is then computed from the summaries of its children, instead of walking
+ * its whole TMNode subtree each time, and the folded node holding a TMNode
+ * is found by going up the parents of the TMNode.
+ * <P>
+ * A change of the size or of the children of a TMNode marks its summary and
+ * those of its ancestors as out of date, and only them are computed again.
+ * The summaries of a built subtree are set from its TMNodeModels when it is
+ * folded.
+ * <P>
+ * The index is only read and written by the TMThreadQueue thread, within
+ * the lock of the model.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMFoldedIndex {
+
+    private final TMComputeSize cSize; // the object computing the size
+
+    // summaries of the TMNode subtrees, by identity of their root
+    private final Map<TMNode, Subtree> subtrees =
+        new IdentityHashMap<TMNode, Subtree>();
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param cSize    the object computing the size
+     */
+    TMFoldedIndex(TMComputeSize cSize) {
+        this.cSize = cSize;
+    }
+
+
+    /* --- Summaries --- */
+
+    /**
+     * Returns the summary of the TMNode subtree, up to date. Only the
+     * summaries out of date in the subtree are computed again, the sizes
+     * being summed in the natural order of the children, as for built
+     * children.
+     *
+     * @param node      the root of the TMNode subtree
+     * @param parent    its parent; <CODE>null</CODE> for the root
+     * @return          the summary of the subtree
+     */
+    Subtree summarize(TMNode node,
+                      TMNode parent) {
+        Subtree subtree = get(node);
+        subtree.parent = parent;
+        if (subtree.valid) {
+            return subtree;
+        }
+        if (node.isLeaf()) {
+            subtree.size = cSize.getSize(node);
+            subtree.count = 1;
+            subtree.leaf = node;
+            subtree.leafSize = subtree.size;
+        } else {
+            float size = 0.0f;
+            int count = 1;
+            Subtree biggest = null;
+            for (Enumeration<?> e = node.children(); e.hasMoreElements();) {
+                Subtree child = summarize((TMNode) e.nextElement(), node);
+                // the first of the biggest children, as sorted by size
+                if ((biggest == null) || (child.size > biggest.size)) {
+                    biggest = child;
+                }
+                size += child.size;
+                count += child.count;
+            }
+            subtree.size = size;
+            subtree.count = count;
+            // a composite without children stands as a leaf
+            subtree.leaf = (biggest != null) ? biggest.leaf : node;
+            subtree.leafSize = (biggest != null) ? biggest.leafSize : 0.0f;
+        }
+        subtree.valid = true;
+        return subtree;
+    }
+
+    /**
+     * Returns the summary of the TMNode subtree, created out of date if the
+     * subtree was not seen yet. Used to set the summary of a built subtree
+     * which is folded.
+     *
+     * @param node    the root of the TMNode subtree
+     * @return        the summary of the subtree
+     */
+    Subtree get(TMNode node) {
+        Subtree subtree = subtrees.get(node);
+        if (subtree == null) {
+            subtree = new Subtree();
+            subtree.node = node;
+            subtrees.put(node, subtree);
+        }
+        return subtree;
+    }
+
+    /**
+     * Returns the parent of the TMNode, as last seen.
+     *
+     * @param node    the TMNode
+     * @return        the parent; <CODE>null</CODE> for the root, or if the
+     *                TMNode was never seen
+     */
+    TMNode getParent(TMNode node) {
+        Subtree subtree = subtrees.get(node);
+        return (subtree != null) ? subtree.parent : null;
+    }
+
+
+    /* --- Updates --- */
+
+    /**
+     * Marks the summaries of the TMNode and of its ancestors as out of
+     * date, as its size or its children changed.
+     *
+     * @param node    the TMNode
+     */
+    void invalidate(TMNode node) {
+        // always goes up to the root, as the summaries of the built nodes
+        // are only set again when they are folded
+        for (Subtree s = subtrees.get(node); s != null;
+                s = (s.parent != null) ? subtrees.get(s.parent) : null) {
+            s.valid = false;
+        }
+    }
+
+    /**
+     * Forgets the summaries of the subtree of the lost child, unless the
+     * child was meanwhile added elsewhere.
+     *
+     * @param parent    the parent
+     * @param child     the lost child
+     */
+    void forget(TMNode parent,
+                TMNode child) {
+        Subtree subtree = subtrees.get(child);
+        if ((subtree != null) && (subtree.parent == parent)) {
+            forget(child);
+        }
+    }
+
+    /**
+     * Forgets the summaries of the subtree.
+     *
+     * @param node    the root of the subtree
+     */
+    private void forget(TMNode node) {
+        subtrees.remove(node);
+        if (!node.isLeaf()) {
+            for (Enumeration<?> e = node.children(); e.hasMoreElements();) {
+                forget((TMNode) e.nextElement());
+            }
+        }
+    }
+
+
+    /* --- Inner class --- */
+
+    /**
+     * The summary of a TMNode subtree.
+     */
+    static class Subtree {
+
+        TMNode  node     = null;  // root of the subtree
+        TMNode  parent   = null;  // parent of the root, as last seen
+        float   size     = 0.0f;  // size of the subtree
+        int     count    = 0;     // number of nodes of the subtree
+        TMNode  leaf     = null;  // biggest leaf of the subtree
+        float   leafSize = 0.0f;  // size of this leaf
+        boolean valid    = false; // is the summary up to date
+
+    }
+
+}
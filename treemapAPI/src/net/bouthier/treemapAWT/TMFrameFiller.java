@@ -0,0 +1,195 @@
+/*
+ * TMFrameFiller.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+
+
+/**
+ * The TMFrameFiller class fills only the frame of the composite nodes drawn
+ * by a TMAlgorithm, the part of their area outside of their children box,
+ * when their children cover that box. The pixels of the box are then only
+ * painted once, by the children.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMFrameFiller {
+
+    private final TMAlgorithm algorithm; // the algorithm drawing
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm drawing
+     */
+    TMFrameFiller(TMAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+
+    /* --- Filling --- */
+
+    /**
+     * Fills the frame of a composite node, if its children cover its
+     * children box. Each side of the frame is filled as the whole node would
+     * be, clipped to that side.
+     *
+     * @param g        the graphic context, clipped to the node
+     * @param node     the composite node to draw
+     * @param level    the level of deep
+     * @param data     the cushion data of the node
+     * @return         <CODE>false</CODE> if the children do not cover their
+     *                 box; nothing is drawn then
+     */
+    boolean fill(Graphics2D    g,
+                 TMNodeModel   node,
+                 int           level,
+                 TMCushionData data) {
+        int[] box = getCoveredBox(node);
+        if (box == null) {
+            return false;
+        }
+
+        // the node is drawn one pixel wider and higher, by its border
+        Rectangle area = node.getArea();
+        int right = area.x + area.width + 1;
+        int bottom = area.y + area.height + 1;
+        int boxRight = box[0] + box[2];
+        int boxBottom = box[1] + box[3];
+        Rectangle clip = g.getClipBounds();
+        fillSide(g, node, level, data, clip,
+                area.x, area.y, right, box[1]);
+        fillSide(g, node, level, data, clip,
+                area.x, boxBottom, right, bottom);
+        fillSide(g, node, level, data, clip,
+                area.x, box[1], box[0], boxBottom);
+        fillSide(g, node, level, data, clip,
+                boxRight, box[1], right, boxBottom);
+        return true;
+    }
+
+    /**
+     * Fills the node clipped to one side of its frame, given by its corners.
+     *
+     * @param g        the graphic context
+     * @param node     the composite node to draw
+     * @param level    the level of deep
+     * @param data     the cushion data of the node
+     * @param clip     the clip of the node, restored afterwards
+     * @param x0       the left of the side
+     * @param y0       the top of the side
+     * @param x1       the right of the side, excluded
+     * @param y1       the bottom of the side, excluded
+     */
+    private void fillSide(Graphics2D    g,
+                          TMNodeModel   node,
+                          int           level,
+                          TMCushionData data,
+                          Rectangle     clip,
+                          int           x0,
+                          int           y0,
+                          int           x1,
+                          int           y1) {
+        if ((x1 <= x0) || (y1 <= y0)
+                || !clip.intersects(x0, y0, x1 - x0, y1 - y0)) {
+            return;
+        }
+        g.clipRect(x0, y0, x1 - x0, y1 - y0);
+        if (algorithm.isCushion()) {
+            algorithm.fillCushionNode(g, node, level, data);
+        } else {
+            algorithm.fillNode(g, node, level);
+        }
+        g.setClip(clip.x, clip.y, clip.width, clip.height);
+    }
+
+
+    /* --- Children box --- */
+
+    /**
+     * Returns the children box of a composite node, if its children cover
+     * it.
+     *
+     * @param node    the composite node
+     * @return        the children box as {x, y, width, height}, or
+     *                <CODE>null</CODE> if the children do not cover it
+     */
+    int[] getCoveredBox(TMNodeModel node) {
+        Rectangle area = node.getArea();
+        int[] box = {area.x, area.y, area.width, area.height};
+        algorithm.computeChildrenBox(box);
+        if (!isBoxCovered((TMNodeModelComposite) node, box)) {
+            return null;
+        }
+        return box;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the children laid out in the node cover
+     * the whole children box with opaque fillings, so that nothing of the
+     * node shows inside the box. The children never overlap, so they cover
+     * the box when they lie inside it and their areas sum to its own.
+     *
+     * @param node    the composite node
+     * @param box     the children box of the node
+     * @return        <CODE>true</CODE> if the box is covered by the children
+     */
+    private boolean isBoxCovered(TMNodeModelComposite node,
+                                 int[]                box) {
+        TMNodeModel[] children = node.getLayoutOrder();
+        if (children.length == 0) {
+            return false;
+        }
+        long covered = 0;
+        for (int i = 0; i < children.length; i++) {
+            TMNodeModel child = children[i];
+            Rectangle area = child.getArea();
+            if ((area.x < box[0]) || (area.y < box[1])
+                    || (area.x + area.width > box[0] + box[2])
+                    || (area.y + area.height > box[1] + box[3])) {
+                return false;
+            }
+            Paint filling = algorithm.isCulled(child)
+                    ? algorithm.getBiggestLeaf(child).getFilling()
+                    : child.getFilling();
+            if ((filling == null)
+                    || (filling.getTransparency() != Transparency.OPAQUE)) {
+                return false;
+            }
+            covered += (long) area.width * area.height;
+        }
+        return covered == ((long) box[2] * box[3]);
+    }
+
+}
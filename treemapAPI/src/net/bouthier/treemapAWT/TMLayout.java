@@ -0,0 +1,346 @@
+/*
+ * TMLayout.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+
+
+/**
+ * The TMLayout class computes the layout of a tree of TMNode without
+ * any view. It is meant for batch jobs running without display : no
+ * TMView, no Graphics and no AWT peer are created, and no object is
+ * created per node.
+ * <P>
+ * The nodes are numbered in breadth-first order, the root having the
+ * index 0, so that the children of a node have consecutive indexes.
+ * The results are given as flat arrays indexed by node :
+ * the area of each node (x, y, width, height), its depth, the index of
+ * its parent (-1 for the root), the index of its first child and its
+ * number of children, and its size.
+ * The arrays could be longer than the number of nodes, given by
+ * getNodeCount().
+ * <P>
+ * The layout is the same as the one drawn by a TMView using the same
+ * TMAlgorithm on the same area. The children of a composite node of
+ * size 0 are not laid out, and keep an empty area.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMLayout {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private TMNode[] nodes      = null; // the nodes, by index
+    private int[]    x          = null; // x of the areas
+    private int[]    y          = null; // y of the areas
+    private int[]    width      = null; // width of the areas
+    private int[]    height     = null; // height of the areas
+    private int[]    depth      = null; // depth of the nodes
+    private int[]    parent     = null; // index of the parents
+    private int[]    firstChild = null; // index of the first children
+    private int[]    childCount = null; // number of children
+    private float[]  size       = null; // size of the nodes
+    private int      count      = 0;    // number of nodes
+
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor. Computes the layout of the tree.
+     *
+     * @param root         the root of the tree to lay out;
+     *                     could not be <CODE>null</CODE>
+     * @param cSize        the object computing the size;
+     *                     could not be <CODE>null</CODE>
+     * @param algorithm    the algorithm used to lay out the tree;
+     *                     could not be <CODE>null</CODE>
+     * @param x            the x of the area of the root
+     * @param y            the y of the area of the root
+     * @param width        the width of the area of the root
+     * @param height       the height of the area of the root
+     * @throws TMExceptionBadTMNodeKind if cSize is not compatible
+     *                                  with the root
+     */
+    public TMLayout(TMNode        root,
+                    TMComputeSize cSize,
+                    TMAlgorithm   algorithm,
+                    int           x,
+                    int           y,
+                    int           width,
+                    int           height) {
+        if (root == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to lay out a tree from a null root.");
+        } else if (cSize == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to lay out a tree with a null TMComputeSize.");
+        } else if (algorithm == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to lay out a tree with a null TMAlgorithm.");
+        }
+        if (! cSize.isCompatibleWith(root)) {
+            throw new TMExceptionBadTMNodeKind(cSize, root);
+        }
+
+        buildTree(root);
+        computeSizes(cSize);
+        this.x[0] = x;
+        this.y[0] = y;
+        this.width[0] = width;
+        this.height[0] = height;
+        layoutTree(algorithm);
+    }
+
+
+    /* --- Accessors --- */
+
+    /**
+     * Returns the number of nodes of the tree.
+     *
+     * @return    the number of nodes
+     */
+    public int getNodeCount() {
+        return count;
+    }
+
+    /**
+     * Returns the node of the given index.
+     *
+     * @param index    the index of the node
+     * @return         the node
+     */
+    public TMNode getNode(int index) {
+        if ((index < 0) || (index >= count)) {
+            throw new IndexOutOfBoundsException("No node of index " + index);
+        }
+        return nodes[index];
+    }
+
+    /**
+     * Returns the x of the areas of the nodes.
+     *
+     * @return    the x of the areas, by index
+     */
+    public int[] getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y of the areas of the nodes.
+     *
+     * @return    the y of the areas, by index
+     */
+    public int[] getY() {
+        return y;
+    }
+
+    /**
+     * Returns the width of the areas of the nodes.
+     *
+     * @return    the width of the areas, by index
+     */
+    public int[] getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the areas of the nodes.
+     *
+     * @return    the height of the areas, by index
+     */
+    public int[] getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the depth of the nodes, the root being of depth 0.
+     *
+     * @return    the depth of the nodes, by index
+     */
+    public int[] getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the index of the parents of the nodes,
+     * -1 for the root.
+     *
+     * @return    the index of the parents, by index
+     */
+    public int[] getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the index of the first child of the nodes.
+     * Meaningless for nodes without children.
+     *
+     * @return    the index of the first children, by index
+     */
+    public int[] getFirstChild() {
+        return firstChild;
+    }
+
+    /**
+     * Returns the number of children of the nodes.
+     *
+     * @return    the number of children, by index
+     */
+    public int[] getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Returns the size of the nodes, as computed by the TMComputeSize
+     * for the leaves, and as the sum of the children for the others.
+     *
+     * @return    the size of the nodes, by index
+     */
+    public float[] getSize() {
+        return size;
+    }
+
+
+    /* --- Computing --- */
+
+    /**
+     * Numbers the nodes of the tree in breadth-first order.
+     *
+     * @param root    the root of the tree
+     */
+    private void buildTree(TMNode root) {
+        allocate(INITIAL_CAPACITY);
+        nodes[0] = root;
+        parent[0] = -1;
+        depth[0] = 0;
+        count = 1;
+
+        for (int i = 0; i < count; i++) {
+            TMNode node = nodes[i];
+            firstChild[i] = count;
+            if (! node.isLeaf()) {
+                for (Enumeration<?> e = node.children(); e.hasMoreElements(); ) {
+                    if (count == nodes.length) {
+                        allocate(count * 2);
+                    }
+                    nodes[count] = (TMNode) e.nextElement();
+                    parent[count] = i;
+                    depth[count] = depth[i] + 1;
+                    count++;
+                }
+            }
+            childCount[i] = count - firstChild[i];
+        }
+    }
+
+    /**
+     * Computes the size of the nodes. The size of a composite is summed in
+     * the natural order of its children, as done by TMNodeModelComposite.
+     *
+     * @param cSize    the object computing the size
+     */
+    private void computeSizes(TMComputeSize cSize) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (nodes[i].isLeaf()) {
+                size[i] = cSize.getSize(nodes[i]);
+            } else {
+                float s = 0.0f;
+                int end = firstChild[i] + childCount[i];
+                for (int c = firstChild[i]; c < end; c++) {
+                    s += size[c];
+                }
+                size[i] = s;
+            }
+        }
+    }
+
+    /**
+     * Lays out the children of each node, parents before children.
+     *
+     * @param algorithm    the algorithm used to lay out the tree
+     */
+    private void layoutTree(TMAlgorithm algorithm) {
+        TMChildrenLayout children = new TMChildrenLayout();
+        for (int i = 0; i < count; i++) {
+            int n = childCount[i];
+            if ((n == 0) || (size[i] == 0.0f)) {
+                continue;
+            }
+            children.ensureCapacity(n);
+            int[] order = children.order;
+            int first = firstChild[i];
+            for (int c = 0; c < n; c++) {
+                order[c] = first + c;
+            }
+            children.layout(algorithm, size, n, size[i],
+                             x[i], y[i], width[i], height[i], depth[i]);
+            int[] areas = children.areas;
+            for (int c = 0; c < n; c++) {
+                int child = order[c];
+                x[child] = areas[c * 4];
+                y[child] = areas[(c * 4) + 1];
+                width[child] = areas[(c * 4) + 2];
+                height[child] = areas[(c * 4) + 3];
+            }
+        }
+    }
+
+    /**
+     * Grows the arrays to the given capacity.
+     *
+     * @param capacity    the new capacity
+     */
+    private void allocate(int capacity) {
+        if (nodes == null) {
+            nodes = new TMNode[capacity];
+            x = new int[capacity];
+            y = new int[capacity];
+            width = new int[capacity];
+            height = new int[capacity];
+            depth = new int[capacity];
+            parent = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new int[capacity];
+            size = new float[capacity];
+        } else {
+            nodes = Arrays.copyOf(nodes, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+    }
+
+}
@@ -0,0 +1,476 @@
+/*
+ * TMLayoutCache.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The TMLayoutCache class keeps the last layouts computed by the algorithms
+ * of a TMView, so that going back to a recent view size, zoom root or
+ * algorithm restores the areas of the nodes instead of laying out
+ * the tree again.
+ * <P>
+ * A layout is kept for a zoom root, a root area, an algorithm and a
+ * version of the sizes and structure of the tree. A change of sizes
+ * or structure makes the kept layouts useless, so they are dropped.
+ * <P>
+ * The cache is bounded both in number of layouts and in memory; when one of
+ * the bounds is reached, the least recently used layouts are evicted first.
+ * A layout takes about 32 bytes per node laid out.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMLayoutCache {
+
+    private static final int NODE_BYTES  = 32; // per node : node, area, order
+    private static final int ENTRY_BYTES = 128; // per layout : key, arrays
+
+    private int  maxEntries = 16; // max number of layouts kept
+    private long maxBytes   = 64L * 1024 * 1024; // max memory of the layouts
+
+    private LinkedHashMap<Key, Snapshot> entries = null; // in access order
+    private long bytes   = 0;  // memory of the layouts kept
+    private long version = -1; // version of the layouts kept
+    private long hits    = 0;  // number of layouts restored
+    private long misses  = 0;  // number of layouts not found
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     */
+    TMLayoutCache() {
+        entries = new LinkedHashMap<Key, Snapshot>(16, 0.75f, true);
+    }
+
+
+    /* --- Configuration --- */
+
+    /**
+     * Sets the maximum number of layouts kept. 0 disables the cache.
+     *
+     * @param max    the maximum number of layouts
+     */
+    public synchronized void setMaxEntries(int max) {
+        maxEntries = Math.max(0, max);
+        evict();
+    }
+
+    /**
+     * Returns the maximum number of layouts kept.
+     *
+     * @return    the maximum number of layouts
+     */
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum memory, in bytes, taken by the layouts kept.
+     *
+     * @param max    the maximum memory in bytes
+     */
+    public synchronized void setMaxBytes(long max) {
+        maxBytes = Math.max(0, max);
+        evict();
+    }
+
+    /**
+     * Returns the maximum memory, in bytes, taken by the layouts kept.
+     *
+     * @return    the maximum memory in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Forgets every layout kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+
+    /* --- Statistics --- */
+
+    /**
+     * Returns the number of layouts kept.
+     *
+     * @return    the number of layouts
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the memory, in bytes, taken by the layouts kept.
+     *
+     * @return    the memory in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of layouts restored from the cache.
+     *
+     * @return    the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of layouts looked for and not found.
+     *
+     * @return    the number of misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+
+    /* --- Access --- */
+
+    /**
+     * Restores the areas of the nodes from a kept layout.
+     *
+     * @param algorithm    the algorithm of the layout
+     * @param root         the root of the layout
+     * @param bounds       the area of the root
+     * @param version      the layout version of the model
+     * @return             <CODE>true</CODE> if a layout has been restored,
+     *                     <CODE>false</CODE> if none was kept
+     */
+    synchronized boolean restore(TMAlgorithm algorithm,
+                                 TMNodeModel root,
+                                 Rectangle   bounds,
+                                 long        version) {
+        setVersion(version);
+        Snapshot snapshot = entries.get(
+            new Key(algorithm, root, bounds, version));
+        if (snapshot == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        snapshot.restore();
+        return true;
+    }
+
+    /**
+     * Keeps the current layout of the tree under the given root.
+     *
+     * @param algorithm    the algorithm of the layout
+     * @param root         the root of the layout
+     * @param bounds       the area of the root
+     * @param version      the layout version of the model
+     */
+    synchronized void store(TMAlgorithm algorithm,
+                            TMNodeModel root,
+                            Rectangle   bounds,
+                            long        version) {
+        setVersion(version);
+        if ((version < this.version) || (maxEntries == 0)) {
+            return;
+        }
+        long size = ENTRY_BYTES + ((long) root.getNodeCount() * NODE_BYTES);
+        if (size > maxBytes) {
+            return;
+        }
+        store(algorithm, root, bounds, version, new Snapshot(root, bounds));
+    }
+
+    /**
+     * Keeps a layout computed apart from the areas of the nodes.
+     *
+     * @param algorithm    the algorithm of the layout
+     * @param root         the root of the layout
+     * @param bounds       the area of the root
+     * @param version      the layout version of the model
+     * @param snapshot     the layout
+     */
+    synchronized void store(TMAlgorithm algorithm,
+                            TMNodeModel root,
+                            Rectangle   bounds,
+                            long        version,
+                            Snapshot    snapshot) {
+        setVersion(version);
+        if ((version < this.version) || (maxEntries == 0)
+            || (snapshot.bytes > maxBytes)) {
+            return;
+        }
+        Snapshot old = entries.put(
+            new Key(algorithm, root, bounds, version), snapshot);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += snapshot.bytes;
+        evict();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if a layout is kept for the given key.
+     *
+     * @param algorithm    the algorithm of the layout
+     * @param root         the root of the layout
+     * @param bounds       the area of the root
+     * @param version      the layout version of the model
+     * @return             <CODE>true</CODE> if the layout is kept
+     */
+    synchronized boolean contains(TMAlgorithm algorithm,
+                                  TMNodeModel root,
+                                  Rectangle   bounds,
+                                  long        version) {
+        return entries.containsKey(new Key(algorithm, root, bounds, version));
+    }
+
+    /**
+     * Forgets the layouts of the given algorithm. Should be called when
+     * a parameter of the algorithm changing the layout is modified.
+     *
+     * @param algorithm    the algorithm
+     */
+    synchronized void remove(TMAlgorithm algorithm) {
+        for (Iterator<Map.Entry<Key, Snapshot>> i =
+                 entries.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<Key, Snapshot> entry = i.next();
+            if (entry.getKey().algorithm == algorithm) {
+                bytes -= entry.getValue().bytes;
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the layouts of an older version of the model.
+     *
+     * @param version    the layout version of the model
+     */
+    private void setVersion(long version) {
+        if (version > this.version) {
+            clear();
+            this.version = version;
+        }
+    }
+
+    /**
+     * Evicts the least recently used layouts until the bounds are met.
+     */
+    private void evict() {
+        Iterator<Snapshot> i = entries.values().iterator();
+        while (((entries.size() > maxEntries) || (bytes > maxBytes))
+               && i.hasNext()) {
+            bytes -= i.next().bytes;
+            i.remove();
+        }
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The Key class identifies a layout.
+     */
+    static class Key {
+
+        final TMAlgorithm algorithm; // the algorithm
+        final TMNodeModel root;      // the root, the zoom one
+        final int         x;         // the area of the root
+        final int         y;
+        final int         width;
+        final int         height;
+        final long        version;   // the layout version of the model
+
+        /**
+         * Constructor.
+         *
+         * @param algorithm    the algorithm of the layout
+         * @param root         the root of the layout
+         * @param bounds       the area of the root
+         * @param version      the layout version of the model
+         */
+        Key(TMAlgorithm algorithm,
+            TMNodeModel root,
+            Rectangle   bounds,
+            long        version) {
+            this.algorithm = algorithm;
+            this.root = root;
+            this.x = bounds.x;
+            this.y = bounds.y;
+            this.width = bounds.width;
+            this.height = bounds.height;
+            this.version = version;
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return (algorithm == k.algorithm) && (root == k.root)
+                && (x == k.x) && (y == k.y)
+                && (width == k.width) && (height == k.height)
+                && (version == k.version);
+        }
+
+        public int hashCode() {
+            int h = System.identityHashCode(algorithm);
+            h = (h * 31) + System.identityHashCode(root);
+            h = (h * 31) + x;
+            h = (h * 31) + y;
+            h = (h * 31) + width;
+            h = (h * 31) + height;
+            return (h * 31) + (int) (version ^ (version >>> 32));
+        }
+    }
+
+    /**
+     * The Snapshot class keeps the areas and the layout order of the nodes
+     * laid out under a root, in depth-first order.
+     */
+    static class Snapshot {
+
+        private TMNodeModel[]   nodes  = null; // the nodes laid out
+        private int[]           areas  = null; // their areas, 4 ints per node
+        private TMNodeModel[][] orders = null; // their layout order
+        private int             count  = 0;    // number of nodes
+        long                    bytes  = 0;    // memory taken
+
+        /**
+         * Constructor. Takes the current layout under the root. The area
+         * of the root is given, as it could already be set to a new area.
+         *
+         * @param root      the root of the layout
+         * @param bounds    the area of the root
+         */
+        Snapshot(TMNodeModel root,
+                 Rectangle   bounds) {
+            this(root.getNodeCount());
+            take(root);
+            areas[0] = bounds.x;
+            areas[1] = bounds.y;
+            areas[2] = bounds.width;
+            areas[3] = bounds.height;
+            trim();
+        }
+
+        /**
+         * Constructor. Builds an empty layout, to be filled with add() and
+         * then trimmed.
+         *
+         * @param capacity    the maximum number of nodes
+         */
+        Snapshot(int capacity) {
+            nodes = new TMNodeModel[capacity];
+            areas = new int[capacity * 4];
+            orders = new TMNodeModel[capacity][];
+        }
+
+        /**
+         * Adds a node to the layout, after its parent.
+         *
+         * @param node     the node
+         * @param x        the x of its area
+         * @param y        the y of its area
+         * @param width    the width of its area
+         * @param height   the height of its area
+         * @param order    its children in layout order;
+         *                 <CODE>null</CODE> for a leaf
+         */
+        void add(TMNodeModel   node,
+                 int           x,
+                 int           y,
+                 int           width,
+                 int           height,
+                 TMNodeModel[] order) {
+            int index = count++;
+            nodes[index] = node;
+            areas[index * 4] = x;
+            areas[(index * 4) + 1] = y;
+            areas[(index * 4) + 2] = width;
+            areas[(index * 4) + 3] = height;
+            orders[index] = order;
+        }
+
+        /**
+         * Frees the unused capacity and computes the memory taken.
+         */
+        void trim() {
+            if (count < nodes.length) {
+                nodes = Arrays.copyOf(nodes, count);
+                areas = Arrays.copyOf(areas, count * 4);
+                orders = Arrays.copyOf(orders, count);
+            }
+            bytes = ENTRY_BYTES + ((long) count * NODE_BYTES);
+        }
+
+        /**
+         * Takes the node and the nodes laid out under it.
+         *
+         * @param node    the node
+         */
+        private void take(TMNodeModel node) {
+            Rectangle area = node.getArea();
+            TMNodeModel[] order = null;
+            if (! node.isLeaf()) {
+                order = ((TMNodeModelComposite) node).getLayoutOrder();
+            }
+            add(node, area.x, area.y, area.width, area.height, order);
+            if (order != null) {
+                for (int i = 0; i < order.length; i++) {
+                    take(order[i]);
+                }
+            }
+        }
+
+        /**
+         * Sets back the areas and the layout order of the nodes.
+         */
+        void restore() {
+            for (int i = 0; i < count; i++) {
+                nodes[i].getArea().setBounds(areas[i * 4],
+                                             areas[(i * 4) + 1],
+                                             areas[(i * 4) + 2],
+                                             areas[(i * 4) + 3]);
+                if (orders[i] != null) {
+                    ((TMNodeModelComposite) nodes[i]).setLayoutOrder(orders[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * TMLayoutState.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+
+
+/**
+ * The TMLayoutState class keeps the state of the last layout computed by a
+ * TMAlgorithm : its root, the bounds of its root and the version of the
+ * model it was built on, so that it is only computed again when out of
+ * date. It keeps the layout in the layout cache of the view before another
+ * one overwrites the areas of the nodes, and collects the areas moved by
+ * the layouts, to be repainted.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMLayoutState {
+
+    private final TMAlgorithm algorithm; // the algorithm laying out
+
+    private boolean     valid   = false; // is the layout valid
+    private TMNodeModel root    = null; // root of the layout
+    private Rectangle   bounds  = new Rectangle(); // its bounds
+    private long        version = -1; // model version it was built on
+    private boolean     stored  = false; // is it in the layout cache
+    private Rectangle   damage  = new Rectangle(); // areas moved since
+                                                   // last taken
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm laying out
+     */
+    TMLayoutState(TMAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+
+    /* --- Layout --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the areas of the nodes are those of a
+     * layout of the given root in the given bounds, whatever the version of
+     * the model it was built on.
+     *
+     * @param root      the root
+     * @param bounds    the bounds of the root
+     * @return          <CODE>true</CODE> if the root is laid out there
+     */
+    boolean isLaidOut(TMNodeModel root,
+                      Rectangle   bounds) {
+        return valid && (this.root == root) && this.bounds.equals(bounds);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the layout was built on the given
+     * version of the model.
+     *
+     * @param version    the version of the model
+     * @return           <CODE>true</CODE> if the layout is up to date
+     */
+    boolean isUpToDate(long version) {
+        return this.version == version;
+    }
+
+    /**
+     * Records the layout just computed or restored.
+     *
+     * @param root       the root
+     * @param bounds     the bounds of the root
+     * @param version    the version of the model it was built on
+     * @param stored     <CODE>true</CODE> if it is in the layout cache
+     */
+    void set(TMNodeModel root,
+             Rectangle   bounds,
+             long        version,
+             boolean     stored) {
+        this.root = root;
+        this.bounds.setBounds(bounds);
+        this.version = version;
+        this.stored = stored;
+        this.valid = true;
+    }
+
+    /**
+     * Forces the next layout to be computed again, and forgets the layouts
+     * of the algorithm kept in the layout cache.
+     */
+    void invalidate() {
+        valid = false;
+        TMLayoutCache cache = getCache();
+        if (cache != null) {
+            cache.remove(algorithm);
+        }
+    }
+
+    /**
+     * Keeps the layout in the layout cache, and forgets it.
+     */
+    void release() {
+        store();
+        valid = false;
+        root = null;
+    }
+
+
+    /* --- Layout cache --- */
+
+    /**
+     * Keeps the layout in the layout cache, if it is up to date with the
+     * model and not already there.
+     */
+    void store() {
+        TMLayoutCache cache = getCache();
+        if ((cache == null) || !valid || stored) {
+            return;
+        }
+        if (version == root.getModelRoot().getLayoutVersion()) {
+            cache.store(algorithm, root, bounds, version);
+            stored = true;
+        }
+    }
+
+    /**
+     * Sets the areas of the nodes from the layout cache, if it keeps a
+     * layout of the root in the bounds, built on the version of the model.
+     *
+     * @param root       the root
+     * @param bounds     the bounds of the root
+     * @param version    the version of the model
+     * @return           <CODE>true</CODE> if the layout was restored
+     */
+    boolean restore(TMNodeModel root,
+                    Rectangle   bounds,
+                    long        version) {
+        TMLayoutCache cache = getCache();
+        return (cache != null)
+                && cache.restore(algorithm, root, bounds, version);
+    }
+
+    /**
+     * Returns the layout cache of the view, or <CODE>null</CODE> if the
+     * algorithm is not used by a view.
+     *
+     * @return    the layout cache
+     */
+    private TMLayoutCache getCache() {
+        TMView view = algorithm.view;
+        if (view == null) {
+            return null;
+        }
+        return view.getLayoutCache();
+    }
+
+
+    /* --- Damage --- */
+
+    /**
+     * Adds an area moved by a layout.
+     *
+     * @param x    the x coord
+     * @param y    the y coord
+     * @param w    the width
+     * @param h    the height
+     */
+    void addDamage(int x,
+                   int y,
+                   int w,
+                   int h) {
+        TMAlgorithm.addArea(damage, x, y, w, h);
+    }
+
+    /**
+     * Returns the union of the areas moved since the last call of this
+     * method, and resets it.
+     *
+     * @return    the area to repaint, empty if nothing has moved
+     */
+    Rectangle takeDamage() {
+        Rectangle result = damage;
+        damage = new Rectangle();
+        return result;
+    }
+
+}
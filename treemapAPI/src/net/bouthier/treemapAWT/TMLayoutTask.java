@@ -0,0 +1,105 @@
+/*
+ * TMLayoutTask.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * The TMLayoutTask class lays out a subtree for a TMAlgorithm, in a
+ * ForkJoinPool. Once the children areas of its node are set, the children
+ * subtrees with at least getParallelThreshold() nodes are forked, and the
+ * smaller ones are laid out sequentially in the current task.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMLayoutTask
+        extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TMAlgorithm algorithm; // the algorithm laying out
+    private final TMNodeModel node;      // the node whose area is set
+    private final short       axis;      // the axis of separation
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm laying out
+     * @param node         the node whose area is already set
+     * @param axis         the axis of separation
+     */
+    TMLayoutTask(TMAlgorithm algorithm,
+                 TMNodeModel node,
+                 short       axis) {
+        this.algorithm = algorithm;
+        this.node = node;
+        this.axis = axis;
+    }
+
+
+    /* --- Layout --- */
+
+    @Override
+    protected void compute() {
+        node.setLayoutDirty(false);
+        if (node.isLeaf()) {
+            return;
+        }
+        TMNodeModelComposite composite = (TMNodeModelComposite) node;
+        TMNodeModel[] children =
+                algorithm.layoutVisibleChildren(composite, axis);
+        composite.setLayoutOrder(children);
+
+        int threshold = algorithm.getParallelThreshold();
+        short childAxis = algorithm.switchAxis(axis);
+        List<TMLayoutTask> forked = new ArrayList<>();
+        for (int i = 0; i < children.length; i++) {
+            if (children[i].getNodeCount() >= threshold) {
+                TMLayoutTask task =
+                        new TMLayoutTask(algorithm, children[i], childAxis);
+                task.fork();
+                forked.add(task);
+            }
+        }
+        for (int i = 0; i < children.length; i++) {
+            if (children[i].getNodeCount() < threshold) {
+                algorithm.layoutNodes(children[i], childAxis);
+            }
+        }
+        for (int i = forked.size() - 1; i >= 0; i--) {
+            forked.get(i).join();
+        }
+    }
+
+}
@@ -29,6 +29,7 @@ import java.awt.Paint;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JToolTip;
 
 /**
@@ -54,30 +55,36 @@ public class TMNodeModel
     protected float size = 0L; // size of the node
     protected boolean dirtyBufS = true; // size buffer is dirty
     protected float bufSize = 0L; // size buffer
+    protected int nodeCount = 1; // number of nodes in this subtree
+    protected int bufNodeCount = 1; // number of nodes buffer
+
+    private boolean dirtyL = true; // layout of this subtree is out of date
+    private int drawingStamp = 0; // changed when the subtree is redrawn
+
+    // title or tooltip not computed yet, compared by identity
+    private static final String UNCOMPUTED = new String("");
 
     private boolean dirtyD = true; // fill should be computed
     private Paint filling = null; // filling of this node
-    private String tooltip = null; // tooltip of this node
-    private JToolTip tooltipObj = null; // tooltip of this node
     private boolean dirtyBufF = true; // filling buffer is dirty
     private Paint bufFill = null; // filling buffer
 
-    private boolean dirtyBufT = true; // tooltip buffer is dirty
-    private boolean dirtyBufToolTipObj = true;// tooltip object buffer is dirty
-    private String bufTip = null; // tooltip buffer
-    private JToolTip bufTipObj = null;//tooltip objetct buffer
+    // the tooltip and the details are computed on demand, by the thread
+    // asking for them, and published by the volatile buffers
+    private boolean dirtyBufT = true; // tooltip buffers are dirty
+    private volatile String bufTip = UNCOMPUTED; // tooltip buffer
+    private volatile Object bufTipObj = UNCOMPUTED; // details buffer
 
-    private String title = null; // title of the node
-    private boolean dirtyBufTitle = true; // title buff dirty
-    private String bufTitle = null; // title buffer
-
-    private boolean dirtyBufCT = true; // color buff dirty
+    // the title and its color are computed on demand, when drawn
+    private String title = UNCOMPUTED; // title of the node
     private Paint colorTitle = null; // color of the title
+    private boolean dirtyBufTitle = true; // title buff dirty
+    private volatile String bufTitle = UNCOMPUTED; // title buffer
     private Paint bufColorTitle = null; // color title buffer
 
     private List<Object> listChildrenTMNode = null;
     
-    private static int count = 0;
+    private static final AtomicInteger count = new AtomicInteger(); // ids
     private int id = 0;
 
     public int getId() {
@@ -117,7 +124,8 @@ public class TMNodeModel
         modelRoot.incrementNumberOfNodes();
         modelRoot.incrementNumberOfDirtySNodes();
         modelRoot.incrementNumberOfDirtyDNodes();
-        this.id = TMNodeModel.count++;
+        this.id = TMNodeModel.count.getAndIncrement();
+        modelRoot.addToIndex(this);
     }
 
 
@@ -152,6 +160,15 @@ public class TMNodeModel
         return node;
     }
     
+    /**
+     * Returns the root of the model this node belongs to.
+     *
+     * @return the root of the model
+     */
+    TMNodeModelRoot getModelRoot() {
+        return modelRoot;
+    }
+
     /**
      * Get a list of children of this TMNode
      * @param node
@@ -177,6 +194,16 @@ public class TMNodeModel
         return bufSize;
     }
 
+    /**
+     * Returns the number of nodes of the subtree rooted at this node,
+     * this node included.
+     *
+     * @return the number of nodes of this subtree
+     */
+    int getNodeCount() {
+        return bufNodeCount;
+    }
+
     /**
      * Returns the area representing this node in the view.
      *
@@ -196,30 +223,50 @@ public class TMNodeModel
     }
 
     /**
-     * Returns the tooltip of this node.
+     * Returns the tooltip of this node. It is computed on the first call,
+     * in the calling thread, and kept until the drawing of the node
+     * changes. Should be called holding the lock of the model, so that the
+     * model thread does not change the node meanwhile.
      *
      * @return the tooltip of this node
      */
     String getTooltip() {
-        return bufTip;
+        String tip = bufTip;
+        if (tip == UNCOMPUTED) {
+            tip = modelRoot.getCDraw().getTooltip(this);
+            bufTip = tip;
+        }
+        return tip;
     }
     
     /**
-     * Returns the tooltip object of this node.
+     * Returns the tooltip object of this node. It is computed on the first
+     * call, in the calling thread, and kept until the drawing of the node
+     * changes. Should be called holding the lock of the model.
      *
      * @return the tooltip of this node
      */
     JToolTip getToolTipObj(){
-        return bufTipObj;
+        Object tip = bufTipObj;
+        if (tip == UNCOMPUTED) {
+            tip = modelRoot.getCDraw().getDetailsOnDemand(this);
+            bufTipObj = tip;
+        }
+        return (JToolTip) tip;
     }
 
     /**
-     * Returns the title of the node.
+     * Returns the title of the node. It is computed on the first call,
+     * usually when the node is drawn big enough to show it.
      *
      * @return the title of the node
      */
     public String getTitle() {
-        return bufTitle;
+        String t = bufTitle;
+        if (t == UNCOMPUTED) {
+            t = computeTitle();
+        }
+        return t;
     }
 
     /**
@@ -228,9 +275,27 @@ public class TMNodeModel
      * @return the color of the title of this node
      */
     public Paint getColorTitle() {
+        if (bufTitle == UNCOMPUTED) {
+            computeTitle();
+        }
         return bufColorTitle;
     }
 
+    /**
+     * Computes the title buffer and its color. Could be called by many
+     * drawing threads at once : the title is written last, and publishes
+     * the color.
+     *
+     * @return the title of the node
+     */
+    private String computeTitle() {
+        TMComputeDraw cDraw = modelRoot.getCDraw();
+        bufColorTitle = cDraw.getTitleColor(this);
+        String t = cDraw.getTitle(this);
+        bufTitle = t;
+        return t;
+    }
+
     /* --- Cushion Data --- */
     public void setCushionData(TMCushionData data) {
         this.cushionData = data;
@@ -256,6 +321,20 @@ public class TMNodeModel
         }
     }
 
+    /**
+     * Adds to the list the most inner TMNodeModels whose drawing area
+     * intersects the given rectangle.
+     *
+     * @param rect the rectangle
+     * @param nodes the list receiving the nodes
+     */
+    void nodesIntersecting(Rectangle rect,
+            List<TMNodeModel> nodes) {
+        if (area.intersects(rect)) {
+            nodes.add(this);
+        }
+    }
+
     /**
      * Returns the most inner TMNodeModel which contains the given TMNode.
      *
@@ -293,51 +372,94 @@ public class TMNodeModel
      */
     void computeDrawing() {
         if (dirtyD) {
-            filling = modelRoot.getCDraw().getFilling(this);
-            dirtyBufF = true;
-            tooltip = modelRoot.getCDraw().getTooltip(this);
-            dirtyBufT = true;
-            tooltipObj = modelRoot.getCDraw().getDetailsOnDemand(this);
-            dirtyBufToolTipObj = true;
-            title = modelRoot.getCDraw().getTitle(this);
-            dirtyBufTitle = true;
-            colorTitle = modelRoot.getCDraw().getTitleColor(this);
-            dirtyBufCT = true;
+            computeFilling();
             modelRoot.decrementNumberOfDirtyDNodes();
             dirtyD = false;
         }
     }
 
+    /**
+     * Returns the adapter given to the TMComputeDraw to compute the filling
+     * of the node : the node itself.
+     *
+     * @return the adapter of the node filling
+     */
+    TMNodeAdapter getFillingAdapter() {
+        return this;
+    }
+
+    /**
+     * Computes the filling of the node. The tooltip and the details are
+     * forgotten, to be computed again on demand. The title is computed
+     * again only if it was already computed, to know if the node is drawn
+     * differently.
+     */
+    private void computeFilling() {
+        TMComputeDraw cDraw = modelRoot.getCDraw();
+        filling = cDraw.getFilling(getFillingAdapter());
+        dirtyBufF = true;
+        dirtyBufT = true;
+        if (bufTitle != UNCOMPUTED) {
+            colorTitle = cDraw.getTitleColor(this);
+            title = cDraw.getTitle(this);
+        } else {
+            colorTitle = null;
+            title = UNCOMPUTED;
+        }
+        dirtyBufTitle = true;
+    }
+
     /**
      * Clear dirty buffers.
      */
     void clearBuffers() {
         if (dirtyBufS) {
             bufSize = size;
+            bufNodeCount = nodeCount;
             dirtyBufS = false;
+            if (parent != null) {
+                parent.childrenArraysChanged();
+            }
+            setMeAndMyParentsAsLayoutDirty();
         }
+        boolean drawn = false; // is the node drawn differently
         if (dirtyBufF) {
+            drawn |= !equal(bufFill, filling);
             bufFill = filling;
             dirtyBufF = false;
         }
         if (dirtyBufT) {
-            bufTip = tooltip;
+            bufTip = UNCOMPUTED;
+            bufTipObj = UNCOMPUTED;
             dirtyBufT = false;
         }
-        if(dirtyBufToolTipObj){
-            bufTipObj = tooltipObj;
-            dirtyBufToolTipObj = false;
-        }
         if (dirtyBufTitle) {
+            drawn |= !equal(bufTitle, title)
+                     || !equal(bufColorTitle, colorTitle);
+            bufColorTitle = colorTitle;
             bufTitle = title;
             dirtyBufTitle = false;
         }
-        if (dirtyBufCT) {
-            bufColorTitle = colorTitle;
-            dirtyBufCT = false;
+        if (drawn) {
+            for (TMNodeModel n = this; n != null; n = n.parent) {
+                n.drawingStamp++;
+            }
+            modelRoot.drawingChanged(this);
         }
     }
 
+    /**
+     * Tests if two buffered values are equal.
+     *
+     * @param a the first value; could be <CODE>null</CODE>
+     * @param b the second value; could be <CODE>null</CODE>
+     * @return <CODE>true</CODE> if they are equal
+     */
+    private static boolean equal(Object a,
+            Object b) {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+
 
     /* --- Updates --- */
     /**
@@ -354,16 +476,7 @@ public class TMNodeModel
      * Updates the drawing of this node.
      */
     void updateDrawing() {
-        filling = modelRoot.getCDraw().getFilling(this);
-        dirtyBufF = true;
-        tooltip = modelRoot.getCDraw().getTooltip(this);
-        dirtyBufT = true;
-        tooltipObj = modelRoot.getCDraw().getDetailsOnDemand(this);
-        dirtyBufToolTipObj = true;
-        title = modelRoot.getCDraw().getTitle(this);
-        dirtyBufTitle = true;
-        colorTitle = modelRoot.getCDraw().getTitleColor(this);
-        dirtyBufCT = true;
+        computeFilling();
     }
 
     /**
@@ -380,6 +493,48 @@ public class TMNodeModel
         }
     }
 
+    /**
+     * Marks the layout of this node and of its parents as out of date, and
+     * notifies the model that the layout has changed. Called when the
+     * buffered size or the buffered children of this node change.
+     */
+    protected void setMeAndMyParentsAsLayoutDirty() {
+        // always goes up to the root, as a layout pass clears
+        // the flag of a parent before the flags of its children
+        for (TMNodeModel n = this; n != null; n = n.parent) {
+            n.dirtyL = true;
+        }
+        modelRoot.layoutChanged();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the layout of this subtree is out of date.
+     *
+     * @return    <CODE>true</CODE> if this subtree should be laid out again
+     */
+    boolean isLayoutDirty() {
+        return dirtyL;
+    }
+
+    /**
+     * Sets the layout dirty flag of this node.
+     *
+     * @param dirty the new value of the flag
+     */
+    void setLayoutDirty(boolean dirty) {
+        dirtyL = dirty;
+    }
+
+    /**
+     * Returns the drawing stamp of this subtree. It changes each time a node
+     * of the subtree is drawn differently.
+     *
+     * @return the drawing stamp
+     */
+    int getDrawingStamp() {
+        return drawingStamp;
+    }
+
     /**
      * Flush the dirtyD flag for this node.
      */
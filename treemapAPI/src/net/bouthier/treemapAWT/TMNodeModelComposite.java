@@ -25,7 +25,10 @@
  */
 package net.bouthier.treemapAWT;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
@@ -44,6 +47,36 @@ public class TMNodeModelComposite
     private boolean dirtyBufC = true; // the buffered children is dirty
     private Vector bufChild = null; // children buffer 
     private List<TMNodeModel> childrenList = null;// the same children of this node, but in a list
+    private TMNodeModel[] layoutOrder = TMAlgorithm.NO_CHILDREN; // children in layout order
+    private volatile TMChildIndex childIndex = null; // index of laid out children
+
+    private volatile boolean folded = false; // children not built, lazy model
+    private TMNode    foldedLeaf     = null; // leaf giving the folded filling
+    private float     foldedLeafSize = 0.0f; // size of this leaf
+
+    private boolean       dirtyArray   = true; // children array out of date
+    private TMNodeModel[] childArray   = null; // buffered children
+    private float[]       childSizes   = null; // their sizes
+    private boolean       dirtySorted  = true; // sorted array out of date
+    private TMNodeModel[] sortedArray  = null; // children by decreasing size
+    private float[]       sortedSizes  = null; // their sizes
+
+    // Orders nodes by decreasing buffered size
+    private static final Comparator<TMNodeModel> BY_DECREASING_SIZE =
+            new Comparator<TMNodeModel>() {
+        public int compare(TMNodeModel a, TMNodeModel b) {
+            float sizeA = a.getSize();
+            float sizeB = b.getSize();
+            if (sizeA < sizeB) {
+                return 1;
+            } else if (sizeA > sizeB) {
+                return -1;
+            } else {
+                return 0;
+            }
+        }
+    };
+
     /* --- Constructor --- */
     /**
      * Constructor.
@@ -70,6 +103,11 @@ public class TMNodeModelComposite
         this.children = new Vector();
         this.childrenList = new ArrayList<>();
 
+        if (modelRoot.isLazy()) {
+            // the children are built by expand()
+            folded = true;
+            return;
+        }
         TMNode childNode = null;
         TMNodeModel child = null;
         for (Enumeration e = node.children(); e.hasMoreElements();) {
@@ -86,6 +124,159 @@ public class TMNodeModelComposite
     }
 
 
+    /* --- Lazy model --- */
+    /**
+     * Returns <CODE>true</CODE> if the children of this node are not
+     * built, in a lazy model. A folded node has no children, but its size
+     * and its number of nodes are those of its whole TMNode subtree, and it
+     * is filled as its biggest leaf, as a node under the level of detail.
+     *
+     * @return <CODE>true</CODE> if this node is folded
+     */
+    boolean isFolded() {
+        return folded;
+    }
+
+    /**
+     * Builds the children of this folded node, folded themselves, and
+     * computes their size and their drawing. The size of a folded child is
+     * taken from its summary in the TMFoldedIndex, without walking its
+     * TMNode subtree again. Could only be called in a TMThreadQueue thread.
+     */
+    void expand() {
+        if (!folded) {
+            return;
+        }
+        TMNode childNode = null;
+        TMNodeModel child = null;
+        for (Enumeration<?> e = node.children(); e.hasMoreElements();) {
+            childNode = (TMNode) e.nextElement();
+            if (childNode.isLeaf()) {
+                child = new TMNodeModel(childNode, this, modelRoot);
+            } else {
+                child = new TMNodeModelComposite(childNode, this, modelRoot);
+            }
+            addChild(child);
+            child.computeSize();
+            child.computeDrawing();
+        }
+        folded = false;
+        foldedLeaf = null;
+        updateDrawing(); // filled as itself again
+    }
+
+    /**
+     * Forgets the children of this node, which becomes folded. The
+     * summaries of the forgotten subtrees are set in the TMFoldedIndex from
+     * the built nodes, without walking the TMNode subtree again. Could only
+     * be called in a TMThreadQueue thread, the buffers being cleared
+     * afterwards.
+     */
+    void fold() {
+        if (folded) {
+            return;
+        }
+        computeSize(); // the sizes of the children are up to date
+        TMFoldedIndex index = modelRoot.getFoldedIndex();
+        TMFoldedIndex.Subtree biggest = null;
+        for (Enumeration<?> e = trueChildren(); e.hasMoreElements();) {
+            TMNodeModel child = (TMNodeModel) e.nextElement();
+            TMFoldedIndex.Subtree subtree = summarize(child, index);
+            // the first of the biggest children, as sorted by size
+            if ((biggest == null) || (subtree.size > biggest.size)) {
+                biggest = subtree;
+            }
+            modelRoot.removeFromIndex(child);
+        }
+        children.clear();
+        childrenList.clear();
+        dirtyBufC = true;
+        folded = true;
+        // a composite without children stands as a leaf
+        foldedLeaf = (biggest != null) ? biggest.leaf : node;
+        foldedLeafSize = (biggest != null) ? biggest.leafSize : 0.0f;
+        flushDraw();
+        computeDrawing();
+    }
+
+    /**
+     * Sets the summaries of a built subtree, whose sizes are computed, in
+     * the index : its size, its number of nodes and the leaf reached by
+     * following its biggest child.
+     *
+     * @param nodeModel the root of the subtree
+     * @param index the index of the folded subtrees
+     * @return the summary of the subtree
+     */
+    private static TMFoldedIndex.Subtree summarize(TMNodeModel   nodeModel,
+                                                   TMFoldedIndex index) {
+        TMFoldedIndex.Subtree subtree = index.get(nodeModel.getNode());
+        TMNodeModel parent = nodeModel.getParent();
+        subtree.parent = (parent != null) ? parent.getNode() : null;
+        subtree.size = nodeModel.size;
+        subtree.count = nodeModel.nodeCount;
+        if (nodeModel.isLeaf()) {
+            subtree.leaf = nodeModel.getNode();
+            subtree.leafSize = nodeModel.size;
+        } else {
+            TMNodeModelComposite composite = (TMNodeModelComposite) nodeModel;
+            if (composite.folded) {
+                // the summaries of its children are up to date
+                subtree.leaf = composite.foldedLeaf;
+                subtree.leafSize = composite.foldedLeafSize;
+            } else {
+                TMFoldedIndex.Subtree biggest = null;
+                for (Enumeration<?> e = composite.trueChildren();
+                        e.hasMoreElements();) {
+                    TMFoldedIndex.Subtree child =
+                        summarize((TMNodeModel) e.nextElement(), index);
+                    if ((biggest == null) || (child.size > biggest.size)) {
+                        biggest = child;
+                    }
+                }
+                // a composite without children stands as a leaf
+                subtree.leaf = (biggest != null) ? biggest.leaf
+                                                 : composite.getNode();
+                subtree.leafSize = (biggest != null) ? biggest.leafSize
+                                                     : 0.0f;
+            }
+        }
+        subtree.valid = true;
+        return subtree;
+    }
+
+    /**
+     * Returns the adapter given to the TMComputeDraw to compute the filling
+     * of the node : the biggest leaf of the node if it is folded, the node
+     * itself otherwise.
+     *
+     * @return the adapter of the node filling
+     */
+    @Override
+    TMNodeAdapter getFillingAdapter() {
+        if (folded && (foldedLeaf != null) && (foldedLeaf != node)) {
+            return new LeafAdapter(foldedLeaf, foldedLeafSize);
+        }
+        return this;
+    }
+
+    /**
+     * Computes the size of this folded node from the summary of its TMNode
+     * subtree in the TMFoldedIndex. Only the summaries out of date are
+     * computed again, walking only the part of the TMNode subtree which
+     * changed since.
+     */
+    private void computeFoldedSize() {
+        TMNode parentNode = (parent != null) ? parent.getNode() : null;
+        TMFoldedIndex.Subtree subtree =
+            modelRoot.getFoldedIndex().summarize(node, parentNode);
+        size = subtree.size;
+        nodeCount = subtree.count;
+        foldedLeaf = subtree.leaf;
+        foldedLeafSize = subtree.leafSize;
+    }
+
+
     /* --- Tree management --- */
     /**
      * Returns the children of this node, in an Enumeration.
@@ -96,6 +287,156 @@ public class TMNodeModelComposite
         return bufChild.elements();
     }
 
+    /**
+     * Returns the number of buffered children of this node.
+     *
+     * @return the number of children
+     */
+    public int getChildCount() {
+        return bufChild.size();
+    }
+
+    /**
+     * Returns the buffered children of this node in an array, in their
+     * natural order. The array is kept until the children or their sizes
+     * change, and should not be modified.
+     *
+     * @return the children of this node
+     */
+    synchronized TMNodeModel[] getChildrenArray() {
+        refreshChildrenArray();
+        return childArray;
+    }
+
+    /**
+     * Returns the buffered sizes of the children, in the order of
+     * getChildrenArray().
+     *
+     * @return the sizes of the children
+     */
+    synchronized float[] getChildrenSizes() {
+        refreshChildrenArray();
+        return childSizes;
+    }
+
+    /**
+     * Returns the buffered children of this node in an array, by decreasing
+     * size. Children of same size keep their natural order. The array is
+     * only sorted again when the children or their sizes change, and should
+     * not be modified.
+     *
+     * @return the children of this node by decreasing size
+     */
+    synchronized TMNodeModel[] getChildrenBySize() {
+        refreshSortedArray();
+        return sortedArray;
+    }
+
+    /**
+     * Returns the buffered sizes of the children, in the order of
+     * getChildrenBySize().
+     *
+     * @return the sizes of the children by decreasing size
+     */
+    synchronized float[] getChildrenSizesBySize() {
+        refreshSortedArray();
+        return sortedSizes;
+    }
+
+    /**
+     * Marks the children arrays as out of date. Called when the buffered
+     * children or the buffered size of a child change. The children arrays
+     * are synchronized, as they could be read by a layout prefetched in the
+     * background.
+     */
+    synchronized void childrenArraysChanged() {
+        dirtyArray = true;
+        dirtySorted = true;
+    }
+
+    /**
+     * Releases the children arrays, built again on demand.
+     */
+    private synchronized void releaseChildrenArrays() {
+        childArray = null;
+        childSizes = null;
+        sortedArray = null;
+        sortedSizes = null;
+    }
+
+    /**
+     * Builds again the children array if it is out of date.
+     * New arrays are built, as the old ones could still be read.
+     */
+    private void refreshChildrenArray() {
+        if (dirtyArray) {
+            int n = bufChild.size();
+            TMNodeModel[] array = new TMNodeModel[n];
+            bufChild.copyInto(array);
+            float[] sizes = new float[n];
+            for (int i = 0; i < n; i++) {
+                sizes[i] = array[i].getSize();
+            }
+            childArray = array;
+            childSizes = sizes;
+            dirtyArray = false;
+        }
+    }
+
+    /**
+     * Sorts again the children array if it is out of date.
+     * New arrays are built, as the old ones could still be read.
+     */
+    private void refreshSortedArray() {
+        if (dirtySorted) {
+            TMNodeModel[] array = getChildrenArray().clone();
+            Arrays.sort(array, BY_DECREASING_SIZE); // stable
+            float[] sizes = new float[array.length];
+            for (int i = 0; i < array.length; i++) {
+                sizes[i] = array[i].getSize();
+            }
+            sortedArray = array;
+            sortedSizes = sizes;
+            dirtySorted = false;
+        }
+    }
+
+    /**
+     * Returns the children of this node in the order they have been laid out
+     * by the last layout pass. Children not laid out are not included.
+     *
+     * @return the children in layout order
+     */
+    TMNodeModel[] getLayoutOrder() {
+        return layoutOrder;
+    }
+
+    /**
+     * Sets the children of this node in the order they have been laid out.
+     *
+     * @param order the children in layout order
+     */
+    void setLayoutOrder(TMNodeModel[] order) {
+        layoutOrder = order;
+        childIndex = null; // the areas of the children have changed
+    }
+
+    /**
+     * Returns the spatial index of the children laid out, building it if it
+     * is not there.
+     *
+     * @param order the children in layout order
+     * @return the index of the children
+     */
+    private TMChildIndex getChildIndex(TMNodeModel[] order) {
+        TMChildIndex index = childIndex;
+        if ((index == null) || !index.isIndexOf(order)) {
+            index = new TMChildIndex(area, order);
+            childIndex = index;
+        }
+        return index;
+    }
+
     /**
      * Returns the non-buffered children of this node, in an Enumeration. Could
      * only be called in a TMThreadQueue thread.
@@ -153,9 +494,15 @@ public class TMNodeModelComposite
     public TMNodeModel nodeContaining(int x,
             int y) {
         if (area.contains(x, y)) {
-            for (Enumeration e = children(); e.hasMoreElements();) {
-                TMNodeModel neo
-                        = ((TMNodeModel) e.nextElement()).nodeContaining(x, y);
+            // only the children laid out have an up to date area
+            TMNodeModel[] children = getLayoutOrder();
+            if (children.length >= TMChildIndex.MIN_CHILDREN) {
+                TMNodeModel child =
+                        getChildIndex(children).childContaining(x, y);
+                return (child != null) ? child.nodeContaining(x, y) : this;
+            }
+            for (int i = 0; i < children.length; i++) {
+                TMNodeModel neo = children[i].nodeContaining(x, y);
                 if (neo != null) {
                     return neo;
                 }
@@ -166,6 +513,38 @@ public class TMNodeModelComposite
         }
     }
 
+    /**
+     * Adds to the list the most inner TMNodeModels whose drawing area
+     * intersects the given rectangle. This node is added if none of its
+     * children laid out intersects it.
+     *
+     * @param rect the rectangle
+     * @param nodes the list receiving the nodes
+     */
+    @Override
+    void nodesIntersecting(Rectangle rect,
+            List<TMNodeModel> nodes) {
+        if (!area.intersects(rect)) {
+            return;
+        }
+        int found = nodes.size();
+        TMNodeModel[] children = getLayoutOrder();
+        if (children.length >= TMChildIndex.MIN_CHILDREN) {
+            List<TMNodeModel> hits = new ArrayList<>();
+            getChildIndex(children).childrenIntersecting(rect, hits);
+            for (TMNodeModel child : hits) {
+                child.nodesIntersecting(rect, nodes);
+            }
+        } else {
+            for (int i = 0; i < children.length; i++) {
+                children[i].nodesIntersecting(rect, nodes);
+            }
+        }
+        if (nodes.size() == found) {
+            nodes.add(this);
+        }
+    }
+
     /**
      * Returns the most inner TMNodeModel which contains the given TMNode. As
      * this method works on non-buffered children, it should be called only
@@ -199,11 +578,17 @@ public class TMNodeModelComposite
      */
     public float computeSize() {
         if (dirtyS) {
-            size = 0.0f;
-            TMNodeModel child = null;
-            for (Enumeration e = trueChildren(); e.hasMoreElements();) {
-                child = (TMNodeModel) e.nextElement();
-                size += child.computeSize();
+            if (folded) {
+                computeFoldedSize();
+            } else {
+                size = 0.0f;
+                nodeCount = 1;
+                TMNodeModel child = null;
+                for (Enumeration e = trueChildren(); e.hasMoreElements();) {
+                    child = (TMNodeModel) e.nextElement();
+                    size += child.computeSize();
+                    nodeCount += child.nodeCount;
+                }
             }
             dirtyBufS = true;
             modelRoot.decrementNumberOfDirtySNodes();
@@ -231,6 +616,13 @@ public class TMNodeModelComposite
         if (dirtyBufC) {
             bufChild = (Vector) children.clone();
             dirtyBufC = false;
+            if (folded) {
+                // no reference kept on the forgotten children
+                releaseChildrenArrays();
+                setLayoutOrder(TMAlgorithm.NO_CHILDREN);
+            }
+            childrenArraysChanged();
+            setMeAndMyParentsAsLayoutDirty();
         }
         super.clearBuffers();
         TMNodeModel child = null;
@@ -261,6 +653,7 @@ public class TMNodeModelComposite
      */
     public void lostChild(TMNodeModel child) {
         removeChild(child);
+        modelRoot.removeFromIndex(child);
         setMeAndMyParentsAsDirty();
     }
 
@@ -296,4 +689,49 @@ public class TMNodeModelComposite
         return childrenList;
     }
 
+
+    /* --- Inner classes --- */
+
+    /**
+     * The adapter of the biggest leaf of a folded node, given to the
+     * TMComputeDraw to compute the filling of the folded node.
+     */
+    private static class LeafAdapter
+            extends TMNodeAdapter {
+
+        private TMNode leaf = null; // the leaf
+        private float  size = 0.0f; // its size
+
+        /**
+         * Constructor.
+         *
+         * @param leaf the leaf
+         * @param size the size of the leaf
+         */
+        LeafAdapter(TMNode leaf,
+                float size) {
+            this.leaf = leaf;
+            this.size = size;
+        }
+
+        /**
+         * Returns the leaf.
+         *
+         * @return the leaf
+         */
+        public TMNode getNode() {
+            return leaf;
+        }
+
+        /**
+         * Returns the size of the leaf.
+         *
+         * @return the size of the leaf
+         */
+        public float getSize() {
+            return size;
+        }
+
+    }
+
 }
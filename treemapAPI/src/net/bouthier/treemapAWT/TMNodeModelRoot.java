@@ -26,6 +26,19 @@
 
 package net.bouthier.treemapAWT;
 
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The TMNodeModelRoot class implements the root of the tree of TMNodeModels.
@@ -47,6 +60,30 @@ public class TMNodeModelRoot {
     private TMThreadQueue threadQueue = null; // the thread queue
     private TMThreadLock  lock 		  = null; // threads lock
 
+    private volatile long layoutVersion = 0; // changes with sizes and structure
+
+    private static final int MAX_DRAWING_DAMAGE = 256; // max nodes kept
+
+    private List<TMNodeModel> drawingDamage =
+        new ArrayList<TMNodeModel>();             // nodes drawn differently
+    private boolean           drawingAll = false; // too many nodes : all damaged
+
+    // models of the nodes, by identity of the TMNode
+    private final Map<TMNode, TMNodeModel> models =
+        new IdentityHashMap<TMNode, TMNodeModel>();
+
+    private static final int   EXPANSION_SIZE = 8;     // default, in pixels
+    private static final float FOLDING_RATIO  = 0.75f; // of the max memory
+
+    private boolean lazy          = false;          // children on demand
+    private int     expansionSize = EXPANSION_SIZE; // min side of expansion
+
+    private TMFoldedIndex foldedIndex = null; // subtrees of the folded nodes
+
+    // folded nodes waiting for their children, in order of request
+    private final Set<TMNodeModelComposite> expansions =
+        new LinkedHashSet<TMNodeModelComposite>();
+
     private TMOnDrawFinished drawfinishListener;
 
     public void setDrawfinishListener(TMOnDrawFinished drawfinishListener) {
@@ -69,16 +106,94 @@ public class TMNodeModelRoot {
         			TMComputeDraw cDraw,
         			TMStatusView  status,
         			TMView 		  view) {
+        this(root, cSize, cDraw, status, view, false);
+    }
+
+    /**
+     * Constructor. In a lazy model, the children of a composite node
+     * are only built when the node is laid out big enough to show them,
+     * and the children of nodes no more shown are forgotten when the
+     * memory is running low.
+     *
+     * @param root      the root of the TMNode tree
+     * @param cSize     the object computing the size;
+     * @param cDraw     the object computing the drawing;
+     * @param status    the status view
+     * @param view      the view
+     * @param lazy      <CODE>true</CODE> for a lazy model
+     */
+    TMNodeModelRoot(TMNode 		  root,
+        		  	TMComputeSize cSize,
+        			TMComputeDraw cDraw,
+        			TMStatusView  status,
+        			TMView 		  view,
+        			boolean       lazy) {
         this.cSize = cSize;
         this.cDraw = cDraw;
         this.status = status;
         this.view = view;
+        this.lazy = lazy;
+        if (lazy) {
+            this.foldedIndex = new TMFoldedIndex(cSize);
+        }
         this.threadQueue = new TMThreadQueue();
         this.lock = new TMThreadLock();
 
         launchTMNodeModelTreeBuilding(root);
     }
 
+    /**
+     * Constructor of a model without view. The TMNodeModel tree is built,
+     * sized and drawn at once in the calling thread, and no update thread
+     * is started : the model can't be updated.
+     *
+     * @param root      the root of the TMNode tree
+     * @param cSize     the object computing the size;
+     * @param cDraw     the object computing the drawing;
+     */
+    TMNodeModelRoot(TMNode        root,
+                    TMComputeSize cSize,
+                    TMComputeDraw cDraw) {
+        this(root, cSize, cDraw, false);
+    }
+
+    /**
+     * Constructor of a model without view, lazy or not. The TMNodeModel
+     * tree is built, sized and drawn at once in the calling thread, and no
+     * update thread is started. In a lazy model, the folded nodes whose
+     * children are asked for wait in takeExpansions().
+     *
+     * @param root      the root of the TMNode tree
+     * @param cSize     the object computing the size;
+     * @param cDraw     the object computing the drawing;
+     * @param lazy      <CODE>true</CODE> for a lazy model
+     */
+    TMNodeModelRoot(TMNode        root,
+                    TMComputeSize cSize,
+                    TMComputeDraw cDraw,
+                    boolean       lazy) {
+        this.cSize = cSize;
+        this.cDraw = cDraw;
+        this.status = new TMStatusView.Silent();
+        this.lock = new TMThreadLock();
+        this.lazy = lazy;
+        if (lazy) {
+            this.foldedIndex = new TMFoldedIndex(cSize);
+        }
+
+        if (root.isLeaf()) {
+            this.root = new TMNodeModel(root, this);
+        } else {
+            this.root = new TMNodeModelComposite(root, this);
+        }
+        computeSize();
+        if (lazy && !root.isLeaf()) {
+            // the root is always shown, its children are built at once
+            ((TMNodeModelComposite) this.root).expand();
+        }
+        this.root.clearBuffers();
+    }
+
 
     /* --- Accessor --- */
 
@@ -102,6 +217,69 @@ public class TMNodeModelRoot {
     }
 
 
+    /* --- Layout version --- */
+
+    /**
+     * Returns the layout version of the model.
+     * The version changes each time the buffered size or the
+     * buffered children of a node change, so a layout built on
+     * an older version should be computed again.
+     *
+     * @return    the layout version
+     */
+    long getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    /**
+     * Marks the current layout as out of date.
+     * Called when buffers are cleared, within the lock.
+     */
+    void layoutChanged() {
+        layoutVersion++;
+    }
+
+
+    /* --- Drawing damage --- */
+
+    /**
+     * Notes that the given node is drawn differently, its buffered filling
+     * or title having changed. Called when buffers are cleared, within the
+     * lock. Past MAX_DRAWING_DAMAGE nodes, the whole view is damaged.
+     *
+     * @param node    the node drawn differently
+     */
+    synchronized void drawingChanged(TMNodeModel node) {
+        if (drawingAll) {
+            return;
+        }
+        if (drawingDamage.size() == MAX_DRAWING_DAMAGE) {
+            drawingDamage.clear();
+            drawingAll = true;
+        } else {
+            drawingDamage.add(node);
+        }
+    }
+
+    /**
+     * Returns the nodes drawn differently since the last call, and forgets
+     * them.
+     *
+     * @return    the nodes drawn differently; <CODE>null</CODE> if there
+     *            were too many of them, and the whole view is damaged
+     */
+    synchronized TMNodeModel[] takeDrawingDamage() {
+        TMNodeModel[] nodes = null;
+        if (! drawingAll) {
+            nodes = drawingDamage.toArray(
+                new TMNodeModel[drawingDamage.size()]);
+        }
+        drawingDamage.clear();
+        drawingAll = false;
+        return nodes;
+    }
+
+
     /* --- Zooming --- */
 
     /**
@@ -113,6 +291,24 @@ public class TMNodeModelRoot {
      */
     public void zoom(int x, 
     				 int y) {
+        TMNodeModel endNode = zoomTarget(x, y);
+        if (endNode != null) {
+            view.zoomingIn();
+            root = endNode;
+            view.repaint();
+        }
+    }
+
+    /**
+     * Returns the node zoom() would zoom on for the given coordinates.
+     *
+     * @param x    the x coord
+     * @param y    the y coord
+     * @return     the node to zoom on;
+     *             <CODE>null</CODE> if there is no node there
+     */
+    TMNodeModel zoomTarget(int x,
+                           int y) {
         TMNodeModel endNode = nodeContaining(x, y);
         if (endNode != null) {
             TMNodeModel ancestor = endNode.getParent();
@@ -120,9 +316,8 @@ public class TMNodeModelRoot {
                 endNode = ancestor;
                 ancestor = endNode.getParent();
             }
-            root = endNode;
-            view.repaint();
         }
+        return endNode;
     }
 
     /**
@@ -133,6 +328,7 @@ public class TMNodeModelRoot {
         TMNodeModel ancestor = root.getParent();
         if (ancestor != null) {
             root = ancestor;
+            view.zoomedOut(ancestor);
             view.repaint();
         }
     }
@@ -220,16 +416,328 @@ public class TMNodeModelRoot {
         return root.nodeContaining(x, y);
     }
 
+    /**
+     * Returns the most inner TMNodeModels
+     * whose drawing area intersects the given rectangle,
+     * as for a rubber-band selection.
+     *
+     * @param rect    the rectangle
+     * @return        the TMNodeModels intersecting the rectangle
+     */
+    public List<TMNodeModel> nodesIntersecting(Rectangle rect) {
+        List<TMNodeModel> nodes = new ArrayList<TMNodeModel>();
+        if (root != null) {
+            root.nodesIntersecting(rect, nodes);
+        }
+        return nodes;
+    }
+
     /**
      * Returns the most inner TMNodeModel
      * which contains the given TMNode.
+     * The TMNodeModel is found in constant time,
+     * in the index of the models by TMNode.
      *
      * @param node    the TMNode
      * @return        the TMNodeModel containing this TMNode;
      *                <CODE>null</CODE> if there is no such TMNodeModel
      */
     public TMNodeModel nodeContaining(TMNode node) {
-        return root.nodeContaining(node);
+        synchronized (models) {
+            return models.get(node);
+        }
+    }
+
+    /**
+     * Adds the TMNodeModel to the index of the models by TMNode.
+     * Called by the constructor of TMNodeModel.
+     *
+     * @param nodeModel    the new TMNodeModel
+     */
+    void addToIndex(TMNodeModel nodeModel) {
+        synchronized (models) {
+            models.put(nodeModel.getNode(), nodeModel);
+        }
+    }
+
+    /**
+     * Removes the TMNodeModel and its subtree from the index of
+     * the models by TMNode. Called when a child is lost.
+     *
+     * @param nodeModel    the removed TMNodeModel
+     */
+    void removeFromIndex(TMNodeModel nodeModel) {
+        synchronized (models) {
+            removeSubtreeFromIndex(nodeModel);
+        }
+    }
+
+    /**
+     * Removes the subtree from the index, within the lock of the index.
+     *
+     * @param nodeModel    the root of the subtree
+     */
+    private void removeSubtreeFromIndex(TMNodeModel nodeModel) {
+        TMNode node = nodeModel.getNode();
+        // the node could have been added again elsewhere
+        if (models.get(node) == nodeModel) {
+            models.remove(node);
+        }
+        if (!nodeModel.isLeaf()) {
+            TMNodeModelComposite composite = (TMNodeModelComposite) nodeModel;
+            for (Enumeration<?> e = composite.trueChildren();
+                    e.hasMoreElements();) {
+                removeSubtreeFromIndex((TMNodeModel) e.nextElement());
+            }
+        }
+    }
+
+
+    /* --- Lazy model --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the model is lazy : the children of
+     * the composite nodes are built on demand.
+     *
+     * @return    <CODE>true</CODE> if the model is lazy
+     */
+    boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Returns the minimum side, in pixels, of a folded node
+     * whose children are built when it is laid out.
+     *
+     * @return    the minimum side of an expanded node
+     */
+    int getExpansionSize() {
+        return expansionSize;
+    }
+
+    /**
+     * Sets the minimum side, in pixels, of a folded node
+     * whose children are built when it is laid out.
+     *
+     * @param size    the minimum side of an expanded node
+     */
+    void setExpansionSize(int size) {
+        expansionSize = Math.max(1, size);
+    }
+
+    /**
+     * Asks for the children of the folded node, laid out in an area
+     * of the given size, to be built in the TMThreadQueue thread.
+     * Nothing is done if the area is smaller than the expansion size.
+     * Could be called by any thread laying out the nodes.
+     *
+     * @param node      the folded node
+     * @param width     the width of its area
+     * @param height    the height of its area
+     */
+    void requestExpansion(TMNodeModelComposite node,
+                          int                  width,
+                          int                  height) {
+        if ((width < expansionSize) || (height < expansionSize)) {
+            return;
+        }
+        synchronized (expansions) {
+            // one task takes all the nodes requested until it runs
+            if (expansions.add(node) && (expansions.size() == 1)
+                    && (threadQueue != null)) {
+                threadQueue.add(new TMThreadExpand(status, this, view));
+            }
+        }
+    }
+
+    /**
+     * Returns the folded nodes waiting for their children, and forgets
+     * them.
+     *
+     * @return    the nodes to expand, in order of request
+     */
+    List<TMNodeModelComposite> takeExpansions() {
+        synchronized (expansions) {
+            List<TMNodeModelComposite> nodes =
+                new ArrayList<TMNodeModelComposite>(expansions);
+            expansions.clear();
+            return nodes;
+        }
+    }
+
+    /**
+     * Returns the index of the TMNode subtrees under the folded nodes.
+     *
+     * @return    the index; <CODE>null</CODE> if the model is not lazy
+     */
+    TMFoldedIndex getFoldedIndex() {
+        return foldedIndex;
+    }
+
+    /**
+     * Returns the folded TMNodeModel whose TMNode subtree contains
+     * the given TMNode, for a TMNode without TMNodeModel in a lazy model.
+     * The parents of the TMNode are followed up to the first one with a
+     * TMNodeModel, so it should only be called when nodeContaining()
+     * failed, within a TMThreadQueue thread.
+     *
+     * @param node    the TMNode
+     * @return        the folded TMNodeModel containing this TMNode;
+     *                <CODE>null</CODE> if there is no such TMNodeModel
+     */
+    TMNodeModelComposite foldedNodeContaining(TMNode node) {
+        if (!lazy || (root == null)) {
+            return null;
+        }
+        for (TMNode n = foldedIndex.getParent(node); n != null;
+                n = foldedIndex.getParent(n)) {
+            TMNodeModel owner = nodeContaining(n);
+            if (owner != null) {
+                if (!owner.isLeaf()
+                        && ((TMNodeModelComposite) owner).isFolded()) {
+                    return (TMNodeModelComposite) owner;
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Notes that the size or the children of the TMNode changed, so that
+     * the size of the folded nodes holding it is computed again. Does
+     * nothing if the model is not lazy. Should be called within a
+     * TMThreadQueue thread.
+     *
+     * @param node    the TMNode changed
+     */
+    void subtreeChanged(TMNode node) {
+        if (lazy) {
+            foldedIndex.invalidate(node);
+        }
+    }
+
+    /**
+     * Notes that the TMNode lost a child, and forgets the subtree of the
+     * child. Does nothing if the model is not lazy. Should be called within
+     * a TMThreadQueue thread.
+     *
+     * @param parent    the TMNode which lost a child
+     * @param child     the lost child
+     */
+    void childLost(TMNode parent,
+                   TMNode child) {
+        if (lazy) {
+            foldedIndex.invalidate(parent);
+            foldedIndex.forget(parent, child);
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the heap still used after the last
+     * garbage collection is over FOLDING_RATIO of the maximum heap, and the
+     * nodes not shown should be folded. The garbage not collected yet is
+     * not counted.
+     *
+     * @return    <CODE>true</CODE> if the memory is running low
+     */
+    boolean isMemoryLow() {
+        long used = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ((pool.getType() == MemoryType.HEAP)
+                    && pool.isCollectionUsageThresholdSupported()) {
+                MemoryUsage usage = pool.getCollectionUsage();
+                if (usage != null) {
+                    used += usage.getUsed();
+                }
+            }
+        }
+        return used > (long) (Runtime.getRuntime().maxMemory() * FOLDING_RATIO);
+    }
+
+    /**
+     * Folds the expanded nodes which are not shown : the nodes out of the
+     * zoomed subtree, and the nodes of the zoomed subtree whose children
+     * were not laid out or which are smaller than the expansion size.
+     * Their children are forgotten, and will be built again when needed.
+     * Should be called within a TMThreadQueue thread.
+     *
+     * @return    the number of nodes folded
+     */
+    int foldHiddenNodes() {
+        if (!lazy || (root == null)) {
+            return 0;
+        }
+        Set<TMNodeModel> path =
+            Collections.newSetFromMap(
+                new IdentityHashMap<TMNodeModel, Boolean>());
+        for (TMNodeModel n = root; n != null; n = n.getParent()) {
+            path.add(n);
+        }
+        List<TMNodeModelComposite> folded =
+            new ArrayList<TMNodeModelComposite>();
+        foldHiddenNodes(getTop(), path, false, folded);
+
+        getLock().lock();
+        for (TMNodeModelComposite node : folded) {
+            node.clearBuffers();
+        }
+        getLock().unlock();
+        return folded.size();
+    }
+
+    /**
+     * Folds the expanded nodes not shown under the given node.
+     *
+     * @param node      the node
+     * @param path      the zoomed root and its ancestors
+     * @param inside    <CODE>true</CODE> if the node is in the zoomed subtree
+     * @param folded    the list receiving the folded nodes
+     */
+    private void foldHiddenNodes(TMNodeModel                node,
+                                 Set<TMNodeModel>           path,
+                                 boolean                    inside,
+                                 List<TMNodeModelComposite> folded) {
+        if (node.isLeaf()) {
+            return;
+        }
+        TMNodeModelComposite composite = (TMNodeModelComposite) node;
+        if (composite.isFolded()) {
+            return;
+        }
+        if (node == root) {
+            inside = true;
+        } else if (inside) {
+            Rectangle area = node.getArea();
+            boolean laidOut = !node.isLayoutDirty();
+            if ((laidOut && (composite.getLayoutOrder().length == 0))
+                    || (area.width < expansionSize)
+                    || (area.height < expansionSize)) {
+                composite.fold();
+                folded.add(composite);
+                return;
+            }
+        } else if (!path.contains(node)) {
+            composite.fold();
+            folded.add(composite);
+            return;
+        }
+        for (Enumeration<?> e = composite.trueChildren(); e.hasMoreElements();) {
+            foldHiddenNodes((TMNodeModel) e.nextElement(), path, inside, folded);
+        }
+    }
+
+    /**
+     * Returns the root of the whole TMNodeModel tree, whatever the zoom.
+     *
+     * @return    the root of the whole tree
+     */
+    TMNodeModel getTop() {
+        TMNodeModel top = root;
+        while (top.getParent() != null) {
+            top = top.getParent();
+        }
+        return top;
     }
 
 
@@ -245,11 +753,11 @@ public class TMNodeModelRoot {
         if (dirtySNodes > 0) {
             status.setStatus(
                 new TMSDProgressBar(dirtySNodes, "Computing size of", "nodes"));
-            root.computeSize();
+            getTop().computeSize();
             status.unsetStatus();
 
             getLock().lock();
-            getRoot().clearBuffers();
+            getTop().clearBuffers();
             getLock().unlock();
 
             computeDrawing();
@@ -267,7 +775,7 @@ public class TMNodeModelRoot {
                     dirtyDNodes,
                     "Computing drawing of",
                     "nodes"));
-            root.computeDrawing();
+            getTop().computeDrawing();
             status.unsetStatus();
         }
     }
@@ -0,0 +1,234 @@
+/*
+ * TMOffscreenRenderer.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * The TMOffscreenRenderer class draws a treemap in an image without any
+ * view. It is meant for batch jobs running with
+ * <CODE>java.awt.headless=true</CODE> : no TMView, no frame and no thread
+ * are created, and the drawing is the same as the one of a TMView of the
+ * same size using the same TMAlgorithm.
+ * <P>
+ * A renderer can be used by many threads at once. Each thread reuses its
+ * own image between calls. The given TMAlgorithm is not used to draw :
+ * each drawing uses a copy with the same parameters, so that the threads
+ * do not wait for each other, and the algorithm can be the one of a
+ * TMView.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMOffscreenRenderer {
+
+    private final Color background; // the color of the background
+
+    // Image reused by each thread
+    private final ThreadLocal<BufferedImage> images =
+        new ThreadLocal<BufferedImage>();
+
+
+    /* --- Constructors --- */
+
+    /**
+     * Constructor. The background is white.
+     */
+    public TMOffscreenRenderer() {
+        this(Color.white);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param background    the color of the background;
+     *                      could not be <CODE>null</CODE>
+     */
+    public TMOffscreenRenderer(Color background) {
+        if (background == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to render with a null background.");
+        }
+        this.background = background;
+    }
+
+
+    /* --- Rendering --- */
+
+    /**
+     * Draws the treemap in an image of the given size. The image is reused
+     * by the next calls from the same thread : it should be copied to be
+     * kept.
+     *
+     * @param treeMap      the treemap to draw;
+     *                     could not be <CODE>null</CODE>
+     * @param cSize        the object computing the size;
+     *                     could not be <CODE>null</CODE>
+     * @param cDraw        the object computing the drawing;
+     *                     could not be <CODE>null</CODE>
+     * @param algorithm    the algorithm used to draw the treemap;
+     *                     could not be <CODE>null</CODE>
+     * @param width        the width of the image
+     * @param height       the height of the image
+     * @return             the image of the treemap
+     * @throws TMExceptionBadTMNodeKind if cSize or cDraw is not compatible
+     *                                  with the root
+     */
+    public BufferedImage render(TreeMap       treeMap,
+                                TMComputeSize cSize,
+                                TMComputeDraw cDraw,
+                                TMAlgorithm   algorithm,
+                                int           width,
+                                int           height) {
+        BufferedImage image = getImage(width, height);
+        render(treeMap, cSize, cDraw, algorithm, image);
+        return image;
+    }
+
+    /**
+     * Draws the treemap in the given image, on its whole area.
+     *
+     * @param treeMap      the treemap to draw;
+     *                     could not be <CODE>null</CODE>
+     * @param cSize        the object computing the size;
+     *                     could not be <CODE>null</CODE>
+     * @param cDraw        the object computing the drawing;
+     *                     could not be <CODE>null</CODE>
+     * @param algorithm    the algorithm used to draw the treemap;
+     *                     could not be <CODE>null</CODE>
+     * @param image        the image to draw in;
+     *                     could not be <CODE>null</CODE>
+     * @throws TMExceptionBadTMNodeKind if cSize or cDraw is not compatible
+     *                                  with the root
+     */
+    public void render(TreeMap       treeMap,
+                       TMComputeSize cSize,
+                       TMComputeDraw cDraw,
+                       TMAlgorithm   algorithm,
+                       BufferedImage image) {
+        if (treeMap == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to render a null treemap.");
+        } else if (cSize == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to render with a null TMComputeSize.");
+        } else if (cDraw == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to render with a null TMComputeDraw.");
+        } else if (algorithm == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to render with a null TMAlgorithm.");
+        } else if (image == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to render in a null image.");
+        }
+        TMNode root = treeMap.getRoot();
+        if (! cSize.isCompatibleWith(root)) {
+            throw new TMExceptionBadTMNodeKind(cSize, root);
+        }
+        if (! cDraw.isCompatibleWith(root)) {
+            throw new TMExceptionBadTMNodeKind(cDraw, root);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Graphics2D g = image.createGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+
+        TMNodeModelRoot model = new TMNodeModelRoot(root, cSize, cDraw);
+        TMNodeModel modelRoot = model.getRoot();
+        // same area as the root of a TMView without border
+        modelRoot.getArea().setBounds(0, 0, width - 1, height - 1);
+        TMAlgorithm drawer = algorithm.copy();
+        drawer.initialize(modelRoot, null);
+        drawer.draw(image, new Rectangle(0, 0, width, height), modelRoot);
+    }
+
+    /**
+     * Draws the treemap in an image of the given size, and writes it
+     * in PNG format to the given stream. The image is reused by the next
+     * calls from the same thread. The stream is not closed.
+     *
+     * @param treeMap      the treemap to draw;
+     *                     could not be <CODE>null</CODE>
+     * @param cSize        the object computing the size;
+     *                     could not be <CODE>null</CODE>
+     * @param cDraw        the object computing the drawing;
+     *                     could not be <CODE>null</CODE>
+     * @param algorithm    the algorithm used to draw the treemap;
+     *                     could not be <CODE>null</CODE>
+     * @param width        the width of the image
+     * @param height       the height of the image
+     * @param out          the stream to write to
+     * @throws IOException if an error occurs while writing
+     * @throws TMExceptionBadTMNodeKind if cSize or cDraw is not compatible
+     *                                  with the root
+     */
+    public void writePNG(TreeMap       treeMap,
+                         TMComputeSize cSize,
+                         TMComputeDraw cDraw,
+                         TMAlgorithm   algorithm,
+                         int           width,
+                         int           height,
+                         OutputStream  out)
+        throws IOException {
+        BufferedImage image = render(treeMap, cSize, cDraw, algorithm,
+                                     width, height);
+        ImageIO.write(image, "png", out);
+    }
+
+    /**
+     * Returns the image of the current thread, of the given size.
+     *
+     * @param width     the width of the image
+     * @param height    the height of the image
+     * @return          the image
+     */
+    private BufferedImage getImage(int width,
+                                   int height) {
+        BufferedImage image = images.get();
+        if ((image == null)
+                || (image.getWidth() != width)
+                || (image.getHeight() != height)) {
+            image = new BufferedImage(width, height,
+                                      BufferedImage.TYPE_INT_RGB);
+            images.set(image);
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * TMPixelDrawer.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+
+
+/**
+ * The TMPixelDrawer class draws the nodes of a TMAlgorithm as its
+ * drawNodes() does, writing the rectangles of the nodes filled with an
+ * opaque Color directly in the pixels of the image. The graphic context is
+ * only used for the titles, and for the nodes filled with another Paint.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMPixelDrawer {
+
+    private final TMAlgorithm   algorithm; // the algorithm drawing
+    private final TMFrameFiller frames;    // frames of the composites
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm drawing
+     * @param frames       the frame filler of the algorithm
+     */
+    TMPixelDrawer(TMAlgorithm   algorithm,
+                  TMFrameFiller frames) {
+        this.algorithm = algorithm;
+        this.frames = frames;
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Draws the node and its subtree, clipped to the given box of the
+     * image.
+     *
+     * @param g             the graphic context of the image
+     * @param pixels        the pixels of the image
+     * @param node          the node to draw
+     * @param axis          the axis of separation
+     * @param level         the level of deep
+     * @param fatherData    the cushion data of the father;
+     *                      <CODE>null</CODE> for the root
+     * @param x0            the left of the clip
+     * @param y0            the top of the clip
+     * @param x1            the right of the clip, excluded
+     * @param y1            the bottom of the clip, excluded
+     * @param pass          the drawing pass
+     */
+    void draw(Graphics2D    g,
+              TMPixelWriter pixels,
+              TMNodeModel   node,
+              short         axis,
+              int           level,
+              TMCushionData fatherData,
+              int           x0,
+              int           y0,
+              int           x1,
+              int           y1,
+              TMDrawPass    pass) {
+        Rectangle area = node.getArea();
+
+        // the clip of the node, as clipRect() would give it
+        x0 = Math.max(x0, area.x);
+        y0 = Math.max(y0, area.y);
+        x1 = Math.min(x1, area.x + area.width + 1);
+        y1 = Math.min(y1, area.y + area.height + 1);
+        if ((x0 >= x1) || (y0 >= y1)) {
+            // nothing of this subtree is repainted
+            return;
+        }
+        TMCushionData data =
+                algorithm.computeCushionData(fatherData, area, axis);
+        node.setCushionData(data);
+
+        boolean culled = algorithm.isCulled(node);
+        if (culled) {
+            pass.addCulled(area, node.getNodeCount() - 1);
+        }
+        Paint filling = culled ? algorithm.getBiggestLeaf(node).getFilling()
+                : node.getFilling();
+        if (!(filling instanceof Color)
+                || (((Color) filling).getAlpha() != 255)) {
+            g.setClip(x0, y0, x1 - x0, y1 - y0);
+            if (culled) {
+                algorithm.fillCulledNode(g, node, level, data);
+            } else {
+                algorithm.fillNode(g, node, level);
+            }
+        } else {
+            int pixel = TMPixelWriter.getPixel((Color) filling);
+            int[] box = null;
+            if (algorithm.isFramedComposites() && !culled && !node.isLeaf()) {
+                box = frames.getCoveredBox(node);
+            }
+            pixels.setClip(x0, y0, x1, y1);
+            if (box == null) {
+                pixels.fillRect(area.x, area.y, area.width, area.height,
+                        pixel);
+            } else {
+                // only the frame, the box is painted by the children
+                int right = area.x + area.width;
+                int bottom = area.y + area.height;
+                int boxBottom = box[1] + box[3];
+                pixels.fillRect(area.x, area.y, area.width,
+                        box[1] - area.y, pixel);
+                pixels.fillRect(area.x, boxBottom, area.width,
+                        bottom - boxBottom, pixel);
+                pixels.fillRect(area.x, box[1], box[0] - area.x,
+                        box[3], pixel);
+                pixels.fillRect(box[0] + box[2], box[1],
+                        right - (box[0] + box[2]), box[3], pixel);
+            }
+            pixels.drawRect(area.x, area.y, area.width, area.height,
+                    TMPixelWriter.getPixel(algorithm.getBorderColor()));
+            if (algorithm.isDrawingTitles() && !culled) {
+                g.setClip(x0, y0, x1 - x0, y1 - y0);
+                algorithm.drawTitle(g, node);
+            }
+        }
+
+        if (!node.isLeaf()) {
+            TMNodeModel[] children =
+                    ((TMNodeModelComposite) node).getLayoutOrder();
+            for (int i = 0; i < children.length; i++) {
+                if (pass.thread.isInterrupted()) {
+                    // drawing cancelled by the background renderer
+                    break;
+                }
+                draw(g, pixels, children[i], algorithm.switchAxis(axis),
+                        (level + 1), data, x0, y0, x1, y1, pass);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * TMPixelWriter.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+
+/**
+ * The TMPixelWriter class fills rectangles and draws their outlines
+ * directly in the packed int pixels of a BufferedImage, without going
+ * through a Graphics2D. It writes the same pixels as fillRect() and
+ * drawRect() of Graphics2D would with an opaque Color, clipped to an
+ * axis-aligned clip.
+ * <P>
+ * Only the images of type TYPE_INT_RGB, TYPE_INT_ARGB and TYPE_INT_ARGB_PRE
+ * are written, for which the pixel of an opaque Color is its RGB value.
+ * Taking the pixels of an image prevents Java2D from accelerating it.
+ * <P>
+ * A writer keeps its clip, and is used by one thread only. Several writers
+ * could write in disjoint parts of the same image at once.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMPixelWriter {
+
+    private final int[] pixels; // the pixels of the image
+    private final int   offset; // index of the pixel (0, 0)
+    private final int   stride; // distance between two rows
+    private final int   width;  // the size of the image
+    private final int   height;
+
+    private int clipX0 = 0; // the clip, right and bottom excluded
+    private int clipY0 = 0;
+    private int clipX1 = 0;
+    private int clipY1 = 0;
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor. The image should be accepted by isWritable().
+     *
+     * @param image    the image written
+     */
+    TMPixelWriter(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+        stride = ((SinglePixelPackedSampleModel) raster.getSampleModel())
+                 .getScanlineStride();
+        offset = raster.getDataBuffer().getOffset()
+                 - (raster.getSampleModelTranslateY() * stride)
+                 - raster.getSampleModelTranslateX();
+        width = image.getWidth();
+        height = image.getHeight();
+        setClip(0, 0, width, height);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the pixels of the image could be written
+     * by a TMPixelWriter.
+     *
+     * @param image    the image
+     * @return         <CODE>true</CODE> if the image has packed int pixels
+     */
+    static boolean isWritable(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the pixel written for the given opaque Color.
+     *
+     * @param color    the color
+     * @return         the pixel
+     */
+    static int getPixel(Color color) {
+        return color.getRGB();
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Sets the clip, given by its corners. It is kept inside the image.
+     *
+     * @param x0    the left of the clip
+     * @param y0    the top of the clip
+     * @param x1    the right of the clip, excluded
+     * @param y1    the bottom of the clip, excluded
+     */
+    void setClip(int x0,
+                 int y0,
+                 int x1,
+                 int y1) {
+        clipX0 = Math.max(0, x0);
+        clipY0 = Math.max(0, y0);
+        clipX1 = Math.min(width, x1);
+        clipY1 = Math.min(height, y1);
+    }
+
+    /**
+     * Fills the rectangle, as Graphics2D.fillRect() does.
+     *
+     * @param x        the x of the rectangle
+     * @param y        the y of the rectangle
+     * @param w        the width of the rectangle
+     * @param h        the height of the rectangle
+     * @param pixel    the pixel written
+     */
+    void fillRect(int x,
+                  int y,
+                  int w,
+                  int h,
+                  int pixel) {
+        if ((w <= 0) || (h <= 0)) {
+            return;
+        }
+        int left = Math.max(x, clipX0);
+        int top = Math.max(y, clipY0);
+        int right = Math.min(x + w, clipX1);
+        int bottom = Math.min(y + h, clipY1);
+        if ((left >= right) || (top >= bottom)) {
+            return;
+        }
+        int start = offset + (top * stride) + left;
+        int length = right - left;
+        for (int row = top; row < bottom; row++) {
+            Arrays.fill(pixels, start, start + length, pixel);
+            start += stride;
+        }
+    }
+
+    /**
+     * Draws the outline of the rectangle, as Graphics2D.drawRect() does :
+     * the outline covers w + 1 by h + 1 pixels.
+     *
+     * @param x        the x of the rectangle
+     * @param y        the y of the rectangle
+     * @param w        the width of the rectangle
+     * @param h        the height of the rectangle
+     * @param pixel    the pixel written
+     */
+    void drawRect(int x,
+                  int y,
+                  int w,
+                  int h,
+                  int pixel) {
+        if ((w < 0) || (h < 0)) {
+            return;
+        }
+        if ((w == 0) || (h == 0)) {
+            fillRect(x, y, w + 1, h + 1, pixel);
+            return;
+        }
+        fillRect(x, y, w, 1, pixel);
+        fillRect(x + w, y, 1, h, pixel);
+        fillRect(x + 1, y + h, w, 1, pixel);
+        fillRect(x, y + 1, 1, h, pixel);
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * TMRasterCache.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+/**
+ * The TMRasterCache class keeps the images of the subtrees drawn by a
+ * TMAlgorithm, so that a subtree unchanged since its last drawing is copied
+ * instead of being drawn again node by node.
+ * <P>
+ * An image is kept for a composite node, at the area it was drawn at, and
+ * is used as long as the node keeps that area and nothing of its subtree is
+ * drawn differently. The images of the subtrees touched by a new layout are
+ * dropped by the algorithm, as all of them on a change of its parameters.
+ * <P>
+ * Only the nodes of at least getMinArea() pixels are kept. The cache is
+ * bounded in memory; when the bound is reached, the least recently used
+ * images are evicted first. An image takes 4 bytes per pixel.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMRasterCache {
+
+    private static final int PIXEL_BYTES = 4; // per pixel of an image
+
+    private int  minArea  = 128 * 128; // min area of a node kept
+    private long maxBytes = 64L * 1024 * 1024; // max memory of the images
+
+    private LinkedHashMap<TMNodeModel, Entry> entries = null; // access order
+    private long bytes  = 0; // memory of the images kept
+    private long hits   = 0; // number of images used
+    private long misses = 0; // number of images looked for and not found
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     */
+    TMRasterCache() {
+        entries = new LinkedHashMap<TMNodeModel, Entry>(16, 0.75f, true);
+    }
+
+
+    /* --- Configuration --- */
+
+    /**
+     * Sets the minimum area, in pixels, of a node whose image is kept.
+     *
+     * @param min    the minimum area in pixels
+     */
+    public synchronized void setMinArea(int min) {
+        minArea = Math.max(1, min);
+    }
+
+    /**
+     * Returns the minimum area, in pixels, of a node whose image is kept.
+     *
+     * @return    the minimum area in pixels
+     */
+    public synchronized int getMinArea() {
+        return minArea;
+    }
+
+    /**
+     * Sets the maximum memory, in bytes, taken by the images kept.
+     *
+     * @param max    the maximum memory in bytes
+     */
+    public synchronized void setMaxBytes(long max) {
+        maxBytes = Math.max(0, max);
+        evict();
+    }
+
+    /**
+     * Returns the maximum memory, in bytes, taken by the images kept.
+     *
+     * @return    the maximum memory in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Forgets every image kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+
+    /* --- Statistics --- */
+
+    /**
+     * Returns the number of images kept.
+     *
+     * @return    the number of images
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the memory, in bytes, taken by the images kept.
+     *
+     * @return    the memory in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of subtrees copied from their kept image.
+     *
+     * @return    the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of images looked for and not found, or out of date.
+     *
+     * @return    the number of misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+
+    /* --- Access --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the image of a node of the given area
+     * could be kept.
+     *
+     * @param area    the area of the node
+     * @return        <CODE>true</CODE> if the node could be kept
+     */
+    synchronized boolean accepts(Rectangle area) {
+        long pixels = (long) (area.width + 1) * (area.height + 1);
+        return (pixels >= minArea) && ((pixels * PIXEL_BYTES) <= maxBytes);
+    }
+
+    /**
+     * Returns the image kept for the node, if it is up to date with the
+     * given area and drawing stamp of the node. An out of date image is
+     * dropped.
+     *
+     * @param node     the node
+     * @param area     the area of the node
+     * @param stamp    the drawing stamp of the node
+     * @return         the image, or <CODE>null</CODE> if none is up to date
+     */
+    synchronized Entry get(TMNodeModel node,
+                           Rectangle   area,
+                           int         stamp) {
+        Entry entry = entries.get(node);
+        if ((entry != null) && (! entry.matches(area, stamp))) {
+            entries.remove(node);
+            bytes -= entry.bytes;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Keeps the image of a node.
+     *
+     * @param node     the node
+     * @param entry    the image of the node
+     */
+    synchronized void put(TMNodeModel node,
+                          Entry       entry) {
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        Entry old = entries.put(node, entry);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += entry.bytes;
+        evict();
+    }
+
+    /**
+     * Drops the images of the nodes touching the given area.
+     *
+     * @param damage    the area drawn differently
+     */
+    synchronized void invalidate(Rectangle damage) {
+        for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+            Entry entry = i.next();
+            if (damage.intersects(entry.x, entry.y,
+                                  entry.image.getWidth(),
+                                  entry.image.getHeight())) {
+                bytes -= entry.bytes;
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used images until the bound is met.
+     */
+    private void evict() {
+        Iterator<Entry> i = entries.values().iterator();
+        while ((bytes > maxBytes) && i.hasNext()) {
+            bytes -= i.next().bytes;
+            i.remove();
+        }
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The Entry class keeps the image of a subtree, one pixel wider and
+     * higher than the area of its root to include its border. The pixels
+     * not drawn by the subtree are transparent.
+     */
+    static class Entry {
+
+        final BufferedImage image;  // the image of the subtree
+        final int           x;      // the area of the root
+        final int           y;
+        final int           width;
+        final int           height;
+        final int           stamp;  // the drawing stamp of the root
+        final int           culled; // the number of culled nodes drawn
+        final long          bytes;  // the memory of the image
+
+        /**
+         * Constructor.
+         *
+         * @param image     the image of the subtree
+         * @param area      the area of the root
+         * @param stamp     the drawing stamp of the root
+         * @param culled    the number of culled nodes drawn
+         */
+        Entry(BufferedImage image,
+              Rectangle     area,
+              int           stamp,
+              int           culled) {
+            this.image = image;
+            this.x = area.x;
+            this.y = area.y;
+            this.width = area.width;
+            this.height = area.height;
+            this.stamp = stamp;
+            this.culled = culled;
+            this.bytes = (long) image.getWidth() * image.getHeight()
+                         * PIXEL_BYTES;
+        }
+
+        /**
+         * Returns <CODE>true</CODE> if the image is up to date with the
+         * given area and drawing stamp.
+         *
+         * @param area     the area of the root
+         * @param stamp    the drawing stamp of the root
+         * @return         <CODE>true</CODE> if the image could be used
+         */
+        boolean matches(Rectangle area,
+                        int       stamp) {
+            return (x == area.x) && (y == area.y)
+                   && (width == area.width) && (height == area.height)
+                   && (this.stamp == stamp);
+        }
+    }
+
+}
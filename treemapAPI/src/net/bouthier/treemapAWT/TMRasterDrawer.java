@@ -0,0 +1,168 @@
+/*
+ * TMRasterDrawer.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+
+/**
+ * The TMRasterDrawer class draws the subtrees of a TMAlgorithm from the
+ * images kept in its TMRasterCache, and drops the images of the subtrees
+ * touched by the layouts computed since the last drawing.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMRasterDrawer {
+
+    private final TMAlgorithm   algorithm; // the algorithm drawing
+    private final TMRasterCache cache;     // images of the subtrees
+    private Rectangle damage = new Rectangle(); // areas moved since
+                                                // last drawing
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm drawing
+     */
+    TMRasterDrawer(TMAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        this.cache = new TMRasterCache();
+    }
+
+
+    /* --- Cache --- */
+
+    /**
+     * Returns the raster cache.
+     *
+     * @return    the raster cache
+     */
+    TMRasterCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Adds an area moved by a layout, whose images are dropped before the
+     * next drawing.
+     *
+     * @param x    the x coord
+     * @param y    the y coord
+     * @param w    the width
+     * @param h    the height
+     */
+    void addDamage(int x,
+                   int y,
+                   int w,
+                   int h) {
+        TMAlgorithm.addArea(damage, x, y, w, h);
+    }
+
+    /**
+     * Drops the images of the subtrees touched by the layouts computed since
+     * the last drawing.
+     */
+    void invalidate() {
+        if (!damage.isEmpty()) {
+            cache.invalidate(damage);
+        }
+        damage = new Rectangle();
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the composite node could be drawn from
+     * the cache.
+     *
+     * @param area    the area of the node
+     * @return        <CODE>true</CODE> if the image of the node could be kept
+     */
+    boolean accepts(Rectangle area) {
+        return cache.accepts(area);
+    }
+
+    /**
+     * Draws the subtree of a composite node by copying its image from the
+     * cache. An image out of date is drawn again, with the whole subtree,
+     * if the node is entirely in the clip; otherwise the subtree is left to
+     * be drawn directly.
+     *
+     * @param g        the graphic context
+     * @param node     the composite node to draw
+     * @param axis     the axis of separation
+     * @param level    the level of deep
+     * @param data     the cushion data of the node
+     * @param clip     the clip of the graphic context
+     * @param pass     the drawing pass
+     * @return         <CODE>false</CODE> if the subtree should be drawn
+     *                 directly
+     */
+    boolean draw(Graphics2D    g,
+                 TMNodeModel   node,
+                 short         axis,
+                 int           level,
+                 TMCushionData data,
+                 Rectangle     clip,
+                 TMDrawPass    pass) {
+        Rectangle area = node.getArea();
+        int stamp = node.getDrawingStamp();
+        TMRasterCache.Entry entry = cache.get(node, area, stamp);
+        if (entry == null) {
+            if (!clip.contains(area.x, area.y,
+                    area.width + 1, area.height + 1)) {
+                return false;
+            }
+            BufferedImage image = new BufferedImage(area.width + 1,
+                    area.height + 1, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D ig = image.createGraphics();
+            ig.setRenderingHints(g.getRenderingHints());
+            ig.translate(-area.x, -area.y);
+            ig.setClip(area.x, area.y, area.width + 1, area.height + 1);
+            TMDrawPass subtreePass = new TMDrawPass(pass.thread, null);
+            algorithm.drawSubtree(ig, node, axis, level, data, subtreePass);
+            ig.dispose();
+            if (pass.thread.isInterrupted()) {
+                // drawing cancelled, the image could be incomplete
+                return true;
+            }
+            entry = new TMRasterCache.Entry(image, area, stamp,
+                    subtreePass.culled);
+            cache.put(node, entry);
+        }
+        pass.addCulled(area, entry.culled);
+        g.drawImage(entry.image, area.x, area.y, null);
+        return true;
+    }
+
+}
@@ -299,6 +299,23 @@ class TMStatusView
         }
     }
 
+    /**
+     * The Silent class implements a status without view, for models built
+     * without TMView : nothing is sent to the event dispatch thread.
+     */
+    static class Silent
+        extends TMStatusView {
+
+        void setStatus(TMStatusDisplay status) {
+        }
+
+        void unsetStatus() {
+        }
+
+        void increment() {
+        }
+    }
+
     /**
      * TMSVIncrement class implements an increment message.
      */
@@ -0,0 +1,876 @@
+/*
+ * TMSvgExporter.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.TexturePaint;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * The TMSvgExporter class writes a treemap as a SVG document without any
+ * view. As the TMOffscreenRenderer, it is meant for batch jobs running with
+ * <CODE>java.awt.headless=true</CODE>, and the areas are the same as the
+ * ones of a TMView of the same size using the same TMAlgorithm.
+ * <P>
+ * The tree of TMNode is laid out while it is walked, and its elements are
+ * streamed to the output : no model of the tree and no document are built
+ * in memory. Each node is written as one rectangle with its border,
+ * followed by its title and by its children.
+ * The fillings that are not plain colors, as the textures of
+ * TMPatternFactory, are written once in <CODE>&lt;defs&gt;</CODE> and
+ * shared by all the nodes using them. Past MAX_DEFS different fillings,
+ * the new ones are written as the plain color standing for them. The
+ * nodes smaller than the minimum
+ * size are not written, nor laid out, nor their children, which keeps the
+ * size of the document and of the memory used bounded by the size of the
+ * drawing rather than by the number of nodes. Only the sizes of the nodes
+ * need the whole tree to be walked. The cushions are not exported : the
+ * drawing is the flat one.
+ * <P>
+ * An exporter can be used by many threads at once. The given TMAlgorithm
+ * is not used to lay out : each export uses a copy with the same
+ * parameters, as the TMOffscreenRenderer does.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMSvgExporter {
+
+    static final int MAX_DEFS = 4096; // paints defined by an export
+
+    private final Color background;  // the color of the background
+    private volatile int minimumSize = 1; // minimum size of written nodes
+    private volatile boolean titles  = true; // write the titles
+
+
+    /* --- Constructors --- */
+
+    /**
+     * Constructor. The background is white.
+     */
+    public TMSvgExporter() {
+        this(Color.white);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param background    the color of the background;
+     *                      could not be <CODE>null</CODE>
+     */
+    public TMSvgExporter(Color background) {
+        if (background == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to export with a null background.");
+        }
+        this.background = background;
+    }
+
+
+    /* --- Settings --- */
+
+    /**
+     * Sets the minimum size, in pixels, of the nodes written. A node whose
+     * width or height is smaller is not written, nor its children : the
+     * filling of its father shows in its place. The default is 1, which
+     * only skips the empty nodes.
+     *
+     * @param size    the minimum width and height of a written node
+     */
+    public void setMinimumSize(int size) {
+        minimumSize = Math.max(0, size);
+    }
+
+    /**
+     * Returns the minimum size of the nodes written.
+     *
+     * @return    the minimum width and height of a written node
+     */
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * Sets if the titles of the nodes are written. The titles are cut to
+     * the width of their node, and not written in the nodes too small to
+     * show their first character. Default is <CODE>true</CODE>.
+     *
+     * @param writing    <CODE>true</CODE> to write the titles
+     */
+    public void setWritingTitles(boolean writing) {
+        titles = writing;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the titles of the nodes are written.
+     *
+     * @return    <CODE>true</CODE> if the titles are written
+     */
+    public boolean isWritingTitles() {
+        return titles;
+    }
+
+
+    /* --- Exporting --- */
+
+    /**
+     * Lays out the treemap on an area of the given size, and writes it as
+     * a SVG document to the given stream, in UTF-8. The stream is flushed
+     * but not closed.
+     *
+     * @param treeMap      the treemap to export;
+     *                     could not be <CODE>null</CODE>
+     * @param cSize        the object computing the size;
+     *                     could not be <CODE>null</CODE>
+     * @param cDraw        the object computing the drawing;
+     *                     could not be <CODE>null</CODE>
+     * @param algorithm    the algorithm used to lay out the treemap;
+     *                     could not be <CODE>null</CODE>
+     * @param width        the width of the document
+     * @param height       the height of the document
+     * @param out          the stream to write to;
+     *                     could not be <CODE>null</CODE>
+     * @throws IOException if an error occurs while writing
+     * @throws TMExceptionBadTMNodeKind if cSize or cDraw is not compatible
+     *                                  with the root
+     */
+    public void writeSVG(TreeMap       treeMap,
+                         TMComputeSize cSize,
+                         TMComputeDraw cDraw,
+                         TMAlgorithm   algorithm,
+                         int           width,
+                         int           height,
+                         OutputStream  out)
+        throws IOException {
+        if (treeMap == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to export a null treemap.");
+        } else if (cSize == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to export with a null TMComputeSize.");
+        } else if (cDraw == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to export with a null TMComputeDraw.");
+        } else if (algorithm == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to export with a null TMAlgorithm.");
+        } else if (out == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to export to a null stream.");
+        }
+        TMNode root = treeMap.getRoot();
+        if (! cSize.isCompatibleWith(root)) {
+            throw new TMExceptionBadTMNodeKind(cSize, root);
+        }
+        if (! cDraw.isCompatibleWith(root)) {
+            throw new TMExceptionBadTMNodeKind(cDraw, root);
+        }
+
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        Export export = new Export(writer, algorithm.copy(),
+                                   cSize, cDraw);
+        try {
+            export.writeDocument(root, width, height);
+        } finally {
+            export.dispose();
+        }
+        writer.flush();
+    }
+
+
+    /* --- Inner class --- */
+
+    /**
+     * The state of one export : the stream, the sizes of the nodes, the
+     * paints already defined, and the metrics of the titles.
+     */
+    private class Export {
+
+        private final Writer        out;       // the stream written
+        private final TMAlgorithm   algorithm; // the algorithm of the layout
+        private final TMComputeSize cSize;     // the object computing size
+        private final TMComputeDraw cDraw;     // the object computing drawing
+        private final int           minSize;   // minimum size of the nodes
+        private final int           detail;    // level of detail
+        private final boolean       titles;    // write the titles
+        private final Adapter       adapter = new Adapter(); // of the node
+
+        // sizes of the composite nodes big enough to be written
+        private final Map<TMNode, Float> sizes =
+            new IdentityHashMap<TMNode, Float>();
+        private float minCached = 0.0f; // min size of a kept composite
+
+        // ids of the paints already defined, by value of the paint
+        private final Map<List<Object>, String> defs =
+            new HashMap<List<Object>, String>();
+
+        private Graphics2D   metricsGraphics = null; // for the titles
+        private TMTitleCache titleCache      = null; // widths of the titles
+        private FontMetrics  metrics         = null; // metrics of the font
+
+        /**
+         * Constructor.
+         *
+         * @param out          the stream to write to
+         * @param algorithm    the algorithm of the layout, used by this
+         *                     export only
+         * @param cSize        the object computing the size
+         * @param cDraw        the object computing the drawing
+         */
+        Export(Writer        out,
+               TMAlgorithm   algorithm,
+               TMComputeSize cSize,
+               TMComputeDraw cDraw) {
+            this.out = out;
+            this.algorithm = algorithm;
+            this.cSize = cSize;
+            this.cDraw = cDraw;
+            this.minSize = minimumSize;
+            this.detail = algorithm.getDetailThreshold();
+            this.titles = TMSvgExporter.this.titles;
+            if (titles) {
+                Font font = new Font("Dialog", Font.PLAIN, 10);
+                BufferedImage image = new BufferedImage(1, 1,
+                                          BufferedImage.TYPE_INT_RGB);
+                metricsGraphics = image.createGraphics();
+                metricsGraphics.setFont(font);
+                titleCache = new TMTitleCache(font);
+                metrics = titleCache.getMetrics(metricsGraphics);
+            }
+        }
+
+        /**
+         * Releases the graphic context used for the metrics.
+         */
+        void dispose() {
+            if (metricsGraphics != null) {
+                metricsGraphics.dispose();
+            }
+        }
+
+        /**
+         * Writes the whole document.
+         *
+         * @param root      the root of the tree
+         * @param width     the width of the document
+         * @param height    the height of the document
+         * @throws IOException if an error occurs while writing
+         */
+        void writeDocument(TMNode root, int width, int height)
+            throws IOException {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<svg xmlns=\"http://www.w3.org/2000/svg\""
+                      + " xmlns:xlink=\"http://www.w3.org/1999/xlink\"");
+            out.write(" width=\"" + width + "\" height=\"" + height + "\"");
+            out.write(" viewBox=\"0 0 " + width + " " + height + "\">\n");
+            // the borders are the strokes of the rectangles of the nodes
+            out.write("<style>g rect{stroke:#000;stroke-width:1;"
+                      + "shape-rendering:crispEdges}"
+                      + "text{font-family:sans-serif;font-size:10px}"
+                      + "</style>\n");
+            out.write("<rect width=\"" + width + "\" height=\"" + height
+                      + "\"");
+            writeFill(background);
+            out.write("/>\n<g>\n");
+
+            // the composites not much smaller than the minimum size keep
+            // their size, the others are walked again if ever needed
+            float total = walkSize(root);
+            float side = Math.max(minSize, 1) / 2.0f;
+            minCached = total * side * side
+                / Math.max(1.0f, (float) width * (float) height);
+            sizes.clear();
+            // same area as the root of a TMView without border
+            writeNode(root, getSize(root), 0, 0, width - 1, height - 1, 0);
+            out.write("</g>\n</svg>\n");
+        }
+
+        /**
+         * Writes the node, its title and its children, laid out in the
+         * given area, in the drawing order of the algorithm.
+         *
+         * @param node     the node to write
+         * @param size     the size of the node
+         * @param x        the x of the area of the node
+         * @param y        the y of the area of the node
+         * @param w        the width of the area of the node
+         * @param h        the height of the area of the node
+         * @param depth    the depth of the node
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeNode(TMNode node,
+                               float  size,
+                               int    x,
+                               int    y,
+                               int    w,
+                               int    h,
+                               int    depth)
+            throws IOException {
+            if ((w < minSize) || (h < minSize)) {
+                return; // too small, the father shows in its place
+            }
+            boolean culled = !node.isLeaf()
+                && (detail != 0) && ((w < detail) || (h < detail));
+            if (culled) {
+                setBiggestLeaf(node, size);
+            } else {
+                adapter.set(node, size);
+            }
+            Paint filling = cDraw.getFilling(adapter);
+            String def = define(filling);
+
+            // shifted by half a pixel, the stroke covers the same pixels
+            // as Graphics.drawRect()
+            out.write("<rect x=\"");
+            writeHalf(x);
+            out.write("\" y=\"");
+            writeHalf(y);
+            out.write("\" width=\"");
+            out.write(Integer.toString(w));
+            out.write("\" height=\"");
+            out.write(Integer.toString(h));
+            out.write('"');
+            if (def != null) {
+                out.write(" fill=\"url(#" + def + ")\"");
+            } else {
+                writeFill(filling);
+            }
+            out.write("/>\n");
+
+            if (titles && !culled) {
+                writeTitle(node, size, x, y, w, h);
+            }
+            if (!culled && !node.isLeaf() && (size != 0.0f)) {
+                // the children of a node of size 0 are not laid out
+                writeChildren(node, size, x, y, w, h, depth);
+            }
+        }
+
+        /**
+         * Lays out the children of the composite node in its area, as
+         * TMLayout does, and writes them.
+         *
+         * @param node     the composite node
+         * @param size     the size of the node; not 0
+         * @param x        the x of the area of the node
+         * @param y        the y of the area of the node
+         * @param w        the width of the area of the node
+         * @param h        the height of the area of the node
+         * @param depth    the depth of the node
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeChildren(TMNode node,
+                                   float  size,
+                                   int    x,
+                                   int    y,
+                                   int    w,
+                                   int    h,
+                                   int    depth)
+            throws IOException {
+            List<TMNode> list = new ArrayList<TMNode>();
+            for (Enumeration<?> e = node.children(); e.hasMoreElements(); ) {
+                list.add((TMNode) e.nextElement());
+            }
+            int n = list.size();
+            if (n == 0) {
+                return;
+            }
+            final float[] childSizes = new float[n];
+            for (int i = 0; i < n; i++) {
+                childSizes[i] = getSize(list.get(i));
+            }
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            if (algorithm.isOrderedBySize()) {
+                // by decreasing size, stable as in TMNodeModelComposite
+                Arrays.sort(order, new Comparator<Integer>() {
+                    public int compare(Integer a, Integer b) {
+                        float sa = childSizes[a];
+                        float sb = childSizes[b];
+                        return (sa < sb) ? 1 : ((sb < sa) ? -1 : 0);
+                    }
+                });
+            }
+            float[] ordered = new float[n];
+            for (int i = 0; i < n; i++) {
+                ordered[i] = childSizes[order[i]];
+            }
+
+            int[] box = {x, y, w, h};
+            algorithm.computeChildrenBox(box);
+            short axis = ((depth % 2) == 0) ? TMAlgorithm.HORIZONTAL
+                                            : TMAlgorithm.VERTICAL;
+            int[] areas = new int[n * 4];
+            algorithm.computeChildrenAreas(ordered, n, size, box, axis, areas);
+            for (int i = 0; i < n; i++) {
+                writeNode(list.get(order[i]), ordered[i],
+                          areas[i * 4], areas[(i * 4) + 1],
+                          areas[(i * 4) + 2], areas[(i * 4) + 3],
+                          depth + 1);
+            }
+        }
+
+        /**
+         * Sets the adapter to the leaf reached by following the biggest
+         * child from the node, as TMAlgorithm.getBiggestLeaf() does, or to
+         * the node itself if it has no child.
+         *
+         * @param node    the culled node
+         * @param size    the size of the node
+         */
+        private void setBiggestLeaf(TMNode node, float size) {
+            while (!node.isLeaf()) {
+                TMNode biggest = null;
+                float biggestSize = 0.0f;
+                for (Enumeration<?> e = node.children();
+                     e.hasMoreElements(); ) {
+                    TMNode child = (TMNode) e.nextElement();
+                    float childSize = getSize(child);
+                    if ((biggest == null) || (biggestSize < childSize)) {
+                        biggest = child;
+                        biggestSize = childSize;
+                    }
+                }
+                if (biggest == null) {
+                    break;
+                }
+                node = biggest;
+                size = biggestSize;
+            }
+            adapter.set(node, size);
+        }
+
+        /**
+         * Returns the size of the node : the size given by the TMComputeSize
+         * for a leaf, the sum of the sizes of its children for a composite.
+         *
+         * @param node    the node
+         * @return        the size of the node
+         */
+        private float getSize(TMNode node) {
+            if (node.isLeaf()) {
+                return cSize.getSize(node);
+            }
+            Float size = sizes.get(node);
+            if (size != null) {
+                return size.floatValue();
+            }
+            return walkSize(node);
+        }
+
+        /**
+         * Computes the size of the node by walking its subtree, and keeps
+         * the sizes of the composites big enough to be written.
+         *
+         * @param node    the node
+         * @return        the size of the node
+         */
+        private float walkSize(TMNode node) {
+            if (node.isLeaf()) {
+                return cSize.getSize(node);
+            }
+            // summed in the natural order of the children, as done by
+            // TMNodeModelComposite
+            float size = 0.0f;
+            for (Enumeration<?> e = node.children(); e.hasMoreElements(); ) {
+                size += walkSize((TMNode) e.nextElement());
+            }
+            if ((size >= minCached) && (size > 0.0f)) {
+                sizes.put(node, size);
+            }
+            return size;
+        }
+
+        /**
+         * Writes the title of the node in its upper left corner, cut to
+         * the width of the node, as TMAlgorithm.drawTitle() does.
+         *
+         * @param node    the node whose title is written
+         * @param size    the size of the node
+         * @param x       the x of the area of the node
+         * @param y       the y of the area of the node
+         * @param w       the width of the area of the node
+         * @param h       the height of the area of the node
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeTitle(TMNode node,
+                                float  size,
+                                int    x,
+                                int    y,
+                                int    w,
+                                int    h)
+            throws IOException {
+            if ((h < metrics.getAscent()) || (w <= 1)) {
+                return; // no room for any text, the title is not computed
+            }
+            adapter.set(node, size);
+            String title = cDraw.getTitle(adapter);
+            if ((title == null) || (title.length() == 0)) {
+                return;
+            }
+            if (w < metrics.charWidth(title.charAt(0))) {
+                return; // not wide enough
+            }
+            int n = titleCache.get(title).fittingCount(w - 1);
+            if ((n > 0) && (n < title.length())
+                    && Character.isHighSurrogate(title.charAt(n - 1))) {
+                n--; // does not cut a character in two
+            }
+            if (n == 0) {
+                return; // not even one character
+            }
+            out.write("<text x=\"" + (x + 1) + "\" y=\""
+                      + (y + 10) + "\"");
+            Paint color = cDraw.getTitleColor(adapter);
+            if (!(color instanceof Color)) {
+                color = Color.black;
+            }
+            writeFill(color);
+            out.write('>');
+            writeEscaped(title, n);
+            out.write("</text>\n");
+        }
+
+        /**
+         * Returns the id of the definition of the given paint, writing it
+         * if it is not already written. Returns <CODE>null</CODE> for the
+         * plain colors, which are written in place, and for the new paints
+         * once MAX_DEFS paints are defined, which are written as plain
+         * colors : the definitions written stay referenced by the nodes
+         * already written, so that none is forgotten.
+         *
+         * @param paint    the paint
+         * @return         the id of its definition; <CODE>null</CODE>
+         *                 for a paint written as a plain color
+         * @throws IOException if an error occurs while writing
+         */
+        private String define(Paint paint)
+            throws IOException {
+            if (!(paint instanceof TexturePaint)
+                    && !(paint instanceof GradientPaint)) {
+                return null;
+            }
+            // the paints are often created again for each node
+            List<Object> key;
+            if (paint instanceof TexturePaint) {
+                TexturePaint texture = (TexturePaint) paint;
+                key = Arrays.<Object>asList(texture.getImage(),
+                                            texture.getAnchorRect());
+            } else {
+                GradientPaint gradient = (GradientPaint) paint;
+                key = Arrays.<Object>asList(gradient.getPoint1(),
+                                            gradient.getPoint2(),
+                                            gradient.getColor1(),
+                                            gradient.getColor2(),
+                                            gradient.isCyclic());
+            }
+            String id = defs.get(key);
+            if (id != null) {
+                return id;
+            }
+            if (defs.size() >= MAX_DEFS) {
+                return null; // too many different paints
+            }
+            id = "p" + defs.size();
+            defs.put(key, id);
+
+            out.write("<defs>");
+            if (paint instanceof TexturePaint) {
+                TexturePaint texture = (TexturePaint) paint;
+                Rectangle2D anchor = texture.getAnchorRect();
+                out.write("<pattern id=\"" + id + "\""
+                          + " patternUnits=\"userSpaceOnUse\" x=\""
+                          + format(anchor.getX()) + "\" y=\""
+                          + format(anchor.getY()) + "\" width=\""
+                          + format(anchor.getWidth()) + "\" height=\""
+                          + format(anchor.getHeight()) + "\">");
+                out.write("<image width=\"" + format(anchor.getWidth())
+                          + "\" height=\"" + format(anchor.getHeight())
+                          + "\" preserveAspectRatio=\"none\""
+                          + " xlink:href=\"data:image/png;base64,");
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(texture.getImage(), "png", png);
+                out.write(Base64.getEncoder().encodeToString(
+                              png.toByteArray()));
+                out.write("\"/></pattern>");
+            } else {
+                GradientPaint gradient = (GradientPaint) paint;
+                Point2D p1 = gradient.getPoint1();
+                Point2D p2 = gradient.getPoint2();
+                // a cyclic gradient goes back and forth between its colors
+                out.write("<linearGradient id=\"" + id + "\""
+                          + " gradientUnits=\"userSpaceOnUse\" x1=\""
+                          + format(p1.getX()) + "\" y1=\""
+                          + format(p1.getY()) + "\" x2=\""
+                          + format(p2.getX()) + "\" y2=\""
+                          + format(p2.getY()) + "\" spreadMethod=\""
+                          + (gradient.isCyclic() ? "reflect" : "pad")
+                          + "\">");
+                writeStop("0", gradient.getColor1());
+                writeStop("1", gradient.getColor2());
+                out.write("</linearGradient>");
+            }
+            out.write("</defs>\n");
+            return id;
+        }
+
+        /**
+         * Writes a stop of a gradient.
+         *
+         * @param offset    the offset of the stop
+         * @param color     the color of the stop
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeStop(String offset, Color color)
+            throws IOException {
+            out.write("<stop offset=\"" + offset + "\" stop-color=\"");
+            writeColor(color);
+            out.write('"');
+            if (color.getAlpha() != 255) {
+                out.write(" stop-opacity=\""
+                          + format(color.getAlpha() / 255.0) + "\"");
+            }
+            out.write("/>");
+        }
+
+        /**
+         * Writes the fill attributes of a plain filling. The paints other
+         * than colors are filled with the plain color standing for them.
+         *
+         * @param paint    the filling
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeFill(Paint paint)
+            throws IOException {
+            Color color = plainColor(paint);
+            if (color.getAlpha() == 0) {
+                out.write(" fill=\"none\"");
+                return;
+            }
+            out.write(" fill=\"");
+            writeColor(color);
+            out.write('"');
+            if (color.getAlpha() != 255) {
+                out.write(" fill-opacity=\""
+                          + format(color.getAlpha() / 255.0) + "\"");
+            }
+        }
+
+        /**
+         * Returns the plain color standing for a filling : the color itself,
+         * the middle color of a gradient, the average color of a texture,
+         * and white for the other paints, as for the cushions.
+         *
+         * @param paint    the filling
+         * @return         the plain color
+         */
+        private Color plainColor(Paint paint) {
+            if (paint instanceof Color) {
+                return (Color) paint;
+            } else if (paint instanceof GradientPaint) {
+                GradientPaint gradient = (GradientPaint) paint;
+                return mix(new int[] {gradient.getColor1().getRGB(),
+                                      gradient.getColor2().getRGB()});
+            } else if (paint instanceof TexturePaint) {
+                BufferedImage image = ((TexturePaint) paint).getImage();
+                int w = image.getWidth();
+                int h = image.getHeight();
+                return mix(image.getRGB(0, 0, w, h, null, 0, w));
+            }
+            return Color.white;
+        }
+
+        /**
+         * Returns the average of the given colors.
+         *
+         * @param argb    the colors, in the default RGB color model
+         * @return        the average color
+         */
+        private Color mix(int[] argb) {
+            long[] sums = new long[4];
+            for (int i = 0; i < argb.length; i++) {
+                for (int c = 0; c < 4; c++) {
+                    sums[c] += (argb[i] >>> (c * 8)) & 0xff;
+                }
+            }
+            int n = Math.max(1, argb.length);
+            return new Color((int) (sums[2] / n), (int) (sums[1] / n),
+                             (int) (sums[0] / n), (int) (sums[3] / n));
+        }
+
+        /**
+         * Writes a color as #rrggbb.
+         *
+         * @param color    the color
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeColor(Color color)
+            throws IOException {
+            int rgb = color.getRGB();
+            out.write('#');
+            for (int shift = 20; shift >= 0; shift -= 4) {
+                out.write(Character.forDigit((rgb >> shift) & 0xf, 16));
+            }
+        }
+
+        /**
+         * Writes the given coordinate plus half a pixel.
+         *
+         * @param v    the coordinate
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeHalf(int v)
+            throws IOException {
+            if (v < 0) {
+                out.write('-');
+                v = -v - 1; // v + 0.5 = -((-v - 1) + 0.5)
+            }
+            out.write(Integer.toString(v));
+            out.write(".5");
+        }
+
+        /**
+         * Writes the first characters of the text, escaped for XML. The
+         * control characters, not allowed in XML, are dropped.
+         *
+         * @param text      the text
+         * @param length    the number of characters written
+         * @throws IOException if an error occurs while writing
+         */
+        private void writeEscaped(String text, int length)
+            throws IOException {
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                default:
+                    if ((c >= 0x20) && (c != 0xfffe) && (c != 0xffff)) {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Formats a number, without decimals when it is an integer.
+         *
+         * @param v    the number
+         * @return     the formatted number
+         */
+        private String format(double v) {
+            if ((v == Math.rint(v)) && (Math.abs(v) < 1e9)) {
+                return Long.toString((long) v);
+            }
+            return Float.toString((float) v);
+        }
+
+    }
+
+
+    /**
+     * The adapter of the node being written, given to the TMComputeDraw.
+     */
+    private static class Adapter
+        extends TMNodeAdapter {
+
+        private TMNode node = null; // the node
+        private float  size = 0.0f; // the size of the node
+
+        /**
+         * Sets the node adapted, and forgets the user data of the previous
+         * one.
+         *
+         * @param node    the node
+         * @param size    the size of the node
+         */
+        void set(TMNode node, float size) {
+            if (node != this.node) {
+                setUserData(null);
+            }
+            this.node = node;
+            this.size = size;
+        }
+
+        /**
+         * Returns the node.
+         *
+         * @return    the node
+         */
+        public TMNode getNode() {
+            return node;
+        }
+
+        /**
+         * Returns the size of the node.
+         *
+         * @return    the size of the node
+         */
+        public float getSize() {
+            return size;
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * TMThreadExpand.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.util.List;
+
+
+/**
+ * The TMThreadExpand implements a thread that builds the children of the
+ * folded TMNodeModels laid out big enough, in a lazy model. When the memory
+ * is running low, the nodes not shown are folded first.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMThreadExpand 
+	extends TMThreadModel {
+
+    /**
+     * Constructor.
+     *
+     * @param status         the status view for feedback
+     * @param model          the TMNodeModelRoot 
+     * @param view           the view to update
+     */
+    TMThreadExpand(TMStatusView    status,
+        		   TMNodeModelRoot model,
+        		   TMView 		   view) {
+        super(status, model, view);
+    }
+
+    /**
+     * Expands the nodes.
+     */
+    void task() {
+        if (model.isMemoryLow()) {
+            status.setStatus(new TMSDSimple("Folding hidden nodes..."));
+            model.foldHiddenNodes();
+        }
+
+        status.setStatus(new TMSDSimple("Expanding nodes..."));
+        List<TMNodeModelComposite> nodes = model.takeExpansions();
+        for (TMNodeModelComposite node : nodes) {
+            // the node could have been lost or folded with an ancestor
+            if (model.nodeContaining(node.getNode()) == node) {
+                node.expand();
+            }
+        }
+        status.setStatus(new TMSDSimple("Nodes expanded"));
+    }
+
+    /**
+     * Repaints only the areas of the expanded nodes.
+     */
+    void repaintView() {
+        view.repaintDamage();
+    }
+
+}
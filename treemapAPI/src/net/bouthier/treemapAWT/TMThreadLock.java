@@ -26,29 +26,131 @@
 
 package net.bouthier.treemapAWT;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 
 /**
- * The TMThreadLock class implements a really simple mutex.
+ * The TMThreadLock class implements the lock of the model. The model is only
+ * changed, drawn or read by a thread holding the lock of its root : the
+ * thread updating the model, the event dispatch thread painting the view,
+ * and the background renderer.
+ * <P>
+ * The lock is taken exclusively to change the model or the areas of its
+ * nodes. A drawing which only reads them can share it, so that the event
+ * dispatch thread still reads the tooltips while the background renderer
+ * draws. The event dispatch thread only shares the lock if it is free, and
+ * never waits for it. The background renderer takes the lock as a yielding
+ * holder : a thread waiting for the exclusive lock interrupts it, which
+ * cancels its drawing, instead of waiting for the whole drawing.
+ * <P>
+ * The lock is reentrant : a thread holding it can take it again, and should
+ * release it as many times. A thread sharing the lock should not take it
+ * exclusively.
  *
  * @author Christophe Bouthier [bouthier@loria.fr]
  * @version 2.5
  */
 class TMThreadLock {
 
-    private boolean lock = false;
+    private static final long YIELD_WAIT = 20; // ms between two cancellations
+
+    private final ReentrantReadWriteLock lock =
+        new ReentrantReadWriteLock(true); // the fair lock
+    private final Lock exclusive = lock.writeLock(); // to change the model
+    private final Lock shared    = lock.readLock();  // to read it
+
+    private volatile Thread yielding = null; // holder cancelled when waited
+
+
+    /* --- Exclusive lock --- */
 
     /**
-     * Sets the lock.
+     * Sets the lock, waiting for the thread holding it to release it.
+     * Cancels the drawing of a yielding holder.
      */
-    synchronized void lock() {
-        lock = true;
+    void lock() {
+        if (exclusive.tryLock()) {
+            return;
+        }
+        boolean interrupted = false;
+        boolean locked = false;
+        while (! locked) {
+            Thread holder = yielding;
+            if ((holder != null) && (holder != Thread.currentThread())) {
+                holder.interrupt();
+            }
+            try {
+                locked = exclusive.tryLock(YIELD_WAIT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
      * Unsets the lock.
      */
-    synchronized void unlock() {
-        lock = false;
+    void unlock() {
+        exclusive.unlock();
+    }
+
+
+    /* --- Shared lock --- */
+
+    /**
+     * Shares the lock if it is not held exclusively, without waiting.
+     *
+     * @return    <CODE>true</CODE> if the lock is shared, and should be
+     *            released by unlockShared()
+     */
+    boolean tryLockShared() {
+        return shared.tryLock();
+    }
+
+    /**
+     * Stops sharing the lock.
+     */
+    void unlockShared() {
+        shared.unlock();
+    }
+
+
+    /* --- Yielding holder --- */
+
+    /**
+     * Sets the lock for the current thread as a yielding holder : a thread
+     * waiting for the exclusive lock interrupts it. Waits for the thread
+     * holding it to release it.
+     */
+    void lockYielding() {
+        yielding = Thread.currentThread();
+        exclusive.lock();
+    }
+
+    /**
+     * Keeps the lock of the yielding holder only shared, once it has
+     * finished changing the model.
+     */
+    void shareYielding() {
+        shared.lock();
+        exclusive.unlock();
+    }
+
+    /**
+     * Unsets the lock of the yielding holder, shared or not.
+     */
+    void unlockYielding() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            exclusive.unlock();
+        } else {
+            shared.unlock();
+        }
+        yielding = null;
     }
 
 }
@@ -26,6 +26,8 @@
 
 package net.bouthier.treemapAWT;
 
+import java.util.Enumeration;
+
 
 /**
  * The TMThreadLostChild implements a thread that removes a child to a 
@@ -64,15 +66,31 @@ class TMThreadLostChild
      */
     void task() {
         status.setStatus(new TMSDSimple("Removing a child ..."));
+        model.childLost(parent, child);
         TMNodeModel parentCandidate = model.nodeContaining(parent);
+        if (parentCandidate == null) {
+            // in a lazy model, the parent could be inside a folded node
+            parentCandidate = model.foldedNodeContaining(parent);
+        }
         if (parentCandidate == null) {
             throw new TMExceptionUnknownTMNode(parent);
         } else if (!(parentCandidate instanceof TMNodeModelComposite)) {
             throw new TMExceptionLeafTMNode(parent);
         }
         TMNodeModelComposite parentNode = (TMNodeModelComposite) parentCandidate;
+        if (parentNode.isFolded()) {
+            // the child is not built, only the size changes
+            parentNode.updateSize();
+            model.computeSize();
+            status.setStatus(new TMSDSimple("Child removed"));
+            return;
+        }
 
         TMNodeModel childNode = model.nodeContaining(child);
+        if ((childNode != null) && (childNode.getParent() != parentNode)) {
+            // the child was added again elsewhere before being removed here
+            childNode = childOf(parentNode);
+        }
         if (childNode == null) {
             throw new TMExceptionUnknownTMNode(child);
         }
@@ -83,4 +101,30 @@ class TMThreadLostChild
         status.setStatus(new TMSDSimple("Child removed"));
     }
 
+    /**
+     * Returns the model of the lost child among the children of the parent.
+     *
+     * @param parentNode    the model of the parent
+     * @return              the model of the child; <CODE>null</CODE> if the
+     *                      parent has no model of the child
+     */
+    private TMNodeModel childOf(TMNodeModelComposite parentNode) {
+        for (Enumeration<?> e = parentNode.trueChildren();
+                e.hasMoreElements();) {
+            TMNodeModel childNode = (TMNodeModel) e.nextElement();
+            if (childNode.getNode() == child) {
+                return childNode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Repaints only the areas moved or drawn differently because of the
+     * lost child.
+     */
+    void repaintView() {
+        view.repaintDamage();
+    }
+
 }
@@ -64,14 +64,16 @@ public abstract class TMThreadModel {
     }
 
     /**
-     * Runs the task and the guiTask.
+     * Runs the task, holding the lock of the model, and the guiTask.
      */
     void run() {
-        task();
-
         model.getLock().lock();
-        model.getRoot().clearBuffers();
-        model.getLock().unlock();
+        try {
+            task();
+            model.getTop().clearBuffers();
+        } finally {
+            model.getLock().unlock();
+        }
 
         Runnable guiThread = new Runnable() {
             public void run() {
@@ -88,11 +90,21 @@ public abstract class TMThreadModel {
      * Task to be executed in the gui thread, once task has finished.
      */
     void guiTask() {
-        view.repaint();
+        view.clearZoomImages();
+        repaintView();
         for(TMOnDrawFinished listener : listeners)
             listener.onDrawFinished("TMThreadModel.guiTask");
     }
 
+    /**
+     * Repaints the view once the task has finished. Repaints the whole view
+     * by default, which covers the nodes drawn differently.
+     */
+    void repaintView() {
+        model.takeDrawingDamage();
+        view.repaint();
+    }
+
     /* --- TO BE IMPLEMENTED IN SUBCLASSES --- */
 
     /**
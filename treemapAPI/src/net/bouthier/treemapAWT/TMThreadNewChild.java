@@ -64,7 +64,12 @@ class TMThreadNewChild
      */
     void task() {
         status.setStatus(new TMSDSimple("Adding new child..."));
+        model.subtreeChanged(parent);
         TMNodeModel parentCandidate = model.nodeContaining(parent);
+        if (parentCandidate == null) {
+            // in a lazy model, the parent could be inside a folded node
+            parentCandidate = model.foldedNodeContaining(parent);
+        }
         if (parentCandidate == null) {
             throw new TMExceptionUnknownTMNode(parent);
         } else if (!(parentCandidate instanceof TMNodeModelComposite)) {
@@ -72,6 +77,13 @@ class TMThreadNewChild
         }
         TMNodeModelComposite parentNode =
             (TMNodeModelComposite) parentCandidate;
+        if (parentNode.isFolded()) {
+            // the child will be built with the children of the folded node
+            parentNode.updateSize();
+            model.computeSize();
+            status.setStatus(new TMSDSimple("New child added"));
+            return;
+        }
 
         status.setStatus(new TMSDProgressSimple("Reading", " new TMNodes"));
         TMNodeModel childNode = null;
@@ -88,4 +100,12 @@ class TMThreadNewChild
         status.setStatus(new TMSDSimple("New child added"));
     }
 
+    /**
+     * Repaints only the areas moved or drawn differently because of the
+     * new child.
+     */
+    void repaintView() {
+        view.repaintDamage();
+    }
+
 }
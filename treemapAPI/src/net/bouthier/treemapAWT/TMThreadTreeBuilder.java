@@ -81,6 +81,11 @@ class TMThreadTreeBuilder
         modelAccess.setRoot(resultingRoot);
 
         model.computeSize();
+
+        if (model.isLazy() && !resultingRoot.isLeaf()) {
+            // the root is always shown, its children are built at once
+            ((TMNodeModelComposite) resultingRoot).expand();
+        }
     }
 
     /**
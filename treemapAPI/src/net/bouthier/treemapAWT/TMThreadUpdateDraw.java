@@ -64,12 +64,20 @@ class TMThreadUpdateDraw
     void task() {
         status.setStatus(new TMSDSimple("Updating drawing ..."));
         TMNodeModel dirtyNode = model.nodeContaining(node);
-        if (dirtyNode == null) {
+        if (dirtyNode != null) {
+            dirtyNode.updateDrawing();
+        } else if (model.foldedNodeContaining(node) == null) {
             throw new TMExceptionUnknownTMNode(node);
-        }
-        dirtyNode.updateDrawing();
+        } // else the node is inside a folded node, and not drawn
         status.setStatus(new TMSDSimple("Drawing updated"));
         this.drawFinishedListener.onDrawFinished("TMThreadUpdateDraw.task");
     }
 
+    /**
+     * Repaints only the area of the node, if it is drawn differently.
+     */
+    void repaintView() {
+        view.repaintDamage();
+    }
+
 }
@@ -60,7 +60,12 @@ class TMThreadUpdateSize
      */
     void task() {
         status.setStatus(new TMSDSimple("Updating size..."));
+        model.subtreeChanged(node);
         TMNodeModel dirtyNode = model.nodeContaining(node);
+        if (dirtyNode == null) {
+            // in a lazy model, the node could be inside a folded node
+            dirtyNode = model.foldedNodeContaining(node);
+        }
         if (dirtyNode == null) {
             throw new TMExceptionUnknownTMNode(node);
         }
@@ -70,4 +75,12 @@ class TMThreadUpdateSize
         status.setStatus(new TMSDSimple("Size updated"));
     }
 
+    /**
+     * Repaints only the areas moved or drawn differently because of the
+     * change of size.
+     */
+    void repaintView() {
+        view.repaintDamage();
+    }
+
 }
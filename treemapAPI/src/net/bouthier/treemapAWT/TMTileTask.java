@@ -0,0 +1,137 @@
+/*
+ * TMTileTask.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * The TMTileTask class draws one tile of an image for a TMAlgorithm, in a
+ * ForkJoinPool. The tile is drawn in its own subimage, with only the
+ * subtrees touching it, and counts the culled nodes whose upper left corner
+ * is inside it.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMTileTask
+        extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TMAlgorithm   algorithm; // the algorithm drawing
+    private final BufferedImage image;     // the image drawn
+    private final Rectangle     tile;      // the tile to draw
+    private final TMNodeModel   root;      // the root drawn
+    private final TMDrawPass    pass;      // the state of the drawing
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm    the algorithm drawing
+     * @param image        the image drawn
+     * @param tile         the tile to draw
+     * @param root         the root drawn
+     * @param caller       the thread whose interruption cancels the drawing
+     */
+    TMTileTask(TMAlgorithm   algorithm,
+               BufferedImage image,
+               Rectangle     tile,
+               TMNodeModel   root,
+               Thread        caller) {
+        this.algorithm = algorithm;
+        this.image = image;
+        this.tile = tile;
+        this.root = root;
+        this.pass = new TMDrawPass(caller, tile);
+    }
+
+
+    /* --- Drawing --- */
+
+    /**
+     * Draws the given area of the image in tiles of the given side, in the
+     * common ForkJoinPool, and blocks until they are all drawn. The layout
+     * should already be computed.
+     *
+     * @param algorithm    the algorithm drawing
+     * @param image        the image to draw in
+     * @param clip         the area of the image to draw
+     * @param root         the root drawn
+     * @param tileSize     the side of the tiles, in pixels
+     * @return             the number of culled nodes
+     */
+    static int drawTiles(TMAlgorithm   algorithm,
+                         BufferedImage image,
+                         Rectangle     clip,
+                         TMNodeModel   root,
+                         int           tileSize) {
+        Rectangle bounds = clip.intersection(
+                new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        Thread caller = Thread.currentThread();
+        List<TMTileTask> tiles = new ArrayList<>();
+        for (int y = bounds.y; y < bounds.y + bounds.height; y += tileSize) {
+            for (int x = bounds.x; x < bounds.x + bounds.width; x += tileSize) {
+                Rectangle tile = new Rectangle(x, y, tileSize, tileSize)
+                        .intersection(bounds);
+                tiles.add(new TMTileTask(algorithm, image, tile, root, caller));
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            protected void compute() {
+                invokeAll(tiles);
+            }
+        });
+        int culled = 0;
+        for (TMTileTask task : tiles) {
+            culled += task.pass.culled;
+        }
+        return culled;
+    }
+
+    @Override
+    protected void compute() {
+        Graphics2D g = image.getSubimage(
+                tile.x, tile.y, tile.width, tile.height).createGraphics();
+        g.translate(-tile.x, -tile.y);
+        g.setClip(tile.x, tile.y, tile.width, tile.height);
+        algorithm.drawTile(g, image, tile, root, pass);
+        g.dispose();
+    }
+
+}
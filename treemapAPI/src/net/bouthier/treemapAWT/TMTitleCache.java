@@ -0,0 +1,206 @@
+/*
+ * TMTitleCache.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The TMTitleCache class keeps the measured widths and the glyphs of the
+ * titles drawn with a font, so that a title unchanged between two drawings
+ * is measured and laid out only once. The least recently drawn titles are
+ * forgotten past MAX_TITLES.
+ * <P>
+ * A cache is not synchronized, and is used by one thread only.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMTitleCache {
+
+    private static final int MAX_TITLES = 16384; // max titles kept
+
+    private Font              font    = null; // the font of the titles
+    private FontRenderContext context = null; // the context of the glyphs
+    private FontMetrics       metrics = null; // the metrics of the font
+    private Map<String, Title> titles = null; // Title by String, LRU order
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param font    the font of the titles
+     */
+    TMTitleCache(Font font) {
+        this.font = font;
+        this.titles = new LinkedHashMap<String, Title>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Title> eldest) {
+                return size() > MAX_TITLES;
+            }
+        };
+    }
+
+
+    /* --- Access --- */
+
+    /**
+     * Returns the metrics of the font in the given graphic context. The
+     * titles are laid out again if its font render context has changed.
+     *
+     * @param g    the graphic context of the drawing
+     * @return     the metrics of the font
+     */
+    FontMetrics getMetrics(Graphics2D g) {
+        FontRenderContext current = g.getFontRenderContext();
+        if (! current.equals(context)) {
+            titles.clear();
+            context = current;
+            metrics = g.getFontMetrics(font);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the measured title, in the font render context of the last
+     * call of getMetrics().
+     *
+     * @param title    the title
+     * @return         the measured title
+     */
+    Title get(String title) {
+        Title result = titles.get(title);
+        if (result == null) {
+            result = new Title(title, font, context, metrics);
+            titles.put(title, result);
+        }
+        return result;
+    }
+
+
+    /* --- Inner title --- */
+
+    /**
+     * The Title class keeps the right end of each character of a title, and
+     * its glyphs when they match its characters.
+     */
+    static class Title {
+
+        final float[] ends; // the right end of each character
+
+        private String            text    = null; // the title
+        private Font              font    = null; // the font of the title
+        private FontRenderContext context = null; // the context of the glyphs
+        private GlyphVector       glyphs  = null; // glyphs of the whole title
+        private GlyphVector       cut     = null; // glyphs of the last cut
+        private int               count   = 0;    // characters of the cut
+
+        /**
+         * Constructor. Measures the title with its glyphs, or character by
+         * character when the glyphs do not match the characters.
+         *
+         * @param title      the title
+         * @param font       the font of the title
+         * @param context    the font render context
+         * @param metrics    the metrics of the font
+         */
+        Title(String title,
+              Font   font,
+              FontRenderContext context,
+              FontMetrics metrics) {
+            this.text = title;
+            this.font = font;
+            this.context = context;
+            int n = title.length();
+            ends = new float[n];
+            GlyphVector glyphs = font.createGlyphVector(context, title);
+            if (glyphs.getNumGlyphs() == n) {
+                for (int i = 0; i < n; i++) {
+                    ends[i] = (float) glyphs.getGlyphPosition(i + 1).getX();
+                }
+                this.glyphs = glyphs;
+            } else {
+                for (int i = 0; i < n; i++) {
+                    ends[i] = metrics.stringWidth(title.substring(0, i + 1));
+                }
+            }
+        }
+
+        /**
+         * Returns the number of characters fitting entirely in the given
+         * width, 0 if none does.
+         *
+         * @param width    the available width
+         * @return         the number of fitting characters
+         */
+        int fittingCount(float width) {
+            int low = 0;
+            int high = ends.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] <= width) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the glyphs of the given number of first characters of the
+         * title. The glyphs of the last cut are kept, as a node keeps its
+         * width from one drawing to the next.
+         *
+         * @param n    the number of characters
+         * @return     the glyphs, or <CODE>null</CODE> if the glyphs do not
+         *             match the characters, and the title should be drawn
+         *             as a String
+         */
+        GlyphVector getGlyphs(int n) {
+            if ((glyphs == null) || (n == ends.length)) {
+                return glyphs;
+            }
+            if ((cut == null) || (count != n)) {
+                cut = font.createGlyphVector(context, text.substring(0, n));
+                count = n;
+            }
+            return cut;
+        }
+    }
+
+}
@@ -30,11 +30,16 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Vector;
 
 import javax.swing.BorderFactory;
 import javax.swing.JComponent;
@@ -59,6 +64,15 @@ public class TMView
     /* Used to set the display on a squarified treemap **/
     public static final String SQUARIFIED = "SQUARIFIED";
 
+    /* Used to set the display on an ordered strip treemap **/
+    public static final String STRIP = "STRIP";
+
+    /* Used to set the display on an ordered pivot by middle treemap **/
+    public static final String PIVOT = "PIVOT";
+
+    /* Used to set the display on an ordered split treemap **/
+    public static final String SPLIT = "SPLIT";
+
     private TMNodeModelRoot root = null; // the root model of the treemap
     private TMAlgorithm drawer = null; // the drawing algorithm
     private Hashtable store = null; // the algortihms store
@@ -70,6 +84,24 @@ public class TMView
 
     private TMAction action = null; // action manager
 
+    private TMLayoutCache layoutCache = new TMLayoutCache(); // kept layouts
+    private TMZoomPrefetcher prefetcher = null; // layouts of the next zooms
+
+    private static final int MAX_ZOOM_IMAGES = 8; // max ancestors images kept
+
+    private BufferedImage frame          = null;  // the treemap as painted
+    private TMNodeModel   frameRoot      = null;  // the root painted in it
+    private TMAlgorithm   frameAlgorithm = null;  // the algorithm used
+    private long          frameVersion   = -1;    // the layout version used
+    private boolean       frameRestored  = false; // taken back from the stack
+    private ArrayDeque<ZoomLevel> zoomImages =
+            new ArrayDeque<ZoomLevel>(); // stack of zoomed-out levels
+
+    private boolean              backgroundRendering = false; // render mode
+    private TMBackgroundRenderer renderer       = null; // background renderer
+    private long                 drawingVersion = 0;    // bumped when the
+                                                        // drawing changes
+
     private Object nodeUnderTheMouse;
 
     /* --- Constructor --- */
@@ -83,6 +115,22 @@ public class TMView
     TMView(TMUpdaterConcrete updater,
             TMComputeSize cSize,
             TMComputeDraw cDraw) {
+        this(updater, cSize, cDraw, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param updater the updater of TMNodes of the TreeMap
+     * @param cSize the object computing the size;
+     * @param cDraw the object computing the drawing;
+     * @param lazy <CODE>true</CODE> to build the children of the nodes
+     * only when they are shown
+     */
+    TMView(TMUpdaterConcrete updater,
+            TMComputeSize cSize,
+            TMComputeDraw cDraw,
+            boolean lazy) {
         super(new BorderLayout());
         action = new TMAction(this);
 
@@ -109,11 +157,17 @@ public class TMView
                         cSize,
                         cDraw,
                         statusView,
-                        this);
+                        this,
+                        lazy);
+        renderer = new TMBackgroundRenderer(this, root.getLock());
+        prefetcher = new TMZoomPrefetcher(layoutCache, root.getLock());
 //        this.root.getRoot().getArea();
         store = new Hashtable();
         addAlgorithm(new TMAlgorithmClassic(), CLASSIC);
         addAlgorithm(new TMAlgorithmSquarified(), SQUARIFIED);
+        addAlgorithm(new TMAlgorithmStrip(), STRIP);
+        addAlgorithm(new TMAlgorithmPivot(), PIVOT);
+        addAlgorithm(new TMAlgorithmSplit(), SPLIT);
 //        setAlgorithm(CLASSIC);
         setAlgorithm(SQUARIFIED);
 
@@ -141,15 +195,70 @@ public class TMView
         remove(initView);
         banner = null;
         initView = null;
-        paintMethod = new FullPaintMethod();
+        if (backgroundRendering) {
+            paintMethod = new BackgroundPaintMethod();
+        } else {
+            paintMethod = new FullPaintMethod();
+        }
 
         addMouseListener(getAction());
+        addMouseMotionListener(getAction());
 
         repaint();
         
     }
 
 
+    /* --- Rendering mode --- */
+    /**
+     * Sets the rendering in background on or off. When on, the treemap is
+     * drawn by a background thread in an offscreen image, and painting the
+     * view only draws the last finished image : the view stays responsive
+     * while big trees are drawn, and shows the previous image meanwhile.
+     * A drawing out of date, because the tree or the drawing changed, is
+     * cancelled.
+     *
+     * @param background <CODE>true</CODE> to render in background
+     */
+    public void setBackgroundRendering(boolean background) {
+        backgroundRendering = background;
+        if (paintMethod instanceof EmptyPaintMethod) {
+            return; // set when initialized
+        }
+        if (background) {
+            paintMethod = new BackgroundPaintMethod();
+        } else {
+            paintMethod = new FullPaintMethod();
+            renderer.clear();
+            frame = null; // not kept up to date meanwhile
+        }
+        repaint();
+    }
+
+    public boolean isBackgroundRendering() {
+        return backgroundRendering;
+    }
+
+
+    /* --- Lazy model --- */
+    /**
+     * Sets the minimum side in pixels of a node whose children are built,
+     * for a view given by TreeMap.getLazyView(). Smaller nodes are drawn as
+     * one rectangle, with their own filling. The default is 8 pixels.
+     *
+     * @param size the minimum side in pixels of an expanded node
+     */
+    public void setExpansionSize(int size) {
+        root.setExpansionSize(size);
+        drawer.invalidateLayout();
+        repaint();
+    }
+
+    public int getExpansionSize() {
+        return root.getExpansionSize();
+    }
+
+
     /* --- Status management --- */
     /**
      * Gets the status view.
@@ -182,6 +291,7 @@ public class TMView
                     "Impossible to register an " + "algorithm under a null name.");
         }
         algorithm.initialize(root.getRoot(), this);
+        algorithm.addObserver(this);
         store.put(name, algorithm);
     }
 
@@ -195,6 +305,10 @@ public class TMView
     public void setAlgorithm(String algoName) {
         Object o = store.get(algoName);
         if (o instanceof TMAlgorithm) {
+            if (drawer != null) {
+                // areas are shared by all the algorithms
+                drawer.releaseLayout();
+            }
             drawer = (TMAlgorithm) o;
             repaint();
         }
@@ -209,6 +323,16 @@ public class TMView
         return drawer;
     }
 
+    /**
+     * Returns the cache of the layouts computed by the algorithms of this
+     * view, to configure its bounds.
+     *
+     * @return the layout cache
+     */
+    public TMLayoutCache getLayoutCache() {
+        return layoutCache;
+    }
+
     /**
      * Returns the set of registered names of algorithms.
      *
@@ -280,6 +404,8 @@ public class TMView
             Object arg) {
         if (arg instanceof TMEventUpdate) {
             ((TMEventUpdate) arg).execute(root);
+        } else if (o instanceof TMAlgorithm) {
+            clearZoomImages();
         }
     }
 
@@ -309,6 +435,30 @@ public class TMView
         }
     }
     
+    /**
+     * Returns the most inner nodes whose area intersects the given
+     * rectangle of the view, as selected by a rubber band.
+     * <P>
+     * If using <CODE>TMNode</CODE>, these will be TMNodes. Else, if using
+     * <CODE>TMModelNode</CODE>, these are Objects.
+     *
+     * @param rect the rectangle, in the coordinates of the view
+     * @return the nodes intersecting the rectangle
+     */
+    public List<Object> getNodesInRectangle(Rectangle rect) {
+        List<TMNodeModel> nodesM = root.nodesIntersecting(rect);
+        List<Object> nodes = new Vector<Object>(nodesM.size());
+        for (TMNodeModel nodeM : nodesM) {
+            TMNode node = nodeM.getNode();
+            if (node instanceof TMNodeEncapsulator) {
+                nodes.add(((TMNodeEncapsulator) node).getNode());
+            } else {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
     /**
      * Metodo para capturar o objeto que esta em baixo do mouse.
      * @param node 
@@ -345,10 +495,110 @@ public class TMView
         root.unzoom();
     }
 
+    /**
+     * Computes in the background the layout of the node a zoom at the given
+     * coordinates would display, so that zooming on it only restores it.
+     * Called when the mouse moves over the view.
+     *
+     * @param x the x coord
+     * @param y the y coord
+     */
+    void prefetchZoom(int x,
+            int y) {
+        if (!(paintMethod instanceof FullPaintMethod)) {
+            return;
+        }
+        TMNodeModel target = root.zoomTarget(x, y);
+        if ((target != null) && !target.isLeaf()
+                && (target.getParent() == root.getRoot())) {
+            prefetcher.prefetch(drawer, target, root.getRoot().getArea());
+        }
+    }
+
+    /**
+     * Keeps the painted treemap before zooming in, so that unzooming back
+     * to it only draws the image. Called before the root changes.
+     */
+    void zoomingIn() {
+        if ((frame != null)
+                && (frameRoot == root.getRoot())
+                && (frameAlgorithm == drawer)
+                && (frameVersion == frameRoot.getModelRoot().getLayoutVersion())) {
+            zoomImages.addLast(new ZoomLevel(frameRoot, frame,
+                    frameAlgorithm, frameVersion));
+            if (zoomImages.size() > MAX_ZOOM_IMAGES) {
+                zoomImages.removeFirst();
+            }
+        }
+        frame = null;
+        frameRestored = false;
+    }
+
+    /**
+     * Takes back the painted treemap of the new root, if it is still up to
+     * date. Called after the root changed.
+     *
+     * @param newRoot the new root
+     */
+    void zoomedOut(TMNodeModel newRoot) {
+        frameRestored = false;
+        if (zoomImages.isEmpty()) {
+            return;
+        }
+        ZoomLevel level = zoomImages.removeLast();
+        if (level.root != newRoot) {
+            // the stack does not follow the zooms anymore
+            zoomImages.clear();
+            return;
+        }
+        if ((level.algorithm == drawer)
+                && (level.version == newRoot.getModelRoot().getLayoutVersion())
+                && (level.image.getWidth() == getWidth())
+                && (level.image.getHeight() == getHeight())) {
+            frame = level.image;
+            frameRoot = newRoot;
+            frameAlgorithm = drawer;
+            frameVersion = level.version;
+            frameRestored = true;
+        }
+    }
+
+    /**
+     * Forgets the painted treemaps kept for unzooming. Called when the
+     * drawing changes.
+     */
+    void clearZoomImages() {
+        zoomImages.clear();
+        frameRestored = false;
+        drawingVersion++;
+    }
+
+    /**
+     * Returns the number of painted treemaps kept for unzooming.
+     *
+     * @return the number of zoomed-out levels kept
+     */
+    int getZoomImageCount() {
+        return zoomImages.size();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the painted treemap of the current root
+     * has been taken back from the zoom stack, and is painted without being
+     * drawn again.
+     *
+     * @return <CODE>true</CODE> if the frame is restored
+     */
+    boolean isFrameRestored() {
+        return frameRestored;
+    }
+
 
     /* --- Displaying --- */
     /**
-     * Returns the tooltip to be displayed.
+     * Returns the tooltip to be displayed. Returns <CODE>null</CODE> if the
+     * model is being updated or laid out, as the event dispatch thread does
+     * not wait for it : the tooltip is asked again when the mouse moves.
      *
      * @param event the event triggering the tooltip
      * @return the String to be displayed
@@ -358,10 +608,15 @@ public class TMView
         int y = event.getY();
         TMNodeModel node = root.nodeContaining(x, y);
         if (node != null) {
-            root.getLock().lock();
-            String tooltip = node.getTooltip();
-            root.getLock().unlock();
-            return tooltip;
+            // never waits for an update or a layout of the model
+            if (!root.getLock().tryLockShared()) {
+                return null;
+            }
+            try {
+                return node.getTooltip();
+            } finally {
+                root.getLock().unlockShared();
+            }
         } else {
             Insets insets = getInsets();
             if (((x <= insets.left) || (x >= (getWidth() - insets.right - 1)))
@@ -391,6 +646,79 @@ public class TMView
     }
 
 
+    /**
+     * Repaints only the part of the view that has changed since the last
+     * time, after an update of the sizes, of the drawings or of the structure
+     * of the tree : the areas whose layout has changed, and the areas of
+     * the nodes drawn differently. The layout is computed here, then the
+     * changed area is repainted. Repaints the whole view if it is not yet
+     * initialized, or if it renders in background.
+     */
+    void repaintDamage() {
+        Rectangle damage = takeDamage();
+        if (damage == null) {
+            repaint();
+        } else if (!damage.isEmpty()) {
+            repaint(damage);
+        }
+    }
+
+    /**
+     * Returns the part of the view that has changed since the last time, and
+     * forgets it. The layout is computed here.
+     *
+     * @return the area to repaint, empty if nothing has changed;
+     * <CODE>null</CODE> if the whole view should be repainted
+     */
+    Rectangle takeDamage() {
+        TMNodeModel[] drawn = root.takeDrawingDamage();
+        if (!(paintMethod instanceof FullPaintMethod) || (drawn == null)) {
+            return null;
+        }
+        setRootArea();
+        Rectangle damage;
+        root.getLock().lock();
+        try {
+            drawer.layout(root.getRoot());
+            damage = drawer.takeLayoutDamage();
+            for (int i = 0; i < drawn.length; i++) {
+                Rectangle area = drawer.getDrawnArea(drawn[i]);
+                if (area == null) {
+                    continue;
+                } else if (damage.isEmpty()) {
+                    damage = area;
+                } else {
+                    damage.add(area);
+                }
+            }
+        } finally {
+            root.getLock().unlock();
+        }
+        return damage;
+    }
+
+    /**
+     * Sets the area of the root to the inside of the view.
+     */
+    private void setRootArea() {
+        root.getRoot().getArea().setBounds(getRootBounds());
+    }
+
+    /**
+     * Returns the area of the root, the inside of the view.
+     *
+     * @return the area of the root
+     */
+    private Rectangle getRootBounds() {
+        Insets insets = getInsets();
+        return new Rectangle(
+                insets.left,
+                insets.top,
+                getWidth() - insets.left - insets.right - 1,
+                getHeight() - insets.top - insets.bottom - 1);
+    }
+
+
     /* --- Inners paintMethods --- */
     /**
      * The PaintMethod abstract class implements a Strategie design pattern for
@@ -423,7 +751,9 @@ public class TMView
     }
 
     /**
-     * The FullPaintMethod implements a full paint method.
+     * The FullPaintMethod implements a full paint method. The treemap is
+     * drawn in the graphic context, or, once zoomed in, in the frame kept
+     * for unzooming back to it.
      */
     class FullPaintMethod
             extends PaintMethod {
@@ -434,18 +764,157 @@ public class TMView
          * @param g the Graphics2D context
          */
         final void paint(Graphics2D g) {
-            Insets insets = getInsets();
-            root.getRoot().getArea().setBounds(
-                    insets.left,
-                    insets.top,
-                    getWidth() - insets.left - insets.right - 1,
-                    getHeight() - insets.top - insets.bottom - 1);
-            root.getLock().lock();
-            drawer.draw(g, root.getRoot());
-            root.getLock().unlock();
+            int width = getWidth();
+            int height = getHeight();
+            if ((width <= 0) || (height <= 0)) {
+                return;
+            }
+            setRootArea();
+            TMNodeModel current = root.getRoot();
+            if (frameRestored || (current.getParent() != null)) {
+                paintFrame(g, current, width, height);
+            } else {
+                // nothing to unzoom to : no image is kept
+                frame = null;
+                Rectangle clip = g.getClipBounds();
+                root.getLock().lock();
+                try {
+                    drawer.draw(g, current);
+                    if ((clip == null) || clip.contains(0, 0, width, height)) {
+                        // the moved areas are all repainted
+                        drawer.takeLayoutDamage();
+                    }
+                } finally {
+                    root.getLock().unlock();
+                }
+            }
             for(TMOnDrawFinished listener : listeners)
                 listener.onDrawFinished("FullPaintMethod.Paint");
         }
+
+        /**
+         * Paints the treemap through the frame, kept for unzooming back to
+         * it : draws the clip in the frame, or only restores the layout if
+         * the frame has been taken back from the zoom stack, then draws the
+         * frame.
+         *
+         * @param g the Graphics2D context
+         * @param current the root painted
+         * @param width the width of the view
+         * @param height the height of the view
+         */
+        private void paintFrame(Graphics2D g,
+                TMNodeModel current,
+                int width,
+                int height) {
+            long version = current.getModelRoot().getLayoutVersion();
+            Rectangle clip = g.getClipBounds();
+            if ((frame == null)
+                    || (frame.getWidth() != width)
+                    || (frame.getHeight() != height)
+                    || (frameRoot != current)
+                    || (frameAlgorithm != drawer)) {
+                if ((frame == null)
+                        || (frame.getWidth() != width)
+                        || (frame.getHeight() != height)) {
+                    frame = new BufferedImage(width, height,
+                            BufferedImage.TYPE_INT_RGB);
+                }
+                frameRestored = false;
+                clip = null; // the whole frame is out of date
+            }
+            if (clip == null) {
+                clip = new Rectangle(0, 0, width, height);
+            }
+
+            root.getLock().lock();
+            try {
+                if (frameRestored) {
+                    // the image is up to date, only the areas are restored
+                    drawer.layout(current);
+                } else {
+                    Graphics2D frameGraphics = frame.createGraphics();
+                    frameGraphics.setColor(getBackground());
+                    frameGraphics.fillRect(clip.x, clip.y,
+                            clip.width, clip.height);
+                    frameGraphics.dispose();
+                    drawer.draw(frame, clip, current);
+                    if (clip.contains(0, 0, width, height)) {
+                        // the moved areas are all repainted
+                        drawer.takeLayoutDamage();
+                    }
+                }
+            } finally {
+                root.getLock().unlock();
+            }
+            frameRoot = current;
+            frameAlgorithm = drawer;
+            frameVersion = version;
+            frameRestored = false;
+
+            g.drawImage(frame, 0, 0, null);
+        }
+    }
+
+    /**
+     * The BackgroundPaintMethod implements a paint method drawing the last
+     * image drawn by the background renderer, and asking for a new one if
+     * it is out of date.
+     */
+    class BackgroundPaintMethod
+            extends PaintMethod {
+
+        /**
+         * Paint method.
+         *
+         * @param g the Graphics2D context
+         */
+        final void paint(Graphics2D g) {
+            int width = getWidth();
+            int height = getHeight();
+            if ((width <= 0) || (height <= 0)) {
+                return;
+            }
+            TMBackgroundRenderer.Pass pass = new TMBackgroundRenderer.Pass(
+                    root.getRoot(), drawer, getRootBounds(),
+                    width, height, getBackground(), drawingVersion);
+            if (renderer.drawFrame(g, pass)) {
+                for(TMOnDrawFinished listener : listeners)
+                    listener.onDrawFinished("BackgroundPaintMethod.Paint");
+            } else {
+                renderer.render(pass);
+            }
+        }
+    }
+
+    /**
+     * The ZoomLevel class keeps the painted treemap of an ancestor of the
+     * current root.
+     */
+    static class ZoomLevel {
+
+        final TMNodeModel root; // the root painted
+        final BufferedImage image; // the painted treemap
+        final TMAlgorithm algorithm; // the algorithm used
+        final long version; // the layout version used
+
+        /**
+         * Constructor.
+         *
+         * @param root the root painted
+         * @param image the painted treemap
+         * @param algorithm the algorithm used
+         * @param version the layout version used
+         */
+        ZoomLevel(TMNodeModel root,
+                BufferedImage image,
+                TMAlgorithm algorithm,
+                long version) {
+            this.root = root;
+            this.image = image;
+            this.algorithm = algorithm;
+            this.version = version;
+        }
     }
 
     /**
@@ -0,0 +1,158 @@
+/*
+ * TMZoomPrefetcher.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+
+
+/**
+ * The TMZoomPrefetcher class computes in the background the layout of the
+ * node the user is likely to zoom on, that is the node under the mouse,
+ * and keeps it in the layout cache of the view. Zooming on it then only
+ * restores the layout.
+ * <P>
+ * The layout is computed holding the lock of the model, so that it does
+ * not read the model while it changes, nor while the view draws it.
+ * <P>
+ * Only the last asked node is computed : asking for another node while
+ * computing replaces the pending one. The thread stops when there is
+ * nothing left to compute, and is started again when needed.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMZoomPrefetcher
+    implements Runnable {
+
+    private TMLayoutCache cache         = null; // where layouts are kept
+    private TMThreadLock  lock          = null; // the lock of the model
+    private Thread        thread        = null; // the running thread
+    private TMAlgorithm   nextAlgorithm = null; // the pending algorithm
+    private TMNodeModel   nextRoot      = null; // the pending node
+    private Rectangle     nextBounds    = null; // the pending area
+
+
+    /* --- Constructor --- */
+
+    /**
+     * Constructor.
+     *
+     * @param cache    the layout cache where layouts are kept
+     * @param lock     the lock of the model
+     */
+    TMZoomPrefetcher(TMLayoutCache cache,
+                     TMThreadLock  lock) {
+        this.cache = cache;
+        this.lock = lock;
+    }
+
+
+    /* --- Prefetching --- */
+
+    /**
+     * Asks for the layout of the given node in the given area. Does nothing
+     * if this layout is already kept.
+     *
+     * @param algorithm    the algorithm of the layout
+     * @param root         the node to lay out
+     * @param bounds       the area of the node
+     */
+    synchronized void prefetch(TMAlgorithm algorithm,
+                               TMNodeModel root,
+                               Rectangle   bounds) {
+        long version = root.getModelRoot().getLayoutVersion();
+        if (cache.contains(algorithm, root, bounds, version)) {
+            return;
+        }
+        nextAlgorithm = algorithm;
+        nextRoot = root;
+        nextBounds = new Rectangle(bounds);
+        if (thread == null) {
+            thread = new Thread(this, "TreeMap zoom prefetcher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * Computes the pending layouts, until there is none.
+     */
+    public void run() {
+        try {
+            while (true) {
+                TMAlgorithm algorithm;
+                TMNodeModel root;
+                Rectangle bounds;
+                synchronized (this) {
+                    if (nextRoot == null) {
+                        thread = null;
+                        return;
+                    }
+                    algorithm = nextAlgorithm;
+                    root = nextRoot;
+                    bounds = nextBounds;
+                    nextAlgorithm = null;
+                    nextRoot = null;
+                    nextBounds = null;
+                }
+                computeLayout(algorithm, root, bounds);
+            }
+        } finally {
+            synchronized (this) {
+                if (thread == Thread.currentThread()) {
+                    // stopped by an exception : started again when needed
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the layout of the given node, holding the lock of the model,
+     * and keeps it in the cache.
+     *
+     * @param algorithm    the algorithm of the layout
+     * @param root         the node to lay out
+     * @param bounds       the area of the node
+     */
+    private void computeLayout(TMAlgorithm algorithm,
+                               TMNodeModel root,
+                               Rectangle   bounds) {
+        lock.lock();
+        try {
+            long version = root.getModelRoot().getLayoutVersion();
+            if (! cache.contains(algorithm, root, bounds, version)) {
+                cache.store(algorithm, root, bounds, version,
+                            algorithm.layoutSnapshot(root, bounds));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
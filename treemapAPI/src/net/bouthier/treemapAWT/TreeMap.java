@@ -41,6 +41,7 @@ package net.bouthier.treemapAWT;
  * <P>
  * You can get a TMView (herited from JView) containing the TreeMap by calling
  * getView().  It takes a TMSizeRenderer and a TMDrawRenderer as parameters.
+ * The layout alone, without any view, is given by getLayout().
  *
  * @author Christophe Bouthier [bouthier@loria.fr]
  * @version 2.5
@@ -80,6 +81,17 @@ public class TreeMap {
         updater = (new TMModelUpdaterConcrete(model)).getUpdater();
     }
 
+    /* --- Root --- */
+
+    /**
+     * Returns the root of the tree represented.
+     *
+     * @return    the root of the tree
+     */
+    TMNode getRoot() {
+        return updater.getRoot();
+    }
+
     /* --- View --- */
 
     /**
@@ -106,4 +118,67 @@ public class TreeMap {
         return new TMView(updater, cSize, cDraw);
     }
 
+    /**
+     * Returns a lazy view of the treemap with the
+     * given renderers, for trees too big to be entirely built.
+     * The children of a node are only read when the node is
+     * shown big enough, and are forgotten when the memory is
+     * running low and the node is no more shown.
+     * The sizes of the whole tree are still computed.
+     *
+     * @param cSize         the object computing the size;
+     *                      could not be <CODE>null</CODE>
+     * @param cDraw         the object computing the drawing;
+     *                      could not be <CODE>null</CODE>
+     * @return              the desired lazy view of the treemap
+     */
+    public TMView getLazyView(TMComputeSize cSize,
+                              TMComputeDraw cDraw) {
+        if (cSize == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to build a treemap"
+                    + "view with a null TMComputeSize.");
+        } else if (cDraw == null) {
+            throw new TMExceptionNullParameter(
+                "Impossible to build a treemap"
+                    + "view with a null TMComputeDraw.");
+        }
+        return new TMView(updater, cSize, cDraw, true);
+    }
+
+    /* --- Layout --- */
+
+    /**
+     * Returns the layout of the tree in the given area,
+     * computed without any view.
+     *
+     * @param cSize         the object computing the size;
+     *                      could not be <CODE>null</CODE>
+     * @param algorithm     the algorithm used to lay out the tree;
+     *                      could not be <CODE>null</CODE>
+     * @param x             the x of the area
+     * @param y             the y of the area
+     * @param width         the width of the area
+     * @param height        the height of the area
+     * @return              the layout of the tree
+     */
+    public TMLayout getLayout(TMComputeSize cSize,
+                              TMAlgorithm   algorithm,
+                              int x, int y, int width, int height) {
+        return new TMLayout(getRoot(), cSize, algorithm,
+                            x, y, width, height);
+    }
+
+    /**
+     * Returns a compact model of the tree, following its updates,
+     * for trees too big for a view.
+     *
+     * @param cSize         the object computing the size;
+     *                      could not be <CODE>null</CODE>
+     * @return              the compact model of the tree
+     */
+    public TMCompactModel getCompactModel(TMComputeSize cSize) {
+        return new TMCompactModel(updater, cSize);
+    }
+
 }
@@ -0,0 +1,97 @@
+/*
+ * TMAlgorithmCopyTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Checks that an algorithm is copied with its class and its drawing
+ * parameters, but without its view, and that an algorithm which does not
+ * override copy() is not copied.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMAlgorithmCopyTest {
+
+    /* --- Tests --- */
+
+    @Test
+    public void copyKeepsTheClassAndTheParameters() {
+        TMNodeModelRoot model =
+            TMTestTree.model(TMTestTree.build(new Random(2001), 4));
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            algorithm.setCushion(true);
+            algorithm.setH(0.8);
+            algorithm.setF(0.7);
+            algorithm.setIS(180);
+            algorithm.setBorderSize(7);
+            algorithm.setFramedComposites(true);
+            algorithm.setDrawingTitles(false);
+            TMAlgorithm copy = algorithm.copy();
+
+            assertNotSame(algorithm, copy);
+            assertSame(algorithm.getClass(), copy.getClass());
+            assertNull(copy.view);
+            assertEquals(algorithm.getH(), copy.getH(), 0.0);
+            assertEquals(algorithm.getF(), copy.getF(), 0.0);
+            assertEquals(algorithm.getIS(), copy.getIS());
+            assertEquals(algorithm.getBorderSize(), copy.getBorderSize());
+            assertEquals(algorithm.isCushion(), copy.isCushion());
+            assertEquals(algorithm.isFramedComposites(),
+                         copy.isFramedComposites());
+            assertEquals(algorithm.isDrawingTitles(), copy.isDrawingTitles());
+
+            algorithm.initialize(model.getRoot(), null);
+            copy.initialize(model.getRoot(), null);
+            assertEquals(TMTestTree.drawHash(model, algorithm),
+                         TMTestTree.drawHash(model, copy));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void algorithmNotOverridingCopyIsNotCopied() {
+        new TMAlgorithm() {
+            protected void computeChildrenAreas(float[] sizes,
+                                                int     count,
+                                                float   total,
+                                                int[]   box,
+                                                short   axis,
+                                                int[]   areas) {
+            }
+        }.copy();
+    }
+
+}
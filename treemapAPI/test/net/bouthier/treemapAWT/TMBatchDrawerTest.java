@@ -0,0 +1,160 @@
+/*
+ * TMBatchDrawerTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Checks that TMBatchDrawer, drawing the leaves in batches grouped by Paint,
+ * draws the image of the drawing node by node, titles and culled nodes
+ * included.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMBatchDrawerTest {
+
+    // batched drawing
+    private static final TMTestTree.Mode BATCHED = new TMTestTree.Mode() {
+        public void apply(TMAlgorithm algorithm) {
+            algorithm.setBatchedDrawing(true);
+        }
+    };
+
+    private static TMNodeModelRoot model = null; // the model drawn
+
+
+    /* --- Fixture --- */
+
+    @BeforeClass
+    public static void buildModel() {
+        model = TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void batchedDrawingDrawsTheSameImage() {
+        TMTestTree.assertSameAsSequential(model, BATCHED);
+    }
+
+    @Test
+    public void batchedDrawingWithClippedTitlesDrawsTheSameImage() {
+        assertSameWith(new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setFittingTitles(false);
+            }
+        });
+    }
+
+    @Test
+    public void batchedDrawingOfFramesDrawsTheSameImage() {
+        assertSameWith(new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setFramedComposites(true);
+            }
+        });
+    }
+
+    @Test
+    public void culledNodesAreDrawnAndCountedTheSame() {
+        TMTestTree.Mode culled = new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setDetailThreshold(12);
+            }
+        };
+        assertSameWith(culled);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMTestTree.drawHash(model, algorithm, culled);
+            TMAlgorithm batched = algorithm.copy();
+            TMTestTree.drawHash(model, batched, BATCHED);
+            assertEquals(algorithm.getClass().getSimpleName(),
+                         algorithm.getCulledNodeCount(),
+                         batched.getCulledNodeCount());
+        }
+    }
+
+    @Test
+    public void leavesAcrossTheClipAreDrawnTheSame() {
+        Rectangle clip = new Rectangle(117, 83, 251, 197);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            algorithm.initialize(model.getRoot(), null);
+            TMAlgorithm batched = algorithm.copy();
+            BATCHED.apply(batched);
+            batched.initialize(model.getRoot(), null);
+            assertArrayEquals(algorithm.getClass().getSimpleName(),
+                              draw(algorithm, clip), draw(batched, clip));
+        }
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Checks that the batched drawing with the given parameters draws, for
+     * every algorithm, the image drawn node by node with them.
+     *
+     * @param parameters    the parameters of both drawings
+     */
+    private static void assertSameWith(final TMTestTree.Mode parameters) {
+        TMTestTree.assertSameAsSequential(model, parameters,
+                                          new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                parameters.apply(algorithm);
+                BATCHED.apply(algorithm);
+            }
+        });
+    }
+
+    /**
+     * Draws the clip of the model, and returns the pixels of the image.
+     *
+     * @param algorithm    the algorithm, initialized
+     * @param clip         the area to draw
+     * @return             the pixels of the image
+     */
+    private static int[] draw(TMAlgorithm algorithm,
+                              Rectangle   clip) {
+        BufferedImage image = new BufferedImage(TMTestTree.WIDTH,
+                TMTestTree.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        algorithm.draw(image, clip, model.getRoot());
+        return image.getRGB(0, 0, TMTestTree.WIDTH, TMTestTree.HEIGHT, null,
+                            0, TMTestTree.WIDTH);
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * TMChildIndexTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the queries of TMChildIndex, and those of the models using
+ * it, find the children a linear scan of the children finds, for the
+ * layouts of every algorithm and for overlapping or degenerate areas.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMChildIndexTest {
+
+    private static final int LEAVES  = 300;  // children of the wide root
+    private static final int QUERIES = 3000; // queries by layout
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void laidOutChildrenAreFoundAsByAScan() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMNodeModelComposite root = layOut(wideTree(), algorithm);
+            TMNodeModel[] children = root.getLayoutOrder();
+            assertTrue(children.length >= TMChildIndex.MIN_CHILDREN);
+            assertSameQueries(root.getArea(), children, new Random(1));
+        }
+    }
+
+    @Test
+    public void overlappingChildrenAreFoundInLayoutOrder() {
+        TMNodeModelComposite root =
+                layOut(wideTree(), new TMAlgorithmSquarified());
+        TMNodeModel[] children = root.getLayoutOrder();
+        Rectangle area = root.getArea();
+        Random random = new Random(2);
+        for (TMNodeModel child : children) {
+            // anywhere in the area, border included
+            int x = area.x + random.nextInt(area.width + 1);
+            int y = area.y + random.nextInt(area.height + 1);
+            int w = random.nextInt(area.x + area.width + 1 - x) + 1;
+            int h = random.nextInt(area.y + area.height + 1 - y) + 1;
+            child.getArea().setBounds(x, y, w, h);
+        }
+        assertSameQueries(area, children, new Random(3));
+    }
+
+    @Test
+    public void degenerateAreasAreFoundAsByAScan() {
+        TMNodeModelComposite root =
+                layOut(wideTree(), new TMAlgorithmSquarified());
+        TMNodeModel[] children = root.getLayoutOrder();
+        Random random = new Random(4);
+
+        // an area thinner than the grid, off the origin, with empty children
+        Rectangle area = new Rectangle(-20, 35, 3, 400);
+        for (TMNodeModel child : children) {
+            int y = area.y + random.nextInt(area.height + 1);
+            if (random.nextInt(5) == 0) {
+                child.getArea().setBounds(area.x, y, 0, 0);
+            } else {
+                child.getArea().setBounds(area.x + random.nextInt(2), y,
+                                          1 + random.nextInt(2),
+                                          1 + random.nextInt(10));
+            }
+        }
+        assertSameQueries(area, children, random);
+
+        // an area of one pixel
+        area = new Rectangle(7, 7, 0, 0);
+        for (TMNodeModel child : children) {
+            child.getArea().setBounds(7, 7, random.nextInt(2),
+                                      random.nextInt(2));
+        }
+        assertSameQueries(area, children, random);
+    }
+
+    @Test
+    public void modelQueriesFindTheNodesOfAScan() {
+        TMTestTree.Node root = wideTree();
+        // deeper wide composites, so that the index is used below the root
+        root.children.add(wideTree());
+        root.children.get(0).children.add(wideTree());
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMNodeModelRoot model = TMTestTree.model(root);
+            algorithm.initialize(model.getRoot(), null);
+            algorithm.layout(model.getRoot());
+            TMNodeModel top = model.getRoot();
+            String name = algorithm.getClass().getSimpleName();
+
+            Random random = new Random(5);
+            for (int i = 0; i < QUERIES; i++) {
+                int x = random.nextInt(TMTestTree.WIDTH + 20) - 10;
+                int y = random.nextInt(TMTestTree.HEIGHT + 20) - 10;
+                assertSame(name, scanContaining(top, x, y),
+                           model.nodeContaining(x, y));
+            }
+            for (int i = 0; i < QUERIES / 10; i++) {
+                Rectangle rect = randomRect(top.getArea(), random);
+                List<TMNodeModel> expected = new ArrayList<TMNodeModel>();
+                scanIntersecting(top, rect, expected);
+                assertSameSet(name + " " + rect, expected,
+                              model.nodesIntersecting(rect));
+            }
+        }
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Returns a tree of a root with many leaves, some of them of size 0.
+     *
+     * @return    the root
+     */
+    private static TMTestTree.Node wideTree() {
+        Random random = new Random(2024);
+        TMTestTree.Node root = new TMTestTree.Node("wide");
+        for (int i = 0; i < LEAVES; i++) {
+            float size = (i % 17 == 0) ? 0.0f : 1 + random.nextInt(100);
+            root.children.add(TMTestTree.Node.leaf("leaf" + i, size));
+        }
+        return root;
+    }
+
+    /**
+     * Builds and lays out the model of a tree.
+     *
+     * @param root         the root of the tree
+     * @param algorithm    the algorithm
+     * @return             the root of the model
+     */
+    private static TMNodeModelComposite layOut(TMTestTree.Node root,
+                                               TMAlgorithm     algorithm) {
+        TMNodeModelRoot model = TMTestTree.model(root);
+        algorithm.initialize(model.getRoot(), null);
+        algorithm.layout(model.getRoot());
+        return (TMNodeModelComposite) model.getRoot();
+    }
+
+    /**
+     * Checks that an index of the children finds the children found by a
+     * scan, for random points and rectangles in and around the area.
+     *
+     * @param area        the area of the composite
+     * @param children    the children in layout order
+     * @param random      the random queries
+     */
+    private static void assertSameQueries(Rectangle     area,
+                                          TMNodeModel[] children,
+                                          Random        random) {
+        TMChildIndex index = new TMChildIndex(area, children);
+        for (int i = 0; i < QUERIES; i++) {
+            int x = area.x - 5 + random.nextInt(area.width + 11);
+            int y = area.y - 5 + random.nextInt(area.height + 11);
+            TMNodeModel expected = null;
+            for (TMNodeModel child : children) {
+                if (child.getArea().contains(x, y)) {
+                    expected = child;
+                    break;
+                }
+            }
+            assertSame(x + "," + y, expected, index.childContaining(x, y));
+        }
+        for (int i = 0; i < QUERIES / 10; i++) {
+            Rectangle rect = randomRect(area, random);
+            List<TMNodeModel> expected = new ArrayList<TMNodeModel>();
+            for (TMNodeModel child : children) {
+                if (child.getArea().intersects(rect)) {
+                    expected.add(child);
+                }
+            }
+            List<TMNodeModel> found = new ArrayList<TMNodeModel>();
+            int count = index.childrenIntersecting(rect, found);
+            assertEquals(found.size(), count);
+            assertSameSet(rect.toString(), expected, found);
+        }
+    }
+
+    /**
+     * Returns a random rectangle in and around the area, empty once in
+     * a while.
+     *
+     * @param area      the area
+     * @param random    the random generator
+     * @return          the rectangle
+     */
+    private static Rectangle randomRect(Rectangle area,
+                                        Random    random) {
+        int x = area.x - 5 + random.nextInt(area.width + 11);
+        int y = area.y - 5 + random.nextInt(area.height + 11);
+        int w = random.nextInt(Math.max(1, area.width / 3) + 2);
+        int h = random.nextInt(Math.max(1, area.height / 3) + 2);
+        if (random.nextInt(10) == 0) {
+            // the whole area and more
+            return new Rectangle(area.x - 1, area.y - 1,
+                                 area.width + 3, area.height + 3);
+        }
+        return new Rectangle(x, y, w, h);
+    }
+
+    /**
+     * Checks that two lists have the same nodes, each found once.
+     *
+     * @param message     the message of the failure
+     * @param expected    the expected nodes
+     * @param found       the nodes found
+     */
+    private static void assertSameSet(String            message,
+                                      List<TMNodeModel> expected,
+                                      List<TMNodeModel> found) {
+        Set<TMNodeModel> set = new HashSet<TMNodeModel>(found);
+        assertEquals(message, found.size(), set.size());
+        assertEquals(message, new HashSet<TMNodeModel>(expected), set);
+    }
+
+    /**
+     * Returns the most inner node containing the point, scanning the
+     * children laid out in layout order.
+     *
+     * @param node    the root of the subtree
+     * @param x       the x of the point
+     * @param y       the y of the point
+     * @return        the node; <CODE>null</CODE> if there is none
+     */
+    private static TMNodeModel scanContaining(TMNodeModel node,
+                                              int         x,
+                                              int         y) {
+        if (!node.getArea().contains(x, y)) {
+            return null;
+        }
+        if (!node.isLeaf()) {
+            for (TMNodeModel child
+                    : ((TMNodeModelComposite) node).getLayoutOrder()) {
+                TMNodeModel found = scanContaining(child, x, y);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Adds to the list the most inner nodes intersecting the rectangle,
+     * scanning every child laid out.
+     *
+     * @param node     the root of the subtree
+     * @param rect     the rectangle
+     * @param nodes    the list of the nodes
+     */
+    private static void scanIntersecting(TMNodeModel       node,
+                                         Rectangle         rect,
+                                         List<TMNodeModel> nodes) {
+        if (!node.getArea().intersects(rect)) {
+            return;
+        }
+        int found = nodes.size();
+        if (!node.isLeaf()) {
+            for (TMNodeModel child
+                    : ((TMNodeModelComposite) node).getLayoutOrder()) {
+                scanIntersecting(child, rect, nodes);
+            }
+        }
+        if (nodes.size() == found) {
+            nodes.add(node);
+        }
+    }
+
+}
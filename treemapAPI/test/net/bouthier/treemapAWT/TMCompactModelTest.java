@@ -0,0 +1,178 @@
+/*
+ * TMCompactModelTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Checks that TMCompactModel gives the nodes the areas of TMLayout and of
+ * the model of a view, and finds the same nodes under a point, for every
+ * algorithm, before and after updates.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMCompactModelTest {
+
+    private static final int POINTS = 2000; // points looked for by test
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void compactModelGivesTheAreasOfTheOtherLayouts() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            Compared compared = new Compared(algorithm);
+            compared.assertSameLayout();
+        }
+    }
+
+    @Test
+    public void compactModelFollowsTheUpdates() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            Compared compared = new Compared(algorithm);
+            for (int round = 0; round < 4; round++) {
+                compared.update();
+                compared.assertSameLayout();
+            }
+        }
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * A tree laid out by an algorithm with a compact model and with the
+     * model of a view.
+     */
+    private static class Compared {
+
+        private final TMAlgorithm       algorithm; // the algorithm
+        private final TMTestTree.Node   root;      // the root of the tree
+        private final TMNodeModelRoot   model;     // the model of a view
+        private final TMUpdaterConcrete updater;   // updater of the tree
+        private final TMCompactModel    compact;   // the compact model
+        private final Random            random = new Random(11); // updates
+        private int                     added  = 0; // children added
+
+        /**
+         * Constructor.
+         *
+         * @param algorithm    the algorithm
+         */
+        Compared(TMAlgorithm algorithm) {
+            this.algorithm = algorithm;
+            root = TMTestTree.build(new Random(2021), 5);
+            model = TMTestTree.model(root);
+            algorithm.initialize(model.getRoot(), null);
+            updater = new TMUpdaterConcrete(root);
+            compact = new TMCompactModel(updater, new TMTestTree.Size());
+        }
+
+        /**
+         * Changes the size of a leaf, adds a leaf to a composite and removes
+         * a child of another one, in both models.
+         */
+        void update() {
+            List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+            List<TMTestTree.Node> composites =
+                    new ArrayList<TMTestTree.Node>();
+            TMTestTree.collect(root, leaves, composites);
+
+            TMTestTree.Node leaf = leaves.get(random.nextInt(leaves.size()));
+            TMTestTree.setSize(model, leaf, random.nextInt(50));
+            updater.updateSize(leaf);
+
+            TMTestTree.Node parent =
+                    composites.get(random.nextInt(composites.size()));
+            TMTestTree.Node child = TMTestTree.Node.leaf(
+                    "added" + added++, 1 + random.nextInt(50));
+            TMTestTree.addChild(model, parent, child);
+            updater.addChild(parent, child);
+
+            parent = composites.get(random.nextInt(composites.size()));
+            if (parent.children.size() > 1) {
+                child = parent.children.get(
+                            random.nextInt(parent.children.size()));
+                TMTestTree.removeChild(model, parent, child);
+                updater.removeChild(parent, child);
+            }
+        }
+
+        /**
+         * Lays out both models, and checks that they give the areas of
+         * TMLayout and find the same nodes under random points.
+         */
+        void assertSameLayout() {
+            String name = algorithm.getClass().getSimpleName();
+            int w = TMTestTree.WIDTH - 1;
+            int h = TMTestTree.HEIGHT - 1;
+            algorithm.layout(model.getRoot());
+            compact.layout(algorithm, 0, 0, w, h);
+            TMLayout layout = new TMLayout(root, new TMTestTree.Size(),
+                                           algorithm, 0, 0, w, h);
+
+            assertEquals(name, layout.getNodeCount(), compact.getNodeCount());
+            Rectangle area = new Rectangle();
+            for (int i = 0; i < layout.getNodeCount(); i++) {
+                TMNode node = layout.getNode(i);
+                Rectangle expected = new Rectangle(layout.getX()[i],
+                                                   layout.getY()[i],
+                                                   layout.getWidth()[i],
+                                                   layout.getHeight()[i]);
+                compact.getArea(compact.getId(node), area);
+                assertEquals(name, expected, area);
+                assertEquals(name, expected,
+                             model.nodeContaining(node).getArea());
+            }
+
+            Random points = new Random(5);
+            for (int i = 0; i < POINTS; i++) {
+                int x = points.nextInt(TMTestTree.WIDTH);
+                int y = points.nextInt(TMTestTree.HEIGHT);
+                int id = compact.nodeContaining(x, y);
+                TMNodeModel node = model.nodeContaining(x, y);
+                if (node == null) {
+                    assertEquals(name, -1, id);
+                } else {
+                    assertSame(name, node.getNode(), compact.getNode(id));
+                }
+            }
+        }
+
+    }
+
+}
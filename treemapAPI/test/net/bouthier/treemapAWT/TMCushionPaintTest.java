@@ -0,0 +1,127 @@
+/*
+ * TMCushionPaintTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the fast cushion shading, which takes the norm of the normal
+ * and the intensity from tables, stays within one level of color of the
+ * exact shading, for flat and for steep cushions.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMCushionPaintTest {
+
+    private static TMNodeModelRoot model = null; // the model drawn
+
+
+    /* --- Fixture --- */
+
+    @BeforeClass
+    public static void buildModel() {
+        model = TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void fastShadingIsWithinOneLevelOfExact() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            assertWithinOneLevel(algorithm);
+        }
+    }
+
+    @Test
+    public void fastShadingOfSteepCushionsIsWithinOneLevelOfExact() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            algorithm.setH(4.0);
+            algorithm.setF(1.0);
+            algorithm.setIS(255);
+            assertWithinOneLevel(algorithm);
+        }
+    }
+
+
+    /* --- Shading --- */
+
+    /**
+     * Checks that the fast shading draws the image of the exact shading,
+     * within one level of color for every component.
+     *
+     * @param algorithm    the algorithm drawing
+     */
+    private static void assertWithinOneLevel(TMAlgorithm algorithm) {
+        algorithm.setCushion(true);
+        algorithm.initialize(model.getRoot(), null);
+        algorithm.setCushionExact(true);
+        int[] exact = draw(algorithm);
+        algorithm.setCushionExact(false);
+        int[] fast = draw(algorithm);
+
+        int shaded = 0;
+        for (int i = 0; i < exact.length; i++) {
+            for (int shift = 0; shift < 24; shift += 8) {
+                int e = (exact[i] >> shift) & 0xff;
+                int f = (fast[i] >> shift) & 0xff;
+                assertTrue("pixel " + i + " : " + e + " drawn " + f,
+                           Math.abs(e - f) <= 1);
+            }
+            if (exact[i] != exact[0]) {
+                shaded++;
+            }
+        }
+        assertTrue("nothing shaded", shaded > exact.length / 2);
+    }
+
+    /**
+     * Draws the model with the algorithm, already initialized.
+     *
+     * @param algorithm    the algorithm
+     * @return             the pixels of the image
+     */
+    private static int[] draw(TMAlgorithm algorithm) {
+        BufferedImage image = new BufferedImage(TMTestTree.WIDTH,
+                TMTestTree.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        algorithm.draw(image,
+                new Rectangle(0, 0, TMTestTree.WIDTH, TMTestTree.HEIGHT),
+                model.getRoot());
+        return image.getRGB(0, 0, TMTestTree.WIDTH, TMTestTree.HEIGHT,
+                            null, 0, TMTestTree.WIDTH);
+    }
+
+}
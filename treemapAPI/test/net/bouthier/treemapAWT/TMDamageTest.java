@@ -0,0 +1,173 @@
+/*
+ * TMDamageTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the view only repaints the part changed by an update of the
+ * model : the areas of the nodes drawn differently and the areas moved by
+ * the layout, and that repainting only that part gives the image of a
+ * whole repaint.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMDamageTest {
+
+    private TMTestTree.Node root   = null; // the tree
+    private Tint            tint   = null; // its drawing
+    private TMView          view   = null; // its view
+    private BufferedImage   image  = null; // the image last painted
+    private List<TMTestTree.Node> leaves =
+        new ArrayList<TMTestTree.Node>(); // its leaves
+    private List<TMTestTree.Node> composites =
+        new ArrayList<TMTestTree.Node>(); // its composite nodes
+
+
+    /* --- Fixture --- */
+
+    @Before
+    public void buildView() {
+        root = TMTestTree.build(new Random(2001), 4);
+        TMTestTree.collect(root, leaves, composites);
+        tint = new Tint();
+        view = TMTestTree.view(root, tint);
+        image = new BufferedImage(TMTestTree.WIDTH, TMTestTree.HEIGHT,
+                                  BufferedImage.TYPE_INT_RGB);
+        TMTestTree.paint(view, image,
+                new Rectangle(0, 0, TMTestTree.WIDTH, TMTestTree.HEIGHT));
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void nothingChangedIsNotDamaged() {
+        Rectangle damage = view.takeDamage();
+        assertNotNull(damage);
+        assertTrue(damage.isEmpty());
+    }
+
+    @Test
+    public void drawingChangesDamageTheDrawnArea() {
+        TMTestTree.Node leaf = leaves.get(leaves.size() / 2);
+        tint.colors.put(leaf, Color.red);
+        TMTestTree.updateDrawing(view.getRootAnderson(), leaf);
+
+        Rectangle area = view.getRootAnderson().nodeContaining(leaf).getArea();
+        assertEquals(new Rectangle(area.x, area.y,
+                                   area.width + 1, area.height + 1),
+                     repaintDamage());
+        assertTrue(view.takeDamage().isEmpty());
+    }
+
+    @Test
+    public void sizeChangesDamageTheMovedAreas() {
+        for (int i = 0; i < 5; i++) {
+            TMTestTree.setSize(view.getRootAnderson(),
+                               leaves.get(i * 7), 50 + i);
+            assertFalse(repaintDamage().isEmpty());
+        }
+    }
+
+    @Test
+    public void structureChangesDamageTheMovedAreas() {
+        TMTestTree.Node parent = composites.get(composites.size() / 2);
+        TMTestTree.Node child = TMTestTree.Node.leaf("new", 30);
+        TMTestTree.addChild(view.getRootAnderson(), parent, child);
+        assertFalse(repaintDamage().isEmpty());
+        TMTestTree.removeChild(view.getRootAnderson(), parent, child);
+        assertFalse(repaintDamage().isEmpty());
+    }
+
+    @Test
+    public void tooManyDrawingChangesDamageTheWholeView() {
+        assertTrue(leaves.size() > 256);
+        for (TMTestTree.Node leaf : leaves) {
+            tint.colors.put(leaf, Color.red);
+        }
+        for (TMTestTree.Node leaf : leaves) {
+            TMTestTree.updateDrawing(view.getRootAnderson(), leaf);
+        }
+        assertNull(view.takeDamage());
+        assertTrue(view.takeDamage().isEmpty());
+    }
+
+
+    /* --- Repainting --- */
+
+    /**
+     * Repaints only the damaged part of the view over the last painted
+     * image, and checks that it gives the image of a whole repaint.
+     *
+     * @return    the damaged part
+     */
+    private Rectangle repaintDamage() {
+        Rectangle damage = view.takeDamage();
+        assertNotNull(damage);
+        int[] repainted = TMTestTree.paint(view, image, damage);
+        assertArrayEquals(TMTestTree.paint(view), repainted);
+        return damage;
+    }
+
+    /**
+     * The Tint class draws the nodes with the default colors, unless given
+     * another one.
+     */
+    private static class Tint
+            extends TMTestTree.Draw {
+
+        final Map<TMTestTree.Node, Color> colors =
+            new IdentityHashMap<TMTestTree.Node, Color>(); // given colors
+
+        public Paint getFilling(TMNodeAdapter nodeAdapter) {
+            Color color = colors.get(nodeAdapter.getNode());
+            return (color != null) ? color : super.getFilling(nodeAdapter);
+        }
+    }
+
+}
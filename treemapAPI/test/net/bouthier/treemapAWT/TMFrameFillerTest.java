@@ -0,0 +1,149 @@
+/*
+ * TMFrameFillerTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Checks that filling only the frame of the covered composites with
+ * TMFrameFiller draws the image of the whole fillings, and that a box is
+ * only taken as covered by opaque children.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMFrameFillerTest {
+
+    private static TMNodeModelRoot model = null; // the model drawn
+
+
+    /* --- Fixture --- */
+
+    @BeforeClass
+    public static void buildModel() {
+        model = TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void framedCompositesDrawTheSameImage() {
+        TMTestTree.assertSameAsSequential(model, new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setFramedComposites(true);
+            }
+        });
+    }
+
+    @Test
+    public void framedCushionsDrawTheSameImage() {
+        final TMTestTree.Mode cushion = new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setCushion(true);
+            }
+        };
+        TMTestTree.assertSameAsSequential(model, cushion,
+                                          new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                cushion.apply(algorithm);
+                algorithm.setFramedComposites(true);
+            }
+        });
+    }
+
+    @Test
+    public void opaqueChildrenCoverTheirBox() {
+        TMNodeModel root = layOut(new Glass(null));
+        assertNotNull(new TMFrameFiller(new TMAlgorithmSquarified())
+                .getCoveredBox(root));
+    }
+
+    @Test
+    public void translucentChildDoesNotCoverItsBox() {
+        TMNodeModel root = layOut(new Glass("b"));
+        assertNull(new TMFrameFiller(new TMAlgorithmSquarified())
+                .getCoveredBox(root));
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Lays out a root with three leaves, drawn by the given object.
+     *
+     * @param draw    the object computing the drawing
+     * @return        the root laid out
+     */
+    private static TMNodeModel layOut(TMComputeDraw draw) {
+        TMTestTree.Node root = new TMTestTree.Node("root");
+        root.children.add(TMTestTree.Node.leaf("a", 3));
+        root.children.add(TMTestTree.Node.leaf("b", 2));
+        root.children.add(TMTestTree.Node.leaf("c", 1));
+        TMNodeModelRoot model = TMTestTree.model(root, draw);
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(model.getRoot(), null);
+        algorithm.layout(model.getRoot());
+        return model.getRoot();
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The drawing of the nodes, with one of them translucent.
+     */
+    private static class Glass
+            extends TMTestTree.Draw {
+
+        private final String glass; // name of the translucent node, or null
+
+        Glass(String glass) {
+            this.glass = glass;
+        }
+
+        public Paint getFilling(TMNodeAdapter nodeAdapter) {
+            TMTestTree.Node node = (TMTestTree.Node) nodeAdapter.getNode();
+            if (node.name.equals(glass)) {
+                return new Color(0, 0, 255, 128);
+            }
+            return super.getFilling(nodeAdapter);
+        }
+
+    }
+
+}
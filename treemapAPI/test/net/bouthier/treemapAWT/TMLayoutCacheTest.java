@@ -0,0 +1,200 @@
+/*
+ * TMLayoutCacheTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that TMLayoutCache restores the layouts it keeps, evicts the least
+ * recently used ones first, and drops the layouts of an older version of
+ * the model.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMLayoutCacheTest {
+
+    private static final Rectangle SMALL =
+            new Rectangle(0, 0, 319, 239); // a second root area
+    private static final Rectangle WIDE =
+            new Rectangle(0, 0, 799, 239); // a third root area
+
+    private TMNodeModelRoot model     = null; // the model laid out
+    private TMNodeModel     root      = null; // its root
+    private TMAlgorithm     algorithm = null; // the algorithm laying out
+    private TMLayoutCache   cache     = null; // the cache tested
+
+
+    /* --- Fixture --- */
+
+    @Before
+    public void buildModel() {
+        model = TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+        root = model.getRoot();
+        algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(root, null);
+        cache = new TMLayoutCache();
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void storedLayoutIsRestored() {
+        Rectangle bounds = new Rectangle(root.getArea());
+        List<Rectangle> expected = layOut(bounds);
+        cache.store(algorithm, root, bounds, 0);
+
+        layOut(SMALL);
+        assertTrue(cache.restore(algorithm, root, bounds, 0));
+        assertEquals(expected, TMTestTree.areas(root));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void otherKeysAreMissed() {
+        Rectangle bounds = new Rectangle(root.getArea());
+        layOut(bounds);
+        cache.store(algorithm, root, bounds, 0);
+
+        assertFalse(cache.restore(algorithm, root, SMALL, 0));
+        assertFalse(cache.restore(new TMAlgorithmClassic(), root, bounds, 0));
+        TMNodeModel child = (TMNodeModel)
+                ((TMNodeModelComposite) root).children().nextElement();
+        assertFalse(cache.restore(algorithm, child, bounds, 0));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedLayoutIsEvictedFirst() {
+        Rectangle bounds = new Rectangle(root.getArea());
+        cache.setMaxEntries(2);
+        layOut(bounds);
+        cache.store(algorithm, root, bounds, 0);
+        layOut(SMALL);
+        cache.store(algorithm, root, SMALL, 0);
+
+        // restoring the first layout makes the second the least recent
+        assertTrue(cache.restore(algorithm, root, bounds, 0));
+        layOut(WIDE);
+        cache.store(algorithm, root, WIDE, 0);
+
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.contains(algorithm, root, bounds, 0));
+        assertFalse(cache.contains(algorithm, root, SMALL, 0));
+        assertTrue(cache.contains(algorithm, root, WIDE, 0));
+    }
+
+    @Test
+    public void memoryBoundEvictsLayouts() {
+        Rectangle bounds = new Rectangle(root.getArea());
+        layOut(bounds);
+        cache.store(algorithm, root, bounds, 0);
+        long one = cache.getBytes();
+        assertTrue(one > 0);
+
+        cache.setMaxBytes(one + (one / 2));
+        layOut(SMALL);
+        cache.store(algorithm, root, SMALL, 0);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(one, cache.getBytes());
+        assertFalse(cache.contains(algorithm, root, bounds, 0));
+        assertTrue(cache.contains(algorithm, root, SMALL, 0));
+
+        // a layout bigger than the bound is not kept
+        cache.setMaxBytes(one / 2);
+        assertEquals(0, cache.getEntryCount());
+        layOut(bounds);
+        cache.store(algorithm, root, bounds, 0);
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void newVersionDropsTheOlderLayouts() {
+        Rectangle bounds = new Rectangle(root.getArea());
+        layOut(bounds);
+        cache.store(algorithm, root, bounds, 3);
+        cache.store(new TMAlgorithmClassic(), root, bounds, 3);
+        assertEquals(2, cache.getEntryCount());
+
+        assertFalse(cache.restore(algorithm, root, bounds, 4));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getBytes());
+
+        // a layout of an older version is not kept any more
+        cache.store(algorithm, root, bounds, 3);
+        assertEquals(0, cache.getEntryCount());
+        assertFalse(cache.restore(algorithm, root, bounds, 3));
+    }
+
+    @Test
+    public void removedAlgorithmLosesItsLayouts() {
+        Rectangle bounds = new Rectangle(root.getArea());
+        TMAlgorithm other = new TMAlgorithmClassic();
+        layOut(bounds);
+        cache.store(algorithm, root, bounds, 0);
+        cache.store(algorithm, root, SMALL, 0);
+        cache.store(other, root, bounds, 0);
+
+        cache.remove(algorithm);
+        assertEquals(1, cache.getEntryCount());
+        assertFalse(cache.contains(algorithm, root, bounds, 0));
+        assertFalse(cache.contains(algorithm, root, SMALL, 0));
+        assertTrue(cache.contains(other, root, bounds, 0));
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Lays out the model in the given root area, and returns the areas of
+     * its nodes.
+     *
+     * @param bounds    the area of the root
+     * @return          the areas of the nodes
+     */
+    private List<Rectangle> layOut(Rectangle bounds) {
+        root.getArea().setBounds(bounds);
+        algorithm.layout(root);
+        return TMTestTree.areas(root);
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * TMLayoutTaskTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Checks that the fork/join layout of TMLayoutTask gives the nodes the areas
+ * of the sequential layout, for every algorithm, before and after updates.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMLayoutTaskTest {
+
+    private static final int THRESHOLD = 16; // min nodes to fork a subtree
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void parallelLayoutGivesTheSequentialAreas() {
+        TMNodeModelRoot model =
+                TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            assertSameLayout(model, algorithm);
+        }
+    }
+
+    @Test
+    public void parallelLayoutGivesTheSequentialAreasAfterUpdates() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2002), 5);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+        List<TMTestTree.Node> composites = new ArrayList<TMTestTree.Node>();
+        TMTestTree.collect(root, leaves, composites);
+        Random random = new Random(7);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMAlgorithm parallel = algorithm.copy();
+            parallel.setParallelLayout(true);
+            parallel.setParallelThreshold(THRESHOLD);
+            parallel.initialize(model.getRoot(), null);
+            parallel.layout(model.getRoot());
+            for (int i = 0; i < 5; i++) {
+                TMTestTree.setSize(model,
+                        leaves.get(random.nextInt(leaves.size())),
+                        1 + random.nextInt(2000));
+            }
+            // the parallel algorithm lays out again what changed
+            parallel.layout(model.getRoot());
+            List<Rectangle> areas = TMTestTree.areas(model.getRoot());
+            clearAreas(model.getRoot());
+            algorithm.initialize(model.getRoot(), null);
+            algorithm.layout(model.getRoot());
+            assertEquals(algorithm.getClass().getSimpleName(),
+                         TMTestTree.areas(model.getRoot()), areas);
+        }
+    }
+
+    @Test
+    public void parallelLayoutDrawsTheSameImage() {
+        TMNodeModelRoot model =
+                TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+        TMTestTree.assertSameAsSequential(model, new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setParallelLayout(true);
+                algorithm.setParallelThreshold(THRESHOLD);
+            }
+        });
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Checks that the parallel layout of the algorithm gives the areas of
+     * its sequential layout. The areas are cleared before each layout, so
+     * that a subtree left out by a layout can't keep the areas of the other.
+     *
+     * @param model        the model
+     * @param algorithm    the algorithm
+     */
+    private static void assertSameLayout(TMNodeModelRoot model,
+                                         TMAlgorithm     algorithm) {
+        clearAreas(model.getRoot());
+        algorithm.initialize(model.getRoot(), null);
+        algorithm.layout(model.getRoot());
+        List<Rectangle> expected = TMTestTree.areas(model.getRoot());
+
+        clearAreas(model.getRoot());
+        TMAlgorithm parallel = algorithm.copy();
+        parallel.setParallelLayout(true);
+        parallel.setParallelThreshold(THRESHOLD);
+        parallel.initialize(model.getRoot(), null);
+        parallel.layout(model.getRoot());
+        assertEquals(algorithm.getClass().getSimpleName(),
+                     expected, TMTestTree.areas(model.getRoot()));
+    }
+
+    /**
+     * Clears the areas of the nodes under a node.
+     *
+     * @param node    the node whose descendants are cleared
+     */
+    private static void clearAreas(TMNodeModel node) {
+        if (node.isLeaf()) {
+            return;
+        }
+        for (Enumeration<?> e = ((TMNodeModelComposite) node).children();
+             e.hasMoreElements(); ) {
+            TMNodeModel child = (TMNodeModel) e.nextElement();
+            child.getArea().setBounds(0, 0, 0, 0);
+            clearAreas(child);
+        }
+    }
+
+}
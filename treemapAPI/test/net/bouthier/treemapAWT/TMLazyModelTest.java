@@ -0,0 +1,550 @@
+/*
+ * TMLazyModelTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Checks that a lazy model, expanded, folded and updated inside its folded
+ * nodes, gives the built nodes the sizes and the areas of an eager model of
+ * the same tree, computes again only the sizes which changed, and makes the
+ * layouts kept by the layout cache and the zoom images out of date.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMLazyModelTest {
+
+    private static final int DEPTH = 6; // max depth of the random trees
+    private static final long SEED = 2036; // seed of a tree with a root
+                                           // composite of ~4000 nodes
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void expandedModelGivesTheEagerAreas() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMTestTree.Node root = TMTestTree.build(new Random(SEED), DEPTH);
+            TMNodeModelRoot lazy = TMTestTree.lazyModel(root);
+            algorithm.initialize(lazy.getRoot(), null);
+            expandAll(lazy, algorithm);
+            assertTrue(folded(lazy).size() > 0);
+            assertSameAsEager(lazy, root, algorithm);
+            assertFoldedOwners(lazy);
+        }
+    }
+
+    @Test
+    public void foldedAndExpandedAgainGivesTheEagerAreas() {
+        TMTestTree.Node root = TMTestTree.build(new Random(SEED), DEPTH);
+        TMNodeModelRoot lazy = TMTestTree.lazyModel(root);
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(lazy.getRoot(), null);
+        expandAll(lazy, algorithm);
+
+        // folds the expanded composite children of the root
+        int count = 0;
+        lazy.getLock().lock();
+        try {
+            for (Enumeration<?> e =
+                     ((TMNodeModelComposite) lazy.getRoot()).trueChildren();
+                 e.hasMoreElements(); ) {
+                TMNodeModel child = (TMNodeModel) e.nextElement();
+                if (!child.isLeaf()
+                        && !((TMNodeModelComposite) child).isFolded()) {
+                    ((TMNodeModelComposite) child).fold();
+                    count++;
+                }
+            }
+            lazy.getRoot().clearBuffers();
+        } finally {
+            lazy.getLock().unlock();
+        }
+        assertTrue(count > 0);
+        algorithm.layout(lazy.getRoot());
+        assertSameAsEager(lazy, root, algorithm);
+        assertFoldedOwners(lazy);
+
+        expandAll(lazy, algorithm);
+        assertSameAsEager(lazy, root, algorithm);
+        assertFoldedOwners(lazy);
+    }
+
+    @Test
+    public void updatesInsideFoldedNodesGiveTheEagerAreas() {
+        TMTestTree.Node root = TMTestTree.build(new Random(SEED), DEPTH);
+        TMNodeModelRoot lazy = TMTestTree.lazyModel(root);
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(lazy.getRoot(), null);
+        expandAll(lazy, algorithm);
+
+        Random random = new Random(9);
+        for (int round = 0; round < 10; round++) {
+            List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+            List<TMTestTree.Node> composites =
+                    new ArrayList<TMTestTree.Node>();
+            hidden(lazy, root, leaves, composites);
+            assertFalse(leaves.isEmpty());
+            assertFalse(composites.isEmpty());
+
+            TMTestTree.Node leaf = leaves.get(random.nextInt(leaves.size()));
+            TMTestTree.setSize(lazy, leaf, random.nextInt(1000));
+            TMTestTree.Node parent =
+                    composites.get(random.nextInt(composites.size()));
+            TMTestTree.addChild(lazy, parent, TMTestTree.Node.leaf(
+                    "added" + round, 1 + random.nextInt(1000)));
+            parent = composites.get(random.nextInt(composites.size()));
+            if (parent.children.size() > 1) {
+                TMTestTree.removeChild(lazy, parent, parent.children.get(0));
+            }
+
+            algorithm.layout(lazy.getRoot());
+            assertSameAsEager(lazy, root, algorithm);
+            assertFoldedOwners(lazy);
+        }
+        expandAll(lazy, algorithm);
+        assertSameAsEager(lazy, root, algorithm);
+        assertFoldedOwners(lazy);
+    }
+
+    @Test
+    public void onlyTheChangedSizesAreComputedAgain() {
+        TMTestTree.Node root = TMTestTree.build(new Random(SEED), DEPTH);
+        Counting size = new Counting();
+        TMNodeModelRoot lazy = new TMNodeModelRoot(root, size,
+                                                   new TMTestTree.Draw(),
+                                                   true);
+        lazy.getRoot().getArea().setBounds(0, 0, TMTestTree.WIDTH - 1,
+                                           TMTestTree.HEIGHT - 1);
+        List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+        TMTestTree.collect(root, leaves, new ArrayList<TMTestTree.Node>());
+        // each leaf once for the size of the root, once more if built
+        assertTrue(size.calls <= leaves.size() + root.children.size());
+
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(lazy.getRoot(), null);
+        expandAll(lazy, algorithm);
+
+        // a leaf inside a folded node holding other leaves
+        List<TMTestTree.Node> hidden = new ArrayList<TMTestTree.Node>();
+        hidden(lazy, root, hidden, new ArrayList<TMTestTree.Node>());
+        TMTestTree.Node changed = null;
+        for (TMTestTree.Node leaf : hidden) {
+            TMNodeModel owner = lazy.foldedNodeContaining(leaf);
+            if (owner.getNodeCount() > 3) {
+                changed = leaf;
+                break;
+            }
+        }
+        size.calls = 0;
+        TMTestTree.setSize(lazy, changed, changed.size + 1);
+        assertEquals(1, size.calls);
+
+        // the children of a folded node are built from the summaries
+        TMNodeModelComposite owner = lazy.foldedNodeContaining(changed);
+        int leafChildren = 0;
+        for (TMTestTree.Node child : ((TMTestTree.Node) owner.getNode())
+                                         .children) {
+            if (child.leaf) {
+                leafChildren++;
+            }
+        }
+        size.calls = 0;
+        lazy.getLock().lock();
+        try {
+            owner.expand();
+            lazy.getRoot().clearBuffers();
+        } finally {
+            lazy.getLock().unlock();
+        }
+        assertEquals(leafChildren, size.calls);
+    }
+
+    @Test
+    public void layoutCacheDropsTheLayoutsOfAnOlderModel() {
+        TMTestTree.Node root = TMTestTree.build(new Random(SEED), DEPTH);
+        TMNodeModelRoot lazy = TMTestTree.lazyModel(root);
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(lazy.getRoot(), null);
+        expandAll(lazy, algorithm);
+        TMNodeModel top = lazy.getRoot();
+        Rectangle bounds = new Rectangle(top.getArea());
+        TMLayoutCache cache = new TMLayoutCache();
+
+        // an update inside a folded node
+        long version = lazy.getLayoutVersion();
+        cache.store(algorithm, top, bounds, version);
+        List<TMTestTree.Node> hidden = new ArrayList<TMTestTree.Node>();
+        hidden(lazy, root, hidden, new ArrayList<TMTestTree.Node>());
+        TMTestTree.Node leaf = hidden.get(0);
+        TMTestTree.setSize(lazy, leaf, leaf.size + 100);
+        assertNotEquals(version, lazy.getLayoutVersion());
+        assertFalse(cache.restore(algorithm, top, bounds,
+                                  lazy.getLayoutVersion()));
+        assertEquals(0, cache.getEntryCount());
+
+        // the expansion of a folded node
+        algorithm.layout(top);
+        version = lazy.getLayoutVersion();
+        cache.store(algorithm, top, bounds, version);
+        TMNodeModelComposite owner = lazy.foldedNodeContaining(leaf);
+        lazy.getLock().lock();
+        try {
+            owner.expand();
+            lazy.getRoot().clearBuffers();
+        } finally {
+            lazy.getLock().unlock();
+        }
+        assertNotEquals(version, lazy.getLayoutVersion());
+        assertFalse(cache.restore(algorithm, top, bounds,
+                                  lazy.getLayoutVersion()));
+
+        // the folding of an expanded node
+        algorithm.layout(top);
+        version = lazy.getLayoutVersion();
+        cache.store(algorithm, top, bounds, version);
+        lazy.getLock().lock();
+        try {
+            owner.fold();
+            lazy.getRoot().clearBuffers();
+        } finally {
+            lazy.getLock().unlock();
+        }
+        assertNotEquals(version, lazy.getLayoutVersion());
+        assertFalse(cache.restore(algorithm, top, bounds,
+                                  lazy.getLayoutVersion()));
+        algorithm.layout(top);
+        assertSameAsEager(lazy, root, algorithm);
+    }
+
+    @Test
+    public void updatesInsideFoldedNodesAreNotRestoredByTheZoom() {
+        TMTestTree.Node top = chain();
+        TMTestTree.Node first = top.children.get(2);
+        TMTestTree.Node tiny = first.children.get(3);
+        TMView view = TMTestTree.lazyView(top);
+        settle(view);
+
+        // nothing changed : the level is restored
+        zoomOn(view, first);
+        TMTestTree.paint(view);
+        zoomOn(view, first.children.get(2));
+        TMTestTree.paint(view);
+        assertEquals(1, view.getZoomImageCount());
+        unzoom(view);
+        assertTrue(view.isFrameRestored());
+        TMTestTree.paint(view);
+
+        // a leaf of a folded node changed : the level is not restored
+        zoomOn(view, first.children.get(2));
+        TMTestTree.paint(view);
+        assertEquals(1, view.getZoomImageCount());
+        TMNodeModelRoot model = view.getRootAnderson();
+        assertNull(model.nodeContaining(tiny.children.get(0)));
+        TMTestTree.setSize(model, tiny.children.get(0), 0.0003f);
+        unzoom(view);
+        assertEquals(0, view.getZoomImageCount());
+        assertFalse(view.isFrameRestored());
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Lays out the lazy model and builds the children of the folded nodes
+     * asked for, as the TMThreadExpand does, until no more node is asked
+     * for.
+     *
+     * @param lazy         the lazy model
+     * @param algorithm    the algorithm laying out the model
+     */
+    private static void expandAll(TMNodeModelRoot lazy,
+                                  TMAlgorithm     algorithm) {
+        for (int round = 0; round < 100; round++) {
+            algorithm.layout(lazy.getRoot());
+            List<TMNodeModelComposite> nodes = lazy.takeExpansions();
+            if (nodes.isEmpty()) {
+                return;
+            }
+            lazy.getLock().lock();
+            try {
+                for (TMNodeModelComposite node : nodes) {
+                    if (lazy.nodeContaining(node.getNode()) == node) {
+                        node.expand();
+                    }
+                }
+                lazy.getRoot().clearBuffers();
+            } finally {
+                lazy.getLock().unlock();
+            }
+        }
+        fail("the expansions do not end");
+    }
+
+    /**
+     * Checks that the nodes laid out in the lazy model have the size and
+     * the area of the same nodes in an eager model of the tree, laid out by
+     * the same algorithm.
+     *
+     * @param lazy         the lazy model, laid out
+     * @param root         the root of the tree
+     * @param algorithm    the algorithm laying out the lazy model
+     */
+    private static void assertSameAsEager(TMNodeModelRoot lazy,
+                                          TMTestTree.Node root,
+                                          TMAlgorithm     algorithm) {
+        String name = algorithm.getClass().getSimpleName();
+        TMNodeModelRoot eager = TMTestTree.model(root);
+        TMAlgorithm other = algorithm.copy();
+        other.initialize(eager.getRoot(), null);
+        other.layout(eager.getRoot());
+
+        List<TMNodeModel> shown = new ArrayList<TMNodeModel>();
+        collectLaidOut(lazy.getRoot(), shown);
+        assertTrue(shown.size() > 1);
+        for (TMNodeModel node : shown) {
+            TMNodeModel expected = eager.nodeContaining(node.getNode());
+            assertEquals(name, expected.getSize(), node.getSize(), 0.0f);
+            assertEquals(name, expected.getNodeCount(), node.getNodeCount());
+            assertEquals(name, expected.getArea(), node.getArea());
+        }
+    }
+
+    /**
+     * Checks that the nodes inside the folded nodes have no model, and are
+     * found inside their folded node.
+     *
+     * @param lazy    the lazy model
+     */
+    private static void assertFoldedOwners(TMNodeModelRoot lazy) {
+        for (TMNodeModelComposite owner : folded(lazy)) {
+            List<TMTestTree.Node> nodes = new ArrayList<TMTestTree.Node>();
+            for (TMTestTree.Node child
+                    : ((TMTestTree.Node) owner.getNode()).children) {
+                TMTestTree.collect(child, nodes, nodes);
+            }
+            for (TMTestTree.Node node : nodes) {
+                assertNull(lazy.nodeContaining(node));
+                assertSame(owner, lazy.foldedNodeContaining(node));
+            }
+        }
+    }
+
+    /**
+     * Adds to the list the nodes of the subtree reached through the
+     * children laid out.
+     *
+     * @param node     the root of the subtree
+     * @param nodes    the list of the nodes
+     */
+    private static void collectLaidOut(TMNodeModel       node,
+                                       List<TMNodeModel> nodes) {
+        nodes.add(node);
+        if (!node.isLeaf()) {
+            for (TMNodeModel child
+                    : ((TMNodeModelComposite) node).getLayoutOrder()) {
+                collectLaidOut(child, nodes);
+            }
+        }
+    }
+
+    /**
+     * Returns the folded nodes of the lazy model.
+     *
+     * @param lazy    the lazy model
+     * @return        the folded nodes
+     */
+    private static List<TMNodeModelComposite> folded(TMNodeModelRoot lazy) {
+        List<TMNodeModelComposite> folded =
+                new ArrayList<TMNodeModelComposite>();
+        addFolded(lazy.getRoot(), folded);
+        return folded;
+    }
+
+    /**
+     * Adds to the list the folded nodes of the subtree.
+     *
+     * @param node      the root of the subtree
+     * @param folded    the list of the folded nodes
+     */
+    private static void addFolded(TMNodeModel                node,
+                                  List<TMNodeModelComposite> folded) {
+        if (node.isLeaf()) {
+            return;
+        }
+        TMNodeModelComposite composite = (TMNodeModelComposite) node;
+        if (composite.isFolded()) {
+            folded.add(composite);
+            return;
+        }
+        for (Enumeration<?> e = composite.trueChildren();
+             e.hasMoreElements(); ) {
+            addFolded((TMNodeModel) e.nextElement(), folded);
+        }
+    }
+
+    /**
+     * Fills the lists with the leaves and the composites of the tree which
+     * have no model, being inside folded nodes.
+     *
+     * @param lazy          the lazy model
+     * @param root          the root of the tree
+     * @param leaves        the list of the hidden leaves
+     * @param composites    the list of the hidden composites
+     */
+    private static void hidden(TMNodeModelRoot       lazy,
+                               TMTestTree.Node       root,
+                               List<TMTestTree.Node> leaves,
+                               List<TMTestTree.Node> composites) {
+        List<TMTestTree.Node> allLeaves = new ArrayList<TMTestTree.Node>();
+        List<TMTestTree.Node> allComposites =
+                new ArrayList<TMTestTree.Node>();
+        TMTestTree.collect(root, allLeaves, allComposites);
+        for (TMTestTree.Node leaf : allLeaves) {
+            if (lazy.nodeContaining(leaf) == null) {
+                leaves.add(leaf);
+            }
+        }
+        for (TMTestTree.Node composite : allComposites) {
+            if (lazy.nodeContaining(composite) == null) {
+                composites.add(composite);
+            }
+        }
+    }
+
+
+    /* --- Zoomed view --- */
+
+    /**
+     * Returns a chain of three composite nodes, each with two leaves and
+     * the next composite, the second one holding a composite too small to
+     * be expanded.
+     *
+     * @return    the top of the chain
+     */
+    private static TMTestTree.Node chain() {
+        TMTestTree.Node top = new TMTestTree.Node("c0");
+        TMTestTree.Node node = top;
+        for (int depth = 1; depth <= 3; depth++) {
+            node.children.add(TMTestTree.Node.leaf("a" + depth, depth));
+            node.children.add(TMTestTree.Node.leaf("b" + depth, 2 * depth));
+            TMTestTree.Node next = new TMTestTree.Node("c" + depth);
+            node.children.add(next);
+            node = next;
+        }
+        node.children.add(TMTestTree.Node.leaf("d", 6));
+        TMTestTree.Node tiny = new TMTestTree.Node("tiny");
+        tiny.children.add(TMTestTree.Node.leaf("t0", 0.0002f));
+        tiny.children.add(TMTestTree.Node.leaf("t1", 0.0002f));
+        top.children.get(2).children.add(tiny);
+        return top;
+    }
+
+    /**
+     * Paints the view until the nodes laid out big enough are expanded,
+     * and the layout of the model does not change anymore.
+     *
+     * @param view    the view
+     */
+    private static void settle(TMView view) {
+        long version = -1;
+        int stable = 0;
+        for (int i = 0; (i < 200) && (stable < 5); i++) {
+            TMTestTree.paint(view);
+            TMTestTree.sleep(20);
+            long current = view.getRootAnderson().getLayoutVersion();
+            stable = (current == version) ? stable + 1 : 0;
+            version = current;
+        }
+        assertEquals("the view does not settle", 5, stable);
+    }
+
+    /**
+     * Zooms on the given node, a child of the root displayed.
+     *
+     * @param view    the view
+     * @param node    the node
+     */
+    private static void zoomOn(final TMView          view,
+                               final TMTestTree.Node node) {
+        TMTestTree.onEdt(new Runnable() {
+            public void run() {
+                Rectangle area =
+                    view.getRootAnderson().nodeContaining(node).getArea();
+                view.zoom((int) area.getCenterX(), (int) area.getCenterY());
+            }
+        });
+    }
+
+    /**
+     * Unzooms of one level.
+     *
+     * @param view    the view
+     */
+    private static void unzoom(final TMView view) {
+        TMTestTree.onEdt(new Runnable() {
+            public void run() {
+                view.unzoom();
+            }
+        });
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The size of the leaves, counting the leaves sized.
+     */
+    private static class Counting
+            extends TMTestTree.Size {
+
+        int calls = 0; // number of leaves sized
+
+        public float getSize(TMNode node) {
+            calls++;
+            return super.getSize(node);
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * TMNodeIndexTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the index of the models by TMNode of TMNodeModelRoot finds
+ * the model of every node of the tree, and only them, after the tree is
+ * built and after children are added, removed or moved.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMNodeIndexTest {
+
+    /* --- Tests --- */
+
+    @Test
+    public void builtModelsAreIndexed() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2023), 5);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        assertIndexed(model, root);
+    }
+
+    @Test
+    public void addedSubtreesAreIndexed() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2023), 4);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        List<TMTestTree.Node> composites = composites(root);
+
+        TMTestTree.Node leaf = TMTestTree.Node.leaf("leaf", 3);
+        TMTestTree.addChild(model, composites.get(1), leaf);
+        TMTestTree.Node subtree = TMTestTree.build(new Random(1), 3);
+        TMTestTree.addChild(model, composites.get(2), subtree);
+        assertIndexed(model, root);
+
+        TMNodeModel leafModel = model.nodeContaining(leaf);
+        assertSame(model.nodeContaining(composites.get(1)),
+                   leafModel.getParent());
+        for (TMTestTree.Node node : nodes(subtree)) {
+            assertNotNull(model.nodeContaining(node));
+        }
+    }
+
+    @Test
+    public void removedSubtreesAreForgotten() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2023), 5);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        TMTestTree.Node removed = null;
+        for (TMTestTree.Node child : root.children) {
+            if (!child.leaf) {
+                removed = child;
+                break;
+            }
+        }
+        List<TMTestTree.Node> subtree = nodes(removed);
+        assertTrue(subtree.size() > 1);
+
+        TMTestTree.removeChild(model, root, removed);
+        for (TMTestTree.Node node : subtree) {
+            assertNull(node.name, model.nodeContaining(node));
+        }
+        assertIndexed(model, root);
+    }
+
+    @Test
+    public void movedNodesAreIndexedAtTheirNewPlace() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2023), 4);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        // two composite children of the root, the first with two leaves
+        TMTestTree.Node from = null;
+        TMTestTree.Node to = null;
+        for (TMTestTree.Node child : root.children) {
+            if (child.leaf) {
+                continue;
+            } else if (from == null) {
+                from = child;
+            } else {
+                to = child;
+            }
+        }
+        TMTestTree.addChild(model, from, TMTestTree.Node.leaf("first", 2));
+        TMTestTree.addChild(model, from, TMTestTree.Node.leaf("second", 5));
+        TMTestTree.Node moved = from.children.get(from.children.size() - 1);
+
+        // removed, then added again elsewhere
+        TMTestTree.removeChild(model, from, moved);
+        TMTestTree.addChild(model, to, moved);
+        assertIndexed(model, root);
+        assertSame(model.nodeContaining(to),
+                   model.nodeContaining(moved).getParent());
+
+        // added elsewhere first, then removed from its old parent
+        moved = from.children.get(from.children.size() - 1);
+        TMTestTree.addChild(model, to, moved);
+        TMTestTree.removeChild(model, from, moved);
+        assertIndexed(model, root);
+        assertSame(model.nodeContaining(to),
+                   model.nodeContaining(moved).getParent());
+        assertFalse(contains(model.nodeContaining(from), moved));
+    }
+
+    @Test
+    public void manyUpdatesKeepTheIndex() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2023), 4);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        Random random = new Random(3);
+        List<TMTestTree.Node> gone = new ArrayList<TMTestTree.Node>();
+        for (int round = 0; round < 50; round++) {
+            List<TMTestTree.Node> composites = composites(root);
+            TMTestTree.Node parent =
+                    composites.get(random.nextInt(composites.size()));
+            if (random.nextBoolean() || (parent.children.size() < 2)) {
+                TMTestTree.addChild(model, parent,
+                        TMTestTree.Node.leaf("added" + round,
+                                             1 + random.nextInt(20)));
+            } else {
+                TMTestTree.Node child = parent.children.get(
+                        random.nextInt(parent.children.size()));
+                gone.addAll(nodes(child));
+                TMTestTree.removeChild(model, parent, child);
+            }
+        }
+        assertIndexed(model, root);
+        for (TMTestTree.Node node : gone) {
+            assertNull(node.name, model.nodeContaining(node));
+        }
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Checks that the index finds the model of every node of the tree, and
+     * that this model is the one built in the model tree.
+     *
+     * @param model    the model
+     * @param root     the root of the tree
+     */
+    private static void assertIndexed(TMNodeModelRoot model,
+                                      TMTestTree.Node root) {
+        List<TMNodeModel> built = new ArrayList<TMNodeModel>();
+        collect(model.getRoot(), built);
+        for (TMNodeModel nodeModel : built) {
+            assertSame(nodeModel, model.nodeContaining(nodeModel.getNode()));
+        }
+        List<TMTestTree.Node> nodes = nodes(root);
+        assertEquals(nodes.size(), built.size());
+        for (TMTestTree.Node node : nodes) {
+            TMNodeModel nodeModel = model.nodeContaining(node);
+            assertNotNull(node.name, nodeModel);
+            assertSame(node, nodeModel.getNode());
+        }
+    }
+
+    /**
+     * Adds the models of a subtree to a list, walking the model tree.
+     *
+     * @param nodeModel    the root of the subtree
+     * @param models       the list of the models
+     */
+    private static void collect(TMNodeModel       nodeModel,
+                                List<TMNodeModel> models) {
+        models.add(nodeModel);
+        if (!nodeModel.isLeaf()) {
+            for (Enumeration<?> e =
+                     ((TMNodeModelComposite) nodeModel).trueChildren();
+                 e.hasMoreElements(); ) {
+                collect((TMNodeModel) e.nextElement(), models);
+            }
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the composite has a child model of the
+     * node.
+     *
+     * @param composite    the composite
+     * @param node         the node
+     * @return             <CODE>true</CODE> if the node is a child
+     */
+    private static boolean contains(TMNodeModel     composite,
+                                    TMTestTree.Node node) {
+        for (Enumeration<?> e =
+                 ((TMNodeModelComposite) composite).trueChildren();
+             e.hasMoreElements(); ) {
+            if (((TMNodeModel) e.nextElement()).getNode() == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the nodes of a subtree.
+     *
+     * @param root    the root of the subtree
+     * @return        the nodes
+     */
+    private static List<TMTestTree.Node> nodes(TMTestTree.Node root) {
+        List<TMTestTree.Node> nodes = new ArrayList<TMTestTree.Node>();
+        List<TMTestTree.Node> composites = new ArrayList<TMTestTree.Node>();
+        TMTestTree.collect(root, nodes, composites);
+        nodes.addAll(composites);
+        return nodes;
+    }
+
+    /**
+     * Returns the composite nodes of a tree.
+     *
+     * @param root    the root of the tree
+     * @return        the composites
+     */
+    private static List<TMTestTree.Node> composites(TMTestTree.Node root) {
+        List<TMTestTree.Node> composites = new ArrayList<TMTestTree.Node>();
+        TMTestTree.collect(root, new ArrayList<TMTestTree.Node>(), composites);
+        return composites;
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * TMPixelDrawerTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Checks that TMPixelDrawer, writing the opaque rectangles directly in the
+ * pixels of the image, draws the image of the Graphics2D drawing, and falls
+ * back to it for the other fillings.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMPixelDrawerTest {
+
+    // drawing by writing the pixels
+    private static final TMTestTree.Mode PIXELS = new TMTestTree.Mode() {
+        public void apply(TMAlgorithm algorithm) {
+            algorithm.setPixelDrawing(true);
+        }
+    };
+
+    private static TMNodeModelRoot model = null; // the model drawn
+
+
+    /* --- Fixture --- */
+
+    @BeforeClass
+    public static void buildModel() {
+        model = TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void pixelDrawingDrawsTheSameImage() {
+        TMTestTree.assertSameAsSequential(model, PIXELS);
+    }
+
+    @Test
+    public void pixelDrawingOfFramesDrawsTheSameImage() {
+        final TMTestTree.Mode framed = new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setFramedComposites(true);
+            }
+        };
+        TMTestTree.assertSameAsSequential(model, framed,
+                                          new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                framed.apply(algorithm);
+                PIXELS.apply(algorithm);
+            }
+        });
+    }
+
+    @Test
+    public void translucentNodesAreDrawnTheSame() {
+        TMNodeModelRoot translucent = TMTestTree.model(
+                TMTestTree.build(new Random(2001), 5), new Translucent());
+        TMTestTree.assertSameAsSequential(translucent, PIXELS);
+    }
+
+    @Test
+    public void culledNodesAreDrawnAndCountedTheSame() {
+        final TMTestTree.Mode culled = new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setDetailThreshold(12);
+            }
+        };
+        TMTestTree.assertSameAsSequential(model, culled,
+                                          new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                culled.apply(algorithm);
+                PIXELS.apply(algorithm);
+            }
+        });
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMTestTree.drawHash(model, algorithm, culled);
+            TMAlgorithm pixels = algorithm.copy();
+            TMTestTree.drawHash(model, pixels, PIXELS);
+            assertEquals(algorithm.getClass().getSimpleName(),
+                         algorithm.getCulledNodeCount(),
+                         pixels.getCulledNodeCount());
+        }
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The drawing of the nodes, with a third of them translucent.
+     */
+    private static class Translucent
+            extends TMTestTree.Draw {
+
+        public Paint getFilling(TMNodeAdapter nodeAdapter) {
+            TMTestTree.Node node = (TMTestTree.Node) nodeAdapter.getNode();
+            int hash = node.name.hashCode();
+            if ((hash % 3) == 0) {
+                return new Color((hash & 0xffffff) | 0x80000000, true);
+            }
+            return super.getFilling(nodeAdapter);
+        }
+
+    }
+
+}
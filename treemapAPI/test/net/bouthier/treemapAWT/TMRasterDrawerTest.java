@@ -0,0 +1,166 @@
+/*
+ * TMRasterDrawerTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that TMRasterDrawer draws the subtrees kept in the raster cache as
+ * they are drawn directly, copies them on the next drawings, and draws again
+ * the subtrees changed by updates of the model.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMRasterDrawerTest {
+
+    // raster caching of the subtrees of at least 32x32 pixels
+    private static final TMTestTree.Mode RASTER = new TMTestTree.Mode() {
+        public void apply(TMAlgorithm algorithm) {
+            algorithm.setRasterCaching(true);
+            algorithm.getRasterCache().setMinArea(32 * 32);
+        }
+    };
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void rasterCachingDrawsTheSameImage() {
+        TMNodeModelRoot model =
+                TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+        TMTestTree.assertSameAsSequential(model, RASTER);
+    }
+
+    @Test
+    public void nextDrawingCopiesTheKeptImages() {
+        TMNodeModelRoot model =
+                TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        RASTER.apply(algorithm);
+        algorithm.initialize(model.getRoot(), null);
+        TMRasterCache cache = algorithm.getRasterCache();
+
+        int first = TMTestTree.drawHash(model, algorithm);
+        int kept = cache.getEntryCount();
+        long misses = cache.getMissCount();
+        assertTrue(kept > 0);
+        assertEquals(0, cache.getHitCount());
+
+        assertEquals(first, TMTestTree.drawHash(model, algorithm));
+        assertEquals(kept, cache.getEntryCount());
+        assertEquals(misses, cache.getMissCount());
+        assertTrue(cache.getHitCount() > 0);
+    }
+
+    @Test
+    public void sizeUpdatesDrawTheChangedSubtreesAgain() {
+        Random random = new Random(7);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMTestTree.Node root = TMTestTree.build(new Random(2003), 5);
+            TMNodeModelRoot model = TMTestTree.model(root);
+            List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+            TMTestTree.collect(root, leaves, new ArrayList<TMTestTree.Node>());
+            TMAlgorithm raster = prepare(model, algorithm);
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < 3; i++) {
+                    TMTestTree.setSize(model,
+                            leaves.get(random.nextInt(leaves.size())),
+                            1 + random.nextInt(2000));
+                }
+                assertSameAfterUpdate(model, algorithm, raster);
+            }
+        }
+    }
+
+    @Test
+    public void structureUpdatesDrawTheChangedSubtreesAgain() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            TMTestTree.Node root = TMTestTree.build(new Random(2003), 5);
+            TMNodeModelRoot model = TMTestTree.model(root);
+            List<TMTestTree.Node> composites =
+                    new ArrayList<TMTestTree.Node>();
+            TMTestTree.collect(root, new ArrayList<TMTestTree.Node>(),
+                               composites);
+            TMAlgorithm raster = prepare(model, algorithm);
+
+            TMTestTree.Node parent = composites.get(composites.size() / 2);
+            TMTestTree.addChild(model, parent,
+                                TMTestTree.Node.leaf("new", 1500));
+            assertSameAfterUpdate(model, algorithm, raster);
+
+            TMTestTree.removeChild(model, parent, parent.children.get(0));
+            assertSameAfterUpdate(model, algorithm, raster);
+        }
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Returns a copy of the algorithm caching the rasters of the subtrees,
+     * after a first drawing of the model has filled its cache.
+     *
+     * @param model        the model
+     * @param algorithm    the algorithm
+     * @return             the algorithm caching the rasters
+     */
+    private static TMAlgorithm prepare(TMNodeModelRoot model,
+                                       TMAlgorithm     algorithm) {
+        TMAlgorithm raster = algorithm.copy();
+        TMTestTree.drawHash(model, raster, RASTER);
+        assertTrue(raster.getRasterCache().getEntryCount() > 0);
+        return raster;
+    }
+
+    /**
+     * Checks that the algorithm caching the rasters draws, after an update
+     * of the model, the image drawn directly.
+     *
+     * @param model        the model updated
+     * @param algorithm    the algorithm drawing directly
+     * @param raster       the algorithm caching the rasters
+     */
+    private static void assertSameAfterUpdate(TMNodeModelRoot model,
+                                              TMAlgorithm     algorithm,
+                                              TMAlgorithm     raster) {
+        int hash = TMTestTree.drawHash(model, raster);
+        algorithm.initialize(model.getRoot(), null);
+        assertEquals(algorithm.getClass().getSimpleName(),
+                     TMTestTree.drawHash(model, algorithm), hash);
+    }
+
+}
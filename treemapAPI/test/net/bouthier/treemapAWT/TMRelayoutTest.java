@@ -0,0 +1,244 @@
+/*
+ * TMRelayoutTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that laying out again only the out-of-date subtrees after updates
+ * of the model gives the areas of a full layout, and leaves the subtrees
+ * not touched by the updates alone.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMRelayoutTest {
+
+    /* --- Tests --- */
+
+    @Test
+    public void sizeUpdatesGiveTheAreasOfAFullLayout() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            Updated updated = new Updated(algorithm, 0);
+            for (int round = 0; round < 5; round++) {
+                updated.changeSizes(4);
+                updated.assertFullLayout();
+            }
+        }
+    }
+
+    @Test
+    public void structureUpdatesGiveTheAreasOfAFullLayout() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            Updated updated = new Updated(algorithm, 0);
+            for (int round = 0; round < 5; round++) {
+                updated.addAndRemoveChildren();
+                updated.assertFullLayout();
+            }
+        }
+    }
+
+    @Test
+    public void updatesOfCulledNodesGiveTheAreasOfAFullLayout() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            Updated updated = new Updated(algorithm, 12);
+            for (int round = 0; round < 5; round++) {
+                updated.changeSizes(4);
+                updated.addAndRemoveChildren();
+                updated.assertFullLayout();
+            }
+        }
+    }
+
+    @Test
+    public void untouchedSubtreesAreNotLaidOutAgain() {
+        TMTestTree.Node root = TMTestTree.build(new Random(2004), 5);
+        TMNodeModelRoot model = TMTestTree.model(root);
+        TMAlgorithm algorithm = new TMAlgorithmSquarified();
+        algorithm.initialize(model.getRoot(), null);
+        algorithm.layout(model.getRoot());
+
+        // a leaf of the first composite child of the root changes
+        TMTestTree.Node changed = null;
+        for (TMTestTree.Node child : root.children) {
+            if (!child.leaf) {
+                List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+                TMTestTree.collect(child, leaves,
+                                   new ArrayList<TMTestTree.Node>());
+                changed = leaves.get(0);
+                break;
+            }
+        }
+        TMNodeModel changedModel = model.nodeContaining(changed);
+        List<TMNodeModelComposite> others =
+                new ArrayList<TMNodeModelComposite>();
+        List<Rectangle> areas = new ArrayList<Rectangle>();
+        List<TMNodeModel[]> orders = new ArrayList<TMNodeModel[]>();
+        for (Enumeration<?> e =
+                 ((TMNodeModelComposite) model.getRoot()).children();
+             e.hasMoreElements(); ) {
+            TMNodeModel child = (TMNodeModel) e.nextElement();
+            if (!child.isLeaf() && !isAncestor(child, changedModel)) {
+                TMNodeModelComposite composite = (TMNodeModelComposite) child;
+                others.add(composite);
+                areas.add(new Rectangle(composite.getArea()));
+                orders.add(composite.getLayoutOrder());
+            }
+        }
+        assertFalse(others.isEmpty());
+
+        // the same size again : the areas do not move
+        TMTestTree.setSize(model, changed, changed.size);
+        assertTrue(changedModel.isLayoutDirty());
+        algorithm.layout(model.getRoot());
+        assertFalse(changedModel.isLayoutDirty());
+        for (int i = 0; i < others.size(); i++) {
+            assertEquals(areas.get(i), others.get(i).getArea());
+            assertSame(orders.get(i), others.get(i).getLayoutOrder());
+        }
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Returns <CODE>true</CODE> if the node is the other one or one of its
+     * ancestors.
+     *
+     * @param node     the node
+     * @param other    the other node
+     * @return         <CODE>true</CODE> if node is an ancestor of other
+     */
+    private static boolean isAncestor(TMNodeModel node,
+                                      TMNodeModel other) {
+        for (TMNodeModel n = other; n != null; n = n.getParent()) {
+            if (n == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * A model updated and laid out again by an algorithm.
+     */
+    private static class Updated {
+
+        private final TMAlgorithm     algorithm; // the algorithm
+        private final int             threshold; // its detail threshold
+        private final TMTestTree.Node root;      // the root of the tree
+        private final TMNodeModelRoot model;     // the model
+        private final Random          random = new Random(7); // updates
+        private int                   added  = 0; // children added
+
+        /**
+         * Constructor. Lays out the model a first time.
+         *
+         * @param algorithm    the algorithm
+         * @param threshold    the detail threshold of the algorithm
+         */
+        Updated(TMAlgorithm algorithm,
+                int         threshold) {
+            this.algorithm = algorithm;
+            this.threshold = threshold;
+            root = TMTestTree.build(new Random(2004), 5);
+            model = TMTestTree.model(root);
+            algorithm.setDetailThreshold(threshold);
+            algorithm.initialize(model.getRoot(), null);
+            algorithm.layout(model.getRoot());
+        }
+
+        /**
+         * Changes the size of random leaves, some of them to 0.
+         *
+         * @param count    the number of leaves changed
+         */
+        void changeSizes(int count) {
+            List<TMTestTree.Node> leaves = new ArrayList<TMTestTree.Node>();
+            TMTestTree.collect(root, leaves, new ArrayList<TMTestTree.Node>());
+            for (int i = 0; i < count; i++) {
+                TMTestTree.setSize(model,
+                        leaves.get(random.nextInt(leaves.size())),
+                        (random.nextInt(5) == 0) ? 0
+                                                 : 1 + random.nextInt(2000));
+            }
+        }
+
+        /**
+         * Adds a leaf to a random composite node, and removes the first
+         * child of another one.
+         */
+        void addAndRemoveChildren() {
+            List<TMTestTree.Node> composites =
+                    new ArrayList<TMTestTree.Node>();
+            TMTestTree.collect(root, new ArrayList<TMTestTree.Node>(),
+                               composites);
+            TMTestTree.Node parent =
+                    composites.get(random.nextInt(composites.size()));
+            TMTestTree.addChild(model, parent,
+                    TMTestTree.Node.leaf("added" + (added++),
+                                         1 + random.nextInt(2000)));
+            parent = composites.get(random.nextInt(composites.size()));
+            if (parent.children.size() > 1) {
+                TMTestTree.removeChild(model, parent, parent.children.get(0));
+            }
+        }
+
+        /**
+         * Lays out again the model, and checks that a new algorithm laying
+         * out everything gives the same areas.
+         */
+        void assertFullLayout() {
+            algorithm.layout(model.getRoot());
+            List<Rectangle> areas = TMTestTree.areas(model.getRoot());
+            TMAlgorithm full = algorithm.copy();
+            full.setDetailThreshold(threshold);
+            full.initialize(model.getRoot(), null);
+            full.layout(model.getRoot());
+            assertEquals(algorithm.getClass().getSimpleName(),
+                         TMTestTree.areas(model.getRoot()), areas);
+        }
+
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * TMSvgExporterTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that TMSvgExporter writes the areas of a view using the same
+ * algorithm, skips the nodes smaller than the minimum size, escapes the
+ * titles, and bounds the number of paints it defines.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMSvgExporterTest {
+
+    private static final Pattern RECT = Pattern.compile(
+        "<rect x=\"(-?[0-9.]+)\" y=\"(-?[0-9.]+)\""
+        + " width=\"([0-9]+)\" height=\"([0-9]+)\"");
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void areasAreTheOnesOfTheView() throws Exception {
+        TMTestTree.Node root = TMTestTree.build(new Random(2001), 5);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            assertAreas(root, algorithm, 1);
+        }
+    }
+
+    @Test
+    public void nodesSmallerThanTheMinimumSizeAreSkipped() throws Exception {
+        TMTestTree.Node root = TMTestTree.build(new Random(2001), 5);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            List<Rectangle> rects = assertAreas(root, algorithm, 12);
+            for (Rectangle rect : rects) {
+                assertTrue(rect.toString(),
+                           (rect.width >= 12) && (rect.height >= 12));
+            }
+        }
+    }
+
+    @Test
+    public void titlesAreEscaped() throws Exception {
+        TMTestTree.Node root = new TMTestTree.Node("<root> & \"all\"");
+        root.children.add(TMTestTree.Node.leaf("a<b&c>d", 1));
+        root.children.add(TMTestTree.Node.leaf("tab\tbell\u0007end", 1));
+        String svg = export(root, new TMTestTree.Draw(),
+                            new TMAlgorithmSquarified(), new TMSvgExporter());
+        assertWellFormed(svg);
+        assertTrue(svg, svg.contains(">&lt;root&gt; &amp; \"all\"</text>"));
+        assertTrue(svg, svg.contains(">a&lt;b&amp;c&gt;d</text>"));
+        assertTrue(svg, svg.contains(">tabbellend</text>"));
+        assertFalse(svg.contains("a<b"));
+    }
+
+    @Test
+    public void paintsAreDefinedOnceAndBounded() throws Exception {
+        int count = (2 * TMSvgExporter.MAX_DEFS) + 100;
+        TMTestTree.Node root = new TMTestTree.Node("root");
+        for (int i = 0; i < count; i++) {
+            root.children.add(TMTestTree.Node.leaf("l" + i, 1));
+        }
+        TMSvgExporter exporter = new TMSvgExporter();
+        exporter.setWritingTitles(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.writeSVG(new TreeMap(root), new TMTestTree.Size(),
+                          new Gradients(), new TMAlgorithmSquarified(),
+                          2000, 2000, out);
+        String svg = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertWellFormed(svg);
+
+        // two leaves share each gradient
+        assertEquals(TMSvgExporter.MAX_DEFS, occurrences(svg, "<defs>"));
+        assertEquals(2 * TMSvgExporter.MAX_DEFS,
+                     occurrences(svg, " fill=\"url(#p"));
+        assertEquals(0, occurrences(svg, "url(#p" + TMSvgExporter.MAX_DEFS
+                                         + ")"));
+        // the others are filled with the middle of their gradient
+        assertEquals(100, occurrences(svg, " fill=\"#808080\""));
+    }
+
+
+    /* --- Export --- */
+
+    /**
+     * Exports the tree with the minimum size, and checks that the areas
+     * written are the areas of the nodes, laid out by the same algorithm,
+     * that are not smaller than the minimum size nor in a skipped node.
+     *
+     * @param root         the tree
+     * @param algorithm    the algorithm
+     * @param minSize      the minimum size
+     * @return             the areas written, without the background
+     */
+    private static List<Rectangle> assertAreas(TMTestTree.Node root,
+                                               TMAlgorithm     algorithm,
+                                               int             minSize)
+            throws Exception {
+        TMSvgExporter exporter = new TMSvgExporter();
+        exporter.setMinimumSize(minSize);
+        String svg = export(root, new TMTestTree.Draw(), algorithm, exporter);
+        assertWellFormed(svg);
+        List<Rectangle> written = new ArrayList<Rectangle>();
+        Matcher matcher = RECT.matcher(svg);
+        while (matcher.find()) {
+            written.add(new Rectangle(
+                (int) Math.floor(Double.parseDouble(matcher.group(1))),
+                (int) Math.floor(Double.parseDouble(matcher.group(2))),
+                Integer.parseInt(matcher.group(3)),
+                Integer.parseInt(matcher.group(4))));
+        }
+
+        TMNodeModelRoot model = TMTestTree.model(root);
+        TMAlgorithm view = algorithm.copy();
+        view.initialize(model.getRoot(), null);
+        view.layout(model.getRoot());
+        List<Rectangle> expected = new ArrayList<Rectangle>();
+        addWritten(model.getRoot(), minSize, expected);
+
+        sort(written);
+        sort(expected);
+        assertEquals(algorithm.getClass().getSimpleName(), expected, written);
+        return written;
+    }
+
+    /**
+     * Adds the areas of the nodes of a subtree written by the exporter.
+     *
+     * @param node       the root of the subtree
+     * @param minSize    the minimum size
+     * @param areas      the list of the areas
+     */
+    private static void addWritten(TMNodeModel     node,
+                                   int             minSize,
+                                   List<Rectangle> areas) {
+        Rectangle area = node.getArea();
+        if ((area.width < minSize) || (area.height < minSize)) {
+            return;
+        }
+        areas.add(new Rectangle(area));
+        if (!node.isLeaf()) {
+            for (Enumeration<?> e = ((TMNodeModelComposite) node).children();
+                 e.hasMoreElements(); ) {
+                addWritten((TMNodeModel) e.nextElement(), minSize, areas);
+            }
+        }
+    }
+
+    /**
+     * Exports the tree on the size of the test image.
+     *
+     * @param root         the tree
+     * @param draw         the object computing the drawing
+     * @param algorithm    the algorithm
+     * @param exporter     the exporter
+     * @return             the document
+     */
+    private static String export(TMTestTree.Node root,
+                                 TMComputeDraw   draw,
+                                 TMAlgorithm     algorithm,
+                                 TMSvgExporter   exporter)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.writeSVG(new TreeMap(root), new TMTestTree.Size(), draw,
+                          algorithm, TMTestTree.WIDTH, TMTestTree.HEIGHT,
+                          out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that the document is well-formed XML.
+     *
+     * @param svg    the document
+     */
+    private static void assertWellFormed(String svg) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.newDocumentBuilder().parse(
+            new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the number of occurrences of a string in a text.
+     *
+     * @param text      the text
+     * @param string    the string searched
+     * @return          the number of occurrences
+     */
+    private static int occurrences(String text,
+                                   String string) {
+        int count = 0;
+        for (int i = text.indexOf(string); i >= 0;
+             i = text.indexOf(string, i + string.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Sorts areas by position then by size.
+     *
+     * @param areas    the areas
+     */
+    private static void sort(List<Rectangle> areas) {
+        Collections.sort(areas, new Comparator<Rectangle>() {
+            public int compare(Rectangle a, Rectangle b) {
+                int[] ka = {a.x, a.y, a.width, a.height};
+                int[] kb = {b.x, b.y, b.width, b.height};
+                for (int i = 0; i < 4; i++) {
+                    if (ka[i] != kb[i]) {
+                        return (ka[i] < kb[i]) ? -1 : 1;
+                    }
+                }
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * The Gradients class fills each pair of leaves with its own gradient,
+     * created again for each node, whose middle color is always grey.
+     */
+    private static class Gradients
+            extends TMTestTree.Draw {
+
+        public Paint getFilling(TMNodeAdapter nodeAdapter) {
+            TMTestTree.Node node = (TMTestTree.Node) nodeAdapter.getNode();
+            if (!node.isLeaf()) {
+                return Color.white;
+            }
+            int pair = Integer.parseInt(node.name.substring(1)) / 2;
+            int red = 1 + (pair % 255);
+            int green = 1 + (pair / 255);
+            return new GradientPaint(0, 0, new Color(red, green, 128),
+                                     10, 10,
+                                     new Color(256 - red, 256 - green, 128));
+        }
+    }
+
+}
@@ -0,0 +1,615 @@
+/*
+ * TMTestTree.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import javax.swing.JToolTip;
+import javax.swing.SwingUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * The TMTestTree class builds the random trees and the headless models used
+ * by the tests, updates them as the model threads do, and compares their
+ * layouts and their images.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+class TMTestTree {
+
+    static final int WIDTH  = 640; // width of the images
+    static final int HEIGHT = 480; // height of the images
+
+
+    /* --- Constructor --- */
+
+    private TMTestTree() {
+    }
+
+
+    /* --- Trees --- */
+
+    /**
+     * Builds a random tree.
+     *
+     * @param random    the random generator
+     * @param depth     the maximum depth of the tree
+     * @return          the root of the tree
+     */
+    static Node build(Random random,
+                      int    depth) {
+        Node node = new Node("n" + random.nextInt(1000000));
+        if ((depth == 0) || (random.nextInt(4) == 0)) {
+            node.leaf = true;
+            node.size = (random.nextInt(10) == 0) ? random.nextInt(3)
+                                                  : 1 + random.nextInt(1000);
+            return node;
+        }
+        int count = 1 + random.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            node.children.add(build(random, depth - 1));
+        }
+        return node;
+    }
+
+    /**
+     * Builds the model without view of a tree, with its root laid out on
+     * the whole image.
+     *
+     * @param root    the root of the tree
+     * @return        the model
+     */
+    static TMNodeModelRoot model(Node root) {
+        return model(root, new Draw());
+    }
+
+    /**
+     * Builds the model without view of a tree, drawn by the given object,
+     * with its root laid out on the whole image.
+     *
+     * @param root    the root of the tree
+     * @param draw    the object computing the drawing
+     * @return        the model
+     */
+    static TMNodeModelRoot model(Node          root,
+                                 TMComputeDraw draw) {
+        System.setProperty("java.awt.headless", "true");
+        TMNodeModelRoot model = new TMNodeModelRoot(root, new Size(), draw);
+        model.getRoot().getArea().setBounds(0, 0, WIDTH - 1, HEIGHT - 1);
+        return model;
+    }
+
+    /**
+     * Builds the lazy model without view of a tree, with its root laid out
+     * on the whole image. Only the children of the root are built.
+     *
+     * @param root    the root of the tree
+     * @return        the model
+     */
+    static TMNodeModelRoot lazyModel(Node root) {
+        System.setProperty("java.awt.headless", "true");
+        TMNodeModelRoot model =
+                new TMNodeModelRoot(root, new Size(), new Draw(), true);
+        model.getRoot().getArea().setBounds(0, 0, WIDTH - 1, HEIGHT - 1);
+        return model;
+    }
+
+    /**
+     * Builds the view of a tree, sized to the whole image, and waits for
+     * its model to be built.
+     *
+     * @param root    the root of the tree
+     * @return        the view
+     */
+    static TMView view(Node root) {
+        return view(root, new Draw());
+    }
+
+    /**
+     * Builds the view of a tree drawn by the given object, sized to the
+     * whole image, and waits for its model to be built.
+     *
+     * @param root    the root of the tree
+     * @param draw    the object computing the drawing
+     * @return        the view
+     */
+    static TMView view(Node          root,
+                       TMComputeDraw draw) {
+        System.setProperty("java.awt.headless", "true");
+        return built(new TreeMap(root).getView(new Size(), draw));
+    }
+
+    /**
+     * Builds the lazy view of a tree, sized to the whole image, and waits
+     * for its model to be built.
+     *
+     * @param root    the root of the tree
+     * @return        the view
+     */
+    static TMView lazyView(Node root) {
+        System.setProperty("java.awt.headless", "true");
+        return built(new TreeMap(root).getLazyView(new Size(), new Draw()));
+    }
+
+    /**
+     * Sizes the view to the whole image, and waits for its model to be
+     * built.
+     *
+     * @param view    the view
+     * @return        the view
+     */
+    private static TMView built(final TMView view) {
+        view.setSize(WIDTH, HEIGHT);
+        final boolean[] built = new boolean[1];
+        for (int i = 0; (i < 1000) && !built[0]; i++) {
+            onEdt(new Runnable() {
+                public void run() {
+                    // the banner is removed once the view is initialized
+                    built[0] = (view.getComponentCount() == 0);
+                }
+            });
+            if (!built[0]) {
+                sleep(10);
+            }
+        }
+        assertTrue("view not built", built[0]);
+        return view;
+    }
+
+    /**
+     * Paints the view in the event dispatch thread, and returns the pixels
+     * painted.
+     *
+     * @param view    the view
+     * @return        the pixels of the view
+     */
+    static int[] paint(TMView view) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                                                BufferedImage.TYPE_INT_RGB);
+        return paint(view, image, new Rectangle(0, 0, WIDTH, HEIGHT));
+    }
+
+    /**
+     * Paints the given part of the view over an image, in the event
+     * dispatch thread, and returns the pixels of the image.
+     *
+     * @param view     the view
+     * @param image    the image painted over
+     * @param clip     the part of the view painted
+     * @return         the pixels of the image
+     */
+    static int[] paint(final TMView        view,
+                       final BufferedImage image,
+                       final Rectangle     clip) {
+        onEdt(new Runnable() {
+            public void run() {
+                Graphics2D g = image.createGraphics();
+                g.setClip(clip.x, clip.y, clip.width, clip.height);
+                view.paintComponent(g);
+                g.dispose();
+            }
+        });
+        return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+
+    /**
+     * Runs a task in the event dispatch thread, and waits for it.
+     *
+     * @param task    the task
+     */
+    static void onEdt(Runnable task) {
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis    the time, in milliseconds
+     */
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the leaves and the composite nodes of a tree, in depth first
+     * order.
+     *
+     * @param node          the root of the tree
+     * @param leaves        the list filled with the leaves
+     * @param composites    the list filled with the composite nodes
+     */
+    static void collect(Node       node,
+                        List<Node> leaves,
+                        List<Node> composites) {
+        if (node.leaf) {
+            leaves.add(node);
+            return;
+        }
+        composites.add(node);
+        for (Node child : node.children) {
+            collect(child, leaves, composites);
+        }
+    }
+
+
+    /* --- Updates --- */
+
+    /**
+     * Changes the size of a leaf, and updates the model as its update thread
+     * does.
+     *
+     * @param model    the model
+     * @param leaf     the leaf
+     * @param size     its new size
+     */
+    static void setSize(TMNodeModelRoot model,
+                        Node            leaf,
+                        float           size) {
+        leaf.size = size;
+        run(new TMThreadUpdateSize(new TMStatusView.Silent(), model, null,
+                                   leaf));
+    }
+
+    /**
+     * Updates the model after a change of the drawing of a node, as its
+     * update thread does.
+     *
+     * @param model    the model
+     * @param node     the node drawn differently
+     */
+    static void updateDrawing(TMNodeModelRoot model,
+                              Node            node) {
+        run(new TMThreadUpdateDraw(new TMStatusView.Silent(), model, null,
+                                   node, new TMOnDrawFinished() {
+            public void onDrawFinished(String text) {
+            }
+        }));
+    }
+
+    /**
+     * Adds a child to a node, and updates the model as its update thread
+     * does.
+     *
+     * @param model     the model
+     * @param parent    the parent
+     * @param child     the new child
+     */
+    static void addChild(TMNodeModelRoot model,
+                         Node            parent,
+                         Node            child) {
+        parent.children.add(child);
+        run(new TMThreadNewChild(new TMStatusView.Silent(), model, null,
+                                 parent, child));
+    }
+
+    /**
+     * Removes a child from a node, and updates the model as its update
+     * thread does.
+     *
+     * @param model     the model
+     * @param parent    the parent
+     * @param child     the child removed
+     */
+    static void removeChild(TMNodeModelRoot model,
+                            Node            parent,
+                            Node            child) {
+        parent.children.remove(child);
+        run(new TMThreadLostChild(new TMStatusView.Silent(), model, null,
+                                  parent, child));
+    }
+
+    /**
+     * Runs the task of an update thread in the calling thread, holding the
+     * lock of the model, without its gui task.
+     *
+     * @param task    the update thread
+     */
+    private static void run(TMThreadModel task) {
+        TMNodeModelRoot model = task.model;
+        model.getLock().lock();
+        try {
+            task.task();
+            model.getTop().clearBuffers();
+        } finally {
+            model.getLock().unlock();
+        }
+    }
+
+
+    /* --- Layouts and images --- */
+
+    /**
+     * Returns a new instance of every algorithm.
+     *
+     * @return    the algorithms
+     */
+    static TMAlgorithm[] algorithms() {
+        return new TMAlgorithm[] {
+            new TMAlgorithmSquarified(),
+            new TMAlgorithmClassic(),
+            new TMAlgorithmStrip(),
+            new TMAlgorithmPivot(),
+            new TMAlgorithmSplit()
+        };
+    }
+
+    /**
+     * Returns the areas of the nodes of a subtree, in depth first order.
+     *
+     * @param node    the root of the subtree
+     * @return        the areas
+     */
+    static List<Rectangle> areas(TMNodeModel node) {
+        List<Rectangle> areas = new ArrayList<Rectangle>();
+        addAreas(node, areas);
+        return areas;
+    }
+
+    /**
+     * Adds the areas of the nodes of a subtree to a list.
+     *
+     * @param node     the root of the subtree
+     * @param areas    the list of the areas
+     */
+    private static void addAreas(TMNodeModel     node,
+                                 List<Rectangle> areas) {
+        areas.add(new Rectangle(node.getArea()));
+        if (!node.isLeaf()) {
+            for (Enumeration<?> e = ((TMNodeModelComposite) node).children();
+                 e.hasMoreElements(); ) {
+                addAreas((TMNodeModel) e.nextElement(), areas);
+            }
+        }
+    }
+
+    /**
+     * Draws the model twice with the algorithm in the given mode, the second
+     * drawing reusing what the first one kept, and returns the hash of the
+     * pixels of the second image.
+     *
+     * @param model        the model
+     * @param algorithm    the algorithm
+     * @param mode         the drawing mode
+     * @return             the hash of the image
+     */
+    static int drawHash(TMNodeModelRoot model,
+                        TMAlgorithm     algorithm,
+                        Mode            mode) {
+        mode.apply(algorithm);
+        algorithm.initialize(model.getRoot(), null);
+        int hash = 0;
+        for (int i = 0; i < 2; i++) {
+            hash = drawHash(model, algorithm);
+        }
+        return hash;
+    }
+
+    /**
+     * Draws the model once with the algorithm, and returns the hash of the
+     * pixels of the image.
+     *
+     * @param model        the model
+     * @param algorithm    the algorithm, already initialized
+     * @return             the hash of the image
+     */
+    static int drawHash(TMNodeModelRoot model,
+                        TMAlgorithm     algorithm) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                                                BufferedImage.TYPE_INT_RGB);
+        algorithm.draw(image, new Rectangle(0, 0, WIDTH, HEIGHT),
+                       model.getRoot());
+        return Arrays.hashCode(
+                image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+    }
+
+    /**
+     * Checks that the drawing mode draws, for every algorithm, the image
+     * drawn sequentially.
+     *
+     * @param model    the model
+     * @param mode     the drawing mode
+     */
+    static void assertSameAsSequential(TMNodeModelRoot model,
+                                       Mode            mode) {
+        assertSameAsSequential(model, Mode.SEQUENTIAL, mode);
+    }
+
+    /**
+     * Checks that the drawing mode draws, for every algorithm, the image
+     * drawn sequentially with the given parameters.
+     *
+     * @param model         the model
+     * @param sequential    the parameters of the sequential drawing
+     * @param mode          the drawing mode
+     */
+    static void assertSameAsSequential(TMNodeModelRoot model,
+                                       Mode            sequential,
+                                       Mode            mode) {
+        for (TMAlgorithm algorithm : algorithms()) {
+            int expected = drawHash(model, algorithm, sequential);
+            int hash = drawHash(model, algorithm.copy(), mode);
+            assertEquals(algorithm.getClass().getSimpleName(),
+                         expected, hash);
+        }
+    }
+
+
+    /* --- Inner classes --- */
+
+    /**
+     * The parameters of a drawing.
+     */
+    interface Mode {
+
+        // the default parameters
+        Mode SEQUENTIAL = new Mode() {
+            public void apply(TMAlgorithm algorithm) {
+            }
+        };
+
+        /**
+         * Sets the parameters of the drawing on the algorithm.
+         *
+         * @param algorithm    the algorithm
+         */
+        void apply(TMAlgorithm algorithm);
+
+    }
+
+    /**
+     * A node of the trees.
+     */
+    static class Node
+            implements TMNode {
+
+        final String       name;     // name of the node
+        final Vector<Node> children = new Vector<Node>(); // children
+        boolean            leaf     = false; // is it a leaf
+        float              size     = 0.0f; // size of a leaf
+        TMNodeModel        model    = null; // model of the node
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns a new leaf.
+         *
+         * @param name    the name of the leaf
+         * @param size    the size of the leaf
+         * @return        the leaf
+         */
+        static Node leaf(String name,
+                         float  size) {
+            Node node = new Node(name);
+            node.leaf = true;
+            node.size = size;
+            return node;
+        }
+
+        public Enumeration<Node> children() {
+            return children.elements();
+        }
+
+        public boolean isLeaf() {
+            return leaf;
+        }
+
+        public void setUpdater(TMUpdater updater) {
+        }
+
+        public List<Object> getListChildren() {
+            return new ArrayList<Object>(children);
+        }
+
+        public TMNodeModel setNodeModel(TMNodeModel model) {
+            this.model = model;
+            return model;
+        }
+
+        public TMNodeModel getNodeModel() {
+            return model;
+        }
+
+    }
+
+    /**
+     * The size of the leaves.
+     */
+    static class Size
+            implements TMComputeSize {
+
+        public boolean isCompatibleWith(TMNode node) {
+            return node instanceof Node;
+        }
+
+        public float getSize(TMNode node) {
+            return ((Node) node).size;
+        }
+
+    }
+
+    /**
+     * The drawing of the nodes : a color and a title from their name.
+     */
+    static class Draw
+            implements TMComputeDraw {
+
+        public boolean isCompatibleWith(TMNode node) {
+            return node instanceof Node;
+        }
+
+        public Paint getFilling(TMNodeAdapter nodeAdapter) {
+            Node node = (Node) nodeAdapter.getNode();
+            return new Color(node.name.hashCode() & 0xffffff);
+        }
+
+        public String getTooltip(TMNodeAdapter nodeAdapter) {
+            return ((Node) nodeAdapter.getNode()).name;
+        }
+
+        public JToolTip getDetailsOnDemand(TMNodeAdapter nodeAdapter) {
+            return null;
+        }
+
+        public String getTitle(TMNodeAdapter nodeAdapter) {
+            return ((Node) nodeAdapter.getNode()).name;
+        }
+
+        public Paint getTitleColor(TMNodeAdapter nodeAdapter) {
+            return Color.white;
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * TMThreadLockTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package net.bouthier.treemapAWT;
+
+import java.awt.event.MouseEvent;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the lock of the model is shared by the drawing of the
+ * background renderer and the readers of the view, that a thread waiting
+ * to change the model cancels that drawing instead of waiting for it, and
+ * that the view never waits for the lock.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMThreadLockTest {
+
+    private static final long TIMEOUT = 5000; // ms before giving up
+
+    private final TMThreadLock lock = new TMThreadLock(); // the lock tested
+
+    private Holder holder = null; // the thread holding the lock
+
+
+    /* --- Fixture --- */
+
+    @After
+    public void releaseLock() throws InterruptedException {
+        if (holder != null) {
+            holder.release.countDown();
+            holder.join(TIMEOUT);
+        }
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void drawingSharesTheLock() throws InterruptedException {
+        hold(Holder.DRAWING);
+        assertTrue(lock.tryLockShared());
+        lock.unlockShared();
+    }
+
+    @Test
+    public void changesOfTheModelDoNotShareTheLock()
+            throws InterruptedException {
+        hold(Holder.CHANGING);
+        assertFalse(lock.tryLockShared());
+    }
+
+    @Test
+    public void layoutOfTheDrawingDoesNotShareTheLock()
+            throws InterruptedException {
+        hold(Holder.LAYING_OUT);
+        assertFalse(lock.tryLockShared());
+    }
+
+    @Test
+    public void waitingForTheLockCancelsTheDrawing()
+            throws InterruptedException {
+        hold(Holder.DRAWING);
+        lock.lock();
+        try {
+            assertTrue("drawing not cancelled", holder.cancelled);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    public void tooltipsDoNotWaitForTheModel() throws InterruptedException {
+        final TMView view = TMTestTree.view(
+                TMTestTree.build(new Random(2001), 3));
+        TMTestTree.paint(view);
+        final MouseEvent event = new MouseEvent(view, MouseEvent.MOUSE_MOVED,
+                0, 0, TMTestTree.WIDTH / 2, TMTestTree.HEIGHT / 2, 0, false);
+        final String[] tips = new String[2];
+        TMTestTree.onEdt(new Runnable() {
+            public void run() {
+                tips[0] = view.getToolTipText(event);
+            }
+        });
+        assertNotNull(tips[0]);
+
+        holder = new Holder(view.getRootAnderson().getLock(),
+                            Holder.CHANGING);
+        holder.start();
+        assertTrue(holder.held.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        TMTestTree.onEdt(new Runnable() {
+            public void run() {
+                tips[1] = view.getToolTipText(event);
+            }
+        });
+        assertNull(tips[1]);
+    }
+
+
+    /* --- Holder --- */
+
+    /**
+     * Starts a thread holding the lock, and waits for it to hold it.
+     *
+     * @param how    how the lock is held
+     */
+    private void hold(int how)
+            throws InterruptedException {
+        holder = new Holder(lock, how);
+        holder.start();
+        assertTrue(holder.held.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * The Holder class is a thread holding the lock until released, as
+     * the thread updating the model does, or as the background renderer
+     * does while laying out or while drawing.
+     */
+    private static class Holder
+            extends Thread {
+
+        static final int CHANGING   = 0; // holds the lock exclusively
+        static final int LAYING_OUT = 1; // yielding, exclusively
+        static final int DRAWING    = 2; // yielding, shared
+
+        final CountDownLatch held    = new CountDownLatch(1); // lock held
+        final CountDownLatch release = new CountDownLatch(1); // to release it
+
+        private final TMThreadLock lock; // the lock held
+        private final int          how;  // how it is held
+
+        volatile boolean cancelled = false; // interrupted while holding it
+
+        Holder(TMThreadLock lock,
+               int          how) {
+            this.lock = lock;
+            this.how = how;
+            setDaemon(true);
+        }
+
+        public void run() {
+            if (how == CHANGING) {
+                lock.lock();
+            } else {
+                lock.lockYielding();
+                if (how == DRAWING) {
+                    lock.shareYielding();
+                }
+            }
+            held.countDown();
+            try {
+                // draws until released or cancelled
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                cancelled = true;
+            }
+            if (how == CHANGING) {
+                lock.unlock();
+            } else {
+                lock.unlockYielding();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * TMTileTaskTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the tiles drawn in parallel by TMTileTask make up the image
+ * drawn sequentially, count the culled nodes once, and draw only the clip.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMTileTaskTest {
+
+    private static TMNodeModelRoot model = null; // the model drawn
+
+
+    /* --- Fixture --- */
+
+    @BeforeClass
+    public static void buildModel() {
+        model = TMTestTree.model(TMTestTree.build(new Random(2001), 5));
+    }
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void parallelDrawingDrawsTheSameImage() {
+        TMTestTree.assertSameAsSequential(model, tiles(64));
+    }
+
+    @Test
+    public void tilesNotDividingTheImageDrawTheSameImage() {
+        TMTestTree.assertSameAsSequential(model, tiles(100));
+    }
+
+    @Test
+    public void culledNodesAreCountedOnce() {
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            algorithm.setDetailThreshold(12);
+            TMTestTree.drawHash(model, algorithm, TMTestTree.Mode.SEQUENTIAL);
+            int expected = algorithm.getCulledNodeCount();
+            assertTrue(expected > 0);
+
+            TMAlgorithm parallel = algorithm.copy();
+            TMTestTree.drawHash(model, parallel, tiles(64));
+            assertEquals(algorithm.getClass().getSimpleName(),
+                         expected, parallel.getCulledNodeCount());
+        }
+    }
+
+    @Test
+    public void culledNodesAreDrawnTheSame() {
+        final TMTestTree.Mode culled = new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setDetailThreshold(12);
+            }
+        };
+        TMTestTree.assertSameAsSequential(model, culled,
+                                          new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                culled.apply(algorithm);
+                tiles(64).apply(algorithm);
+            }
+        });
+    }
+
+    @Test
+    public void onlyTheClipIsDrawn() {
+        Rectangle clip = new Rectangle(100, 70, 300, 200);
+        for (TMAlgorithm algorithm : TMTestTree.algorithms()) {
+            algorithm.initialize(model.getRoot(), null);
+            BufferedImage expected = draw(algorithm, clip);
+            TMAlgorithm parallel = algorithm.copy();
+            tiles(64).apply(parallel);
+            parallel.initialize(model.getRoot(), null);
+            BufferedImage image = draw(parallel, clip);
+            for (int y = 0; y < TMTestTree.HEIGHT; y++) {
+                for (int x = 0; x < TMTestTree.WIDTH; x++) {
+                    if (!clip.contains(x, y)) {
+                        assertEquals(Color.magenta.getRGB(),
+                                     image.getRGB(x, y));
+                    }
+                    assertEquals(algorithm.getClass().getSimpleName()
+                                 + " at " + x + "," + y,
+                                 expected.getRGB(x, y), image.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+
+    /* --- Utilities --- */
+
+    /**
+     * Returns the parallel drawing mode with tiles of the given side.
+     *
+     * @param size    the side of the tiles
+     * @return        the drawing mode
+     */
+    private static TMTestTree.Mode tiles(final int size) {
+        return new TMTestTree.Mode() {
+            public void apply(TMAlgorithm algorithm) {
+                algorithm.setParallelDrawing(true);
+                algorithm.setTileSize(size);
+            }
+        };
+    }
+
+    /**
+     * Draws the clip of the model in an image filled with magenta, so that
+     * pixels drawn outside of the clip show.
+     *
+     * @param algorithm    the algorithm, initialized
+     * @param clip         the area to draw
+     * @return             the image
+     */
+    private static BufferedImage draw(TMAlgorithm algorithm,
+                                      Rectangle   clip) {
+        BufferedImage image = new BufferedImage(TMTestTree.WIDTH,
+                TMTestTree.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.magenta);
+        g.fillRect(0, 0, TMTestTree.WIDTH, TMTestTree.HEIGHT);
+        g.dispose();
+        algorithm.draw(image, clip, model.getRoot());
+        return image;
+    }
+
+}
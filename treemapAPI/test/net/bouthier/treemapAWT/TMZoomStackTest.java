@@ -0,0 +1,223 @@
+/*
+ * TMZoomStackTest.java
+ * www.bouthier.net
+ *
+ * The MIT License :
+ * -----------------
+ * Copyright (c) 2001 Christophe Bouthier
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+
+package net.bouthier.treemapAWT;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that the view keeps the painted treemaps of the zoomed-out levels,
+ * takes them back when unzooming while they are up to date, and forgets
+ * them when the model, the algorithm or the zooms do not match anymore.
+ *
+ * @author Christophe Bouthier [bouthier@loria.fr]
+ * @version 2.5
+ */
+public class TMZoomStackTest {
+
+    private static final int DEPTH = 12; // depth of the chain of composites
+
+
+    /* --- Tests --- */
+
+    @Test
+    public void unzoomingRestoresThePaintedLevel() {
+        TMTestTree.Node top = chain();
+        TMView view = TMTestTree.view(top);
+        TMTestTree.paint(view);
+        zoomOn(view, top.children.get(2));
+        int[] level = TMTestTree.paint(view);
+        assertEquals(0, view.getZoomImageCount());
+
+        zoomOn(view, top.children.get(2).children.get(2));
+        TMTestTree.paint(view);
+        assertEquals(1, view.getZoomImageCount());
+
+        unzoom(view);
+        assertEquals(0, view.getZoomImageCount());
+        assertTrue(view.isFrameRestored());
+        assertArrayEquals(level, TMTestTree.paint(view));
+        assertFalse(view.isFrameRestored());
+    }
+
+    @Test
+    public void updatesOfTheModelAreNotRestored() {
+        TMTestTree.Node top = chain();
+        TMView view = TMTestTree.view(top);
+        TMTestTree.Node first = top.children.get(2);
+        TMTestTree.paint(view);
+        zoomOn(view, first);
+        int[] level = TMTestTree.paint(view);
+        zoomOn(view, first.children.get(2));
+        TMTestTree.paint(view);
+        assertEquals(1, view.getZoomImageCount());
+
+        TMTestTree.setSize(view.getRootAnderson(),
+                           first.children.get(2).children.get(0), 40);
+        unzoom(view);
+        assertEquals(0, view.getZoomImageCount());
+        assertFalse(view.isFrameRestored());
+        assertFalse(Arrays.equals(level, TMTestTree.paint(view)));
+    }
+
+    @Test
+    public void changesOfTheAlgorithmAreNotRestored() {
+        TMTestTree.Node top = chain();
+        TMView view = TMTestTree.view(top);
+        zoomTwice(view, top);
+        assertEquals(1, view.getZoomImageCount());
+        view.getAlgorithm().setH(0.5);
+        assertEquals(0, view.getZoomImageCount());
+        unzoom(view);
+        assertFalse(view.isFrameRestored());
+        unzoom(view);
+
+        zoomTwice(view, top);
+        assertEquals(1, view.getZoomImageCount());
+        view.setAlgorithm(TMView.CLASSIC);
+        unzoom(view);
+        assertFalse(view.isFrameRestored());
+    }
+
+    @Test
+    public void deepZoomsKeepALimitedNumberOfLevels() {
+        TMTestTree.Node top = chain();
+        TMView view = TMTestTree.view(top);
+        TMTestTree.paint(view);
+        TMTestTree.Node node = top;
+        for (int depth = 0; depth < DEPTH - 1; depth++) {
+            node = node.children.get(2);
+            zoomOn(view, node);
+            TMTestTree.paint(view);
+            assertEquals(Math.min(depth, 8), view.getZoomImageCount());
+        }
+        for (int depth = DEPTH - 2; depth > 0; depth--) {
+            unzoom(view);
+            assertEquals(depth > DEPTH - 10, view.isFrameRestored());
+            TMTestTree.paint(view);
+        }
+    }
+
+    @Test
+    public void unmatchedZoomsClearTheStack() {
+        TMTestTree.Node top = chain();
+        TMView view = TMTestTree.view(top);
+        TMTestTree.paint(view);
+        TMTestTree.Node node = top;
+        for (int depth = 0; depth < 3; depth++) {
+            node = node.children.get(2);
+            zoomOn(view, node);
+            TMTestTree.paint(view);
+        }
+        assertEquals(2, view.getZoomImageCount());
+        view.zoomedOut(view.getRootAnderson().nodeContaining(top));
+        assertEquals(0, view.getZoomImageCount());
+        assertFalse(view.isFrameRestored());
+    }
+
+
+    /* --- Tree and view --- */
+
+    /**
+     * Returns a chain of composite nodes, each with two leaves and the next
+     * composite.
+     *
+     * @return    the top of the chain
+     */
+    private static TMTestTree.Node chain() {
+        TMTestTree.Node top = new TMTestTree.Node("c0");
+        TMTestTree.Node node = top;
+        for (int depth = 1; depth <= DEPTH; depth++) {
+            node.children.add(TMTestTree.Node.leaf("a" + depth, depth));
+            node.children.add(TMTestTree.Node.leaf("b" + depth, 2 * depth));
+            if (depth < DEPTH) {
+                TMTestTree.Node next = new TMTestTree.Node("c" + depth);
+                node.children.add(next);
+                node = next;
+            } else {
+                node.children.add(TMTestTree.Node.leaf("d" + depth, 3));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Zooms twice down the chain from the top, painting each level.
+     *
+     * @param view    the view
+     * @param top     the top of the chain
+     */
+    private static void zoomTwice(TMView          view,
+                                  TMTestTree.Node top) {
+        TMTestTree.paint(view);
+        zoomOn(view, top.children.get(2));
+        TMTestTree.paint(view);
+        zoomOn(view, top.children.get(2).children.get(2));
+        TMTestTree.paint(view);
+    }
+
+    /**
+     * Zooms on the given node, a child of the root displayed.
+     *
+     * @param view    the view
+     * @param node    the node
+     */
+    private static void zoomOn(final TMView          view,
+                               final TMTestTree.Node node) {
+        TMTestTree.onEdt(new Runnable() {
+            public void run() {
+                Rectangle area =
+                    view.getRootAnderson().nodeContaining(node).getArea();
+                view.zoom((int) area.getCenterX(), (int) area.getCenterY());
+            }
+        });
+    }
+
+    /**
+     * Unzooms of one level.
+     *
+     * @param view    the view
+     */
+    private static void unzoom(final TMView view) {
+        TMTestTree.onEdt(new Runnable() {
+            public void run() {
+                view.unzoom();
+            }
+        });
+    }
+
+}